@@ -0,0 +1,262 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers common ancestor, level ancestor and level queries of a tree. Until the tree stays unmodified long enough,
+ * queries walk up the parents of the nodes. Once the parent walks since the last modification have cost as much as 
+ * indexing the tree, the nodes are numbered in pre order and a table is built which answers every following query
+ * in constant or logarithmic time. Any modification of the tree retires the table.
+ * <br>
+ * For nodes u and v numbered pre(u) &lt; pre(v), the common ancestor is the parent with the lowest number among the
+ * parents of the nodes numbered pre(u) + 1 to pre(v). This needs n log(n) integers for a sparse table, half of what
+ * a sparse table over the Euler tour would take.
+ * <br>
+ * The ancestor of u at level l is the node with the highest number not above pre(u) among the nodes at level l, as 
+ * any later node at that level would have closed the sub-tree of the ancestor before u. Numbers of the nodes at
+ * each level come out sorted from the pre order walk, so a binary search finds the ancestor in O(log n) with only
+ * n more integers, where binary lifting would need another n log(n).
+ * <br>
+ * Queries count their work in an atomic counter and the table is built at most once for a modification count and
+ * published through a volatile field, so any number of threads may query an index whose tree is not being modified,
+ * as every version of {@link PersistentTree} is. Queries racing a modification of a mutable tree are not safe, see
+ * {@link ConcurrentTree}
+ * @author Gaurav Saxena
+ *
+ * @param <E> object type contained in the tree
+ */
+final class AncestorIndex<E> {
+	private volatile Table<E> table;
+	/**
+	 * Parent steps taken by the queries since the tree was modified last
+	 */
+	private final AtomicLong work = new AtomicLong();
+	private volatile int workModCount;
+
+	/**
+	 * @param tree tree this index belongs to
+	 * @param modCount current modification count of the tree
+	 * @return the common ancestor of the nodes
+	 * @throws NodeNotFoundException if any of the nodes is not found
+	 */
+	E commonAncestor(Tree<E> tree, int modCount, E node1, E node2) throws NodeNotFoundException {
+		Table<E> table = table(tree, modCount);
+		if(table != null)
+			return table.commonAncestor(node1, node2);
+		return walkParents(tree, node1, node2);
+	}
+	/**
+	 * @param tree tree this index belongs to
+	 * @param modCount current modification count of the tree
+	 * @param k number of levels to go up
+	 * @return the ancestor k levels above the node, null if there is no such ancestor
+	 * @throws NodeNotFoundException if the node is not found
+	 */
+	E ancestor(Tree<E> tree, int modCount, E node, int k) throws NodeNotFoundException {
+		if(k < 0)
+			throw new IllegalArgumentException("k should not be negative");
+		Table<E> table = table(tree, modCount);
+		if(table != null)
+			return table.ancestor(node, k);
+		if(k == 0) {
+			if(!tree.contains(node))
+				throw new NodeNotFoundException("No node was found for object");
+			return node;
+		}
+		E e = node;
+		int i = 0;
+		while(i < k && e != null) {
+			e = tree.parent(e);
+			i++;
+		}
+		work.addAndGet(i);
+		return e;
+	}
+	/**
+	 * @param tree tree this index belongs to
+	 * @param modCount current modification count of the tree
+	 * @return level of the node, root being at level 1
+	 * @throws NodeNotFoundException if the node is not found
+	 */
+	int levelOf(Tree<E> tree, int modCount, E node) throws NodeNotFoundException {
+		Table<E> table = table(tree, modCount);
+		if(table != null)
+			return table.levelOf(node);
+		if(!tree.contains(node))
+			throw new NodeNotFoundException("No node was found for object");
+		int level = 0;
+		for(E e = node; e != null; e = tree.parent(e))
+			level++;
+		work.addAndGet(level);
+		return level;
+	}
+	/**
+	 * @return the table for the current state of the tree, built now if the walks have cost enough, null otherwise
+	 */
+	private Table<E> table(Tree<E> tree, int modCount) {
+		Table<E> table = this.table;
+		if(table != null && table.modCount == modCount)
+			return table;
+		if(workModCount != modCount) {
+			workModCount = modCount;
+			work.set(0);
+		}
+		if(work.get() >= tree.size() && !tree.isEmpty())
+			return buildTable(tree, modCount);
+		return null;
+	}
+	/**
+	 * Builds the table once even if several queries cross the threshold together
+	 */
+	private synchronized Table<E> buildTable(Tree<E> tree, int modCount) {
+		Table<E> table = this.table;
+		if(table == null || table.modCount != modCount) {
+			table = new Table<E>(tree, modCount);
+			this.table = table;
+		}
+		return table;
+	}
+	private E walkParents(Tree<E> tree, E node1, E node2) throws NodeNotFoundException {
+		int height1 = 0;
+		for(E e = node1; e != null; e = tree.parent(e))
+			height1++;
+		int height2 = 0;
+		for(E e = node2; e != null; e = tree.parent(e))
+			height2++;
+		long steps = height1 + height2;
+		for(; height1 > height2; height1--)
+			node1 = tree.parent(node1);
+		for(; height2 > height1; height2--)
+			node2 = tree.parent(node2);
+		while(node1 != null && !node1.equals(node2)) {
+			node1 = tree.parent(node1);
+			node2 = tree.parent(node2);
+			steps += 2;
+		}
+		work.addAndGet(steps);
+		return node1;
+	}
+
+	private static final class Table<E> {
+		final int modCount;
+		private final Object2IntOpenHashMap<E> numbers;
+		private final Object[] elements;
+		/**
+		 * sparse[k][i] is the lowest parent number among the nodes numbered i to i + 2^k - 1
+		 */
+		private final int[][] sparse;
+		/**
+		 * Level of every node by its number, root being at level 1
+		 */
+		private final int[] levels;
+		/**
+		 * byLevel[l] are the numbers of the nodes at level l in ascending order
+		 */
+		private final int[][] byLevel;
+
+		Table(Tree<E> tree, int modCount) {
+			this.modCount = modCount;
+			final int size = tree.size();
+			numbers = new Object2IntOpenHashMap<E>(size);
+			numbers.defaultReturnValue(-1);
+			elements = new Object[size];
+			final int[] parents = new int[size];
+			levels = new int[size];
+			final IntArrayList path = new IntArrayList();
+			tree.walk(new TreeVisitor<E>() {
+				private int next = 0;
+				@Override
+				public TreeVisitResult preVisit(E node, E parent, int depth) {
+					int number = next++;
+					numbers.put(node, number);
+					elements[number] = node;
+					path.size(depth - 1);
+					parents[number] = depth == 1 ? -1 : path.getInt(depth - 2);
+					levels[number] = depth;
+					path.add(number);
+					return TreeVisitResult.CONTINUE;
+				}
+			});
+			int height = 0;
+			for(int level : levels)
+				height = Math.max(height, level);
+			int[] counts = new int[height + 1];
+			for(int level : levels)
+				counts[level]++;
+			byLevel = new int[height + 1][];
+			for(int l = 1; l <= height; l++)
+				byLevel[l] = new int[counts[l]];
+			for(int i = 0; i < size; i++) {
+				int level = levels[i];
+				byLevel[level][byLevel[level].length - counts[level]--] = i;
+			}
+			int rows = size < 2 ? 1 : 32 - Integer.numberOfLeadingZeros(size - 1);
+			sparse = new int[rows][];
+			sparse[0] = parents;
+			for(int k = 1; k < rows; k++) {
+				int[] previous = sparse[k - 1];
+				int half = 1 << (k - 1);
+				int[] level = new int[size - (1 << k) + 1];
+				for(int i = 0; i < level.length; i++)
+					level[i] = Math.min(previous[i], previous[i + half]);
+				sparse[k] = level;
+			}
+		}
+		@SuppressWarnings("unchecked")
+		E commonAncestor(E node1, E node2) throws NodeNotFoundException {
+			int u = numbers.getInt(node1);
+			int v = numbers.getInt(node2);
+			if(u == -1 || v == -1)
+				throw new NodeNotFoundException("No node was found for object");
+			if(u == v)
+				return (E) elements[u];
+			if(u > v) {
+				int swap = u;
+				u = v;
+				v = swap;
+			}
+			int k = 31 - Integer.numberOfLeadingZeros(v - u);
+			return (E) elements[Math.min(sparse[k][u + 1], sparse[k][v - (1 << k) + 1])];
+		}
+		@SuppressWarnings("unchecked")
+		E ancestor(E node, int k) throws NodeNotFoundException {
+			int u = number(node);
+			if(k == 0)
+				return node;
+			int level = levels[u] - k;
+			if(level < 1)
+				return null;
+			if(k == 1)
+				return (E) elements[sparse[0][u]];
+			int[] numbers = byLevel[level];
+			int i = Arrays.binarySearch(numbers, u);
+			return (E) elements[numbers[-i - 2]];
+		}
+		int levelOf(E node) throws NodeNotFoundException {
+			return levels[number(node)];
+		}
+		private int number(E node) throws NodeNotFoundException {
+			int u = numbers.getInt(node);
+			if(u == -1)
+				throw new NodeNotFoundException("No node was found for object");
+			return u;
+		}
+	}
+}
@@ -13,16 +13,20 @@
  */
 package com.googlecode.jctree;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
 
 /**
- * Traditional BST. The implementation is using arraylists which have to be traversed completely to find a node. As a result this implementation doesn't give traditional
- * log(n) operation time. {@link BinarySearchTree} implementation is based on tradition left-right-parent links
+ * Traditional BST. The implementation is using arraylists with a hash index from element to its slot, so a node is found in constant time
+ * once its position is known. {@link BinarySearchTree} implementation is based on tradition left-right-parent links
  * 
  * @author Gaurav Saxena
  *
@@ -30,12 +34,38 @@ import java.util.List;
  */
 public class ArrayListBinarySearchTree<E extends Comparable<E>> implements SortedTree<E>, Cloneable {
 	private ArrayList<E> nodeList = new ArrayList<E>();
-	private ArrayList<Integer> parentList = new ArrayList<Integer>();
+	private IntArrayList parentList = new IntArrayList();
 	private ArrayList<int[]> childrenArray = new ArrayList<int[]>();
+	/**
+	 * Slot of every element present in the tree, so that nodes are found without scanning nodeList
+	 */
+	private Object2IntOpenHashMap<E> nodeIndex = new Object2IntOpenHashMap<E>();
 	private int size = 0;
 	private int depth = 0;
 	private final int MAX_CHILDREN = 2;
 	private int rootIndex = -1;
+	/**
+	 * Counts structural modifications so that traversal views fail fast
+	 */
+	private int modCount = 0;
+	private AncestorIndex<E> ancestorIndex = new AncestorIndex<E>();
+	private IntervalLabels labels = new IntervalLabels();
+	/**
+	 * Number of nodes in the sub-tree rooted at every slot
+	 */
+	private IntArrayList sizeList = new IntArrayList();
+
+	public ArrayListBinarySearchTree() {
+		nodeIndex.defaultReturnValue(-1);
+	}
+	/**
+	 * Builds the tree from the values in O(n) if they are sorted and in O(n log(n)) otherwise
+	 * @see #addAll(Collection)
+	 */
+	public ArrayListBinarySearchTree(Collection<? extends E> c) {
+		this();
+		addAll(c);
+	}
 	/** 
 	 * A binary search tree determines parent of a child on its own and hence it is not possible to add the child to any given parent. Please use add(child)
 	 * The method throws {@link UnsupportedOperationException}
@@ -72,9 +102,9 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 		checkNode(child);
 		if(isRootElementBeingAdded(parent, child))
 			return true;
-		int	parentIndex = nodeList.indexOf(parent);
+		int	parentIndex = nodeIndex.getInt(parent);
 		if(parentIndex > -1) {
-			int childIndex = nodeList.indexOf(child);
+			int childIndex = nodeIndex.getInt(child);
 			int emptySlot;
 			if(childIndex == -1) {
 				if((emptySlot = getEmptySlot(childrenArray.get(parentIndex))) > -1) {
@@ -83,12 +113,17 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 				} else
 					throw new IndexOutOfBoundsException("Children array of parent is already full");
 			} else {
-				nodeList.set(childIndex, child);
+				replace(childIndex, child);
 				return false;
 			}
 		} else
 			throw new NodeNotFoundException("No node was found for parent object");
 	}
+	private void replace(int index, E child) {
+		nodeList.set(index, child);
+		nodeIndex.removeInt(child);
+		nodeIndex.put(child, index);
+	}
 	private boolean isRootElementBeingAdded(E parent, E child) {
 		if(parent == null) {
 			if(isEmpty()) {
@@ -105,9 +140,9 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 		checkIndex(index);
 		if(isRootElementBeingAdded(parent, child))
 			return true;
-		int	parentIndex = nodeList.indexOf(parent);
+		int	parentIndex = nodeIndex.getInt(parent);
 		if(parentIndex > -1) {
-			if(nodeList.indexOf(child) == -1) {
+			if(!nodeIndex.containsKey(child)) {
 				addChild(child, parentIndex, index);
 				return true;
 			} else
@@ -121,12 +156,72 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 			throw new IndexOutOfBoundsException("index found to be " + index + ".It should be between 0 and " + (MAX_CHILDREN - 1));
 	}
 
+	/**
+	 * Adds the values one by one if the collection is smaller than the tree. Otherwise the values are sorted, see 
+	 * {@link BulkLoad}, merged with the nodes present and the tree is built afresh, perfectly balanced, in O(n)
+	 * @see java.util.Collection#addAll(java.util.Collection)
+	 */
 	@Override
 	public boolean addAll(Collection<? extends E> c) {
-		boolean retVal = false;
-		for (Iterator<? extends E> iterator = c.iterator(); iterator.hasNext();)
-			retVal |= add(iterator.next());
-		return retVal;
+		if(c.size() < size) {
+			boolean retVal = false;
+			for (Iterator<? extends E> iterator = c.iterator(); iterator.hasNext();)
+				retVal |= add(iterator.next());
+			return retVal;
+		} else if(c.isEmpty())
+			return false;
+		int previousSize = size;
+		Object[] values = BulkLoad.sorted(c, false);
+		build(size == 0 ? values : BulkLoad.merge(inOrderView(), size, values, false));
+		return size != previousSize;
+	}
+	/**
+	 * Replaces the nodes by the sorted distinct values in O(n), the tree being perfectly balanced and its slots 
+	 * taken in pre order, so the root stays in slot 0
+	 */
+	private void build(Object[] values) {
+		nodeList.clear();
+		parentList.clear();
+		childrenArray.clear();
+		nodeIndex.clear();
+		sizeList.clear();
+		nodeList.ensureCapacity(values.length);
+		labels.fill(values.length);
+		size = values.length;
+		modCount++;
+		depth = 32 - Integer.numberOfLeadingZeros(size);
+		rootIndex = size == 0 ? -1 : 0;
+		if(size > 0)
+			build(values, 0, size - 1, -1, 1);
+	}
+	/**
+	 * Puts the middle value from low to high in the next slot and builds its sub-trees from the values around it
+	 * @param token next token of the labels to hand out, the tokens being handed out in depth first order
+	 * @return next token to hand out once the sub-tree is built
+	 */
+	@SuppressWarnings("unchecked")
+	private int build(Object[] values, int low, int high, int parentIndex, int token) {
+		int middle = (low + high) >>> 1;
+		int index = nodeList.size();
+		E value = (E) values[middle];
+		nodeList.add(value);
+		nodeIndex.put(value, index);
+		parentList.add(parentIndex);
+		int[] children = new int[MAX_CHILDREN];
+		Arrays.fill(children, -1);
+		childrenArray.add(children);
+		sizeList.add(high - low + 1);
+		int enter = token++;
+		if(low < middle) {
+			children[0] = nodeList.size();
+			token = build(values, low, middle - 1, index, token);
+		}
+		if(middle < high) {
+			children[1] = nodeList.size();
+			token = build(values, middle + 1, high, index, token);
+		}
+		labels.set(index, enter, token++);
+		return token;
 	}
 	@Override
 	public boolean addAll(E parent, Collection<? extends E> c) {
@@ -140,7 +235,7 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 	}
 	private E child(E parent, int index) throws NodeNotFoundException {
 		checkNode(parent);
-		int parentIndex = nodeList.indexOf(parent);
+		int parentIndex = nodeIndex.getInt(parent);
 		int childIndex;
 		if(parentIndex > -1) {
 			if((childIndex = childrenArray.get(parentIndex)[index]) > -1)
@@ -153,7 +248,7 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 	@Override
 	public List<E> children(E e) throws NodeNotFoundException {
 		checkNode(e);
-		int index = nodeList.indexOf(e);
+		int index = nodeIndex.getInt(e);
 		if(index > -1) {
 			ArrayList<E> children = new ArrayList<E>();
 			for (int i = 0; i < childrenArray.get(index).length; i++)
@@ -165,9 +260,13 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 	}
 	@Override
 	public void clear() {
+		modCount++;
 		nodeList.clear();
 		parentList.clear();
 		childrenArray.clear();
+		nodeIndex.clear();
+		labels.clear();
+		sizeList.clear();
 		size = 0;
 		depth = 0;
 		rootIndex = -1;
@@ -178,8 +277,12 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 		ArrayListBinarySearchTree<E> v = null;
 		try {
 			v = (ArrayListBinarySearchTree<E>) super.clone();
+			v.ancestorIndex = new AncestorIndex<E>();
 			v.nodeList = (ArrayList<E>) nodeList.clone();
-			v.parentList = (ArrayList<Integer>) parentList.clone();
+			v.parentList = parentList.clone();
+			v.nodeIndex = nodeIndex.clone();
+			v.labels = labels.clone();
+			v.sizeList = sizeList.clone();
 			v.childrenArray = new ArrayList<int[]>();
 			v.size = this.size;
 			v.depth = this.depth;
@@ -194,46 +297,57 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 	public E commonAncestor(E node1, E node2) throws NodeNotFoundException {
 		checkNode(node1);
 		checkNode(node2);
-		int height1 = 0;
-		E e1 = node1; 
-		while(e1 != null) {
-			height1++;
-			e1 = parentInternal(e1);
-		}
-		int height2 = 0;
-		E e2 = node2; 
-		while(e2 != null) {
-			height2++;
-			e2 = parentInternal(e2);
-		}
-		if(height1 > height2) {
-			while(height1 - height2 > 0) {
-				node1 = parentInternal(node1);
-				height1--;
-			}
-		} else {
-			while(height2 - height1 > 0) {
-				node2 = parentInternal(node2);
-				height2--;
-			}
-		}
-		while(node1 != null && !node1.equals(node2)) {
-			node1 = parentInternal(node1);
-			node2 = parentInternal(node2);
-		}
-		return node1;
+		return ancestorIndex.commonAncestor(this, modCount, node1, node2);
+	}
+	@Override
+	public E ancestor(E node, int k) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.ancestor(this, modCount, node, k);
+	}
+	@Override
+	public int levelOf(E node) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.levelOf(this, modCount, node);
+	}
+	@Override
+	public Iterable<E> ancestors(E node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = nodeIndex.getInt(node);
+		if(index < 0)
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().ancestors(index);
+	}
+	@Override
+	public int subtreeSize(E node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = nodeIndex.getInt(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return sizeList.getInt(index);
+	}
+	@Override
+	public int childCount(E node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = nodeIndex.getInt(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		int count = 0;
+		for(int child : childrenArray.get(index))
+			if(child != -1)
+				count++;
+		return count;
 	}
 	@Override
 	public boolean contains(Object o) {
 		if(o == null)
 			return false;
 		else
-			return nodeList.contains(o);
+			return nodeIndex.containsKey(o);
 	}
 	@Override
 	public boolean containsAll(Collection<?> c) {
 		for(Object i : c) {
-			if(!nodeList.contains(i))
+			if(!nodeIndex.containsKey(i))
 				return false;
 		}
 		return true;
@@ -245,24 +359,35 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 	@Override
 	@Deprecated
 	public List<E> inorderOrderTraversal() {
-		return inorderOrderTraversal(0, new ArrayList<E>());
+		return inOrderTraversal();
 	}
 	@Override
 	public List<E> inOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return inorderOrderTraversal(rootIndex, new ArrayList<E>());
+		return new TreeHelper().toList(inOrderView(), size);
 	}
 	@Override
 	public boolean isAncestor(E node, E child) throws NodeNotFoundException {
 		checkNode(child);
-		return new TreeHelper().isAncestor(this, node, child);
+		int childIndex = nodeIndex.getInt(child);
+		if(childIndex == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		if(node == null)
+			return false;
+		int index = nodeIndex.getInt(node);
+		return index != -1 && labels.isAncestor(index, childIndex);
 	}
 	@Override
 	public boolean isDescendant(E parent, E node) throws NodeNotFoundException {
 		checkNode(parent);
-		return new TreeHelper().isDescendant(this, parent, node);
+		int parentIndex = nodeIndex.getInt(parent);
+		if(parentIndex == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		if(node == null)
+			return false;
+		int index = nodeIndex.getInt(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return labels.isAncestor(parentIndex, index);
 	}
 	@Override
 	public boolean isEmpty() {
@@ -270,41 +395,23 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 	}
 	@Override
 	public Iterator<E> iterator() {
-		return getCurrentList().iterator();
+		return inOrderView().iterator();
+	}
+	/**
+	 * Spliterator returns nodes in the same order as {@link #iterator()} and splits the tree at child boundaries
+	 * @see java.util.Collection#spliterator()
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return traversal().spliterator(size);
 	}
 	@Override
 	public List<E> leaves() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return leaves(rootIndex, new ArrayList<E>());
-	}
-	private List<E> leaves(int nodeIndex, ArrayList<E> list) {
-		int[] children = childrenArray.get(nodeIndex);
-		if(children.length > 0)	{
-			int i = 0;
-			int chidrenLength = children.length;
-			for(int len = (int)Math.ceil((double)chidrenLength / 2); i < len; i++)
-				if(children[i] > -1)
-					leaves(children[i], list);
-			if(isChildrenArrayEmpty(childrenArray.get(nodeIndex)))
-				list.add(nodeList.get(nodeIndex));
-			for(int len = chidrenLength; i < len; i++)
-				if(children[i] > -1)
-					leaves(children[i], list);
-		} else if(isChildrenArrayEmpty(childrenArray.get(nodeIndex)))
-			list.add(nodeList.get(nodeIndex));
-		return list;
+		return new TreeHelper().toList(leavesView());
 	}
 	@Override
 	public List<E> levelOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else {
-			LinkedList<Integer> queue = new LinkedList<Integer>();
-			queue.add(0);
-			return levelOrderTraversal(new ArrayList<E>(), queue);
-		}
+		return new TreeHelper().toList(levelOrderView(), size);
 	}
 	@Override
 	public E parent(E e) throws NodeNotFoundException {
@@ -312,26 +419,87 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 		return parentInternal(e);
 	}
 	private E parentInternal(E e) throws NodeNotFoundException {
-		int index = nodeList.indexOf(e);
-		if(index == 0)
+		int index = nodeIndex.getInt(e);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		else if(index == rootIndex)
 			return null;
-		else if(index > 0)
-			return nodeList.get(parentList.get(index));
 		else
-			throw new NodeNotFoundException("No node was found for object");
+			return nodeList.get(parentList.getInt(index));
 	}
 	@Override
 	public List<E> postOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return postOrderTraversal(rootIndex, new ArrayList<E>());
+		return new TreeHelper().toList(postOrderView(), size);
 	}
 	public List<E> preOrderTraversal() {
+		return new TreeHelper().toList(preOrderView(), size);
+	}
+	@Override
+	public Iterable<E> preOrderView() {
+		return traversal().preOrder();
+	}
+	@Override
+	public Iterable<E> postOrderView() {
+		return traversal().postOrder();
+	}
+	@Override
+	public Iterable<E> inOrderView() {
+		return traversal().inOrder();
+	}
+	@Override
+	public Iterable<E> levelOrderView() {
+		return traversal().levelOrder();
+	}
+	@Override
+	public Iterable<E> leavesView() {
+		return traversal().leaves();
+	}
+	@Override
+	public E walk(TreeVisitor<? super E> visitor) {
 		if(isEmpty())
-			return new ArrayList<E>();
+			return null;
 		else
-			return preOrderTraversal(rootIndex, new ArrayList<E>());
+			return traversal().walk(rootIndex, null, visitor);
+	}
+	@Override
+	public E walk(E node, TreeVisitor<? super E> visitor) throws NodeNotFoundException {
+		checkNode(node);
+		int index = nodeIndex.getInt(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().walk(index, index == rootIndex ? null : nodeList.get(parentList.getInt(index)), visitor);
+	}
+	private SlotTraversal<E> traversal() {
+		return new SlotTraversal<E>() {
+			@Override
+			int root() {
+				return rootIndex;
+			}
+			@Override
+			int childCount(int slot) {
+				return MAX_CHILDREN;
+			}
+			@Override
+			int child(int slot, int position) {
+				return childrenArray.get(slot)[position];
+			}
+			@Override
+			int parent(int slot) {
+				return parentList.getInt(slot);
+			}
+			@Override
+			int subtreeSize(int slot) {
+				return sizeList.getInt(slot);
+			}
+			@Override
+			E value(int slot) {
+				return nodeList.get(slot);
+			}
+			@Override
+			int modCount() {
+				return modCount;
+			}
+		};
 	}
 	/**
 	 * Deletes node as mentioned in <a href="http://en.wikipedia.org/wiki/Binary_search_tree#Deletion">BST</a>.
@@ -342,8 +510,9 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 	@Override
 	public boolean remove(Object o) {
 		checkNode((E)o);
-		int index = nodeList.indexOf(o);
+		int index = nodeIndex.getInt(o);
 		if(index > -1) {
+			modCount++;
 			try {
 				List<E> children = children((E) o);
 				if(children.isEmpty())
@@ -366,14 +535,22 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 			nodeToReplace = successor(o);
 		else
 			nodeToReplace = predecessor(o);
-		int nodeToReplaceIndex = nodeList.indexOf(nodeToReplace);
+		int nodeToReplaceIndex = nodeIndex.getInt(nodeToReplace);
 		nodeList.set(index, nodeToReplace);
 		nodeList.set(nodeToReplaceIndex, o);
+		nodeIndex.put(nodeToReplace, index);
+		nodeIndex.put(o, nodeToReplaceIndex);
 		remove(o);
 	}
 	private void deleteCase2(int index) {
-		Integer parentIndex = parentList.set(index, -1);
-		for(int i = 0; i < childrenArray.get(parentIndex).length; i++) {
+		int parentIndex = parentList.set(index, -1);
+		resize(parentIndex, -1);
+		if(parentIndex == -1) {//the only child becomes the root
+			if(childrenArray.get(index)[0] > -1)
+				rootIndex = childrenArray.get(index)[0];
+			else
+				rootIndex = childrenArray.get(index)[1];
+		} else for(int i = 0; i < childrenArray.get(parentIndex).length; i++) {
 			if(childrenArray.get(parentIndex)[i] == index) {
 				if(childrenArray.get(index)[0] > -1)
 					childrenArray.get(parentIndex)[i] = childrenArray.get(index)[0];
@@ -382,7 +559,8 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 				break;
 			}
 		}
-		nodeList.set(index, null);
+		nodeIndex.removeInt(nodeList.set(index, null));
+		labels.remove(index);
 		size--;
 		for(int i : childrenArray.get(index))
 			if(i > -1)
@@ -392,11 +570,17 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 		depth = recalculateDepth(rootIndex, 0);		
 	}
 	private void deleteCase1(int index) {
-		Integer parentIndex = parentList.set(index, -1);
+		if(index == rootIndex) {
+			clear();
+			return;
+		}
+		int parentIndex = parentList.set(index, -1);
+		resize(parentIndex, -1);
 		for(int i = 0; i < childrenArray.get(parentIndex).length; i++)
 			if(childrenArray.get(parentIndex)[i] == index)
 				childrenArray.get(parentIndex)[i] = -1;
-		nodeList.set(index, null);
+		nodeIndex.removeInt(nodeList.set(index, null));
+		labels.remove(index);
 		size--;
 		Arrays.fill(childrenArray.get(index), -1);
 		parentList.set(index, -1);
@@ -447,6 +631,91 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 		return null;
 	}
 	@Override
+	public E floor(E e) {
+		checkNode(e);
+		return navigation().floor(e);
+	}
+	@Override
+	public E ceiling(E e) {
+		checkNode(e);
+		return navigation().ceiling(e);
+	}
+	@Override
+	public E higher(E e) {
+		checkNode(e);
+		return navigation().higher(e);
+	}
+	@Override
+	public E lower(E e) {
+		checkNode(e);
+		return navigation().lower(e);
+	}
+	@Override
+	public E first() {
+		if(isEmpty())
+			throw new NoSuchElementException();
+		return navigation().first();
+	}
+	@Override
+	public E last() {
+		if(isEmpty())
+			throw new NoSuchElementException();
+		return navigation().last();
+	}
+	@Override
+	public Iterable<E> subSet(E from, boolean fromInclusive, E to, boolean toInclusive) {
+		checkNode(from);
+		checkNode(to);
+		if(from.compareTo(to) > 0)
+			throw new IllegalArgumentException("from should not be greater than to");
+		return navigation().range(from, fromInclusive, to, toInclusive);
+	}
+	@Override
+	public Iterable<E> headSet(E to, boolean inclusive) {
+		checkNode(to);
+		return navigation().range(null, false, to, inclusive);
+	}
+	@Override
+	public Iterable<E> tailSet(E from, boolean inclusive) {
+		checkNode(from);
+		return navigation().range(from, inclusive, null, false);
+	}
+	@Override
+	public Iterator<E> descendingIterator() {
+		return navigation().descendingIterator();
+	}
+	private SearchNavigation<E, Integer> navigation() {
+		return new SearchNavigation<E, Integer>() {
+			@Override
+			Integer root() {
+				return slot(rootIndex);
+			}
+			@Override
+			Integer left(Integer slot) {
+				return slot(childrenArray.get(slot)[0]);
+			}
+			@Override
+			Integer right(Integer slot) {
+				return slot(childrenArray.get(slot)[1]);
+			}
+			@Override
+			Integer parent(Integer slot) {
+				return slot(parentList.getInt(slot));
+			}
+			@Override
+			E value(Integer slot) {
+				return nodeList.get(slot);
+			}
+			@Override
+			int modCount() {
+				return modCount;
+			}
+			private Integer slot(int slot) {
+				return slot == -1 ? null : slot;
+			}
+		};
+	}
+	@Override
 	public boolean removeAll(Collection<?> c) {
 		boolean retVal = false;
 		for (Iterator<?> iterator = c.iterator(); iterator.hasNext();)
@@ -493,15 +762,20 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 
 	private void addChild(E child, int parentIndex, int childIndex) {
 		nodeList.add(child);
+		nodeIndex.put(child, nodeList.size() - 1);
 		parentList.add(parentIndex);
 		childrenArray.get(parentIndex)[childIndex] = nodeList.size() - 1;
 		int[] children = new int[MAX_CHILDREN];
 		Arrays.fill(children, -1);
 		childrenArray.add(children);
+		labels.addChild(parentIndex, nodeList.size() - 1);
+		sizeList.add(1);
+		resize(parentIndex, 1);
 		size++;
+		modCount++;
 		int currentDepth = 2;
 		while(parentIndex != 0)	{
-			parentIndex = parentList.get(parentIndex);
+			parentIndex = parentList.getInt(parentIndex);
 			currentDepth++;
 		}
 		depth = Math.max(currentDepth, depth);
@@ -510,14 +784,25 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 	private void addRoot(E child) {
 		nodeList.add(child);
 		rootIndex = nodeList.size() - 1;
+		nodeIndex.put(child, rootIndex);
 		parentList.add(-1);
 		int[] children = new int[MAX_CHILDREN];
 		Arrays.fill(children, -1);
 		childrenArray.add(children);
+		labels.addRoot(rootIndex);
+		sizeList.add(1);
 		size++;
+		modCount++;
 		depth++;
 	}
 
+	/**
+	 * Adds delta to the sub-tree sizes of the slot and its ancestors
+	 */
+	private void resize(int slot, int delta) {
+		for(; slot != -1; slot = parentList.getInt(slot))
+			sizeList.set(slot, sizeList.getInt(slot) + delta);
+	}
 	private void checkNode(E child) {
 		if(child == null)
 			throw new IllegalArgumentException("null nodes are not allowed");
@@ -532,54 +817,12 @@ public class ArrayListBinarySearchTree<E extends Comparable<E>> implements Sorte
 				return i;
 		return -1;
 	}
-	private List<E> inorderOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		int[] children = childrenArray.get(nodeIndex);
-		if(children.length > 0)	{
-			int i = 0;
-			for(int len = (int)Math.ceil((double)children.length / 2); i < len; i++)
-				if(children[i] > -1)
-					inorderOrderTraversal(children[i], list);
-			list.add(nodeList.get(nodeIndex));
-			for(int len = children.length; i < len; i++)
-				if(children[i] > -1)
-					inorderOrderTraversal(children[i], list);
-		}
-		else
-			list.add(nodeList.get(nodeIndex));
-		return list;
-	}
 	private boolean isChildrenArrayEmpty(int[] children) {
 		for (int i = 0; i < children.length; i++)
 			if(children[i] != -1)
 				return false;
 		return true;
 	}
-	private List<E> levelOrderTraversal(ArrayList<E> list, LinkedList<Integer> queue) {
-		while(!queue.isEmpty()) {
-			list.add(nodeList.get(queue.getFirst()));
-			for(int i : childrenArray.get(queue.getFirst()))
-				if(i > -1)
-					queue.add(i);
-			queue.remove();
-		}
-		return list;
-	}
-	private List<E> postOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		for(int  i :  childrenArray.get(nodeIndex))
-			if(i > -1)
-				postOrderTraversal(i, list);
-		if(nodeList.get(nodeIndex) != null)
-			list.add(nodeList.get(nodeIndex));
-		return list;
-	}
-	private List<E> preOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		if(nodeList.get(nodeIndex) != null)
-			list.add(nodeList.get(nodeIndex));
-		for(int i : childrenArray.get(nodeIndex))
-			if(i > -1)
-				preOrderTraversal(i, list);
-		return list;
-	}
 	private int recalculateDepth(int index, int depth) {
 		int childDepth = depth + 1;
 		if(isChildrenArrayEmpty(childrenArray.get(index)))
@@ -15,12 +15,14 @@ package com.googlecode.jctree;
 
 import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
 
 /**
  * This is a general purpose tree where each node is free to have any number of children
@@ -36,14 +38,50 @@ public class ArrayListTree<E> implements Tree<E>, Cloneable {
 	private ArrayList<Integer> parentList = new ArrayList<Integer>();
 	private ArrayList<IntArrayList> childrenList = new ArrayList<IntArrayList>();
 	private IntArrayFIFOQueue emptySlotsList = new IntArrayFIFOQueue();
+	/**
+	 * Maps every node present in the tree to its slot in nodeList. This saves a linear scan of nodeList on each lookup 
+	 */
+	private Object2IntOpenHashMap<E> nodeIndex;
+	/**
+	 * Generation of every slot, bumped whenever the node in the slot is removed so that stale {@link NodeRef}s are detected.
+	 * It outlives clear() as slots are handed out again from 0 afterwards
+	 */
+	private IntArrayList generationList = new IntArrayList();
+	/**
+	 * Level of the node in every slot, root being at level 1
+	 */
+	private IntArrayList levelList;
+	/**
+	 * Number of nodes in the sub-tree rooted at every slot, valid while sizesModCount equals modCount. Keeping them
+	 * up to date would cost every insert and removal a walk over all the ancestors, so they are counted on demand instead
+	 */
+	private int[] sizes = new int[0];
+	private int sizesModCount = -1;
+	private LevelHistogram levels = new LevelHistogram();
+	private IntervalLabels labels = new IntervalLabels();
 	private int size = 0;
-	private int depth = 0;
 	private int rootIndex = -1;
+	/**
+	 * Counts structural modifications so that traversal views fail fast
+	 */
+	private int modCount = 0;
+	private AncestorIndex<E> ancestorIndex = new AncestorIndex<E>();
+	/**
+	 * True while the lists of the tree may be shared with a clone of it or with the tree it was cloned from
+	 */
+	private boolean shared = false;
+	/**
+	 * Slots whose children list may still be shared with a clone of the tree or with the tree it was cloned from
+	 */
+	private BitSet sharedChildren = new BitSet();
 	
 	public ArrayListTree(int size) {
 		nodeList = new ArrayList<E>(size);
 		parentList = new ArrayList<Integer>(size);
 		childrenList = new ArrayList<IntArrayList>(size);
+		levelList = new IntArrayList(size);
+		nodeIndex = new Object2IntOpenHashMap<E>(size);
+		nodeIndex.defaultReturnValue(-1);
 	}
 	
 	public ArrayListTree() {
@@ -72,40 +110,66 @@ public class ArrayListTree<E> implements Tree<E>, Cloneable {
 			throw new OutOfMemoryError();
 		if(isRootElementBeingAdded(parent, child))
 			return true;
-		int	parentIndex = nodeList.indexOf(parent);
+		int	parentIndex = indexOf(parent);
 		if(parentIndex > -1) {
-			int childIndex = nodeList.indexOf(child);
+			int childIndex = indexOf(child);
 			if(childIndex == -1) {
-				if(emptySlotsList.isEmpty()) {
-					return addElementToTheEnd(child, parentIndex);
-				} else {
-					int slot = emptySlotsList.dequeueInt();
-					return addElementToTheSlot(slot, child, parentIndex);
-				}
+				addChild(parentIndex, child);
+				return true;
 			} else {
-				nodeList.set(childIndex, child);
+				replace(childIndex, child);
 				return false;
 			}
 		} else
 			throw new NodeNotFoundException("No node was found for parent object");
 	}
-	private boolean addElementToTheSlot(int slot, E child, int parentIndex) {
+	private int addChild(int parentIndex, E child) {
+		own();
+		modCount++;
+		if(emptySlotsList.isEmpty())
+			return addElementToTheEnd(child, parentIndex);
+		else
+			return addElementToTheSlot(emptySlotsList.dequeueInt(), child, parentIndex);
+	}
+	private void replace(int index, E child) {
+		own();
+		nodeList.set(index, child);
+		nodeIndex.removeInt(child);
+		nodeIndex.put(child, index);
+	}
+	private int addElementToTheSlot(int slot, E child, int parentIndex) {
 		nodeList.set(slot, child);
+		nodeIndex.put(child, slot);
 		parentList.set(slot, parentIndex);
-		childrenList.get(parentIndex).add(slot);
+		childrenToWrite(parentIndex).add(slot);
 		childrenList.set(slot, new IntArrayList());
+		sharedChildren.clear(slot);
+		int level = levelList.getInt(parentIndex) + 1;
+		levelList.set(slot, level);
+		levels.add(level);
+		labels.addChild(parentIndex, slot);
 		size++;
-		depth = Math.max(recalculateDepth(parentIndex, 2), depth);
-		return true;
+		return slot;
 	}
-	private boolean addElementToTheEnd(E child, int parentIndex) {
+	private int addElementToTheEnd(E child, int parentIndex) {
 		nodeList.add(child);
+		int slot = nodeList.size() - 1;
+		nodeIndex.put(child, slot);
+		newGeneration(slot);
 		parentList.add(parentIndex);
-		childrenList.get(parentIndex).add(nodeList.size() - 1);
+		childrenToWrite(parentIndex).add(slot);
 		childrenList.add(new IntArrayList());
+		sharedChildren.clear(slot);
+		int level = levelList.getInt(parentIndex) + 1;
+		levelList.add(level);
+		levels.add(level);
+		labels.addChild(parentIndex, slot);
 		size++;
-		depth = Math.max(recalculateDepth(parentIndex, 2), depth);
-		return true;		
+		return slot;
+	}
+	private void newGeneration(int slot) {
+		if(slot == generationList.size())
+			generationList.add(0);
 	}
 	private boolean isRootElementBeingAdded(E parent, E child) {
 		if(parent == null) {
@@ -118,12 +182,19 @@ public class ArrayListTree<E> implements Tree<E>, Cloneable {
 			return false;
 	}
 	private void addRoot(E child) {
+		own();
+		modCount++;
 		nodeList.add(child);
 		rootIndex = nodeList.size() - 1;
+		nodeIndex.put(child, rootIndex);
+		newGeneration(rootIndex);
 		parentList.add(-1);
 		childrenList.add(new IntArrayList());
+		sharedChildren.clear(rootIndex);
+		levelList.add(1);
+		levels.add(1);
+		labels.addRoot(rootIndex);
 		size++;
-		depth++;		
 	}
 	/**
 	 * This method lets the sub-classes define the position at which new child may be added 
@@ -150,10 +221,97 @@ public class ArrayListTree<E> implements Tree<E>, Cloneable {
 			return false;
 		}
 	}
+	/**
+	 * Adds child the same way as {@link #add(Object, Object)} does, but locates the parent through its handle
+	 * @param parent handle of the parent node. It can be null only when the tree is empty, in which case child is added as root
+	 * @param child object
+	 * @return handle to the child node. If an equal object was already present in the tree, it is replaced and
+	 * handle to the existing node is returned
+	 * @throws NodeNotFoundException if parent handle is stale or belongs to another tree
+	 */
+	public NodeRef addRef(NodeRef parent, E child) throws NodeNotFoundException {
+		checkNode(child);
+		if(parent == null) {
+			isRootElementBeingAdded(null, child);
+			return ref(rootIndex);
+		}
+		int parentIndex = indexOf(parent);
+		int childIndex = indexOf(child);
+		if(childIndex == -1)
+			childIndex = addChild(parentIndex, child);
+		else
+			replace(childIndex, child);
+		return ref(childIndex);
+	}
+	/**
+	 * @param e node object
+	 * @return handle to the node
+	 * @throws NodeNotFoundException if e is not found
+	 */
+	public NodeRef ref(E e) throws NodeNotFoundException {
+		checkNode(e);
+		int index = indexOf(e);
+		if(index > -1)
+			return ref(index);
+		else
+			throw new NodeNotFoundException("No node was found for object");
+	}
+	/**
+	 * @param node handle of the node
+	 * @return the object held by the node
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public E valueOf(NodeRef node) throws NodeNotFoundException {
+		return nodeList.get(indexOf(node));
+	}
+	/**
+	 * @param node handle of the parent node
+	 * @return handles of the children in insertion order
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public List<NodeRef> childrenOf(NodeRef node) throws NodeNotFoundException {
+		IntArrayList childrenIndexList = childrenList.get(indexOf(node));
+		ArrayList<NodeRef> children = new ArrayList<NodeRef>(childrenIndexList.size());
+		for(int i = 0; i < childrenIndexList.size(); i++)
+			children.add(ref(childrenIndexList.getInt(i)));
+		return children;
+	}
+	/**
+	 * @param node handle of the parent node
+	 * @return number of children of the node, without creating their handles
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public int childCount(NodeRef node) throws NodeNotFoundException {
+		return childrenList.get(indexOf(node)).size();
+	}
+	/**
+	 * @param node handle of the child node
+	 * @return handle of the parent, null if node is root
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public NodeRef parentOf(NodeRef node) throws NodeNotFoundException {
+		int index = indexOf(node);
+		if(index == rootIndex)
+			return null;
+		else
+			return ref(parentList.get(index));
+	}
+	/**
+	 * Removes the sub-tree rooted at the node. All the handles to the removed nodes become stale
+	 * @param node handle of the node
+	 * @return true if node was removed, false if the handle was already stale
+	 */
+	public boolean remove(NodeRef node) {
+		try {
+			return removeSubtree(indexOf(node));
+		} catch(NodeNotFoundException e) {
+			return false;
+		}
+	}
 	@Override
 	public List<E> children(E e) throws NodeNotFoundException {
 		checkNode(e);
-		int index = nodeList.indexOf(e);
+		int index = indexOf(e);
 		if(index > -1) {
 			IntArrayList childrenIndexList = childrenList.get(index);
 			ArrayList<E> children = new ArrayList<E>(childrenIndexList.size());
@@ -181,98 +339,204 @@ public class ArrayListTree<E> implements Tree<E>, Cloneable {
 	}*/
 	@Override
 	public void clear() {
-		nodeList.clear();
-		parentList.clear();
-		childrenList.clear();
+		modCount++;
+		empty();
+	}
+	/**
+	 * Removes all the nodes. Lists shared with a clone are replaced by empty ones rather than copied and cleared
+	 */
+	private void empty() {
+		if(shared) {
+			generationList = generationList.clone();
+			invalidateGenerations();
+			nodeList = new ArrayList<E>();
+			parentList = new ArrayList<Integer>();
+			childrenList = new ArrayList<IntArrayList>();
+			nodeIndex = new Object2IntOpenHashMap<E>();
+			nodeIndex.defaultReturnValue(-1);
+			emptySlotsList = new IntArrayFIFOQueue();
+			levelList = new IntArrayList();
+			levels = new LevelHistogram();
+			labels = new IntervalLabels();
+			shared = false;
+		} else {
+			invalidateGenerations();
+			nodeList.clear();
+			parentList.clear();
+			childrenList.clear();
+			nodeIndex.clear();
+			emptySlotsList.clear();
+			levelList.clear();
+			levels.clear();
+			labels.clear();
+		}
+		sharedChildren = new BitSet();
 		size = 0;
-		depth = 0;
 		rootIndex = -1;
 	}
+	/**
+	 * Clones in O(1) as the clone shares all the lists with this tree. A clone that is only read never copies anything.
+	 * <br>
+	 * Copy on write is not free though. The first modification of either tree after the clone costs O(n) once, as it 
+	 * copies the per-slot lists, the node index and the labels for the tree being modified. The lists are copied whole
+	 * rather than in chunks because the hash index and the labels can't be shared in parts. Modifications after that
+	 * cost what they did before the clone. Children lists of the nodes are the exception, each of them is copied
+	 * only when a child is first added to or removed from it
+	 * @see java.lang.Object#clone()
+	 */
 	@SuppressWarnings("unchecked")
 	@Override
 	public Object clone() {
 	    ArrayListTree<E> v = null;
 		try {
 			v = (ArrayListTree<E>) super.clone();
-			v.nodeList = (ArrayList<E>) nodeList.clone();
-			v.parentList = (ArrayList<Integer>) parentList.clone();
-			v.childrenList = new ArrayList<IntArrayList>();
-			v.size = this.size;
-			v.depth = this.depth;
-			for(int i = 0; i < childrenList.size(); i++)
-				v.childrenList.add((IntArrayList) childrenList.get(i).clone());
+			v.ancestorIndex = new AncestorIndex<E>();
+			v.shared = true;
+			shared = true;
 		} catch (CloneNotSupportedException e) {
 			//This should't happen because we are cloneable
 		}
 		return v;
 	}
-	@Override
-	public E commonAncestor(E node1, E node2) throws NodeNotFoundException {
-		int height1 = 0;
-		E e1 = node1; 
-		while(e1 != null) {
-			height1++;
-			e1 = parent(e1);
-		}
-		int height2 = 0;
-		E e2 = node2; 
-		while(e2 != null) {
-			height2++;
-			e2 = parent(e2);
-		}
-		if(height1 > height2) {
-			while(height1 - height2 > 0) {
-				node1 = parent(node1);
-				height1--;
-			}
-		} else {
-			while(height2 - height1 > 0) {
-				node2 = parent(node2);
-				height2--;
+	/**
+	 * Copies the lists which may be shared with a clone before the tree writes to them, in O(n) on the first write
+	 * after a clone and in O(1) otherwise. Children lists are only marked as shared, see {@link #childrenToWrite(int)}
+	 */
+	@SuppressWarnings("unchecked")
+	private void own() {
+		if(shared) {
+			nodeList = (ArrayList<E>) nodeList.clone();
+			parentList = (ArrayList<Integer>) parentList.clone();
+			childrenList = (ArrayList<IntArrayList>) childrenList.clone();
+			sharedChildren = new BitSet(childrenList.size());
+			sharedChildren.set(0, childrenList.size());
+			nodeIndex = nodeIndex.clone();
+			generationList = generationList.clone();
+			IntArrayFIFOQueue emptySlots = new IntArrayFIFOQueue();
+			for(int i = emptySlotsList.size(); i > 0; i--) {
+				int slot = emptySlotsList.dequeueInt();
+				emptySlotsList.enqueue(slot);
+				emptySlots.enqueue(slot);
 			}
+			emptySlotsList = emptySlots;
+			levelList = levelList.clone();
+			levels = levels.clone();
+			labels = labels.clone();
+			shared = false;
 		}
-		while(node1 != null && !node1.equals(node2)) {
-			node1 = parent(node1);
-			node2 = parent(node2);
+	}
+	/**
+	 * @return children list of the slot, copied first if it may be shared with a clone
+	 */
+	private IntArrayList childrenToWrite(int slot) {
+		IntArrayList children = childrenList.get(slot);
+		if(sharedChildren.get(slot)) {
+			children = children.clone();
+			childrenList.set(slot, children);
+			sharedChildren.clear(slot);
 		}
-		return node1;
+		return children;
+	}
+	@Override
+	public E commonAncestor(E node1, E node2) throws NodeNotFoundException {
+		checkNode(node1);
+		checkNode(node2);
+		return ancestorIndex.commonAncestor(this, modCount, node1, node2);
+	}
+	@Override
+	public E ancestor(E node, int k) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.ancestor(this, modCount, node, k);
+	}
+	@Override
+	public int levelOf(E node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = indexOf(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return levelList.getInt(index);
+	}
+	@Override
+	public Iterable<E> ancestors(E node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = indexOf(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().ancestors(index);
+	}
+	/**
+	 * Sizes of all the sub-trees are counted together in O(n) on the first call after the tree is modified, and
+	 * answered in O(1) from then on until the next modification. Inserts and removals don't pay for them, as keeping
+	 * the sizes up to date would cost every insert O(depth). A workload which modifies the tree between every two
+	 * calls pays O(n) for each of them
+	 * @see com.googlecode.jctree.Tree#subtreeSize(java.lang.Object)
+	 */
+	@Override
+	public int subtreeSize(E node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = indexOf(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return sizes()[index];
+	}
+	@Override
+	public int childCount(E node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = indexOf(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return childrenList.get(index).size();
 	}
 	@Override
 	public boolean contains(Object o) {
 		if(o == null)
 			return false;
 		else
-			return nodeList.indexOf(o) > -1;
+			return indexOf(o) > -1;
 	}
 	@Override
 	public boolean containsAll(Collection<?> c) {
-		return nodeList.containsAll(c);
+		for(Object i : c)
+			if(!contains(i))
+				return false;
+		return true;
 	}
 	@Override
 	public int depth() {
-		return depth;
+		return levels.depth();
 	}
 	@Override
 	@Deprecated
 	public List<E> inorderOrderTraversal() {
-		return inorderOrderTraversal(0, new ArrayList<E>());
+		return inOrderTraversal();
 	}
 	@Override
 	public List<E> inOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return inorderOrderTraversal(rootIndex, new ArrayList<E>());
+		return new TreeHelper().toList(inOrderView(), size);
 	}
 	@Override
 	public boolean isAncestor(E node, E child) throws NodeNotFoundException {
 		checkNode(child);
-		return new TreeHelper().isAncestor(this, node, child);
+		int childIndex = indexOf(child);
+		if(childIndex == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		if(node == null)
+			return false;
+		int index = indexOf(node);
+		return index != -1 && labels.isAncestor(index, childIndex);
 	}
 	@Override
 	public boolean isDescendant(E parent, E node) throws NodeNotFoundException {
 		checkNode(parent);
-		return new TreeHelper().isDescendant(this, parent, node);
+		int parentIndex = indexOf(parent);
+		if(parentIndex == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		if(node == null)
+			return false;
+		int index = indexOf(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return labels.isAncestor(parentIndex, index);
 	}
 	@Override
 	public boolean isEmpty() {
@@ -284,63 +548,110 @@ public class ArrayListTree<E> implements Tree<E>, Cloneable {
 	 */
 	@Override
 	public Iterator<E> iterator() {
-		return getCurrentList().iterator();
+		return inOrderView().iterator();
+	}
+	/**
+	 * Spliterator returns nodes in the same order as {@link #iterator()} and splits the tree at child boundaries.
+	 * The first split after a modification counts the sizes of all the sub-trees, see {@link #subtreeSize(Object)}
+	 * @see java.util.Collection#spliterator()
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return traversal().spliterator(size);
 	}
 	@Override
 	public List<E> leaves() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return leaves(rootIndex, new ArrayList<E>());
-	}
-	private List<E> leaves(int nodeIndex, ArrayList<E> list) {
-		IntArrayList children = childrenList.get(nodeIndex);
-		if(children.size() > 0)	{
-			int i = 0;
-			for(; i < (int)Math.ceil((double)children.size() / 2); i++)
-				leaves(children.get(i), list);
-			if(childrenList.get(nodeIndex).isEmpty())
-				list.add(nodeList.get(nodeIndex));
-			for(; i < children.size(); i++)
-				leaves(children.get(i), list);
-		} else if(childrenList.get(nodeIndex).isEmpty())
-			list.add(nodeList.get(nodeIndex));
-		return list;
+		return new TreeHelper().toList(leavesView());
 	}
 	@Override
 	public List<E> levelOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else {
-			LinkedList<Integer> queue = new LinkedList<Integer>();
-			queue.add(0);
-			return levelOrderTraversal(new ArrayList<E>(), queue);
-		}
+		return new TreeHelper().toList(levelOrderView(), size);
 	}
 	@Override
 	public E parent(E e) throws NodeNotFoundException {
 		checkNode(e);
-		int index = nodeList.indexOf(e);
-		if(index == 0)
+		int index = indexOf(e);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		else if(index == rootIndex)
 			return null;
-		else if(index > 0)
-			return nodeList.get(parentList.get(index));
 		else
-			throw new NodeNotFoundException("No node was found for object");
+			return nodeList.get(parentList.get(index));
 	}
 	@Override
 	public List<E> postOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return postOrderTraversal(rootIndex, new ArrayList<E>());
+		return new TreeHelper().toList(postOrderView(), size);
 	}
 	@Override
 	public List<E> preOrderTraversal() {
+		return new TreeHelper().toList(preOrderView(), size);
+	}
+	@Override
+	public Iterable<E> preOrderView() {
+		return traversal().preOrder();
+	}
+	@Override
+	public Iterable<E> postOrderView() {
+		return traversal().postOrder();
+	}
+	@Override
+	public Iterable<E> inOrderView() {
+		return traversal().inOrder();
+	}
+	@Override
+	public Iterable<E> levelOrderView() {
+		return traversal().levelOrder();
+	}
+	@Override
+	public Iterable<E> leavesView() {
+		return traversal().leaves();
+	}
+	@Override
+	public E walk(TreeVisitor<? super E> visitor) {
 		if(isEmpty())
-			return new ArrayList<E>();
+			return null;
 		else
-			return preOrderTraversal(rootIndex, new ArrayList<E>());
+			return traversal().walk(rootIndex, null, visitor);
+	}
+	@Override
+	public E walk(E node, TreeVisitor<? super E> visitor) throws NodeNotFoundException {
+		checkNode(node);
+		int index = indexOf(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().walk(index, index == rootIndex ? null : nodeList.get(parentList.get(index)), visitor);
+	}
+	private SlotTraversal<E> traversal() {
+		return new SlotTraversal<E>() {
+			@Override
+			int root() {
+				return rootIndex;
+			}
+			@Override
+			int childCount(int slot) {
+				return childrenList.get(slot).size();
+			}
+			@Override
+			int child(int slot, int position) {
+				return childrenList.get(slot).getInt(position);
+			}
+			@Override
+			int parent(int slot) {
+				return parentList.get(slot);
+			}
+			@Override
+			int subtreeSize(int slot) {
+				return sizes()[slot];
+			}
+			@Override
+			E value(int slot) {
+				return nodeList.get(slot);
+			}
+			@Override
+			int modCount() {
+				return modCount;
+			}
+		};
 	}
 
 	/**
@@ -350,18 +661,12 @@ public class ArrayListTree<E> implements Tree<E>, Cloneable {
 	@Override
 	public boolean remove(Object o) {
 		checkNode(o);
-		int i = nodeList.indexOf(o);
-		if(i > -1) {
-			boolean wasRemoved;
-			if(i != rootIndex) {
-				wasRemoved = remove(i);
-				depth = recalculateDepth(rootIndex, 0);
-			} else {
-				wasRemoved = remove(i);
-				depth = 0;
-			}
-			return wasRemoved;
-		} else
+		return removeSubtree(indexOf(o));
+	}
+	private boolean removeSubtree(int i) {
+		if(i > -1)
+			return remove(i);
+		else
 			return false;
 	}
 	/** Removes the sub-tree rooted at the nodes in the collection passed
@@ -412,85 +717,73 @@ public class ArrayListTree<E> implements Tree<E>, Cloneable {
 		return getCurrentList().toArray(a);
 	}
 
+	/**
+	 * @return sub-tree sizes of all the slots. They are counted again in O(n) on the first call after a modification
+	 * and cached until the next one. The counts go to a new array every time as a clone may share the old one
+	 */
+	private int[] sizes() {
+		if(sizesModCount != modCount) {
+			sizes = traversal().subtreeSizes(nodeList.size());
+			sizesModCount = modCount;
+		}
+		return sizes;
+	}
 	private void checkNode(Object child) {
 		if(child == null)
 			throw new IllegalArgumentException("null nodes are not allowed");
 	}
+	private int indexOf(Object o) {
+		return nodeIndex.getInt(o);
+	}
+	private int indexOf(NodeRef node) throws NodeNotFoundException {
+		if(node == null)
+			throw new IllegalArgumentException("null nodes are not allowed");
+		int index = node.index;
+		if(node.tree == this && index < nodeList.size() && nodeList.get(index) != null && generationList.getInt(index) == node.generation)
+			return index;
+		else
+			throw new NodeNotFoundException("Node reference is stale or belongs to another tree");
+	}
+	private NodeRef ref(int index) {
+		return new NodeRef(this, null, index, generationList.getInt(index));
+	}
+	private void invalidateGenerations() {
+		for(int i = 0; i < nodeList.size(); i++)
+			generationList.set(i, generationList.getInt(i) + 1);
+	}
 	private List<E> getCurrentList() {
 		return inOrderTraversal();
 	}
-	private List<E> inorderOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		IntArrayList children = childrenList.get(nodeIndex);
-		if(children.size() > 0)	{
-			int i = 0;
-			for(; i < (int)Math.ceil((double)children.size() / 2); i++)
-				inorderOrderTraversal(children.get(i), list);
-			list.add(nodeList.get(nodeIndex));
-			for(; i < children.size(); i++)
-				inorderOrderTraversal(children.get(i), list);
-		} else
-			list.add(nodeList.get(nodeIndex));
-		return list;
-	}
-	private List<E> levelOrderTraversal(ArrayList<E> list, LinkedList<Integer> queue) {
-		while(!queue.isEmpty()) {
-			list.add(nodeList.get(queue.getFirst()));
-			IntArrayList children = childrenList.get(queue.getFirst());
-			for(int i = 0; i < children.size(); i++)
-				queue.add(children.get(i));
-			queue.remove();
-		}
-		return list;
-	}
-	private List<E> postOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		IntArrayList children = childrenList.get(nodeIndex);
-		for(int i = 0; i < children.size(); i++)
-			postOrderTraversal(children.get(i), list);
-		if(nodeList.get(nodeIndex) != null)
-			list.add(nodeList.get(nodeIndex));
-		return list;
-	}
-	private List<E> preOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		if(nodeList.get(nodeIndex) != null)
-			list.add(nodeList.get(nodeIndex));
-		IntArrayList children = childrenList.get(nodeIndex);
-		for(int i = 0; i < children.size(); i++)
-			preOrderTraversal(children.get(i), list);
-		return list;
-	}
 	private boolean remove(int index) {
 		if(index > -1) {
+			modCount++;
 			if(index == rootIndex) {
-				rootIndex = -1;
-				size = 0;
-				nodeList.clear();
-				parentList.clear();
-				childrenList.clear();
+				empty();
 				return true;
 			} else {
-				Integer parentIndex = parentList.set(index, -1);
-				if(parentIndex > -1)//if node is not root
-					childrenList.get(parentIndex).remove(Integer.valueOf(index));
-				nodeList.set(index, null);
-				emptySlotsList.enqueue(index);
-				size--;
-				IntArrayList children = childrenList.get(index);
-				for (int j = 0; j < children.size();) 
-					remove(children.get(0).intValue());
-				childrenList.set(index, null);
+				own();
+				childrenToWrite(parentList.get(index)).rem(index);
+				IntArrayList stack = new IntArrayList();
+				stack.push(index);
+				while(!stack.isEmpty()) {//an explicit stack as a deep sub-tree would overflow the call stack
+					int slot = stack.popInt();
+					IntArrayList children = childrenList.get(slot);
+					for(int j = children.size() - 1; j >= 0; j--)
+						stack.push(children.getInt(j));
+					parentList.set(slot, -1);
+					childrenList.set(slot, null);
+					nodeIndex.removeInt(nodeList.set(slot, null));
+					generationList.set(slot, generationList.getInt(slot) + 1);
+					emptySlotsList.enqueue(slot);
+					levels.remove(levelList.getInt(slot));
+					labels.remove(slot);
+					size--;
+				}
 				return true;
 			}
 		} else
 			return false;
 	}
-	private int recalculateDepth(int index, int depth) {
-		int childDepth = depth + 1;
-		if(childrenList.get(index).isEmpty())
-			return childDepth;
-		else for(Integer i : childrenList.get(index))
-			depth = Math.max(depth, recalculateDepth(i, childDepth));
-		return depth;
-	}
 	@Override
 	public String toString() {
 		return getCurrentList().toString();
@@ -13,12 +13,15 @@
  */
 package com.googlecode.jctree;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
 
 /**
  * The nodes in this class always have a particular number of children. It is not possible to add more children 
@@ -33,15 +36,41 @@ import java.util.List;
  */
 public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 	private ArrayList<E> nodeList = new ArrayList<E>();
-	private ArrayList<Integer> parentList = new ArrayList<Integer>();
+	private IntArrayList parentList = new IntArrayList();
 	private ArrayList<int[]> childrenArray = new ArrayList<int[]>();
+	/**
+	 * Slot of every element present in the tree, so that nodes are found without scanning nodeList
+	 */
+	private Object2IntOpenHashMap<E> nodeIndex = new Object2IntOpenHashMap<E>();
+	/**
+	 * Generation of every slot, bumped whenever the node in the slot is removed so that stale {@link NodeRef}s are detected.
+	 * It outlives clear() as slots are handed out again from 0 afterwards
+	 */
+	private IntArrayList generationList = new IntArrayList();
+	/**
+	 * Level of the node in every slot, root being at level 1
+	 */
+	private IntArrayList levelList = new IntArrayList();
+	/**
+	 * Number of nodes in the sub-tree rooted at every slot, valid while sizesModCount equals modCount. Keeping them
+	 * up to date would cost every insert and removal a walk over all the ancestors, so they are counted on demand instead
+	 */
+	private int[] sizes = new int[0];
+	private int sizesModCount = -1;
+	private LevelHistogram levels = new LevelHistogram();
+	private IntervalLabels labels = new IntervalLabels();
 	private int size = 0;
-	private int depth = 0;
 	private int maxChildren;
 	private int rootIndex = -1;
+	/**
+	 * Counts structural modifications so that traversal views fail fast
+	 */
+	private int modCount = 0;
+	private AncestorIndex<E> ancestorIndex = new AncestorIndex<E>();
 	
 	public ArrayTree(int maxChildren) {
 		this.maxChildren = maxChildren;
+		nodeIndex.defaultReturnValue(-1);
 	}
 	/**
 	 * If tree is empty, it adds a root. In case tree is not empty, it will attempt to add parameter as a child of the root 
@@ -68,9 +97,9 @@ public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 		checkNode(child);
 		if(isRootElementBeingAdded(parent, child))
 			return true;
-		int	parentIndex = nodeList.indexOf(parent);
+		int	parentIndex = nodeIndex.getInt(parent);
 		if(parentIndex > -1) {
-			int childIndex = nodeList.indexOf(child);
+			int childIndex = nodeIndex.getInt(child);
 			int emptySlot;
 			if(childIndex == -1) {
 				if((emptySlot = getEmptySlot(childrenArray.get(parentIndex))) > -1) {
@@ -79,12 +108,17 @@ public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 				} else
 					throw new IndexOutOfBoundsException("Children array of parent is already full");
 			} else {
-				nodeList.set(childIndex, child);
+				replace(childIndex, child);
 				return false;
 			}
 		} else
 			throw new NodeNotFoundException("No node was found for parent object");
 	}
+	private void replace(int index, E child) {
+		nodeList.set(index, child);
+		nodeIndex.removeInt(child);
+		nodeIndex.put(child, index);
+	}
 	private boolean isRootElementBeingAdded(E parent, E child) {
 		if(parent == null) {
 			if(isEmpty()) {
@@ -102,9 +136,9 @@ public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 		checkIndex(index);
 		if(isRootElementBeingAdded(parent, child))
 			return true;
-		int	parentIndex = nodeList.indexOf(parent);
+		int	parentIndex = nodeIndex.getInt(parent);
 		if(parentIndex > -1) {
-			if(nodeList.indexOf(child) == -1) {
+			if(!nodeIndex.containsKey(child)) {
 				addChild(child, parentIndex, index);
 				return true;
 			} else
@@ -135,10 +169,107 @@ public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 			return false;
 		}
 	}
+	/**
+	 * Adds child at the first available slot of the parent the same way as {@link #add(Object, Object)} does, but 
+	 * locates the parent through its handle
+	 * @param parent handle of the parent node. It can be null only when the tree is empty, in which case child is added as root
+	 * @param child object
+	 * @return handle to the child node. If an equal object was already present in the tree, it is replaced and
+	 * handle to the existing node is returned
+	 * @throws NodeNotFoundException if parent handle is stale or belongs to another tree
+	 */
+	public NodeRef addRef(NodeRef parent, E child) throws NodeNotFoundException {
+		checkNode(child);
+		if(parent == null) {
+			isRootElementBeingAdded(null, child);
+			return ref(rootIndex);
+		}
+		int parentIndex = indexOf(parent);
+		int childIndex = nodeIndex.getInt(child);
+		if(childIndex == -1) {
+			int emptySlot;
+			if((emptySlot = getEmptySlot(childrenArray.get(parentIndex))) > -1)
+				childIndex = addChild(child, parentIndex, emptySlot);
+			else
+				throw new IndexOutOfBoundsException("Children array of parent is already full");
+		} else
+			replace(childIndex, child);
+		return ref(childIndex);
+	}
+	/**
+	 * @param e node object
+	 * @return handle to the node
+	 * @throws NodeNotFoundException if e is not found
+	 */
+	public NodeRef ref(E e) throws NodeNotFoundException {
+		checkNode(e);
+		int index = nodeIndex.getInt(e);
+		if(index > -1)
+			return ref(index);
+		else
+			throw new NodeNotFoundException("No node was found for object");
+	}
+	/**
+	 * @param node handle of the node
+	 * @return the object held by the node
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public E valueOf(NodeRef node) throws NodeNotFoundException {
+		return nodeList.get(indexOf(node));
+	}
+	/**
+	 * @param node handle of the parent node
+	 * @return handles of the children present in the children array, in the order of their index
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public List<NodeRef> childrenOf(NodeRef node) throws NodeNotFoundException {
+		int[] childrenIndexes = childrenArray.get(indexOf(node));
+		ArrayList<NodeRef> children = new ArrayList<NodeRef>();
+		for(int i = 0; i < childrenIndexes.length; i++)
+			if(childrenIndexes[i] > -1)
+				children.add(ref(childrenIndexes[i]));
+		return children;
+	}
+	/**
+	 * @param node handle of the parent node
+	 * @return number of children of the node, without creating their handles
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public int childCount(NodeRef node) throws NodeNotFoundException {
+		int count = 0;
+		for(int child : childrenArray.get(indexOf(node)))
+			if(child != -1)
+				count++;
+		return count;
+	}
+	/**
+	 * @param node handle of the child node
+	 * @return handle of the parent, null if node is root
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public NodeRef parentOf(NodeRef node) throws NodeNotFoundException {
+		int index = indexOf(node);
+		if(index == rootIndex)
+			return null;
+		else
+			return ref(parentList.getInt(index));
+	}
+	/**
+	 * Removes the sub-tree rooted at the node. All the handles to the removed nodes become stale
+	 * @param node handle of the node
+	 * @return true if node was removed, false if the handle was already stale
+	 */
+	public boolean remove(NodeRef node) {
+		try {
+			return removeSubtree(indexOf(node));
+		} catch(NodeNotFoundException e) {
+			return false;
+		}
+	}
 	@Override
 	public E child(E parent, int index) throws NodeNotFoundException {
 		checkNode(parent);
-		int parentIndex = nodeList.indexOf(parent);
+		int parentIndex = nodeIndex.getInt(parent);
 		int childIndex;
 		if(parentIndex > -1) {
 			if((childIndex = childrenArray.get(parentIndex)[index]) > -1)
@@ -151,7 +282,7 @@ public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 	@Override
 	public List<E> children(E e) throws NodeNotFoundException {
 		checkNode(e);
-		int index = nodeList.indexOf(e);
+		int index = nodeIndex.getInt(e);
 		if(index > -1) {
 			ArrayList<E> children = new ArrayList<E>();
 			for (int i = 0; i < childrenArray.get(index).length; i++)
@@ -163,11 +294,16 @@ public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 	}
 	@Override
 	public void clear() {
+		modCount++;
+		invalidateGenerations();
 		nodeList.clear();
 		parentList.clear();
 		childrenArray.clear();
+		nodeIndex.clear();
+		levelList.clear();
+		levels.clear();
+		labels.clear();
 		size = 0;
-		depth = 0;
 		rootIndex = -1;
 	}
 	@Override
@@ -176,11 +312,16 @@ public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 		ArrayTree<E> v = null;
 		try {
 			v = (ArrayTree<E>) super.clone();
+			v.ancestorIndex = new AncestorIndex<E>();
 			v.nodeList = (ArrayList<E>) nodeList.clone();
-			v.parentList = (ArrayList<Integer>) parentList.clone();
+			v.parentList = parentList.clone();
+			v.nodeIndex = nodeIndex.clone();
 			v.childrenArray = new ArrayList<int[]>();
+			v.generationList = generationList.clone();
+			v.levelList = levelList.clone();
+			v.levels = levels.clone();
+			v.labels = labels.clone();
 			v.size = this.size;
-			v.depth = this.depth;
 			for(int i = 0; i < childrenArray.size(); i++)
 				v.childrenArray.add(Arrays.copyOf(childrenArray.get(i), childrenArray.get(i).length));
 		} catch (CloneNotSupportedException e) {
@@ -192,71 +333,106 @@ public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 	public E commonAncestor(E node1, E node2) throws NodeNotFoundException {
 		checkNode(node1);
 		checkNode(node2);
-		int height1 = 0;
-		E e1 = node1; 
-		while(e1 != null) {
-			height1++;
-			e1 = parent(e1);
-		}
-		int height2 = 0;
-		E e2 = node2; 
-		while(e2 != null) {
-			height2++;
-			e2 = parent(e2);
-		}
-		if(height1 > height2) {
-			while(height1 - height2 > 0) {
-				node1 = parent(node1);
-				height1--;
-			}
-		} else {
-			while(height2 - height1 > 0) {
-				node2 = parent(node2);
-				height2--;
-			}
-		}
-		while(node1 != null && !node1.equals(node2)) {
-			node1 = parent(node1);
-			node2 = parent(node2);
-		}
-		return node1;
+		return ancestorIndex.commonAncestor(this, modCount, node1, node2);
+	}
+	@Override
+	public E ancestor(E node, int k) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.ancestor(this, modCount, node, k);
+	}
+	@Override
+	public int levelOf(E node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = nodeIndex.getInt(node);
+		if(index < 0)
+			throw new NodeNotFoundException("No node was found for object");
+		return levelList.getInt(index);
+	}
+	@Override
+	public Iterable<E> ancestors(E node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = nodeIndex.getInt(node);
+		if(index < 0)
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().ancestors(index);
+	}
+	/**
+	 * Sizes of all the sub-trees are counted together in O(n) on the first call after the tree is modified, and
+	 * answered in O(1) from then on until the next modification. Inserts and removals don't pay for them, as keeping
+	 * the sizes up to date would cost every insert O(depth). A workload which modifies the tree between every two
+	 * calls pays O(n) for each of them
+	 * @see com.googlecode.jctree.Tree#subtreeSize(java.lang.Object)
+	 */
+	@Override
+	public int subtreeSize(E node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = nodeIndex.getInt(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return sizes()[index];
+	}
+	@Override
+	public int childCount(E node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = nodeIndex.getInt(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		int count = 0;
+		for(int child : childrenArray.get(index))
+			if(child != -1)
+				count++;
+		return count;
 	}
 	@Override
 	public boolean contains(Object o) {
 		if(o == null)
 			return false;
 		else
-			return nodeList.indexOf(o) > -1;
+			return nodeIndex.containsKey(o);
 	}
 	@Override
 	public boolean containsAll(Collection<?> c) {
-		return nodeList.containsAll(c);
+		for(Object i : c)
+			if(!contains(i))
+				return false;
+		return true;
 	}
 	@Override
 	public int depth() {
-		return depth;
+		return levels.depth();
 	}
 	@Override
 	@Deprecated
 	public List<E> inorderOrderTraversal() {
-		return inorderOrderTraversal(0, new ArrayList<E>());
+		return inOrderTraversal();
 	}
 	@Override
 	public List<E> inOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return inorderOrderTraversal(rootIndex, new ArrayList<E>());
+		return new TreeHelper().toList(inOrderView(), size);
 	}
 	@Override
 	public boolean isAncestor(E node, E child) throws NodeNotFoundException {
 		checkNode(child);
-		return new TreeHelper().isAncestor(this, node, child);
+		int childIndex = nodeIndex.getInt(child);
+		if(childIndex == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		if(node == null)
+			return false;
+		int index = nodeIndex.getInt(node);
+		return index != -1 && labels.isAncestor(index, childIndex);
 	}
 	@Override
 	public boolean isDescendant(E parent, E node) throws NodeNotFoundException {
 		checkNode(parent);
-		return new TreeHelper().isDescendant(this, parent, node);
+		int parentIndex = nodeIndex.getInt(parent);
+		if(parentIndex == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		if(node == null)
+			return false;
+		int index = nodeIndex.getInt(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return labels.isAncestor(parentIndex, index);
 	}
 	@Override
 	public boolean isEmpty() {
@@ -266,85 +442,121 @@ public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 	 * Iterator returns nodes as expected from inOrderTraversal
 	 * @see java.util.Collection#iterator()
 	 */
-	//TODO implement an iterator to enable throwing of concurrent modification exception
 	@Override
 	public Iterator<E> iterator() {
-		return getCurrentList().iterator();
+		return inOrderView().iterator();
+	}
+	/**
+	 * Spliterator returns nodes in the same order as {@link #iterator()} and splits the tree at child boundaries.
+	 * The first split after a modification counts the sizes of all the sub-trees, see {@link #subtreeSize(Object)}
+	 * @see java.util.Collection#spliterator()
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return traversal().spliterator(size);
 	}
 	@Override
 	public List<E> leaves() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return leaves(rootIndex, new ArrayList<E>());
-	}
-	private List<E> leaves(int nodeIndex, ArrayList<E> list) {
-		int[] children = childrenArray.get(nodeIndex);
-		if(children.length > 0)	{
-			int i = 0;
-			int chidrenLength = children.length;
-			for(int len = (int)Math.ceil((double)chidrenLength / 2); i < len; i++)
-				if(children[i] > -1)
-					leaves(children[i], list);
-			if(isChildrenArrayEmpty(childrenArray.get(nodeIndex)))
-				list.add(nodeList.get(nodeIndex));
-			for(int len = chidrenLength; i < len; i++)
-				if(children[i] > -1)
-					leaves(children[i], list);
-		}
-		else if(isChildrenArrayEmpty(childrenArray.get(nodeIndex)))
-			list.add(nodeList.get(nodeIndex));
-		return list;
+		return new TreeHelper().toList(leavesView());
 	}
 	@Override
 	public List<E> levelOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else {
-			LinkedList<Integer> queue = new LinkedList<Integer>();
-			queue.add(0);
-			return levelOrderTraversal(new ArrayList<E>(), queue);
-		}
+		return new TreeHelper().toList(levelOrderView(), size);
 	}
 	@Override
 	public E parent(E e) throws NodeNotFoundException {
 		checkNode(e);
-		int index = nodeList.indexOf(e);
+		int index = nodeIndex.getInt(e);
 		if(index == 0)
 			return null;
 		else if(index > 0)
-			return nodeList.get(parentList.get(index));
+			return nodeList.get(parentList.getInt(index));
 		else
 			throw new NodeNotFoundException("No node was found for object");
 	}
 	@Override
 	public List<E> postOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return postOrderTraversal(rootIndex, new ArrayList<E>());
+		return new TreeHelper().toList(postOrderView(), size);
 	}
 	public List<E> preOrderTraversal() {
+		return new TreeHelper().toList(preOrderView(), size);
+	}
+	@Override
+	public Iterable<E> preOrderView() {
+		return traversal().preOrder();
+	}
+	@Override
+	public Iterable<E> postOrderView() {
+		return traversal().postOrder();
+	}
+	@Override
+	public Iterable<E> inOrderView() {
+		return traversal().inOrder();
+	}
+	@Override
+	public Iterable<E> levelOrderView() {
+		return traversal().levelOrder();
+	}
+	@Override
+	public Iterable<E> leavesView() {
+		return traversal().leaves();
+	}
+	@Override
+	public E walk(TreeVisitor<? super E> visitor) {
 		if(isEmpty())
-			return new ArrayList<E>();
+			return null;
 		else
-			return preOrderTraversal(rootIndex, new ArrayList<E>());
+			return traversal().walk(rootIndex, null, visitor);
+	}
+	@Override
+	public E walk(E node, TreeVisitor<? super E> visitor) throws NodeNotFoundException {
+		checkNode(node);
+		int index = nodeIndex.getInt(node);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().walk(index, index == rootIndex ? null : nodeList.get(parentList.getInt(index)), visitor);
+	}
+	private SlotTraversal<E> traversal() {
+		return new SlotTraversal<E>() {
+			@Override
+			int root() {
+				return rootIndex;
+			}
+			@Override
+			int childCount(int slot) {
+				return childrenArray.get(slot).length;
+			}
+			@Override
+			int child(int slot, int position) {
+				return childrenArray.get(slot)[position];
+			}
+			@Override
+			int parent(int slot) {
+				return parentList.getInt(slot);
+			}
+			@Override
+			int subtreeSize(int slot) {
+				return sizes()[slot];
+			}
+			@Override
+			E value(int slot) {
+				return nodeList.get(slot);
+			}
+			@Override
+			int modCount() {
+				return modCount;
+			}
+		};
 	}
 	@Override
 	public boolean remove(Object o) {
 		checkNode(o);
-		int i = nodeList.indexOf(o);
-		if(i > -1) {
-			boolean wasRemoved;
-			if(i != rootIndex) {
-				wasRemoved = remove(i);
-				depth = recalculateDepth(rootIndex, 0);
-			} else {
-				wasRemoved = remove(i);
-				depth = 0;
-			}
-			return wasRemoved;
-		} else
+		return removeSubtree(nodeIndex.getInt(o));
+	}
+	private boolean removeSubtree(int i) {
+		if(i > -1)
+			return remove(i);
+		else
 			return false;
 	}
 	@Override
@@ -392,37 +604,75 @@ public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 		return getCurrentList().toArray(a);
 	}
 
-	private void addChild(E child, int parentIndex, int childIndex) {
+	private int addChild(E child, int parentIndex, int childIndex) {
+		modCount++;
 		nodeList.add(child);
+		int slot = nodeList.size() - 1;
+		nodeIndex.put(child, slot);
+		newGeneration(slot);
 		parentList.add(parentIndex);
-		childrenArray.get(parentIndex)[childIndex] = nodeList.size() - 1;
+		childrenArray.get(parentIndex)[childIndex] = slot;
 		int[] children = new int[maxChildren];
 		Arrays.fill(children, -1);
 		childrenArray.add(children);
+		int level = levelList.getInt(parentIndex) + 1;
+		levelList.add(level);
+		levels.add(level);
+		labels.addChild(parentIndex, slot);
 		size++;
-		int currentDepth = 2;
-		while(parentIndex != 0)	{
-			parentIndex = parentList.get(parentIndex);
-			currentDepth++;
-		}
-		depth = Math.max(currentDepth, depth);
+		return slot;
 	}
 
 	private void addRoot(E child) {
+		modCount++;
 		nodeList.add(child);
 		rootIndex = nodeList.size() - 1;
+		nodeIndex.put(child, rootIndex);
+		newGeneration(rootIndex);
 		parentList.add(-1);
 		int[] children = new int[maxChildren];
 		Arrays.fill(children, -1);
 		childrenArray.add(children);
+		levelList.add(1);
+		levels.add(1);
+		labels.addRoot(rootIndex);
 		size++;
-		depth++;
 	}
 
+	/**
+	 * @return sub-tree sizes of all the slots. They are counted again in O(n) on the first call after a modification
+	 * and cached until the next one.
+	 */
+	private int[] sizes() {
+		if(sizesModCount != modCount) {
+			sizes = traversal().subtreeSizes(nodeList.size());
+			sizesModCount = modCount;
+		}
+		return sizes;
+	}
 	private void checkNode(Object child) {
 		if(child == null)
 			throw new IllegalArgumentException("null nodes are not allowed");
 	}
+	private int indexOf(NodeRef node) throws NodeNotFoundException {
+		checkNode(node);
+		int index = node.index;
+		if(node.tree == this && index < nodeList.size() && nodeList.get(index) != null && generationList.getInt(index) == node.generation)
+			return index;
+		else
+			throw new NodeNotFoundException("Node reference is stale or belongs to another tree");
+	}
+	private NodeRef ref(int index) {
+		return new NodeRef(this, null, index, generationList.getInt(index));
+	}
+	private void newGeneration(int slot) {
+		if(slot == generationList.size())
+			generationList.add(0);
+	}
+	private void invalidateGenerations() {
+		for(int i = 0; i < nodeList.size(); i++)
+			generationList.set(i, generationList.getInt(i) + 1);
+	}
 
 	private List<E> getCurrentList() {
 		return inOrderTraversal();
@@ -433,88 +683,47 @@ public class ArrayTree<E> implements NumberedTree<E>, Cloneable {
 				return i;
 		return -1;
 	}
-	private List<E> inorderOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		int[] children = childrenArray.get(nodeIndex);
-		if(children.length > 0)	{
-			int i = 0;
-			for(int len = (int)Math.ceil((double)children.length / 2); i < len; i++)
-				if(children[i] > -1)
-					inorderOrderTraversal(children[i], list);
-			list.add(nodeList.get(nodeIndex));
-			for(int len = children.length; i < len; i++)
-				if(children[i] > -1)
-					inorderOrderTraversal(children[i], list);
-		}
-		else
-			list.add(nodeList.get(nodeIndex));
-		return list;
-	}
-	private boolean isChildrenArrayEmpty(int[] children) {
-		for (int i = 0; i < children.length; i++)
-			if(children[i] != -1)
-				return false;
-		return true;
-	}
-	private List<E> levelOrderTraversal(ArrayList<E> list, LinkedList<Integer> queue) {
-		while(!queue.isEmpty()) {
-			list.add(nodeList.get(queue.getFirst()));
-			for(int i : childrenArray.get(queue.getFirst()))
-				if(i > -1)
-					queue.add(i);
-			queue.remove();
-		}
-		return list;
-	}
-	private List<E> postOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		for(int  i :  childrenArray.get(nodeIndex))
-			if(i > -1)
-				postOrderTraversal(i, list);
-		if(nodeList.get(nodeIndex) != null)
-			list.add(nodeList.get(nodeIndex));
-		return list;
-	}
-	private List<E> preOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		if(nodeList.get(nodeIndex) != null)
-			list.add(nodeList.get(nodeIndex));
-		for(int i : childrenArray.get(nodeIndex))
-			if(i > -1)
-				preOrderTraversal(i, list);
-		return list;
-	}
 	private boolean remove(int index) {
 		if(index > -1) {
+			modCount++;
 			if(index == rootIndex) {
 				rootIndex = -1;
 				size = 0;
+				invalidateGenerations();
 				nodeList.clear();
 				parentList.clear();
 				childrenArray.clear();
+				nodeIndex.clear();
+				levelList.clear();
+				levels.clear();
+				labels.clear();
 				return true;
 			} else {
-				Integer parentIndex = parentList.set(index, -1);
+				int parentIndex = parentList.getInt(index);
 				for(int i = 0; i < childrenArray.get(parentIndex).length; i++)
 					if(childrenArray.get(parentIndex)[i] == index)
 						childrenArray.get(parentIndex)[i] = -1;
-				nodeList.set(index, null);
-				size--;
-				int[] children = childrenArray.get(index);
-				for (int j = 0; j < children.length; j++) 
-					remove(children[j]);
-				Arrays.fill(childrenArray.get(index), -1);
+				IntArrayList stack = new IntArrayList();
+				stack.push(index);
+				while(!stack.isEmpty()) {//an explicit stack as a deep sub-tree would overflow the call stack
+					int slot = stack.popInt();
+					int[] children = childrenArray.get(slot);
+					for(int j = children.length - 1; j >= 0; j--)
+						if(children[j] != -1)
+							stack.push(children[j]);
+					Arrays.fill(children, -1);
+					parentList.set(slot, -1);
+					nodeIndex.removeInt(nodeList.set(slot, null));
+					generationList.set(slot, generationList.getInt(slot) + 1);
+					levels.remove(levelList.getInt(slot));
+					labels.remove(slot);
+					size--;
+				}
 				return true;
 			} 
 		} else
 			return false;
 	}
-	private int recalculateDepth(int index, int depth) {
-		int childDepth = depth + 1;
-		if(isChildrenArrayEmpty(childrenArray.get(index)))
-			return childDepth;
-		for(int i : childrenArray.get(index))
-			if(i != -1)
-				depth = Math.max(depth, recalculateDepth(i, childDepth));
-		return depth;
-	}
 	@Override
 	public String toString() {
 		return getCurrentList().toString();
@@ -0,0 +1,1004 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+/**
+ * Sorted tree keeping its values in the pages of a B-tree. A page holds up to fanout - 1 values sorted in one array and,
+ * unless it is a leaf, one child page more than values. Lookups binary search one array per level, so they touch
+ * about log(n) / log(fanout) pages instead of one node per bit of log(n), and no object is allocated per value. Pages
+ * other than the root hold at least ceil(fanout / 2) - 1 values, which keeps every modification O(log(n)).
+ * <br>
+ * As a {@link Tree}, the values of a page form a chain. The left child of a value is the first value of the child page 
+ * before it and the right child is the next value of the page, or the first value of the last child page for the last
+ * value. This is a binary search tree, so the in order of the tree is the sorted order as in the other sorted trees.
+ * @author Gaurav Saxena
+ *
+ * @param <E>
+ */
+public class BTreeSortedTree<E extends Comparable<E>> implements SortedTree<E>, Cloneable {
+	private static final int DEFAULT_FANOUT = 64;
+
+	private static final class Page {
+		/**
+		 * One slot more than a page may hold, so that a page overflows before it is split
+		 */
+		Object[] values;
+		/**
+		 * Child pages, null for a leaf
+		 */
+		Page[] children;
+		Page parent;
+		int count;
+		/**
+		 * Number of values in the page and all the pages below it
+		 */
+		int subtreeSize;
+
+		Page(int fanout) {
+			values = new Object[fanout];
+		}
+	}
+	/**
+	 * A value given by its page and its index in the page
+	 */
+	private final class Position {
+		final Page page;
+		final int index;
+
+		Position(Page page, int index) {
+			this.page = page;
+			this.index = index;
+		}
+	}
+	/**
+	 * Maximum number of children of a page
+	 */
+	private final int fanout;
+	/**
+	 * Minimum number of values of a page other than the root
+	 */
+	private final int minValues;
+	private int size = 0;
+	/**
+	 * Height of the tree measured when it was last asked for, 0 if the tree has been modified since then
+	 */
+	private int depth = 0;
+	/**
+	 * Counts structural modifications so that traversal views fail fast
+	 */
+	private int modCount = 0;
+	private AncestorIndex<E> ancestorIndex = new AncestorIndex<E>();
+	private Page root;
+
+	public BTreeSortedTree() {
+		this(DEFAULT_FANOUT);
+	}
+	/**
+	 * @param fanout maximum number of children of a page, at least 3
+	 */
+	public BTreeSortedTree(int fanout) {
+		if(fanout < 3)
+			throw new IllegalArgumentException("fanout should be at least 3");
+		this.fanout = fanout;
+		this.minValues = (fanout + 1) / 2 - 1;
+	}
+	public BTreeSortedTree(Collection<? extends E> c) {
+		this();
+		addAll(c);
+	}
+	/**
+	 * A B-tree determines parent of a child on its own and hence it is not possible to add the child to any given parent. Please use add(child)
+	 * The method throws {@link UnsupportedOperationException}
+	 */
+	@Override
+	public boolean add(E parent, E child) throws NodeNotFoundException {
+		throw new UnsupportedOperationException("A B-tree determines parent of a child on its own and hence it is not possible to add the child to any given parent. Please use add(child)");
+	}
+	/**
+	 * Adds the value to its leaf page, splitting the pages which overflow on the way up
+	 * @see java.util.Collection#add(java.lang.Object)
+	 */
+	@Override
+	public boolean add(E child) {
+		checkNode(child);
+		if(root == null)
+			root = new Page(fanout);
+		Page page = root;
+		int index;
+		while(true) {
+			index = search(page, child);
+			if(index >= 0)
+				return false;
+			index = -index - 1;
+			if(page.children == null)
+				break;
+			page = page.children[index];
+		}
+		insert(page, index, child, null);
+		for(Page p = page; p != null; p = p.parent)
+			p.subtreeSize++;
+		size++;
+		modCount++;
+		depth = 0;
+		while(page != null && page.count == fanout)
+			page = split(page);
+		return true;
+	}
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		boolean retVal = false;
+		for (Iterator<? extends E> iterator = c.iterator(); iterator.hasNext();)
+			retVal |= add(iterator.next());
+		return retVal;
+	}
+	/**
+	 * The method throws {@link UnsupportedOperationException}, see {@link #add(Comparable, Comparable)}
+	 */
+	@Override
+	public boolean addAll(E parent, Collection<? extends E> c) {
+		throw new UnsupportedOperationException("A B-tree determines parent of a child on its own and hence it is not possible to add the child to any given parent. Please use add(child)");
+	}
+	@Override
+	public List<E> children(E e) throws NodeNotFoundException {
+		checkNode(e);
+		Position position = position(e);
+		ArrayList<E> children = new ArrayList<E>(2);
+		Position left = left(position);
+		if(left != null)
+			children.add(value(left));
+		Position right = right(position);
+		if(right != null)
+			children.add(value(right));
+		return children;
+	}
+	@Override
+	public void clear() {
+		root = null;
+		size = 0;
+		modCount++;
+		depth = 0;
+	}
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object clone() {
+		BTreeSortedTree<E> clone = null;
+		try {
+			clone = (BTreeSortedTree<E>) super.clone();
+			clone.ancestorIndex = new AncestorIndex<E>();
+			clone.root = root == null ? null : clone.copy(root, null);
+		} catch (CloneNotSupportedException e) {
+			//This should't happen because we are cloneable
+		}
+		return clone;
+	}
+	private Page copy(Page page, Page parent) {
+		Page copy = new Page(fanout);
+		copy.values = page.values.clone();
+		copy.count = page.count;
+		copy.subtreeSize = page.subtreeSize;
+		copy.parent = parent;
+		if(page.children != null) {
+			copy.children = new Page[fanout + 1];
+			for(int i = 0; i <= page.count; i++)
+				copy.children[i] = copy(page.children[i], copy);
+		}
+		return copy;
+	}
+	@Override
+	public E commonAncestor(E node1, E node2) throws NodeNotFoundException {
+		checkNode(node1);
+		checkNode(node2);
+		return ancestorIndex.commonAncestor(this, modCount, node1, node2);
+	}
+	@Override
+	public E ancestor(E node, int k) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.ancestor(this, modCount, node, k);
+	}
+	@Override
+	public int levelOf(E node) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.levelOf(this, modCount, node);
+	}
+	@Override
+	public Iterable<E> ancestors(E node) throws NodeNotFoundException {
+		checkNode(node);
+		return traversal().ancestors(position(node));
+	}
+	@Override
+	public int subtreeSize(E node) throws NodeNotFoundException {
+		checkNode(node);
+		return subtreeSize(position(node));
+	}
+	@Override
+	public int childCount(E node) throws NodeNotFoundException {
+		checkNode(node);
+		Position position = position(node);
+		return (left(position) == null ? 0 : 1) + (right(position) == null ? 0 : 1);
+	}
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean contains(Object o) {
+		if(o == null || isEmpty())
+			return false;
+		else if(o instanceof Comparable) {
+			E value = (E) o;
+			for(Page page = root; page != null; ) {
+				int index = search(page, value);
+				if(index >= 0)
+					return true;
+				page = page.children == null ? null : page.children[-index - 1];
+			}
+			return false;
+		} else {
+			for(E e : this)
+				if(o.equals(e))
+					return true;
+			return false;
+		}
+	}
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		for(Object i : c)
+			if(!contains(i))
+				return false;
+		return true;
+	}
+	@Override
+	public int depth() {
+		if(depth == 0 && root != null)
+			depth = depth(root);
+		return depth;
+	}
+	/**
+	 * @return height of the chains of the page and all the pages below it
+	 */
+	private int depth(Page page) {
+		if(page.children == null)
+			return page.count;
+		int depth = 0;
+		for(int i = 0; i <= page.count; i++)
+			depth = Math.max(depth, Math.min(i + 1, page.count) + depth(page.children[i]));
+		return depth;
+	}
+	@Override
+	@Deprecated
+	public List<E> inorderOrderTraversal() {
+		return inOrderTraversal();
+	}
+	@Override
+	public List<E> inOrderTraversal() {
+		return new TreeHelper().toList(inOrderView(), size);
+	}
+	@Override
+	public boolean isAncestor(E node, E child) throws NodeNotFoundException {
+		checkNode(child);
+		Position childPosition = position(child);
+		if(node == null)
+			return false;
+		try {
+			return isAncestor(position(node), childPosition);
+		} catch (NodeNotFoundException e) {
+			return false;
+		}
+	}
+	@Override
+	public boolean isDescendant(E parent, E node) throws NodeNotFoundException {
+		checkNode(parent);
+		Position parentPosition = position(parent);
+		if(node == null)
+			return false;
+		return isAncestor(parentPosition, position(node));
+	}
+	/**
+	 * A value is a proper ancestor of the values after it in its page and of all the values under its left child page
+	 * and the pages after it, so only the pages above node are walked
+	 */
+	private boolean isAncestor(Position ancestor, Position node) {
+		if(node.page == ancestor.page)
+			return node.index > ancestor.index;
+		Page page = node.page;
+		while(page.parent != null && page.parent != ancestor.page)
+			page = page.parent;
+		return page.parent != null && indexOf(ancestor.page, page) >= ancestor.index;
+	}
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	/**
+	 * Iterates the values in sorted order page by page
+	 * @see java.util.Collection#iterator()
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new Cursor(first(root), null, false, false);
+	}
+	/**
+	 * Spliterator returns nodes in the same order as {@link #iterator()} and splits the tree at child boundaries
+	 * @see java.util.Collection#spliterator()
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return traversal().spliterator(size);
+	}
+	@Override
+	public List<E> leaves() {
+		return new TreeHelper().toList(leavesView());
+	}
+	@Override
+	public List<E> levelOrderTraversal() {
+		return new TreeHelper().toList(levelOrderView(), size);
+	}
+	@Override
+	public E parent(E e) throws NodeNotFoundException {
+		checkNode(e);
+		Position parent = parent(position(e));
+		return parent == null ? null : value(parent);
+	}
+	@Override
+	public List<E> postOrderTraversal() {
+		return new TreeHelper().toList(postOrderView(), size);
+	}
+	@Override
+	public List<E> preOrderTraversal() {
+		return new TreeHelper().toList(preOrderView(), size);
+	}
+	@Override
+	public Iterable<E> preOrderView() {
+		return traversal().preOrder();
+	}
+	@Override
+	public Iterable<E> postOrderView() {
+		return traversal().postOrder();
+	}
+	@Override
+	public Iterable<E> inOrderView() {
+		return traversal().inOrder();
+	}
+	@Override
+	public Iterable<E> levelOrderView() {
+		return traversal().levelOrder();
+	}
+	@Override
+	public Iterable<E> leavesView() {
+		return traversal().leaves();
+	}
+	@Override
+	public E walk(TreeVisitor<? super E> visitor) {
+		if(isEmpty())
+			return null;
+		else
+			return traversal().walk(new Position(root, 0), null, visitor);
+	}
+	@Override
+	public E walk(E node, TreeVisitor<? super E> visitor) throws NodeNotFoundException {
+		checkNode(node);
+		Position start = position(node);
+		Position parent = parent(start);
+		return traversal().walk(start, parent == null ? null : value(parent), visitor);
+	}
+	private NodeTraversal<E, Position> traversal() {
+		return new NodeTraversal<E, Position>() {
+			@Override
+			Position root() {
+				return root == null ? null : new Position(root, 0);
+			}
+			@Override
+			int childCount(Position node) {
+				return 2;
+			}
+			@Override
+			Position child(Position node, int position) {
+				return position == 0 ? left(node) : right(node);
+			}
+			@Override
+			Position parent(Position node) {
+				return BTreeSortedTree.this.parent(node);
+			}
+			@Override
+			int subtreeSize(Position node) {
+				return BTreeSortedTree.this.subtreeSize(node);
+			}
+			@Override
+			E value(Position node) {
+				return BTreeSortedTree.this.value(node);
+			}
+			@Override
+			int modCount() {
+				return modCount;
+			}
+		};
+	}
+	/**
+	 * Removes the value from its page. A value of an inner page is replaced by its predecessor, which is then removed
+	 * from its leaf. A page left with too few values borrows one through its parent from a sibling or is merged with a
+	 * sibling, which may leave the parent with too few values in turn
+	 * @see java.util.Collection#remove(java.lang.Object)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean remove(Object o) {
+		checkNode(o);
+		if(isEmpty())
+			return false;
+		E value = null;
+		if(o instanceof Comparable)
+			value = (E) o;
+		else {
+			for(E e : this)
+				if(o.equals(e))
+					value = e;
+			if(value == null)
+				return false;
+		}
+		Position position;
+		try {
+			position = position(value);
+		} catch (NodeNotFoundException e) {
+			return false;
+		}
+		Page page = position.page;
+		int index = position.index;
+		if(page.children != null) {
+			Page leaf = page.children[index];
+			while(leaf.children != null)
+				leaf = leaf.children[leaf.count];
+			page.values[index] = leaf.values[leaf.count - 1];
+			page = leaf;
+			index = leaf.count - 1;
+		}
+		System.arraycopy(page.values, index + 1, page.values, index, page.count - index - 1);
+		page.values[--page.count] = null;
+		for(Page p = page; p != null; p = p.parent)
+			p.subtreeSize--;
+		size--;
+		modCount++;
+		depth = 0;
+		rebalance(page);
+		return true;
+	}
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		boolean retVal = false;
+		for (Iterator<?> iterator = c.iterator(); iterator.hasNext();)
+			retVal |= remove(iterator.next());
+		return retVal;
+	}
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw new UnsupportedOperationException("Tree interface doesn't support retainAll");
+	}
+	@Override
+	public E root() {
+		if(isEmpty())
+			return null;
+		else
+			return value(root, 0);
+	}
+	@Override
+	public List<E> siblings(E e) throws NodeNotFoundException {
+		checkNode(e);
+		E parent = parent(e);
+		if(parent != null) {
+			List<E> children = children(parent);
+			children.remove(e);
+			return children;
+		} else
+			return new ArrayList<E>();
+	}
+	@Override
+	public int size() {
+		return size;
+	}
+	@Override
+	public Object[] toArray() {
+		return getCurrentList().toArray();
+	}
+	@Override
+	public <T> T[] toArray(T[] a) {
+		return getCurrentList().toArray(a);
+	}
+	@Override
+	public E successor(E node) throws NodeNotFoundException {
+		checkNode(node);
+		Position next = next(position(node));
+		return next == null ? null : value(next);
+	}
+	@Override
+	public E predecessor(E node) throws NodeNotFoundException {
+		checkNode(node);
+		Position previous = previous(position(node));
+		return previous == null ? null : value(previous);
+	}
+	@Override
+	public E floor(E e) {
+		checkNode(e);
+		return valueOf(below(e, true));
+	}
+	@Override
+	public E ceiling(E e) {
+		checkNode(e);
+		return valueOf(above(e, true));
+	}
+	@Override
+	public E higher(E e) {
+		checkNode(e);
+		return valueOf(above(e, false));
+	}
+	@Override
+	public E lower(E e) {
+		checkNode(e);
+		return valueOf(below(e, false));
+	}
+	@Override
+	public E first() {
+		if(isEmpty())
+			throw new NoSuchElementException();
+		return value(first(root));
+	}
+	@Override
+	public E last() {
+		if(isEmpty())
+			throw new NoSuchElementException();
+		return value(last(root));
+	}
+	@Override
+	public Iterable<E> subSet(final E from, final boolean fromInclusive, final E to, final boolean toInclusive) {
+		checkNode(from);
+		checkNode(to);
+		if(from.compareTo(to) > 0)
+			throw new IllegalArgumentException("from should not be greater than to");
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return new Cursor(above(from, fromInclusive), to, toInclusive, false);
+			}
+		};
+	}
+	@Override
+	public Iterable<E> headSet(final E to, final boolean inclusive) {
+		checkNode(to);
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return new Cursor(first(root), to, inclusive, false);
+			}
+		};
+	}
+	@Override
+	public Iterable<E> tailSet(final E from, final boolean inclusive) {
+		checkNode(from);
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return new Cursor(above(from, inclusive), null, false, false);
+			}
+		};
+	}
+	@Override
+	public Iterator<E> descendingIterator() {
+		return new Cursor(last(root), null, false, true);
+	}
+	/**
+	 * @return the index of the value in the page if present, otherwise -(index of the child page to descend to) - 1
+	 */
+	private int search(Page page, E value) {
+		int low = 0;
+		int high = page.count - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = value(page, middle).compareTo(value);
+			if(comparison < 0)
+				low = middle + 1;
+			else if(comparison > 0)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -(low + 1);
+	}
+	private Position position(E value) throws NodeNotFoundException {
+		for(Page page = root; page != null; ) {
+			int index = search(page, value);
+			if(index >= 0)
+				return new Position(page, index);
+			page = page.children == null ? null : page.children[-index - 1];
+		}
+		throw new NodeNotFoundException("No node was found for object");
+	}
+	/**
+	 * @return position of the greatest value less than (or equal to, if inclusive) e, null if there is none
+	 */
+	private Position below(E e, boolean inclusive) {
+		Position found = null;
+		for(Page page = root; page != null; ) {
+			int index = search(page, e);
+			if(index >= 0 && inclusive)
+				return new Position(page, index);
+			int child = index >= 0 ? index : -index - 1;
+			if(child > 0)
+				found = new Position(page, child - 1);
+			page = page.children == null ? null : page.children[child];
+		}
+		return found;
+	}
+	/**
+	 * @return position of the least value greater than (or equal to, if inclusive) e, null if there is none
+	 */
+	private Position above(E e, boolean inclusive) {
+		Position found = null;
+		for(Page page = root; page != null; ) {
+			int index = search(page, e);
+			if(index >= 0 && inclusive)
+				return new Position(page, index);
+			int child = index >= 0 ? index + 1 : -index - 1;
+			if(child < page.count)
+				found = new Position(page, child);
+			page = page.children == null ? null : page.children[child];
+		}
+		return found;
+	}
+	private Position first(Page page) {
+		if(page == null)
+			return null;
+		while(page.children != null)
+			page = page.children[0];
+		return new Position(page, 0);
+	}
+	private Position last(Page page) {
+		if(page == null)
+			return null;
+		while(page.children != null)
+			page = page.children[page.count];
+		return new Position(page, page.count - 1);
+	}
+	/**
+	 * @return position of the next value in sorted order, null if there is none
+	 */
+	private Position next(Position position) {
+		Page page = position.page;
+		if(page.children != null)
+			return first(page.children[position.index + 1]);
+		else if(position.index + 1 < page.count)
+			return new Position(page, position.index + 1);
+		for(; page.parent != null; page = page.parent) {
+			int index = indexOf(page.parent, page);
+			if(index < page.parent.count)
+				return new Position(page.parent, index);
+		}
+		return null;
+	}
+	/**
+	 * @return position of the previous value in sorted order, null if there is none
+	 */
+	private Position previous(Position position) {
+		Page page = position.page;
+		if(page.children != null)
+			return last(page.children[position.index]);
+		else if(position.index > 0)
+			return new Position(page, position.index - 1);
+		for(; page.parent != null; page = page.parent) {
+			int index = indexOf(page.parent, page);
+			if(index > 0)
+				return new Position(page.parent, index - 1);
+		}
+		return null;
+	}
+	/**
+	 * @return the first value of the child page before the value, null for a value of a leaf
+	 */
+	private Position left(Position position) {
+		Page page = position.page;
+		return page.children == null ? null : new Position(page.children[position.index], 0);
+	}
+	/**
+	 * @return the next value of the page, or the first value of the last child page for the last value
+	 */
+	private Position right(Position position) {
+		Page page = position.page;
+		if(position.index + 1 < page.count)
+			return new Position(page, position.index + 1);
+		return page.children == null ? null : new Position(page.children[page.count], 0);
+	}
+	private Position parent(Position position) {
+		Page page = position.page;
+		if(position.index > 0)
+			return new Position(page, position.index - 1);
+		else if(page.parent == null)
+			return null;
+		return new Position(page.parent, Math.min(indexOf(page.parent, page), page.parent.count - 1));
+	}
+	/**
+	 * @return number of values from the value to the end of its page and in the child pages from the one before it
+	 */
+	private int subtreeSize(Position position) {
+		Page page = position.page;
+		int size = page.count - position.index;
+		if(page.children != null)
+			for(int i = position.index; i <= page.count; i++)
+				size += page.children[i].subtreeSize;
+		return size;
+	}
+	private int indexOf(Page parent, Page child) {
+		for(int i = 0; ; i++)
+			if(parent.children[i] == child)
+				return i;
+	}
+	/**
+	 * Puts the value at the index of the page, shifting the values after it, and the child page right after the value
+	 */
+	private void insert(Page page, int index, Object value, Page child) {
+		System.arraycopy(page.values, index, page.values, index + 1, page.count - index);
+		page.values[index] = value;
+		if(child != null) {
+			System.arraycopy(page.children, index + 1, page.children, index + 2, page.count - index);
+			page.children[index + 1] = child;
+			child.parent = page;
+		}
+		page.count++;
+	}
+	/**
+	 * Moves the values after the middle value of an overflowing page to a new page and the middle value to the parent
+	 * @return the parent, which may overflow in turn
+	 */
+	private Page split(Page page) {
+		int middle = page.count / 2;
+		Page right = new Page(fanout);
+		right.count = page.count - middle - 1;
+		System.arraycopy(page.values, middle + 1, right.values, 0, right.count);
+		Object value = page.values[middle];
+		Arrays.fill(page.values, middle, page.count, null);
+		right.subtreeSize = right.count;
+		if(page.children != null) {
+			right.children = new Page[fanout + 1];
+			System.arraycopy(page.children, middle + 1, right.children, 0, right.count + 1);
+			Arrays.fill(page.children, middle + 1, page.count + 1, null);
+			for(int i = 0; i <= right.count; i++) {
+				right.children[i].parent = right;
+				right.subtreeSize += right.children[i].subtreeSize;
+			}
+		}
+		page.count = middle;
+		Page parent = page.parent;
+		if(parent == null) {
+			parent = new Page(fanout);
+			parent.children = new Page[fanout + 1];
+			parent.children[0] = page;
+			parent.subtreeSize = page.subtreeSize;
+			page.parent = parent;
+			root = parent;
+		}
+		page.subtreeSize -= right.subtreeSize + 1;
+		insert(parent, indexOf(parent, page), value, right);
+		return parent;
+	}
+	/**
+	 * Refills the page and the pages above it which have too few values
+	 */
+	private void rebalance(Page page) {
+		while(page != root && page.count < minValues) {
+			Page parent = page.parent;
+			int index = indexOf(parent, page);
+			Page left = index > 0 ? parent.children[index - 1] : null;
+			Page right = index < parent.count ? parent.children[index + 1] : null;
+			if(left != null && left.count > minValues) {
+				System.arraycopy(page.values, 0, page.values, 1, page.count);
+				page.values[0] = parent.values[index - 1];
+				parent.values[index - 1] = left.values[left.count - 1];
+				left.values[left.count - 1] = null;
+				int moved = 1;
+				if(page.children != null) {
+					System.arraycopy(page.children, 0, page.children, 1, page.count + 1);
+					Page child = left.children[left.count];
+					left.children[left.count] = null;
+					page.children[0] = child;
+					child.parent = page;
+					moved += child.subtreeSize;
+				}
+				left.count--;
+				page.count++;
+				left.subtreeSize -= moved;
+				page.subtreeSize += moved;
+				return;
+			} else if(right != null && right.count > minValues) {
+				page.values[page.count] = parent.values[index];
+				parent.values[index] = right.values[0];
+				System.arraycopy(right.values, 1, right.values, 0, right.count - 1);
+				right.values[right.count - 1] = null;
+				int moved = 1;
+				if(page.children != null) {
+					Page child = right.children[0];
+					System.arraycopy(right.children, 1, right.children, 0, right.count);
+					right.children[right.count] = null;
+					page.children[page.count + 1] = child;
+					child.parent = page;
+					moved += child.subtreeSize;
+				}
+				right.count--;
+				page.count++;
+				right.subtreeSize -= moved;
+				page.subtreeSize += moved;
+				return;
+			} else if(left != null)
+				merge(parent, index - 1);
+			else
+				merge(parent, index);
+			page = parent;
+		}
+		if(root.count == 0) {
+			root = root.children == null ? null : root.children[0];
+			if(root != null)
+				root.parent = null;
+		}
+	}
+	/**
+	 * Merges the child page after the value at the index of the parent, and the value, into the child page before it
+	 */
+	private void merge(Page parent, int index) {
+		Page left = parent.children[index];
+		Page right = parent.children[index + 1];
+		left.values[left.count] = parent.values[index];
+		System.arraycopy(right.values, 0, left.values, left.count + 1, right.count);
+		if(left.children != null) {
+			System.arraycopy(right.children, 0, left.children, left.count + 1, right.count + 1);
+			for(int i = 0; i <= right.count; i++)
+				right.children[i].parent = left;
+		}
+		left.count += right.count + 1;
+		left.subtreeSize += right.subtreeSize + 1;
+		System.arraycopy(parent.values, index + 1, parent.values, index, parent.count - index - 1);
+		System.arraycopy(parent.children, index + 2, parent.children, index + 1, parent.count - index - 1);
+		parent.count--;
+		parent.values[parent.count] = null;
+		parent.children[parent.count + 1] = null;
+	}
+	@SuppressWarnings("unchecked")
+	private E value(Page page, int index) {
+		return (E) page.values[index];
+	}
+	private E value(Position position) {
+		return value(position.page, position.index);
+	}
+	private E valueOf(Position position) {
+		return position == null ? null : value(position);
+	}
+	private void checkNode(Object child) {
+		if(child == null)
+			throw new IllegalArgumentException("null nodes are not allowed");
+	}
+	private List<E> getCurrentList() {
+		return inOrderTraversal();
+	}
+	@Override
+	public String toString() {
+		return getCurrentList().toString();
+	}
+	@Override
+	public int hashCode() {
+		return getCurrentList().hashCode();
+	}
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean equals(Object o) {
+		if(o != null && o instanceof BTreeSortedTree) {
+			try {
+				return new TreeHelper().isEqual((BTreeSortedTree<E>) o, this, ((BTreeSortedTree<E>) o).root(), root());
+			} catch (NodeNotFoundException e) {
+				e.printStackTrace();
+				return false;
+			}
+		} else
+			return false;
+	}
+
+	/**
+	 * Steps from value to value within a page and between pages through the parents, without allocating, until the
+	 * bound of the range is crossed. It is read only and fails fast once the tree is structurally modified
+	 */
+	private class Cursor implements Iterator<E> {
+		private final int expectedModCount = modCount;
+		private final E bound;
+		private final boolean boundInclusive;
+		private final boolean descending;
+		private Page page;
+		private int index;
+
+		Cursor(Position start, E bound, boolean boundInclusive, boolean descending) {
+			this.bound = bound;
+			this.boundInclusive = boundInclusive;
+			this.descending = descending;
+			if(start != null) {
+				page = start.page;
+				index = start.index;
+				checkBound();
+			}
+		}
+		@Override
+		public boolean hasNext() {
+			return page != null;
+		}
+		@Override
+		public E next() {
+			if(modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if(page == null)
+				throw new NoSuchElementException();
+			E value = value(page, index);
+			if(descending)
+				stepBack();
+			else
+				step();
+			if(page != null)
+				checkBound();
+			return value;
+		}
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Range views are read only");
+		}
+		private void checkBound() {
+			if(bound == null)
+				return;
+			int comparison = value(page, index).compareTo(bound);
+			if(descending)
+				comparison = -comparison;
+			if(comparison > 0 || (comparison == 0 && !boundInclusive))
+				page = null;
+		}
+		private void step() {
+			if(page.children != null) {
+				page = page.children[index + 1];
+				while(page.children != null)
+					page = page.children[0];
+				index = 0;
+			} else if(++index == page.count) {
+				for(; page.parent != null; page = page.parent) {
+					index = indexOf(page.parent, page);
+					if(index < page.parent.count) {
+						page = page.parent;
+						return;
+					}
+				}
+				page = null;
+			}
+		}
+		private void stepBack() {
+			if(page.children != null) {
+				page = page.children[index];
+				while(page.children != null)
+					page = page.children[page.count];
+				index = page.count - 1;
+			} else if(--index < 0) {
+				for(; page.parent != null; page = page.parent) {
+					index = indexOf(page.parent, page) - 1;
+					if(index >= 0) {
+						page = page.parent;
+						return;
+					}
+				}
+				page = null;
+			}
+		}
+	}
+}
@@ -16,8 +16,11 @@ package com.googlecode.jctree;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 
 /**
@@ -31,12 +34,132 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 		Node parent, left, right;
 		E value;
 		COLOR color;
+		/**
+		 * Tokens in the order of the tree at which a depth first walk enters and exits the node
+		 */
+		int enter, exit;
+		/**
+		 * Number of nodes in the sub-tree rooted at the node
+		 */
+		int subtreeSize = 1;
 	}
 	private enum COLOR {RED, BLACK};
+	private enum Operation {UNION, INTERSECTION, DIFFERENCE};
+	/**
+	 * A detached sub-tree together with the number of black nodes on every path from its root down
+	 */
+	private final class Part {
+		final Node root;
+		final int blackHeight;
+
+		Part(Node root, int blackHeight) {
+			this.root = root;
+			this.blackHeight = blackHeight;
+		}
+	}
+	private final class Split {
+		final Part left, right;
+		/**
+		 * Node of the key split at, null if the key was not found
+		 */
+		final Node found;
+
+		Split(Part left, Part right, Node found) {
+			this.left = left;
+			this.right = right;
+			this.found = found;
+		}
+	}
+	/**
+	 * Union, intersection or difference of two detached trees. The root of one tree splits the other, the two halves
+	 * are combined recursively, in parallel for large trees if asked for, and the results are joined again
+	 */
+	private final class SetOperation extends RecursiveTask<Part> {
+		private static final long serialVersionUID = 1L;
+		private final Operation operation;
+		private final Part part1, part2;
+		private final boolean parallel;
+
+		SetOperation(Operation operation, Part part1, Part part2, boolean parallel) {
+			this.operation = operation;
+			this.part1 = part1;
+			this.part2 = part2;
+			this.parallel = parallel;
+		}
+		@Override
+		protected Part compute() {
+			if(part1.root == null)
+				return operation == Operation.UNION ? part2 : EMPTY;
+			else if(part2.root == null)
+				return operation == Operation.INTERSECTION ? EMPTY : part1;
+			boolean fork = parallel && part1.root.subtreeSize + part2.root.subtreeSize > PARALLEL_THRESHOLD;
+			//the root of the second tree splits the first, but intersection keeps the nodes of the first tree
+			SetOperation left, right;
+			Node key;
+			Split split;
+			if(operation == Operation.INTERSECTION) {
+				Split children = expose(part1);
+				key = children.found;
+				split = split(part2, key.value);
+				left = new SetOperation(operation, children.left, split.left, parallel);
+				right = new SetOperation(operation, children.right, split.right, parallel);
+			} else {
+				Split children = expose(part2);
+				key = children.found;
+				split = split(part1, key.value);
+				left = new SetOperation(operation, split.left, children.left, parallel);
+				right = new SetOperation(operation, split.right, children.right, parallel);
+			}
+			Part leftPart, rightPart;
+			if(fork) {
+				right.fork();
+				leftPart = left.compute();
+				rightPart = right.join();
+			} else {
+				leftPart = left.compute();
+				rightPart = right.compute();
+			}
+			if(operation == Operation.UNION || (operation == Operation.INTERSECTION && split.found != null))
+				return BinaryRedBlackTree.this.join(leftPart, key, rightPart);
+			else
+				return BinaryRedBlackTree.this.join(leftPart, rightPart);
+		}
+	}
 	private int size = 0;
+	/**
+	 * Height of the tree measured when it was last asked for, 0 if the tree has been modified since then
+	 */
 	private int depth = 0;
+	/**
+	 * Counts structural modifications so that traversal views fail fast
+	 */
+	private int modCount = 0;
+	private AncestorIndex<E> ancestorIndex = new AncestorIndex<E>();
+	/**
+	 * Holds the tokens at which a depth first walk enters and exits every node, see {@link IntervalLabels}
+	 */
+	private OrderList order = new OrderList();
+	/**
+	 * False once sub-trees have been moved between trees by {@link #split(Comparable)}, {@link #join} or the set 
+	 * operations, until {@link #isAncestor(Node, Node)} labels the nodes afresh
+	 */
+	private boolean labeled = true;
 	private Node root;
+	/**
+	 * Set operations fork their halves while the trees hold more nodes than this
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 13;
+	private final Part EMPTY = new Part(null, 0);
 	
+	public BinaryRedBlackTree() {
+	}
+	/**
+	 * Builds the tree from the values in O(n) if they are sorted and in O(n log(n)) otherwise
+	 * @see #addAll(Collection)
+	 */
+	public BinaryRedBlackTree(Collection<? extends E> c) {
+		addAll(c);
+	}
 	@Override
 	public boolean add(E child) {
 		try {
@@ -60,9 +183,10 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 	}
 	private boolean addNode(Node parent, E child) throws NodeNotFoundException {
 		checkNode(child);
-		mendTree(parent, addChild(parent, child));
+		mendTree(addChild(parent, child));
 		size++;
-		depth = recalculateDepth(root, 0);
+		modCount++;
+		depth = 0;
 		return true;
 	}
 	private Node node(Node parent, Comparable<E> child) throws NodeNotFoundException {
@@ -97,100 +221,116 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 		} else
 			return null;//Such a node already exists
 	}
-	private void mendTree(Node parent, Node child) throws NodeNotFoundException {
-		inserCase1(parent, child);
+	/**
+	 * Restores the red-black properties after a red node has been inserted
+	 */
+	private void mendTree(Node node) {
+		while(node != root && isRed(node.parent)) {
+			Node parent = node.parent;
+			Node grandParent = parent.parent;
+			if(parent == grandParent.left) {
+				Node uncle = grandParent.right;
+				if(isRed(uncle)) {
+					parent.color = COLOR.BLACK;
+					uncle.color = COLOR.BLACK;
+					grandParent.color = COLOR.RED;
+					node = grandParent;
+				} else {
+					if(node == parent.right) {
+						node = parent;
+						rotateLeft(node);
+						parent = node.parent;
+					}
+					parent.color = COLOR.BLACK;
+					grandParent.color = COLOR.RED;
+					rotateRight(grandParent);
+				}
+			} else {
+				Node uncle = grandParent.left;
+				if(isRed(uncle)) {
+					parent.color = COLOR.BLACK;
+					uncle.color = COLOR.BLACK;
+					grandParent.color = COLOR.RED;
+					node = grandParent;
+				} else {
+					if(node == parent.left) {
+						node = parent;
+						rotateRight(node);
+						parent = node.parent;
+					}
+					parent.color = COLOR.BLACK;
+					grandParent.color = COLOR.RED;
+					rotateLeft(grandParent);
+				}
+			}
+		}
+		root.color = COLOR.BLACK;
+	}
+	private int sizeOf(Node node) {
+		return node == null ? 0 : node.subtreeSize;
 	}
-	private void inserCase1(Node parent, Node child) throws NodeNotFoundException {
-		if(parent == null)
-			child.color = COLOR.BLACK;
-		else
-			inserCase2(parent, child);
-	}
-	private void inserCase2(Node parent, Node child) throws NodeNotFoundException {
-		if(!(parent.color == COLOR.BLACK)) //case 2
-			insertCase3(parent, child);
-	}
-	private void insertCase3(Node parent, Node child) throws NodeNotFoundException {
-		Node uncle = uncle(child);
-		if(uncle != null) {
-			if(uncle.color == COLOR.RED) {
-				parent.color = COLOR.BLACK;
-				uncle.color = COLOR.BLACK;
-				child.parent.parent.color = COLOR.RED;
-				if(parent.parent != null)
-					inserCase1(parent.parent.parent, parent.parent);
-			} else
-				insertCase4(parent, child);
-		} else
-			insertCase4(parent, child);
-	}
-	private void insertCase4(Node parent, Node child) throws NodeNotFoundException {
-		Node grandParent = parent.parent;
-		if(parent.right != null && parent.right.value.equals(child.value) && grandParent.left != null && grandParent.left.value.equals(parent.value)) {
-			rotateLeft(parent);
-		} else if(parent.left != null && parent.left.value.equals(child.value) && grandParent.right != null && grandParent.right.value.equals(parent.value)) {
-			rotateRight(parent);
-		} else
-			insertCase5(parent, child);
-	}
-	private void insertCase5(Node parent, Node child) throws NodeNotFoundException {
-		Node grandParent = parent.parent;
-		parent.color = COLOR.BLACK;
-		child.color = COLOR.RED;
-		if(parent.left != null && parent.left.value.equals(child.value))
-			rotateRight(grandParent);
-		else
-			rotateLeft(grandParent);
+	private boolean isRed(Node node) {
+		return node != null && node.color == COLOR.RED;
 	}
 	//http://upload.wikimedia.org/wikipedia/commons/2/23/Tree_rotation.png
-	private void rotateRight(Node q) throws NodeNotFoundException {
-		if(!q.value.equals(root.value)) {
-			Node p = q.left;
-			Node b = p.right;
-			
-			p.parent = q.parent;
-			if(q.parent.left != null && q.parent.left.value.equals(q.value))
-				q.parent.left = p;
-			else
-				q.parent.right = p;
-			p.right = q;
-			q.parent = p;
-			q.left = b;
-			if(b != null)
-				b.parent = q;
+	private void rotateRight(Node q) {
+		Node p = q.left;
+		Node b = p.right;
+		if(labeled) {
+			//p takes over the labels of q, q gets entered between the sub-trees of p and exited after its own right sub-tree
+			int enter = order.insertBefore(b != null ? b.enter : p.exit);
+			int exit = order.insertBefore(q.exit);
+			unlabel(p);
+			p.enter = q.enter;
+			p.exit = q.exit;
+			q.enter = enter;
+			q.exit = exit;
 		}
+		p.subtreeSize = q.subtreeSize;
+		q.subtreeSize -= 1 + sizeOf(p.left);
+		replaceChild(q, p);
+		p.right = q;
+		q.parent = p;
+		q.left = b;
+		if(b != null)
+			b.parent = q;
 	}
 	//http://upload.wikimedia.org/wikipedia/commons/2/23/Tree_rotation.png
-	private void rotateLeft(Node p) throws NodeNotFoundException {
-		if(!p.value.equals(root.value)) {
-			Node q = p.right;
-			Node b = q.left;
-			q.parent = p.parent;
-			if(p.parent.left != null && p.parent.left.value.equals(p.value)) 
-				p.parent.left = q;
-			else
-				p.parent.right = q;
-			q.left = p;
-			p.parent = q;
-			p.right = b;
-			if(b != null)
-				b.parent = p;
-		}
-	}
-	private Node uncle(Node child) throws NodeNotFoundException {
-		Node parentNode = child.parent;
-		Node grandParentNode;
-		if(parentNode != null)
-			grandParentNode = parentNode.parent;
+	private void rotateLeft(Node p) {
+		Node q = p.right;
+		Node b = q.left;
+		if(labeled) {
+			//q takes over the labels of p, p gets entered before its own left sub-tree and exited between the sub-trees of q
+			int enter = order.insertAfter(p.enter);
+			int exit = order.insertBefore(q.right != null ? q.right.enter : q.exit);
+			unlabel(q);
+			q.enter = p.enter;
+			q.exit = p.exit;
+			p.enter = enter;
+			p.exit = exit;
+		}
+		q.subtreeSize = p.subtreeSize;
+		p.subtreeSize -= 1 + sizeOf(q.right);
+		replaceChild(p, q);
+		q.left = p;
+		p.parent = q;
+		p.right = b;
+		if(b != null)
+			b.parent = p;
+	}
+	/**
+	 * Puts replacement in place of node under the parent of node, or as root if node is root
+	 */
+	private void replaceChild(Node node, Node replacement) {
+		Node parent = node.parent;
+		if(replacement != null)
+			replacement.parent = parent;
+		if(parent == null)
+			root = replacement;
+		else if(parent.left == node)
+			parent.left = replacement;
 		else
-			return null;
-		if(grandParentNode != null && grandParentNode.left != null) {
-			if(grandParentNode.left.value.equals(parentNode.value))
-				return grandParentNode.right;
-			else
-				return grandParentNode.left;
-		} else
-			return null;
+			parent.right = replacement;
 	}
 	/**
 	 * Unsupported Operation
@@ -201,12 +341,66 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 	public boolean add(E parent, E child) throws NodeNotFoundException {
 		throw new UnsupportedOperationException("A red-black tree determines parent of a child on its own and hence it is not possible to add the child to any given parent. Please use add(child)");
 	}
+	/**
+	 * Adds the values one by one if the collection is smaller than the tree. Otherwise the values are sorted, see 
+	 * {@link BulkLoad}, merged with the nodes present and the tree is built afresh, perfectly balanced, in O(n)
+	 * @see java.util.Collection#addAll(java.util.Collection)
+	 */
 	@Override
 	public boolean addAll(Collection<? extends E> c) {
-		boolean retVal = false;
-		for (Iterator<? extends E> iterator = c.iterator(); iterator.hasNext();)
-			retVal |= add(iterator.next());
-		return retVal;
+		if(c.size() < size) {
+			boolean retVal = false;
+			for (Iterator<? extends E> iterator = c.iterator(); iterator.hasNext();)
+				retVal |= add(iterator.next());
+			return retVal;
+		} else if(c.isEmpty())
+			return false;
+		int previousSize = size;
+		Object[] values = BulkLoad.sorted(c, true);
+		build(size == 0 ? values : BulkLoad.merge(inOrderView(), size, values, true));
+		return size != previousSize;
+	}
+	/**
+	 * Replaces the nodes by the sorted distinct values in O(n). The tree is perfectly balanced with every level black
+	 * but the deepest, which is red unless it holds the root alone, so every path holds as many black nodes
+	 */
+	private void build(Object[] values) {
+		size = values.length;
+		modCount++;
+		depth = 32 - Integer.numberOfLeadingZeros(size);
+		order.fill(2 * size);
+		labeled = true;
+		if(size == 0)
+			root = null;
+		else {
+			root = new Node();
+			build(root, values, 0, size - 1, 1, 1);
+		}
+	}
+	/**
+	 * Fills the node with the middle value from low to high and its sub-trees with the values around it
+	 * @param token next token of the order to hand out, the tokens being handed out in depth first order
+	 * @return next token to hand out once the sub-tree is built
+	 */
+	@SuppressWarnings("unchecked")
+	private int build(Node node, Object[] values, int low, int high, int level, int token) {
+		int middle = (low + high) >>> 1;
+		node.value = (E) values[middle];
+		node.color = level == depth && level > 1 ? COLOR.RED : COLOR.BLACK;
+		node.subtreeSize = high - low + 1;
+		node.enter = token++;
+		if(low < middle) {
+			node.left = new Node();
+			node.left.parent = node;
+			token = build(node.left, values, low, middle - 1, level + 1, token);
+		}
+		if(middle < high) {
+			node.right = new Node();
+			node.right.parent = node;
+			token = build(node.right, values, middle + 1, high, level + 1, token);
+		}
+		node.exit = token++;
+		return token;
 	}
 	/**
 	 * Unsupported Operation
@@ -234,7 +428,10 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 	@Override
 	public void clear() {
 		root = null;
+		order.clear();
+		labeled = true;
 		size = 0;
+		modCount++;
 		depth = 0;
 	}
 	@Override
@@ -243,8 +440,10 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 		BinaryRedBlackTree<E> clone = null;
 		try {
 			clone = (BinaryRedBlackTree<E>) super.clone();
+			clone.ancestorIndex = new AncestorIndex<E>();
 			clone.depth = this.depth;
 			clone.root = new Node();
+			clone.order = order.clone();
 			clone.size = this.size;
 			copy(clone.root, this.root);
 		} catch (CloneNotSupportedException e) {
@@ -261,6 +460,9 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 			}
 			cloneNode.value = node.value;
 			cloneNode.color = node.color;
+			cloneNode.enter = node.enter;
+			cloneNode.exit = node.exit;
+			cloneNode.subtreeSize = node.subtreeSize;
 			if(node.right != null) {
 				cloneNode.right = new Node();
 				cloneNode.right.parent = cloneNode;
@@ -271,7 +473,39 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 	public E commonAncestor(E node1, E node2) throws NodeNotFoundException {
 		checkNode(node1);
 		checkNode(node2);
-		return new TreeHelper().commonAncestor(this, node1, node2);
+		return ancestorIndex.commonAncestor(this, modCount, node1, node2);
+	}
+	@Override
+	public E ancestor(E node, int k) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.ancestor(this, modCount, node, k);
+	}
+	@Override
+	public int levelOf(E node) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.levelOf(this, modCount, node);
+	}
+	@Override
+	public Iterable<E> ancestors(E node) throws NodeNotFoundException {
+		checkNode(node);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().ancestors(node(root, node));
+	}
+	@Override
+	public int subtreeSize(E node) throws NodeNotFoundException {
+		checkNode(node);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for object");
+		return node(root, node).subtreeSize;
+	}
+	@Override
+	public int childCount(E node) throws NodeNotFoundException {
+		checkNode(node);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for object");
+		Node entry = node(root, node);
+		return (entry.left == null ? 0 : 1) + (entry.right == null ? 0 : 1);
 	}
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
@@ -297,29 +531,80 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 	}
 	@Override
 	public int depth() {
+		if(depth == 0)
+			depth = recalculateDepth();
 		return depth;
 	}
 	@Override
 	@Deprecated
 	public List<E> inorderOrderTraversal() {
-		return inOrderTraversal(root, new ArrayList<E>());
+		return inOrderTraversal();
 	}
 	@Override
 	public List<E> inOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return inOrderTraversal(root, new ArrayList<E>());
+		return new TreeHelper().toList(inOrderView(), size);
 	}
 	@Override
 	public boolean isAncestor(E node, E child) throws NodeNotFoundException {
 		checkNode(child);
-		return new TreeHelper().isAncestor(this, node, child);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for object");
+		Node childNode = node(root, child);
+		if(node == null)
+			return false;
+		try {
+			return isAncestor(node(root, node), childNode);
+		} catch (NodeNotFoundException e) {
+			return false;
+		}
 	}
 	@Override
 	public boolean isDescendant(E parent, E node) throws NodeNotFoundException {
 		checkNode(parent);
-		return new TreeHelper().isDescendant(this, parent, node);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for object");
+		Node parentNode = node(root, parent);
+		if(node == null)
+			return false;
+		return isAncestor(parentNode, node(root, node));
+	}
+	/**
+	 * @return true if ancestor is a proper ancestor of node
+	 */
+	private boolean isAncestor(Node ancestor, Node node) {
+		if(!labeled)
+			relabel();
+		return order.precedes(ancestor.enter, node.enter) && order.precedes(node.exit, ancestor.exit);
+	}
+	private void label(Node node, int enter) {
+		node.enter = enter;
+		node.exit = order.insertAfter(enter);
+	}
+	private void unlabel(Node node) {
+		order.remove(node.enter);
+		order.remove(node.exit);
+	}
+	/**
+	 * Labels all the nodes afresh in one depth first walk, in O(n)
+	 */
+	private void relabel() {
+		order.fill(2 * size);
+		if(root != null)
+			relabel(root, 1);
+		labeled = true;
+	}
+	/**
+	 * @param token next token of the order to hand out
+	 * @return next token to hand out once the sub-tree is labeled
+	 */
+	private int relabel(Node node, int token) {
+		node.enter = token++;
+		if(node.left != null)
+			token = relabel(node.left, token);
+		if(node.right != null)
+			token = relabel(node.right, token);
+		node.exit = token++;
+		return token;
 	}
 	@Override
 	public boolean isEmpty() {
@@ -327,33 +612,23 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 	}
 	@Override
 	public Iterator<E> iterator() {
-		return getCurrentList().iterator();
+		return inOrderView().iterator();
 	}
+	/**
+	 * Spliterator returns nodes in the same order as {@link #iterator()} and splits the tree at child boundaries
+	 * @see java.util.Collection#spliterator()
+	 */
 	@Override
-	public List<E> leaves() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return leaves(root, new ArrayList<E>());
+	public Spliterator<E> spliterator() {
+		return traversal().spliterator(size);
 	}
-	private List<E> leaves(Node node, ArrayList<E> list) {
-		if(node.left != null)
-			leaves(node.left, list);
-		if(node.left == null && node.right == null)
-			list.add(node.value);
-		if(node.right != null)
-			leaves(node.right, list);
-		return list;
+	@Override
+	public List<E> leaves() {
+		return new TreeHelper().toList(leavesView());
 	}
 	@Override
 	public List<E> levelOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else {
-			LinkedList<Node> queue = new LinkedList<Node>();
-			queue.add(root);
-			return levelOrderTraversal(new ArrayList<E>(), queue);
-		}
+		return new TreeHelper().toList(levelOrderView(), size);
 	}
 	@Override
 	public E parent(E e) throws NodeNotFoundException {
@@ -368,16 +643,77 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 	}
 	@Override
 	public List<E> postOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return postOrderTraversal(root, new ArrayList<E>());
+		return new TreeHelper().toList(postOrderView(), size);
 	}
 	public List<E> preOrderTraversal() {
+		return new TreeHelper().toList(preOrderView(), size);
+	}
+	@Override
+	public Iterable<E> preOrderView() {
+		return traversal().preOrder();
+	}
+	@Override
+	public Iterable<E> postOrderView() {
+		return traversal().postOrder();
+	}
+	@Override
+	public Iterable<E> inOrderView() {
+		return traversal().inOrder();
+	}
+	@Override
+	public Iterable<E> levelOrderView() {
+		return traversal().levelOrder();
+	}
+	@Override
+	public Iterable<E> leavesView() {
+		return traversal().leaves();
+	}
+	@Override
+	public E walk(TreeVisitor<? super E> visitor) {
 		if(isEmpty())
-			return new ArrayList<E>();
+			return null;
 		else
-			return preOrderTraversal(root, new ArrayList<E>());
+			return traversal().walk(root, null, visitor);
+	}
+	@Override
+	public E walk(E node, TreeVisitor<? super E> visitor) throws NodeNotFoundException {
+		checkNode(node);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for object");
+		Node start = node(root, node);
+		return traversal().walk(start, start.parent == null ? null : start.parent.value, visitor);
+	}
+	private NodeTraversal<E, Node> traversal() {
+		return new NodeTraversal<E, Node>() {
+			@Override
+			Node root() {
+				return root;
+			}
+			@Override
+			int childCount(Node node) {
+				return 2;
+			}
+			@Override
+			Node child(Node node, int position) {
+				return position == 0 ? node.left : node.right;
+			}
+			@Override
+			Node parent(Node node) {
+				return node.parent;
+			}
+			@Override
+			int subtreeSize(Node node) {
+				return node.subtreeSize;
+			}
+			@Override
+			E value(Node node) {
+				return node.value;
+			}
+			@Override
+			int modCount() {
+				return modCount;
+			}
+		};
 	}
 	@Override
 	public E successor(E value) throws NodeNotFoundException {
@@ -434,13 +770,426 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 			return null;//I am left most node, so there is no predecessor
 		}
 	}
+	@Override
+	public E floor(E e) {
+		checkNode(e);
+		return navigation().floor(e);
+	}
+	@Override
+	public E ceiling(E e) {
+		checkNode(e);
+		return navigation().ceiling(e);
+	}
+	@Override
+	public E higher(E e) {
+		checkNode(e);
+		return navigation().higher(e);
+	}
+	@Override
+	public E lower(E e) {
+		checkNode(e);
+		return navigation().lower(e);
+	}
+	@Override
+	public E first() {
+		if(isEmpty())
+			throw new NoSuchElementException();
+		return navigation().first();
+	}
+	@Override
+	public E last() {
+		if(isEmpty())
+			throw new NoSuchElementException();
+		return navigation().last();
+	}
+	@Override
+	public Iterable<E> subSet(E from, boolean fromInclusive, E to, boolean toInclusive) {
+		checkNode(from);
+		checkNode(to);
+		if(from.compareTo(to) > 0)
+			throw new IllegalArgumentException("from should not be greater than to");
+		return navigation().range(from, fromInclusive, to, toInclusive);
+	}
+	@Override
+	public Iterable<E> headSet(E to, boolean inclusive) {
+		checkNode(to);
+		return navigation().range(null, false, to, inclusive);
+	}
+	@Override
+	public Iterable<E> tailSet(E from, boolean inclusive) {
+		checkNode(from);
+		return navigation().range(from, inclusive, null, false);
+	}
+	@Override
+	public Iterator<E> descendingIterator() {
+		return navigation().descendingIterator();
+	}
+	private SearchNavigation<E, Node> navigation() {
+		return new SearchNavigation<E, Node>() {
+			@Override
+			Node root() {
+				return root;
+			}
+			@Override
+			Node left(Node node) {
+				return node.left;
+			}
+			@Override
+			Node right(Node node) {
+				return node.right;
+			}
+			@Override
+			Node parent(Node node) {
+				return node.parent;
+			}
+			@Override
+			E value(Node node) {
+				return node.value;
+			}
+			@Override
+			int modCount() {
+				return modCount;
+			}
+		};
+	}
+	/**
+	 * Descends from the root adding up the sizes of the left sub-trees passed by, in O(log n)
+	 * @param value value which need not be present in the tree
+	 * @return number of values in the tree less than the value, which is the index of the value in sorted order if present
+	 */
+	public int rank(E value) {
+		checkNode(value);
+		int rank = 0;
+		Node node = root;
+		while(node != null) {
+			int comparison = value.compareTo(node.value);
+			if(comparison < 0)
+				node = node.left;
+			else if(comparison > 0) {
+				rank += sizeOf(node.left) + 1;
+				node = node.right;
+			} else
+				return rank + sizeOf(node.left);
+		}
+		return rank;
+	}
+	/**
+	 * @param k index in sorted order starting from 0
+	 * @return the value at the index, in O(log n)
+	 * @throws IndexOutOfBoundsException if k is negative or not less than size of the tree
+	 */
+	public E select(int k) {
+		if(k < 0 || k >= size)
+			throw new IndexOutOfBoundsException("Index: " + k + ", Size: " + size);
+		Node node = root;
+		while(true) {
+			int left = sizeOf(node.left);
+			if(k < left)
+				node = node.left;
+			else if(k > left) {
+				k -= left + 1;
+				node = node.right;
+			} else
+				return node.value;
+		}
+	}
+	/**
+	 * @param from lower end of the range, inclusive
+	 * @param to upper end of the range, exclusive
+	 * @return number of values in the tree from from up to to
+	 * @throws IllegalArgumentException if from is greater than to
+	 */
+	public int countInRange(E from, E to) {
+		checkNode(from);
+		checkNode(to);
+		if(from.compareTo(to) > 0)
+			throw new IllegalArgumentException("from is greater than to");
+		return rank(to) - rank(from);
+	}
+	/**
+	 * Finds the percentile by nearest rank i.e. the smallest value which has at least the percentile of the values at 
+	 * or below it
+	 * @param percentile between 0 and 100, 0 giving the smallest value
+	 * @return the value at the percentile, in O(log n)
+	 * @throws IllegalArgumentException if percentile is not between 0 and 100
+	 * @throws NoSuchElementException if the tree is empty
+	 */
+	public E percentile(double percentile) {
+		if(!(percentile >= 0 && percentile <= 100))
+			throw new IllegalArgumentException("percentile should be between 0 and 100");
+		if(size == 0)
+			throw new NoSuchElementException();
+		return select(Math.max(0, (int) Math.ceil(percentile * size / 100) - 1));
+	}
+	/**
+	 * Moves the values greater than or equal to the key into a new tree, this tree keeping the values less than the 
+	 * key. Costs O(log n) as whole sub-trees are moved, see {@link #join}
+	 * @param key value which need not be present in the tree
+	 * @return tree of the values greater than or equal to the key
+	 */
+	public BinaryRedBlackTree<E> split(E key) {
+		checkNode(key);
+		Split split = split(part(root), key);
+		BinaryRedBlackTree<E> greater = new BinaryRedBlackTree<E>();
+		greater.reset(split.found == null ? split.right : join(EMPTY, split.found, split.right));
+		reset(split.left);
+		return greater;
+	}
+	/**
+	 * Joins the trees around the key into a new tree in O(log n), following the join based algorithms of Blelloch et 
+	 * al, "Just Join for Parallel Ordered Sets". The taller tree is descended along its spine until a sub-tree of the 
+	 * same black height as the other tree is found, the two get hung below a red key node there and the red-black 
+	 * properties are mended on the way back. Both trees are left empty
+	 * @throws IllegalArgumentException if a value of left is not less than the key or a value of right is not greater
+	 */
+	public static <E extends Comparable<E>> BinaryRedBlackTree<E> join(BinaryRedBlackTree<E> left, E key, BinaryRedBlackTree<E> right) {
+		left.checkNode(key);
+		if((!left.isEmpty() && left.last().compareTo(key) >= 0) || (!right.isEmpty() && right.first().compareTo(key) <= 0))
+			throw new IllegalArgumentException("values of left should be less than the key and values of right greater");
+		BinaryRedBlackTree<E> joined = new BinaryRedBlackTree<E>();
+		BinaryRedBlackTree<E>.Node node = joined.new Node();
+		node.value = key;
+		joined.reset(joined.join(left.part(left.root), node, right.part(right.root)));
+		left.clear();
+		right.clear();
+		return joined;
+	}
+	/**
+	 * Adds the values of other to this tree in O(m log(n / m + 1)) for trees of sizes m &lt;= n. A value present in
+	 * both trees is replaced by the one of other, as {@link #add(Comparable)} does. Nodes of other are moved into this 
+	 * tree, so other is left empty
+	 */
+	public void union(BinaryRedBlackTree<E> other) {
+		combine(other, Operation.UNION, false);
+	}
+	/**
+	 * Keeps the values which are present in other as well in O(m log(n / m + 1)) for trees of sizes m &lt;= n. Other 
+	 * is left empty
+	 */
+	public void intersection(BinaryRedBlackTree<E> other) {
+		combine(other, Operation.INTERSECTION, false);
+	}
+	/**
+	 * Removes the values which are present in other in O(m log(n / m + 1)) for trees of sizes m &lt;= n. Other is 
+	 * left empty
+	 */
+	public void difference(BinaryRedBlackTree<E> other) {
+		combine(other, Operation.DIFFERENCE, false);
+	}
+	/**
+	 * Same as {@link #union(BinaryRedBlackTree)}, the two halves of large trees being worked upon in parallel in the
+	 * common {@link ForkJoinPool}
+	 */
+	public void parallelUnion(BinaryRedBlackTree<E> other) {
+		combine(other, Operation.UNION, true);
+	}
+	/**
+	 * Same as {@link #intersection(BinaryRedBlackTree)}, the two halves of large trees being worked upon in parallel
+	 * in the common {@link ForkJoinPool}
+	 */
+	public void parallelIntersection(BinaryRedBlackTree<E> other) {
+		combine(other, Operation.INTERSECTION, true);
+	}
+	/**
+	 * Same as {@link #difference(BinaryRedBlackTree)}, the two halves of large trees being worked upon in parallel in
+	 * the common {@link ForkJoinPool}
+	 */
+	public void parallelDifference(BinaryRedBlackTree<E> other) {
+		combine(other, Operation.DIFFERENCE, true);
+	}
+	private void combine(BinaryRedBlackTree<E> other, Operation operation, boolean parallel) {
+		if(other == this) {
+			if(operation == Operation.DIFFERENCE)
+				clear();
+			return;
+		}
+		SetOperation task = new SetOperation(operation, part(root), other.part(other.root), parallel);
+		reset(parallel ? ForkJoinPool.commonPool().invoke(task) : task.compute());
+		other.clear();
+	}
+	/**
+	 * Takes the part as the whole tree, labels being left to be rebuilt when asked for
+	 */
+	private void reset(Part part) {
+		root = part.root;
+		if(root != null) {
+			root.parent = null;
+			root.color = COLOR.BLACK;
+		}
+		size = sizeOf(root);
+		modCount++;
+		depth = 0;
+		labeled = false;
+	}
+	/**
+	 * @return the sub-tree with its black height, counted along the left spine
+	 */
+	private Part part(Node node) {
+		int blackHeight = 0;
+		for(Node n = node; n != null; n = n.left)
+			if(n.color == COLOR.BLACK)
+				blackHeight++;
+		return new Part(node, blackHeight);
+	}
+	/**
+	 * @return the sub-trees of the root detached from it, the root being found
+	 */
+	private Split expose(Part part) {
+		Node node = part.root;
+		int blackHeight = part.blackHeight - (isRed(node) ? 0 : 1);
+		if(node.left != null)
+			node.left.parent = null;
+		if(node.right != null)
+			node.right.parent = null;
+		return new Split(new Part(node.left, blackHeight), new Part(node.right, blackHeight), node);
+	}
+	private Split split(Part part, E key) {
+		if(part.root == null)
+			return new Split(EMPTY, EMPTY, null);
+		Split children = expose(part);
+		Node node = children.found;
+		int comparison = key.compareTo(node.value);
+		if(comparison == 0)
+			return children;
+		else if(comparison < 0) {
+			Split split = split(children.left, key);
+			return new Split(split.left, join(split.right, node, children.right), split.found);
+		} else {
+			Split split = split(children.right, key);
+			return new Split(join(children.left, node, split.left), split.right, split.found);
+		}
+	}
+	/**
+	 * Every value of left should be less than the key and every value of right greater. Costs O(difference of the 
+	 * black heights + 1)
+	 * @return tree of the values of left, the key and the values of right, its root possibly red
+	 */
+	private Part join(Part left, Node key, Part right) {
+		Node l = left.root, r = right.root;
+		int leftHeight = left.blackHeight, rightHeight = right.blackHeight;
+		if(isRed(l)) {
+			l.color = COLOR.BLACK;
+			leftHeight++;
+		}
+		if(isRed(r)) {
+			r.color = COLOR.BLACK;
+			rightHeight++;
+		}
+		Node joined;
+		if(leftHeight > rightHeight)
+			joined = joinRight(l, leftHeight, key, r, rightHeight);
+		else if(rightHeight > leftHeight)
+			joined = joinLeft(l, leftHeight, key, r, rightHeight);
+		else
+			joined = link(l, key, r, COLOR.RED);
+		joined.parent = null;
+		return new Part(joined, Math.max(leftHeight, rightHeight));
+	}
+	/**
+	 * Descends the right spine of the taller left tree, whose root is black
+	 */
+	private Node joinRight(Node l, int leftHeight, Node key, Node r, int rightHeight) {
+		if(!isRed(l) && leftHeight == rightHeight)
+			return link(l, key, r, COLOR.RED);
+		Node right = joinRight(l.right, leftHeight - (isRed(l) ? 0 : 1), key, r, rightHeight);
+		l.right = right;
+		right.parent = l;
+		l.subtreeSize = 1 + sizeOf(l.left) + right.subtreeSize;
+		if(!isRed(l) && isRed(right) && isRed(right.right)) {
+			right.right.color = COLOR.BLACK;
+			return rotatedLeft(l);
+		}
+		return l;
+	}
+	/**
+	 * Descends the left spine of the taller right tree, whose root is black
+	 */
+	private Node joinLeft(Node l, int leftHeight, Node key, Node r, int rightHeight) {
+		if(!isRed(r) && leftHeight == rightHeight)
+			return link(l, key, r, COLOR.RED);
+		Node left = joinLeft(l, leftHeight, key, r.left, rightHeight - (isRed(r) ? 0 : 1));
+		r.left = left;
+		left.parent = r;
+		r.subtreeSize = 1 + left.subtreeSize + sizeOf(r.right);
+		if(!isRed(r) && isRed(left) && isRed(left.left)) {
+			left.left.color = COLOR.BLACK;
+			return rotatedRight(r);
+		}
+		return r;
+	}
+	/**
+	 * Joins two trees without a key in between, taking the greatest value of left as the key
+	 */
+	private Part join(Part left, Part right) {
+		if(left.root == null)
+			return right;
+		else if(right.root == null)
+			return left;
+		Split split = splitLast(left);
+		return join(split.left, split.found, right);
+	}
+	/**
+	 * @return the tree without its greatest value as the left part and the node of the greatest value as found
+	 */
+	private Split splitLast(Part part) {
+		Split children = expose(part);
+		if(children.right.root == null)
+			return new Split(children.left, null, children.found);
+		Split split = splitLast(children.right);
+		return new Split(join(children.left, children.found, split.left), null, split.found);
+	}
+	private Node link(Node left, Node key, Node right, COLOR color) {
+		key.left = left;
+		key.right = right;
+		key.color = color;
+		if(left != null)
+			left.parent = key;
+		if(right != null)
+			right.parent = key;
+		key.subtreeSize = 1 + sizeOf(left) + sizeOf(right);
+		return key;
+	}
+	/**
+	 * Rotation of a detached sub-tree, the labels being rebuilt later
+	 * @return new root of the sub-tree
+	 */
+	private Node rotatedLeft(Node p) {
+		Node q = p.right;
+		Node b = q.left;
+		q.subtreeSize = p.subtreeSize;
+		p.subtreeSize -= 1 + sizeOf(q.right);
+		q.parent = p.parent;
+		q.left = p;
+		p.parent = q;
+		p.right = b;
+		if(b != null)
+			b.parent = p;
+		return q;
+	}
+	/**
+	 * Rotation of a detached sub-tree, the labels being rebuilt later
+	 * @return new root of the sub-tree
+	 */
+	private Node rotatedRight(Node q) {
+		Node p = q.left;
+		Node b = p.right;
+		p.subtreeSize = q.subtreeSize;
+		q.subtreeSize -= 1 + sizeOf(p.left);
+		p.parent = q.parent;
+		p.right = q;
+		q.parent = p;
+		q.left = b;
+		if(b != null)
+			b.parent = q;
+		return p;
+	}
 	private boolean remove(Node node) {
 		try {
 			
 			if(node.left != null && node.right != null)
 				deferDelete(node);
 			else
-				deleteCaseLeaf(node);
+				deleteNode(node);
 		} catch (NodeNotFoundException e) {
 			e.printStackTrace();
 			return false;
@@ -461,7 +1210,8 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 				node = searchTree(root, o);
 			boolean remove = remove(node);
 			size--;
-			depth = recalculateDepth(root, 0);
+			modCount++;
+			depth = 0;
 			return remove;
 		} catch (NodeNotFoundException e) {
 			return false;
@@ -483,26 +1233,23 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 		else
 			return null;
 	}
-	private void deleteCaseLeaf(Node node) throws NodeNotFoundException {
-		if(node.left == null && node.right == null) {
-			if(node.parent.left != null && node.parent.left == node)
-				node.parent.left = null;
-			else
-				node.parent.right = null;
-			node = null;
-		} else
-			deleteCaseRedNode(node);
-	}
-	private void deleteCaseRedNode(Node node) throws NodeNotFoundException {
-		if(node.color == COLOR.RED) {
-			Node child = node.left != null ? node.left : node.right;
-			child.parent = node.parent;
-			if(node.parent.left != null && node.parent.left.value.equals(node.value))
-				node.parent.left = child;
+	/**
+	 * Removes a node which has at most one child and restores the red-black properties
+	 */
+	private void deleteNode(Node node) {
+		Node child = node.left != null ? node.left : node.right;
+		Node parent = node.parent;
+		replaceChild(node, child);
+		if(labeled)
+			unlabel(node);
+		for(Node ancestor = parent; ancestor != null; ancestor = ancestor.parent)
+			ancestor.subtreeSize--;
+		if(node.color == COLOR.BLACK) {
+			if(isRed(child))
+				child.color = COLOR.BLACK;
 			else
-				node.parent.right = child;
-		} else
-			deleteCase0(node);
+				mendAfterDelete(child, parent);
+		}
 	}
 	/** For testing
 	 * @param o
@@ -516,88 +1263,65 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 		else
 			node.color = COLOR.BLACK;
 	}
-	//Assuming there is only one non-leaf children attached to node
-	private void deleteCase0(Node node) throws NodeNotFoundException {
-		if(node.color == COLOR.BLACK) {
-			Node child = node.left != null ? node.left : node.right;
-			child.parent = node.parent;
-			if(node.parent.left != null && node.parent.left.value.equals(node.value))
-				node.parent.left = child;
-			else
-				node.parent.right = child;
-			if(child.color == COLOR.RED)
-				child.color = COLOR.BLACK;
-			else
-				deleteCase1(child);
-		}
-	}
-	private void deleteCase1(Node node) throws NodeNotFoundException {
-		if(!node.value.equals(root.value))
-			deleteCase2(node);
-	}
-	private void deleteCase2(Node node) throws NodeNotFoundException {
-		Node sibling = (node.parent.left != null && node.parent.left.value.equals(node.value)) ? 
-				node.parent.right 
-				: node.parent.left;
-		if(sibling.color == COLOR.RED) {
-			node.parent.color = COLOR.RED;
-			sibling.color = COLOR.RED;
-			if(node.parent.left != null && node.value.equals(node.parent.left.value))
-				rotateLeft(node.parent);
-			else
-				rotateRight(node.parent);
-		} else
-			deleteCase3(node, sibling, node.parent);
-	}
-	private void deleteCase3(Node node, Node sibling, Node parent) throws NodeNotFoundException {
-		Node left = sibling.left;
-		Node right = sibling.right;
-		if(parent.color == COLOR.BLACK && sibling.color == COLOR.BLACK &&
-				(left == null || left.color == COLOR.BLACK) &&
-				(right == null || right.color == COLOR.BLACK)) {
-			sibling.color = COLOR.RED;
-			deleteCase1(parent);
-		} else
-			deleteCase4(node, sibling, parent, left, right);
-	}
-	private void deleteCase4(Node node, Node sibling, Node parent, Node left, Node right) throws NodeNotFoundException {
-		if(parent.color == COLOR.RED &&
-				sibling.color == COLOR.BLACK &&
-				(left == null || left.color == COLOR.BLACK) &&
-				(right == null || right.color == COLOR.BLACK)) {
-			sibling.color = COLOR.RED;
-			parent.color = COLOR.BLACK;
-		} else
-			deleteCase5(node, sibling, parent, left, right);
-	}
-	private void deleteCase5(Node node, Node sibling, Node parent, Node left, Node right) throws NodeNotFoundException {
-		if(sibling.color == COLOR.BLACK) {
-			if(parent.left != null && parent.left.value.equals(node.value) &&
-					(left.color == COLOR.RED) &&
-					(right == null || right.color == COLOR.BLACK)) {
-				sibling.color = COLOR.RED;
-				left.color = COLOR.BLACK;
-				rotateRight(sibling);
-			} else if(parent.right != null && parent.right.value.equals(node.value) &&
-					(left == null || left.color == COLOR.BLACK) &&
-					right.color == COLOR.RED) {
-				sibling.color = COLOR.RED;
-				right.color = COLOR.BLACK;
-				rotateLeft(sibling);
+	/**
+	 * Fixes the missing black node on the path through node, which may be null, hence its parent is passed along
+	 */
+	private void mendAfterDelete(Node node, Node parent) {
+		while(node != root && !isRed(node)) {
+			if(node == parent.left) {
+				Node sibling = parent.right;
+				if(isRed(sibling)) {
+					sibling.color = COLOR.BLACK;
+					parent.color = COLOR.RED;
+					rotateLeft(parent);
+					sibling = parent.right;
+				}
+				if(!isRed(sibling.left) && !isRed(sibling.right)) {
+					sibling.color = COLOR.RED;
+					node = parent;
+					parent = node.parent;
+				} else {
+					if(!isRed(sibling.right)) {
+						sibling.left.color = COLOR.BLACK;
+						sibling.color = COLOR.RED;
+						rotateRight(sibling);
+						sibling = parent.right;
+					}
+					sibling.color = parent.color;
+					parent.color = COLOR.BLACK;
+					sibling.right.color = COLOR.BLACK;
+					rotateLeft(parent);
+					node = root;
+				}
+			} else {
+				Node sibling = parent.left;
+				if(isRed(sibling)) {
+					sibling.color = COLOR.BLACK;
+					parent.color = COLOR.RED;
+					rotateRight(parent);
+					sibling = parent.left;
+				}
+				if(!isRed(sibling.left) && !isRed(sibling.right)) {
+					sibling.color = COLOR.RED;
+					node = parent;
+					parent = node.parent;
+				} else {
+					if(!isRed(sibling.left)) {
+						sibling.right.color = COLOR.BLACK;
+						sibling.color = COLOR.RED;
+						rotateLeft(sibling);
+						sibling = parent.left;
+					}
+					sibling.color = parent.color;
+					parent.color = COLOR.BLACK;
+					sibling.left.color = COLOR.BLACK;
+					rotateRight(parent);
+					node = root;
+				}
 			}
 		}
-		deleteCase6(node, sibling, parent, left, right);
-	}
-	private void deleteCase6(Node node, Node sibling, Node parent, Node left, Node right) throws NodeNotFoundException {
-		sibling.color = parent.color;
-		parent.color = COLOR.BLACK;
-		if(parent.left != null && node.value.equals(parent.left.value)) {
-			right.color = COLOR.BLACK;
-			rotateLeft(parent);
-		} else {
-			left.color = COLOR.BLACK;
-			rotateRight(parent);
-		}
+		if(node != null)
+			node.color = COLOR.BLACK;
 	}
 	private void deferDelete(Node node) throws NodeNotFoundException {
 		Node nodeToReplace;
@@ -664,18 +1388,29 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 		childNode.parent = parentNode;
 		childNode.color = COLOR.RED;
 		childNode.value = child;
-		if(parentNode.value.compareTo(child) < 0)
+		//labels of a left sub-tree are kept before those of the right one, which the rotations rely upon
+		if(parentNode.value.compareTo(child) < 0) {
 			parentNode.right = childNode;
-		else
+			if(labeled)
+				label(childNode, order.insertBefore(parentNode.exit));
+		} else {
 			parentNode.left = childNode;
+			if(labeled)
+				label(childNode, order.insertAfter(parentNode.enter));
+		}
+		for(Node node = parentNode; node != null; node = node.parent)
+			node.subtreeSize++;
 		return childNode;
 	}
 	private void addRoot(E child) {
 		root = new Node();
 		root.value = child;
 		root.color = COLOR.BLACK;
+		if(labeled)
+			label(root, order.insertAfter(OrderList.HEAD));
 		size++;
-		depth++;
+		modCount++;
+		depth = 1;
 	}
 
 	private void checkNode(Object child) {
@@ -686,50 +1421,24 @@ public class BinaryRedBlackTree<E extends Comparable<E>> implements SortedTree<E
 	private List<E> getCurrentList() {
 		return inOrderTraversal();
 	}
-	private List<E> inOrderTraversal(Node node, ArrayList<E> list) {
-		if(node.left != null)
-			inOrderTraversal(node.left, list);
-		list.add(node.value);
-		if(node.right != null)
-			inOrderTraversal(node.right, list);
-		return list;
-	}
-	private List<E> levelOrderTraversal(ArrayList<E> list, LinkedList<Node> queue) {
-		while(!queue.isEmpty()) {
-			list.add(queue.getFirst().value);
-			if(queue.getFirst().left != null)
-				queue.add(queue.getFirst().left);
-			if(queue.getFirst().right != null)
-				queue.add(queue.getFirst().right);
-			queue.remove();
-		}
-		return list;
-	}
-	private List<E> postOrderTraversal(Node node, ArrayList<E> list) {
-		if(node.left != null)
-			postOrderTraversal(node.left, list);
-		if(node.right != null)
-			postOrderTraversal(node.right, list);
-		list.add(node.value);
-		return list;
-	}
-	private List<E> preOrderTraversal(Node node, ArrayList<E> list) {
-		list.add(node.value);
-		if(node.left != null)
-			preOrderTraversal(node.left, list);
-		if(node.right != null)
-			preOrderTraversal(node.right, list);
-		return list;
-	}
-	private int recalculateDepth(Node node, int depth) {
-		int childDepth = depth + 1;
-		if(node.left == null && node.right == null)
-			return childDepth;
-		else {
-			if(node.left != null)
-				depth = Math.max(depth, recalculateDepth(node.left, childDepth));
-			if(node.right != null)
-				depth = Math.max(depth, recalculateDepth(node.right, childDepth));
+	private int recalculateDepth() {
+		int depth = 0;
+		ArrayList<Node> level = new ArrayList<Node>();
+		ArrayList<Node> nextLevel = new ArrayList<Node>();
+		if(root != null)
+			level.add(root);
+		while(!level.isEmpty()) {
+			depth++;
+			nextLevel.clear();
+			for(Node node : level) {
+				if(node.left != null)
+					nextLevel.add(node.left);
+				if(node.right != null)
+					nextLevel.add(node.right);
+			}
+			ArrayList<Node> swap = level;
+			level = nextLevel;
+			nextLevel = swap;
 		}
 		return depth;
 	}
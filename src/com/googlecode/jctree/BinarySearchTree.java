@@ -17,10 +17,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
 
-import org.testng.annotations.Test;
 
 /**
  * Implements traditional BST as left-right-parent links of a node. This gives log(n) complexity for operations unlike {@link ArrayListBinarySearchTree}.
@@ -34,10 +34,40 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 		left,
 		right;
 		E value;
+		/**
+		 * Tokens in the order of the tree at which a depth first walk enters and exits the node
+		 */
+		int enter, exit;
+		/**
+		 * Number of nodes in the sub-tree rooted at the node
+		 */
+		int subtreeSize = 1;
 	}
 	private int size = 0;
+	/**
+	 * Height of the tree measured when it was last asked for, 0 if the tree has been modified since then
+	 */
 	private int depth = 0;
+	/**
+	 * Counts structural modifications so that traversal views fail fast
+	 */
+	private int modCount = 0;
+	private AncestorIndex<E> ancestorIndex = new AncestorIndex<E>();
+	/**
+	 * Holds the tokens at which a depth first walk enters and exits every node, see {@link IntervalLabels}
+	 */
+	private OrderList order = new OrderList();
 	private Node root;
+
+	public BinarySearchTree() {
+	}
+	/**
+	 * Builds the tree from the values in O(n) if they are sorted and in O(n log(n)) otherwise
+	 * @see #addAll(Collection)
+	 */
+	public BinarySearchTree(Collection<? extends E> c) {
+		addAll(c);
+	}
 	/** 
 	 * A binary search tree determines parent of a child on its own and hence it is not possible to add the child to any given parent. Please use add(child)
 	 * The method throws {@link UnsupportedOperationException}
@@ -79,16 +109,71 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 			parent.left = childNode;
 		else
 			parent.right = childNode;
+		label(childNode, order.insertBefore(parent.exit));
+		for(Node node = parent; node != null; node = node.parent)
+			node.subtreeSize++;
 		size++;
-		depth = recalculateDepth(root, 0);
+		modCount++;
+		depth = 0;
 	}
 
+	/**
+	 * Adds the values one by one if the collection is smaller than the tree. Otherwise the values are sorted, see 
+	 * {@link BulkLoad}, merged with the nodes present and the tree is built afresh, perfectly balanced, in O(n)
+	 * @see java.util.Collection#addAll(java.util.Collection)
+	 */
 	@Override
 	public boolean addAll(Collection<? extends E> c) {
-		boolean retVal = false;
-		for (Iterator<? extends E> iterator = c.iterator(); iterator.hasNext();)
-			retVal |= add(iterator.next());
-		return retVal;
+		if(c.size() < size) {
+			boolean retVal = false;
+			for (Iterator<? extends E> iterator = c.iterator(); iterator.hasNext();)
+				retVal |= add(iterator.next());
+			return retVal;
+		} else if(c.isEmpty())
+			return false;
+		int previousSize = size;
+		Object[] values = BulkLoad.sorted(c, false);
+		build(size == 0 ? values : BulkLoad.merge(inOrderView(), size, values, false));
+		return size != previousSize;
+	}
+	/**
+	 * Replaces the nodes by the sorted distinct values in O(n), the tree being perfectly balanced
+	 */
+	private void build(Object[] values) {
+		size = values.length;
+		modCount++;
+		depth = 32 - Integer.numberOfLeadingZeros(size);
+		order.fill(2 * size);
+		if(size == 0)
+			root = null;
+		else {
+			root = new Node();
+			build(root, values, 0, size - 1, 1);
+		}
+	}
+	/**
+	 * Fills the node with the middle value from low to high and its sub-trees with the values around it
+	 * @param token next token of the order to hand out, the tokens being handed out in depth first order
+	 * @return next token to hand out once the sub-tree is built
+	 */
+	@SuppressWarnings("unchecked")
+	private int build(Node node, Object[] values, int low, int high, int token) {
+		int middle = (low + high) >>> 1;
+		node.value = (E) values[middle];
+		node.subtreeSize = high - low + 1;
+		node.enter = token++;
+		if(low < middle) {
+			node.left = new Node();
+			node.left.parent = node;
+			token = build(node.left, values, low, middle - 1, token);
+		}
+		if(middle < high) {
+			node.right = new Node();
+			node.right.parent = node;
+			token = build(node.right, values, middle + 1, high, token);
+		}
+		node.exit = token++;
+		return token;
 	}
 	@Override
 	public boolean addAll(E parent, Collection<? extends E> c) {
@@ -134,7 +219,9 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 	@Override
 	public void clear() {
 		root = null;
+		order.clear();
 		size = 0;
+		modCount++;
 		depth = 0;
 	}
 	@Override
@@ -143,8 +230,10 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 		BinarySearchTree<E> clone = null;
 		try {
 			clone = (BinarySearchTree<E>) super.clone();
+			clone.ancestorIndex = new AncestorIndex<E>();
 			clone.depth = this.depth;
 			clone.root = new Node();
+			clone.order = order.clone();
 			clone.size = this.size;
 			copy(clone.root, this.root);
 		} catch (CloneNotSupportedException e) {
@@ -160,6 +249,9 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 			copy(cloneNode.left, node.left);
 		}
 		cloneNode.value = node.value;
+		cloneNode.enter = node.enter;
+		cloneNode.exit = node.exit;
+		cloneNode.subtreeSize = node.subtreeSize;
 		if(node.right != null) {
 			cloneNode.right = new Node();
 			cloneNode.right.parent = cloneNode;
@@ -170,7 +262,39 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 	public E commonAncestor(E node1, E node2) throws NodeNotFoundException {
 		checkNode(node1);
 		checkNode(node2);
-		return new TreeHelper().commonAncestor(this, node1, node2);
+		return ancestorIndex.commonAncestor(this, modCount, node1, node2);
+	}
+	@Override
+	public E ancestor(E node, int k) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.ancestor(this, modCount, node, k);
+	}
+	@Override
+	public int levelOf(E node) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.levelOf(this, modCount, node);
+	}
+	@Override
+	public Iterable<E> ancestors(E node) throws NodeNotFoundException {
+		checkNode(node);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().ancestors(node(root, node));
+	}
+	@Override
+	public int subtreeSize(E node) throws NodeNotFoundException {
+		checkNode(node);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for object");
+		return node(root, node).subtreeSize;
+	}
+	@Override
+	public int childCount(E node) throws NodeNotFoundException {
+		checkNode(node);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for object");
+		Node entry = node(root, node);
+		return (entry.left == null ? 0 : 1) + (entry.right == null ? 0 : 1);
 	}
 	@SuppressWarnings("unchecked")
 	@Override
@@ -196,29 +320,56 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 	}
 	@Override
 	public int depth() {
+		if(depth == 0)
+			depth = recalculateDepth();
 		return depth;
 	}
 	@Override
 	@Deprecated
 	public List<E> inorderOrderTraversal() {
-		return inOrderTraversal(root, new ArrayList<E>());
+		return inOrderTraversal();
 	}
 	@Override
 	public List<E> inOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return inOrderTraversal(root, new ArrayList<E>());
+		return new TreeHelper().toList(inOrderView(), size);
 	}
 	@Override
 	public boolean isAncestor(E node, E child) throws NodeNotFoundException {
 		checkNode(child);
-		return new TreeHelper().isAncestor(this, node, child);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for object");
+		Node childNode = node(root, child);
+		if(node == null)
+			return false;
+		try {
+			return isAncestor(node(root, node), childNode);
+		} catch (NodeNotFoundException e) {
+			return false;
+		}
 	}
 	@Override
 	public boolean isDescendant(E parent, E node) throws NodeNotFoundException {
 		checkNode(parent);
-		return new TreeHelper().isDescendant(this, parent, node);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for object");
+		Node parentNode = node(root, parent);
+		if(node == null)
+			return false;
+		return isAncestor(parentNode, node(root, node));
+	}
+	/**
+	 * @return true if ancestor is a proper ancestor of node
+	 */
+	private boolean isAncestor(Node ancestor, Node node) {
+		return order.precedes(ancestor.enter, node.enter) && order.precedes(node.exit, ancestor.exit);
+	}
+	private void label(Node node, int enter) {
+		node.enter = enter;
+		node.exit = order.insertAfter(enter);
+	}
+	private void unlabel(Node node) {
+		order.remove(node.enter);
+		order.remove(node.exit);
 	}
 	@Override
 	public boolean isEmpty() {
@@ -226,33 +377,23 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 	}
 	@Override
 	public Iterator<E> iterator() {
-		return getCurrentList().iterator();
+		return inOrderView().iterator();
 	}
+	/**
+	 * Spliterator returns nodes in the same order as {@link #iterator()} and splits the tree at child boundaries
+	 * @see java.util.Collection#spliterator()
+	 */
 	@Override
-	public List<E> leaves() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return leaves(root, new ArrayList<E>());
+	public Spliterator<E> spliterator() {
+		return traversal().spliterator(size);
 	}
-	private List<E> leaves(Node node, ArrayList<E> list) {
-		if(node.left != null)
-			leaves(node.left, list);
-		if(node.left == null && node.right == null)
-			list.add(node.value);
-		if(node.right != null)
-			leaves(node.right, list);
-		return list;
+	@Override
+	public List<E> leaves() {
+		return new TreeHelper().toList(leavesView());
 	}
 	@Override
 	public List<E> levelOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else {
-			LinkedList<Node> queue = new LinkedList<Node>();
-			queue.add(root);
-			return levelOrderTraversal(new ArrayList<E>(), queue);
-		}
+		return new TreeHelper().toList(levelOrderView(), size);
 	}
 	@Override
 	public E parent(E e) throws NodeNotFoundException {
@@ -269,16 +410,77 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 	}
 	@Override
 	public List<E> postOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return postOrderTraversal(root, new ArrayList<E>());
+		return new TreeHelper().toList(postOrderView(), size);
 	}
 	public List<E> preOrderTraversal() {
+		return new TreeHelper().toList(preOrderView(), size);
+	}
+	@Override
+	public Iterable<E> preOrderView() {
+		return traversal().preOrder();
+	}
+	@Override
+	public Iterable<E> postOrderView() {
+		return traversal().postOrder();
+	}
+	@Override
+	public Iterable<E> inOrderView() {
+		return traversal().inOrder();
+	}
+	@Override
+	public Iterable<E> levelOrderView() {
+		return traversal().levelOrder();
+	}
+	@Override
+	public Iterable<E> leavesView() {
+		return traversal().leaves();
+	}
+	@Override
+	public E walk(TreeVisitor<? super E> visitor) {
 		if(isEmpty())
-			return new ArrayList<E>();
+			return null;
 		else
-			return preOrderTraversal(root, new ArrayList<E>());
+			return traversal().walk(root, null, visitor);
+	}
+	@Override
+	public E walk(E node, TreeVisitor<? super E> visitor) throws NodeNotFoundException {
+		checkNode(node);
+		if(isEmpty())
+			throw new NodeNotFoundException("No node was found for the parameter");
+		Node start = node(root, node);
+		return traversal().walk(start, start.parent == null ? null : start.parent.value, visitor);
+	}
+	private NodeTraversal<E, Node> traversal() {
+		return new NodeTraversal<E, Node>() {
+			@Override
+			Node root() {
+				return root;
+			}
+			@Override
+			int childCount(Node node) {
+				return 2;
+			}
+			@Override
+			Node child(Node node, int position) {
+				return position == 0 ? node.left : node.right;
+			}
+			@Override
+			Node parent(Node node) {
+				return node.parent;
+			}
+			@Override
+			int subtreeSize(Node node) {
+				return node.subtreeSize;
+			}
+			@Override
+			E value(Node node) {
+				return node.value;
+			}
+			@Override
+			int modCount() {
+				return modCount;
+			}
+		};
 	}
 	/**
 	 * Deletes node as mentioned in <a href="http://en.wikipedia.org/wiki/Binary_search_tree#Deletion">BST</a>.
@@ -299,7 +501,8 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 				node = searchTree(root, o);
 			boolean remove = remove(node);
 			size--;
-			depth = recalculateDepth(root, 0);
+			modCount++;
+			depth = 0;
 			return remove;
 		} catch (NodeNotFoundException e) {
 			return false;
@@ -344,21 +547,31 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 		node.value = nodeToReplace.value;
 		remove(nodeToReplace);
 	}
-	private void deleteCase2(Node node) throws NodeNotFoundException {
+	/**
+	 * Splices the only child of the node into its place, the child's sub-tree keeps its order
+	 */
+	private void deleteCase2(Node node) {
 		Node child;
 		if(node.left != null)
 			child = node.left;
 		else
 			child = node.right;
-		node.value = child.value;
-		remove(child);
+		child.parent = node.parent;
+		replace(node, child);
 	}
 	private void deleteCase1(Node node) {
-		if(node.parent.left == node)
-			node.parent.left = null;
+		replace(node, null);
+	}
+	private void replace(Node node, Node replacement) {
+		for(Node ancestor = node.parent; ancestor != null; ancestor = ancestor.parent)
+			ancestor.subtreeSize--;
+		if(node.parent == null)
+			root = replacement;
+		else if(node.parent.left == node)
+			node.parent.left = replacement;
 		else
-			node.parent.right = null;
-		node = null;
+			node.parent.right = replacement;
+		unlabel(node);
 	}
 	@Override
 	public E successor(E value) throws NodeNotFoundException {
@@ -422,6 +635,88 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 		}
 	}
 	@Override
+	public E floor(E e) {
+		checkNode(e);
+		return navigation().floor(e);
+	}
+	@Override
+	public E ceiling(E e) {
+		checkNode(e);
+		return navigation().ceiling(e);
+	}
+	@Override
+	public E higher(E e) {
+		checkNode(e);
+		return navigation().higher(e);
+	}
+	@Override
+	public E lower(E e) {
+		checkNode(e);
+		return navigation().lower(e);
+	}
+	@Override
+	public E first() {
+		if(isEmpty())
+			throw new NoSuchElementException();
+		return navigation().first();
+	}
+	@Override
+	public E last() {
+		if(isEmpty())
+			throw new NoSuchElementException();
+		return navigation().last();
+	}
+	@Override
+	public Iterable<E> subSet(E from, boolean fromInclusive, E to, boolean toInclusive) {
+		checkNode(from);
+		checkNode(to);
+		if(from.compareTo(to) > 0)
+			throw new IllegalArgumentException("from should not be greater than to");
+		return navigation().range(from, fromInclusive, to, toInclusive);
+	}
+	@Override
+	public Iterable<E> headSet(E to, boolean inclusive) {
+		checkNode(to);
+		return navigation().range(null, false, to, inclusive);
+	}
+	@Override
+	public Iterable<E> tailSet(E from, boolean inclusive) {
+		checkNode(from);
+		return navigation().range(from, inclusive, null, false);
+	}
+	@Override
+	public Iterator<E> descendingIterator() {
+		return navigation().descendingIterator();
+	}
+	private SearchNavigation<E, Node> navigation() {
+		return new SearchNavigation<E, Node>() {
+			@Override
+			Node root() {
+				return root;
+			}
+			@Override
+			Node left(Node node) {
+				return node.left;
+			}
+			@Override
+			Node right(Node node) {
+				return node.right;
+			}
+			@Override
+			Node parent(Node node) {
+				return node.parent;
+			}
+			@Override
+			E value(Node node) {
+				return node.value;
+			}
+			@Override
+			int modCount() {
+				return modCount;
+			}
+		};
+	}
+	@Override
 	public boolean removeAll(Collection<?> c) {
 		boolean retVal = false;
 		for (Iterator<?> iterator = c.iterator(); iterator.hasNext();)
@@ -474,8 +769,10 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 		Node rootNode = new Node();
 		rootNode.value = root;
 		this.root = rootNode;
+		label(rootNode, order.insertAfter(OrderList.HEAD));
 		size++;
-		depth++;
+		modCount++;
+		depth = 1;
 	}
 
 	private void checkNode(Object child) {
@@ -486,50 +783,24 @@ public class BinarySearchTree<E extends Comparable<E>> implements SortedTree<E>,
 	private List<E> getCurrentList() {
 		return inOrderTraversal();
 	}
-	private List<E> inOrderTraversal(Node node, ArrayList<E> list) {
-		if(node.left != null)
-			inOrderTraversal(node.left, list);
-		list.add(node.value);
-		if(node.right != null)
-			inOrderTraversal(node.right, list);
-		return list;
-	}
-	private List<E> levelOrderTraversal(ArrayList<E> list, LinkedList<Node> queue) {
-		while(!queue.isEmpty()) {
-			list.add(queue.getFirst().value);
-			if(queue.getFirst().left != null)
-				queue.add(queue.getFirst().left);
-			if(queue.getFirst().right != null)
-				queue.add(queue.getFirst().right);
-			queue.remove();
-		}
-		return list;
-	}
-	private List<E> postOrderTraversal(Node node, ArrayList<E> list) {
-		if(node.left != null)
-			postOrderTraversal(node.left, list);
-		if(node.right != null)
-			postOrderTraversal(node.right, list);
-		list.add(node.value);
-		return list;
-	}
-	private List<E> preOrderTraversal(Node node, ArrayList<E> list) {
-		list.add(node.value);
-		if(node.left != null)
-			preOrderTraversal(node.left, list);
-		if(node.right != null)
-			preOrderTraversal(node.right, list);
-		return list;
-	}
-	private int recalculateDepth(Node node, int depth) {
-		int childDepth = depth + 1;
-		if(node.left == null && node.right == null)
-			return childDepth;
-		else {
-			if(node.left != null)
-				depth = Math.max(depth, recalculateDepth(node.left, childDepth));
-			if(node.right != null)
-				depth = Math.max(depth, recalculateDepth(node.right, childDepth));
+	private int recalculateDepth() {
+		int depth = 0;
+		ArrayList<Node> level = new ArrayList<Node>();
+		ArrayList<Node> nextLevel = new ArrayList<Node>();
+		if(root != null)
+			level.add(root);
+		while(!level.isEmpty()) {
+			depth++;
+			nextLevel.clear();
+			for(Node node : level) {
+				if(node.left != null)
+					nextLevel.add(node.left);
+				if(node.right != null)
+					nextLevel.add(node.right);
+			}
+			ArrayList<Node> swap = level;
+			level = nextLevel;
+			nextLevel = swap;
 		}
 		return depth;
 	}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Prepares values for sorted trees which build themselves in one pass from sorted values instead of adding the 
+ * values one by one. Input which is already in ascending order is only scanned, any other input is sorted in 
+ * parallel with {@link Arrays#parallelSort(Object[], Comparator)}
+ * @author Gaurav Saxena
+ */
+final class BulkLoad {
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static final Comparator<Object> ORDER = (a, b) -> ((Comparable) a).compareTo(b);
+
+	private BulkLoad() {
+	}
+	/**
+	 * @param replace true if a later value replaces an earlier equal value, false if the earlier value is kept
+	 * @return values of the collection in ascending order without duplicates
+	 */
+	static Object[] sorted(Collection<?> c, boolean replace) {
+		Object[] values = c.toArray();
+		boolean ascending = true;
+		for(int i = 0; i < values.length; i++) {
+			if(values[i] == null)
+				throw new IllegalArgumentException("null nodes are not allowed");
+			if(ascending && i > 0 && ORDER.compare(values[i - 1], values[i]) > 0)
+				ascending = false;
+		}
+		if(!ascending)
+			Arrays.parallelSort(values, ORDER);//stable, so equal values keep the order they were given in
+		int distinct = 0;
+		for(int i = 0; i < values.length; i++) {
+			if(distinct > 0 && ORDER.compare(values[distinct - 1], values[i]) == 0) {
+				if(replace)
+					values[distinct - 1] = values[i];
+			} else
+				values[distinct++] = values[i];
+		}
+		return distinct == values.length ? values : Arrays.copyOf(values, distinct);
+	}
+	/**
+	 * @param present values already in a tree in ascending order
+	 * @param size number of values present
+	 * @param values sorted distinct values being added
+	 * @param replace true if an added value replaces an equal present value, false if the present value is kept
+	 * @return union of the values in ascending order
+	 */
+	static Object[] merge(Iterable<?> present, int size, Object[] values, boolean replace) {
+		Object[] merged = new Object[size + values.length];
+		Iterator<?> iterator = present.iterator();
+		Object next = iterator.hasNext() ? iterator.next() : null;
+		int count = 0;
+		int i = 0;
+		while(next != null || i < values.length) {
+			int comparison = next == null ? 1 : i == values.length ? -1 : ORDER.compare(next, values[i]);
+			if(comparison < 0) {
+				merged[count++] = next;
+				next = iterator.hasNext() ? iterator.next() : null;
+			} else {
+				if(comparison == 0) {
+					merged[count++] = replace ? values[i] : next;
+					next = iterator.hasNext() ? iterator.next() : null;
+				} else
+					merged[count++] = values[i];
+				i++;
+			}
+		}
+		return count == merged.length ? merged : Arrays.copyOf(merged, count);
+	}
+}
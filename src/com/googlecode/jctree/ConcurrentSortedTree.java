@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Thread safe view of a sorted tree, see {@link ConcurrentTree}. Searches share the read lock, range views and the
+ * descending iterator go over a snapshot taken under the read lock.
+ * @author Gaurav Saxena
+ *
+ * @param <E>
+ */
+public class ConcurrentSortedTree<E extends Comparable<E>> extends ConcurrentTree<E> implements SortedTree<E> {
+	private final SortedTree<E> tree;
+
+	/**
+	 * @param tree the tree to guard
+	 */
+	public ConcurrentSortedTree(SortedTree<E> tree) {
+		super(tree);
+		this.tree = tree;
+	}
+	@Override
+	public E successor(E node) throws NodeNotFoundException {
+		return read(() -> tree.successor(node));
+	}
+	@Override
+	public E predecessor(E node) throws NodeNotFoundException {
+		return read(() -> tree.predecessor(node));
+	}
+	@Override
+	public E floor(E e) {
+		return read(() -> tree.floor(e));
+	}
+	@Override
+	public E ceiling(E e) {
+		return read(() -> tree.ceiling(e));
+	}
+	@Override
+	public E higher(E e) {
+		return read(() -> tree.higher(e));
+	}
+	@Override
+	public E lower(E e) {
+		return read(() -> tree.lower(e));
+	}
+	@Override
+	public E first() {
+		return read(() -> tree.first());
+	}
+	@Override
+	public E last() {
+		return read(() -> tree.last());
+	}
+	/**
+	 * Finds and removes the least value under one write lock
+	 * @see com.googlecode.jctree.SortedTree#pollFirst()
+	 */
+	@Override
+	public E pollFirst() {
+		return write(() -> tree.pollFirst());
+	}
+	/**
+	 * Finds and removes the greatest value under one write lock
+	 * @see com.googlecode.jctree.SortedTree#pollLast()
+	 */
+	@Override
+	public E pollLast() {
+		return write(() -> tree.pollLast());
+	}
+	@Override
+	public Iterable<E> subSet(E from, boolean fromInclusive, E to, boolean toInclusive) {
+		return snapshotView(tree.subSet(from, fromInclusive, to, toInclusive));
+	}
+	@Override
+	public Iterable<E> headSet(E to, boolean inclusive) {
+		return snapshotView(tree.headSet(to, inclusive));
+	}
+	@Override
+	public Iterable<E> tailSet(E from, boolean inclusive) {
+		return snapshotView(tree.tailSet(from, inclusive));
+	}
+	@Override
+	public Iterator<E> descendingIterator() {
+		return read(() -> {
+			List<E> values = new ArrayList<E>(tree.size());
+			for(Iterator<E> iterator = tree.descendingIterator(); iterator.hasNext();)
+				values.add(iterator.next());
+			return Collections.unmodifiableList(values).iterator();
+		});
+	}
+}
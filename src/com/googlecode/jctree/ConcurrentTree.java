@@ -0,0 +1,288 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread safe view of a tree guarded by a {@link StampedLock}. Writes take the lock exclusively and queries share the
+ * read lock, so read mostly workloads scale with the number of readers. Queries which may fill caches of the tree, 
+ * like {@link #depth()}, {@link #subtreeSize(Object)} or {@link #commonAncestor(Object, Object)}, take the write lock
+ * too, as the trees don't guard their caches against concurrent queries.
+ * <br>
+ * Iterators and views iterate over a snapshot taken under the read lock when they are created, so they never throw
+ * {@link java.util.ConcurrentModificationException} and don't support remove. The wrapped tree must not be accessed
+ * other than through this view, and visitors passed to walk run under the read lock and must not call this tree.
+ * @author Gaurav Saxena
+ *
+ * @param <E>
+ */
+public class ConcurrentTree<E> implements Tree<E> {
+	private final Tree<E> tree;
+	final StampedLock lock = new StampedLock();
+
+	/**
+	 * A query or an update of the wrapped tree
+	 */
+	interface Action<T, X extends Exception> {
+		T run() throws X;
+	}
+
+	/**
+	 * @param tree the tree to guard
+	 */
+	public ConcurrentTree(Tree<E> tree) {
+		if(tree == null)
+			throw new IllegalArgumentException("tree should not be null");
+		this.tree = tree;
+	}
+	/**
+	 * Runs a query which doesn't write to the tree, not even to a cache, under the read lock
+	 */
+	<T, X extends Exception> T read(Action<T, X> query) throws X {
+		long stamp = lock.readLock();
+		try {
+			return query.run();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	/**
+	 * Runs an update, or a query which may fill a cache of the tree, under the write lock
+	 */
+	<T, X extends Exception> T write(Action<T, X> update) throws X {
+		long stamp = lock.writeLock();
+		try {
+			return update.run();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	/**
+	 * @return view whose iterators go over a snapshot of the view taken under the read lock
+	 */
+	Iterable<E> snapshotView(final Iterable<E> view) {
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return snapshot(view).iterator();
+			}
+		};
+	}
+	/**
+	 * @return unmodifiable copy of the view taken under the read lock
+	 */
+	List<E> snapshot(final Iterable<E> view) {
+		return read(() -> Collections.unmodifiableList(new TreeHelper().toList(view)));
+	}
+	@Override
+	public boolean add(E e) {
+		return write(() -> tree.add(e));
+	}
+	@Override
+	public boolean add(E parent, E child) throws NodeNotFoundException {
+		return write(() -> tree.add(parent, child));
+	}
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		return write(() -> tree.addAll(c));
+	}
+	@Override
+	public boolean addAll(E parent, Collection<? extends E> c) throws NodeNotFoundException {
+		return write(() -> tree.addAll(parent, c));
+	}
+	@Override
+	public boolean remove(Object o) {
+		return write(() -> tree.remove(o));
+	}
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		return write(() -> tree.removeAll(c));
+	}
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		return write(() -> tree.retainAll(c));
+	}
+	@Override
+	public void clear() {
+		write(() -> {
+			tree.clear();
+			return null;
+		});
+	}
+	@Override
+	public Collection<E> children(E e) throws NodeNotFoundException {
+		return read(() -> tree.children(e));
+	}
+	@Override
+	public E commonAncestor(E node1, E node2) throws NodeNotFoundException {
+		return write(() -> tree.commonAncestor(node1, node2));
+	}
+	@Override
+	public E ancestor(E node, int k) throws NodeNotFoundException {
+		return write(() -> tree.ancestor(node, k));
+	}
+	@Override
+	public int levelOf(E node) throws NodeNotFoundException {
+		return write(() -> tree.levelOf(node));
+	}
+	/**
+	 * @return ancestors of the node at the time of the call
+	 */
+	@Override
+	public Iterable<E> ancestors(E node) throws NodeNotFoundException {
+		return read(() -> Collections.unmodifiableList(new TreeHelper().toList(tree.ancestors(node))));
+	}
+	/**
+	 * Takes the write lock, as the first call after a modification may count the sizes of all the sub-trees
+	 */
+	@Override
+	public int subtreeSize(E node) throws NodeNotFoundException {
+		return write(() -> tree.subtreeSize(node));
+	}
+	@Override
+	public int childCount(E node) throws NodeNotFoundException {
+		return read(() -> tree.childCount(node));
+	}
+	@Override
+	public boolean contains(Object o) {
+		return read(() -> tree.contains(o));
+	}
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		return read(() -> tree.containsAll(c));
+	}
+	@Override
+	public int depth() {
+		return write(() -> tree.depth());
+	}
+	@Override
+	@Deprecated
+	public Collection<E> inorderOrderTraversal() {
+		return inOrderTraversal();
+	}
+	@Override
+	public Collection<E> inOrderTraversal() {
+		return read(() -> tree.inOrderTraversal());
+	}
+	@Override
+	public boolean isAncestor(E node, E child) throws NodeNotFoundException {
+		return write(() -> tree.isAncestor(node, child));
+	}
+	@Override
+	public boolean isDescendant(E parent, E node) throws NodeNotFoundException {
+		return write(() -> tree.isDescendant(parent, node));
+	}
+	@Override
+	public boolean isEmpty() {
+		return read(() -> tree.isEmpty());
+	}
+	/**
+	 * Iterates over a snapshot of the tree taken under the read lock
+	 * @see java.util.Collection#iterator()
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return snapshot(tree).iterator();
+	}
+	@Override
+	public Spliterator<E> spliterator() {
+		return snapshot(tree).spliterator();
+	}
+	@Override
+	public Collection<E> leaves() {
+		return read(() -> tree.leaves());
+	}
+	@Override
+	public Collection<E> levelOrderTraversal() {
+		return read(() -> tree.levelOrderTraversal());
+	}
+	@Override
+	public E parent(E e) throws NodeNotFoundException {
+		return read(() -> tree.parent(e));
+	}
+	@Override
+	public Collection<E> postOrderTraversal() {
+		return read(() -> tree.postOrderTraversal());
+	}
+	@Override
+	public Collection<E> preOrderTraversal() {
+		return read(() -> tree.preOrderTraversal());
+	}
+	@Override
+	public Iterable<E> preOrderView() {
+		return snapshotView(tree.preOrderView());
+	}
+	@Override
+	public Iterable<E> postOrderView() {
+		return snapshotView(tree.postOrderView());
+	}
+	@Override
+	public Iterable<E> inOrderView() {
+		return snapshotView(tree.inOrderView());
+	}
+	@Override
+	public Iterable<E> levelOrderView() {
+		return snapshotView(tree.levelOrderView());
+	}
+	@Override
+	public Iterable<E> leavesView() {
+		return snapshotView(tree.leavesView());
+	}
+	@Override
+	public E walk(TreeVisitor<? super E> visitor) {
+		return read(() -> tree.walk(visitor));
+	}
+	@Override
+	public E walk(E node, TreeVisitor<? super E> visitor) throws NodeNotFoundException {
+		return read(() -> tree.walk(node, visitor));
+	}
+	@Override
+	public E root() {
+		return read(() -> tree.root());
+	}
+	@Override
+	public Collection<E> siblings(E e) throws NodeNotFoundException {
+		return read(() -> tree.siblings(e));
+	}
+	@Override
+	public int size() {
+		return read(() -> tree.size());
+	}
+	@Override
+	public Object[] toArray() {
+		return read(() -> tree.toArray());
+	}
+	@Override
+	public <T> T[] toArray(T[] a) {
+		return read(() -> tree.toArray(a));
+	}
+	@Override
+	public String toString() {
+		return read(() -> tree.toString());
+	}
+	@Override
+	public int hashCode() {
+		return read(() -> tree.hashCode());
+	}
+	@Override
+	public boolean equals(Object o) {
+		return o == this || read(() -> tree.equals(o));
+	}
+}
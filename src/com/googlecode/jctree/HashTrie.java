@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+/**
+ * Persistent hash map as a trie on the bits of the hash codes, branching 32 ways per level. An update copies only the 
+ * nodes on the path to the key, O(log32 n) of them, and shares every other node with the map it was derived from, so
+ * every version of a map stays valid and can be read by any number of threads without locking. Keys whose hash codes
+ * are equal end up together in a collision node below the last level.
+ * @author Gaurav Saxena
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class HashTrie<K, V> {
+	private static final HashTrie<Object, Object> EMPTY = new HashTrie<Object, Object>(0, new Object[0]);
+	/**
+	 * One bit for every 5 bit chunk of hash code present in the node, 0 for a collision node
+	 */
+	private final int bitmap;
+	/**
+	 * Key and value for every chunk present, in order of the chunks, or null and the child node for a chunk shared by
+	 * more than one key. A collision node holds keys and values only
+	 */
+	private final Object[] array;
+
+	private HashTrie(int bitmap, Object[] array) {
+		this.bitmap = bitmap;
+		this.array = array;
+	}
+	@SuppressWarnings("unchecked")
+	static <K, V> HashTrie<K, V> empty() {
+		return (HashTrie<K, V>) EMPTY;
+	}
+	/**
+	 * @return value of the key, null if the key is not present
+	 */
+	@SuppressWarnings("unchecked")
+	V get(Object key) {
+		int hash = key.hashCode();
+		HashTrie<K, V> node = this;
+		for(int shift = 0; shift <= 30; shift += 5) {
+			int bit = 1 << ((hash >>> shift) & 31);
+			if((node.bitmap & bit) == 0)
+				return null;
+			int i = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+			Object k = node.array[i];
+			if(k == null)
+				node = (HashTrie<K, V>) node.array[i + 1];
+			else
+				return key.equals(k) ? (V) node.array[i + 1] : null;
+		}
+		for(int i = 0; i < node.array.length; i += 2)
+			if(key.equals(node.array[i]))
+				return (V) node.array[i + 1];
+		return null;
+	}
+	/**
+	 * @return map with the key set to the value, this map if the key already has the value
+	 */
+	HashTrie<K, V> put(K key, V value) {
+		return put(0, key.hashCode(), key, value);
+	}
+	/**
+	 * @return map without the key, this map if the key is not present
+	 */
+	HashTrie<K, V> remove(Object key) {
+		return remove(0, key.hashCode(), key);
+	}
+	@SuppressWarnings("unchecked")
+	private HashTrie<K, V> put(int shift, int hash, K key, V value) {
+		if(shift > 30) {
+			for(int i = 0; i < array.length; i += 2)
+				if(key.equals(array[i]))
+					return array[i + 1] == value ? this : new HashTrie<K, V>(0, replaced(array, i + 1, value));
+			return new HashTrie<K, V>(0, inserted(array, array.length, key, value));
+		}
+		int bit = 1 << ((hash >>> shift) & 31);
+		int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+		if((bitmap & bit) == 0)
+			return new HashTrie<K, V>(bitmap | bit, inserted(array, i, key, value));
+		Object k = array[i];
+		if(k == null) {
+			HashTrie<K, V> child = (HashTrie<K, V>) array[i + 1];
+			HashTrie<K, V> updated = child.put(shift + 5, hash, key, value);
+			return updated == child ? this : new HashTrie<K, V>(bitmap, replaced(array, i + 1, updated));
+		} else if(key.equals(k))
+			return array[i + 1] == value ? this : new HashTrie<K, V>(bitmap, replaced(array, i + 1, value));
+		else {
+			HashTrie<K, V> child = HashTrie.<K, V>empty().put(shift + 5, k.hashCode(), (K) k, (V) array[i + 1])
+					.put(shift + 5, hash, key, value);
+			Object[] copy = replaced(array, i + 1, child);
+			copy[i] = null;
+			return new HashTrie<K, V>(bitmap, copy);
+		}
+	}
+	@SuppressWarnings("unchecked")
+	private HashTrie<K, V> remove(int shift, int hash, Object key) {
+		if(shift > 30) {
+			for(int i = 0; i < array.length; i += 2)
+				if(key.equals(array[i]))
+					return new HashTrie<K, V>(0, removed(array, i));
+			return this;
+		}
+		int bit = 1 << ((hash >>> shift) & 31);
+		if((bitmap & bit) == 0)
+			return this;
+		int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+		Object k = array[i];
+		if(k == null) {
+			HashTrie<K, V> child = (HashTrie<K, V>) array[i + 1];
+			HashTrie<K, V> updated = child.remove(shift + 5, hash, key);
+			if(updated == child)
+				return this;
+			else if(updated.array.length == 2 && updated.array[0] != null) {
+				//a single key left below is pulled up in place of its node
+				Object[] copy = replaced(array, i + 1, updated.array[1]);
+				copy[i] = updated.array[0];
+				return new HashTrie<K, V>(bitmap, copy);
+			} else
+				return new HashTrie<K, V>(bitmap, replaced(array, i + 1, updated));
+		} else if(key.equals(k))
+			return new HashTrie<K, V>(bitmap ^ bit, removed(array, i));
+		else
+			return this;
+	}
+	private static Object[] inserted(Object[] array, int i, Object key, Object value) {
+		Object[] copy = new Object[array.length + 2];
+		System.arraycopy(array, 0, copy, 0, i);
+		copy[i] = key;
+		copy[i + 1] = value;
+		System.arraycopy(array, i, copy, i + 2, array.length - i);
+		return copy;
+	}
+	private static Object[] replaced(Object[] array, int i, Object value) {
+		Object[] copy = array.clone();
+		copy[i] = value;
+		return copy;
+	}
+	private static Object[] removed(Object[] array, int i) {
+		Object[] copy = new Object[array.length - 2];
+		System.arraycopy(array, 0, copy, 0, i);
+		System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+		return copy;
+	}
+}
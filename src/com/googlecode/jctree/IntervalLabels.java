@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Labels every slot of a tree with the position at which a depth first walk enters and exits it, kept in an 
+ * {@link OrderList}. A node is an ancestor of another exactly when it is entered before and exited after the other,
+ * so the question takes two comparisons. A new leaf is entered and exited right before its parent is exited, which 
+ * holds no matter where it sits among its siblings, and removals only drop labels, so the tree is never walked to
+ * relabel it
+ * @author Gaurav Saxena
+ */
+class IntervalLabels implements Cloneable {
+	private OrderList order = new OrderList();
+	private IntArrayList enterList = new IntArrayList();
+	private IntArrayList exitList = new IntArrayList();
+
+	void addRoot(int slot) {
+		label(slot, order.insertAfter(OrderList.HEAD));
+	}
+	void addChild(int parentSlot, int slot) {
+		label(slot, order.insertBefore(exitList.getInt(parentSlot)));
+	}
+	private void label(int slot, int enter) {
+		set(slot, enter, order.insertAfter(enter));
+	}
+	/**
+	 * Drops all the labels and makes tokens 1 to 2 * slots available to {@link #set(int, int, int)} in that order, so
+	 * that a tree built in one depth first walk is labeled in O(n)
+	 */
+	void fill(int slots) {
+		order.fill(2 * slots);
+		enterList.clear();
+		exitList.clear();
+	}
+	/**
+	 * Labels the slot with tokens handed out by {@link #fill(int)}
+	 */
+	void set(int slot, int enter, int exit) {
+		while(enterList.size() <= slot) {
+			enterList.add(-1);
+			exitList.add(-1);
+		}
+		enterList.set(slot, enter);
+		exitList.set(slot, exit);
+	}
+	/**
+	 * Drops the labels of the slot. Labels of its descendants, if they stay in the tree, still nest within the 
+	 * labels of its parent
+	 */
+	void remove(int slot) {
+		order.remove(enterList.getInt(slot));
+		order.remove(exitList.getInt(slot));
+		enterList.set(slot, -1);
+		exitList.set(slot, -1);
+	}
+	/**
+	 * @return true if the node in slot ancestor is a proper ancestor of the node in slot descendant
+	 */
+	boolean isAncestor(int ancestor, int descendant) {
+		return order.precedes(enterList.getInt(ancestor), enterList.getInt(descendant))
+				&& order.precedes(exitList.getInt(descendant), exitList.getInt(ancestor));
+	}
+	void clear() {
+		order.clear();
+		enterList.clear();
+		exitList.clear();
+	}
+	@Override
+	public IntervalLabels clone() {
+		try {
+			IntervalLabels v = (IntervalLabels) super.clone();
+			v.order = order.clone();
+			v.enterList = enterList.clone();
+			v.exitList = exitList.clone();
+			return v;
+		} catch (CloneNotSupportedException e) {
+			throw new InternalError();//This should't happen because we are cloneable
+		}
+	}
+}
@@ -57,6 +57,13 @@ public class KAryTree<E> extends ArrayListTree<E> {
 			throw new IndexOutOfBoundsException("Cannot add more than " + k +" children to a parent");
 	}
 	@Override
+	public NodeRef addRef(NodeRef parent, E child) throws NodeNotFoundException {
+		if(parent == null || childCount(parent) < k)
+			return super.addRef(parent, child);
+		else
+			throw new IndexOutOfBoundsException("Cannot add more than " + k +" children to a parent");
+	}
+	@Override
 	public boolean addAll(Collection<? extends E> c) {
 		int numberOfChildrenAllowed = 0;
 		if(super.isEmpty())
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Keeps the number of nodes present at every level of a tree, root being at level 1. Trees store the level of each
+ * node and report it here on every insert and removal, so that the depth of the tree is known without walking it
+ * @author Gaurav Saxena
+ */
+class LevelHistogram implements Cloneable {
+	private IntArrayList counts = new IntArrayList();
+	private int depth = 0;
+
+	/**
+	 * Records a node added at the level
+	 */
+	void add(int level) {
+		while(counts.size() < level)
+			counts.add(0);
+		counts.set(level - 1, counts.getInt(level - 1) + 1);
+		depth = Math.max(depth, level);
+	}
+	/**
+	 * Records a node removed from the level
+	 */
+	void remove(int level) {
+		counts.set(level - 1, counts.getInt(level - 1) - 1);
+		while(depth > 0 && counts.getInt(depth - 1) == 0)
+			depth--;
+	}
+	/**
+	 * @return the deepest level which has a node, 0 if there are no nodes
+	 */
+	int depth() {
+		return depth;
+	}
+	void clear() {
+		counts.clear();
+		depth = 0;
+	}
+	@Override
+	public LevelHistogram clone() {
+		try {
+			LevelHistogram v = (LevelHistogram) super.clone();
+			v.counts = counts.clone();
+			return v;
+		} catch (CloneNotSupportedException e) {
+			throw new InternalError();//This should't happen because we are cloneable
+		}
+	}
+}
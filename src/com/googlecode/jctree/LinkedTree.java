@@ -15,9 +15,11 @@ package com.googlecode.jctree;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
 
 /**
  * This is a general purpose tree where each node is free to have any number of children
@@ -29,8 +31,29 @@ import java.util.List;
  */
 public class LinkedTree<E> implements Tree<E>, Cloneable{
 	private int size = 0;
-	private int depth = 0;
+	private LevelHistogram levels = new LevelHistogram();
 	private Entry<E> root;
+	/**
+	 * Maps every element present in the tree to its entry, so that nodes are found without searching the tree
+	 */
+	private HashMap<E, Entry<E>> index = new HashMap<E, Entry<E>>();
+	/**
+	 * Bumped by clear() so that {@link NodeRef}s handed out before it are detected as stale without visiting every entry
+	 */
+	private int epoch = 0;
+	/**
+	 * Counts structural modifications so that traversal views fail fast
+	 */
+	private int modCount = 0;
+	private AncestorIndex<E> ancestorIndex = new AncestorIndex<E>();
+	/**
+	 * Value of modCount when the sub-tree sizes of the entries were last counted, see {@link #countSizes()}
+	 */
+	private int sizesModCount = -1;
+	/**
+	 * Holds the tokens at which a depth first walk enters and exits every entry, see {@link IntervalLabels}
+	 */
+	private OrderList order = new OrderList();
 	/* 
 	 * @see java.util.Collection#add(java.lang.Object)
 	 * If tree is empty, it adds a root. In case tree is not empty, it will attempt to add parameter as a child of the root
@@ -50,50 +73,158 @@ public class LinkedTree<E> implements Tree<E>, Cloneable{
 	public boolean add(E parent, E child) throws NodeNotFoundException {
 		checkNode(child);
 		if(parent == null) {
-			if(isEmpty()) {
-				root = new Entry<E>(child, null);
-				size++;
-				depth++;
-				return true;
-			} else
-				throw new IllegalArgumentException("parent cannot be null except for root element");
+			addRoot(child);
+			return true;
 		}
 		Entry<E> parentEntry = getNode(parent);
 		Entry<E> childEntry = getNode(child);
 		if(parentEntry != null) {
 			if(childEntry == null) {
-				parentEntry.children.add(new Entry<E>(child, parentEntry));
-				size++;
-				int currentDepth = 1;
-				//TODO extract to a new method
-				while(parentEntry != null) {
-					currentDepth++;
-					parentEntry = parentEntry.parent;
-				}
-				depth = Math.max(currentDepth, depth);
+				addEntry(parentEntry, child);
 				return true;
 			} else {
-				if(childEntry.parent != null)
-					childEntry.parent.children.set(childEntry.parent.children.indexOf(childEntry), new Entry<E>(child, parentEntry));
-				else
-					root.element = child;
+				replace(childEntry, child);
 				return false;
 			}
 		} else
 			throw new NodeNotFoundException("No node was found for parent object");
 	}
-	private Entry<E> getNode(Object node) {
-		if(!isEmpty()) {
-			LinkedList<Entry<E>> queue = new LinkedList<Entry<E>>();
-			queue.add(root);
-			while(!queue.isEmpty()) {
-				if(queue.getFirst().element.equals(node))
-					return queue.getFirst();
-				else for(Entry<E> i : queue.poll().children)
-					queue.add(i);
-			}
+	private void addRoot(E child) {
+		if(isEmpty()) {
+			root = new Entry<E>(child, null);
+			index.put(child, root);
+			levels.add(1);
+			label(root, order.insertAfter(OrderList.HEAD));
+			size++;
+			modCount++;
+		} else
+			throw new IllegalArgumentException("parent cannot be null except for root element");
+	}
+	private Entry<E> addEntry(Entry<E> parentEntry, E child) {
+		Entry<E> childEntry = new Entry<E>(child, parentEntry);
+		parentEntry.children.add(childEntry);
+		index.put(child, childEntry);
+		levels.add(childEntry.level);
+		label(childEntry, order.insertBefore(parentEntry.exit));
+		size++;
+		modCount++;
+		return childEntry;
+	}
+	private void label(Entry<E> entry, int enter) {
+		entry.enter = enter;
+		entry.exit = order.insertAfter(enter);
+	}
+	/**
+	 * @return true if ancestor is a proper ancestor of entry
+	 */
+	private boolean isAncestor(Entry<E> ancestor, Entry<E> entry) {
+		return order.precedes(ancestor.enter, entry.enter) && order.precedes(entry.exit, ancestor.exit);
+	}
+	private void replace(Entry<E> entry, E child) {
+		entry.element = child;
+		index.remove(child);
+		index.put(child, entry);
+	}
+	/**
+	 * Adds child the same way as {@link #add(Object, Object)} does, but locates the parent through its handle
+	 * @param parent handle of the parent node. It can be null only when the tree is empty, in which case child is added as root
+	 * @param child object
+	 * @return handle to the child node. If an equal object was already present in the tree, it is replaced and
+	 * handle to the existing node is returned
+	 * @throws NodeNotFoundException if parent handle is stale or belongs to another tree
+	 */
+	public NodeRef addRef(NodeRef parent, E child) throws NodeNotFoundException {
+		checkNode(child);
+		if(parent == null) {
+			addRoot(child);
+			return ref(root);
+		}
+		Entry<E> parentEntry = entryOf(parent);
+		Entry<E> childEntry = getNode(child);
+		if(childEntry == null)
+			childEntry = addEntry(parentEntry, child);
+		else
+			replace(childEntry, child);
+		return ref(childEntry);
+	}
+	/**
+	 * @param e node object
+	 * @return handle to the node
+	 * @throws NodeNotFoundException if e is not found
+	 */
+	public NodeRef ref(E e) throws NodeNotFoundException {
+		checkNode(e);
+		Entry<E> node = getNode(e);
+		if(node != null)
+			return ref(node);
+		else
+			throw new NodeNotFoundException("No node was found for object");
+	}
+	/**
+	 * @param node handle of the node
+	 * @return the object held by the node
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public E valueOf(NodeRef node) throws NodeNotFoundException {
+		return entryOf(node).element;
+	}
+	/**
+	 * @param node handle of the parent node
+	 * @return handles of the children in insertion order
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public List<NodeRef> childrenOf(NodeRef node) throws NodeNotFoundException {
+		List<Entry<E>> childrenEntries = entryOf(node).children;
+		ArrayList<NodeRef> children = new ArrayList<NodeRef>(childrenEntries.size());
+		for(Entry<E> i : childrenEntries)
+			children.add(ref(i));
+		return children;
+	}
+	/**
+	 * @param node handle of the parent node
+	 * @return number of children of the node, without creating their handles
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public int childCount(NodeRef node) throws NodeNotFoundException {
+		return entryOf(node).children.size();
+	}
+	/**
+	 * @param node handle of the child node
+	 * @return handle of the parent, null if node is root
+	 * @throws NodeNotFoundException if the handle is stale or belongs to another tree
+	 */
+	public NodeRef parentOf(NodeRef node) throws NodeNotFoundException {
+		Entry<E> entry = entryOf(node);
+		if(entry.parent != null)
+			return ref(entry.parent);
+		else
+			return null;
+	}
+	/**
+	 * Removes the sub-tree rooted at the node. All the handles to the removed nodes become stale
+	 * @param node handle of the node
+	 * @return true if node was removed, false if the handle was already stale
+	 */
+	public boolean remove(NodeRef node) {
+		try {
+			return remove(entryOf(node));
+		} catch(NodeNotFoundException e) {
+			return false;
 		}
-		return null;
+	}
+	@SuppressWarnings("unchecked")
+	private Entry<E> entryOf(NodeRef node) throws NodeNotFoundException {
+		checkNode(node);
+		if(node.tree == this && node.index == epoch && ((Entry<E>) node.entry).generation == node.generation)
+			return (Entry<E>) node.entry;
+		else
+			throw new NodeNotFoundException("Node reference is stale or belongs to another tree");
+	}
+	private NodeRef ref(Entry<E> entry) {
+		return new NodeRef(this, entry, epoch, entry.generation);
+	}
+	private Entry<E> getNode(Object node) {
+		return index.get(node);
 	}
 	protected int getChildAddPosition(List<E> children, E child) {
 		return children.size();
@@ -126,9 +257,13 @@ public class LinkedTree<E> implements Tree<E>, Cloneable{
 	}
 	@Override
 	public void clear() {
+		modCount++;
+		epoch++;
 		root = null;
+		index.clear();
+		levels.clear();
+		order.clear();
 		size = 0;
-		depth = 0;
 	}
 	@SuppressWarnings("unchecked")
 	@Override
@@ -136,6 +271,9 @@ public class LinkedTree<E> implements Tree<E>, Cloneable{
 	    LinkedTree<E> v = null;
 		try {
 			v = (LinkedTree<E>) super.clone();
+			v.ancestorIndex = new AncestorIndex<E>();
+			v.levels = levels.clone();
+			v.order = order.clone();
 			makeTree(v);
 		} catch (CloneNotSupportedException e) {
 			//This should't happen because we are cloneable
@@ -143,50 +281,82 @@ public class LinkedTree<E> implements Tree<E>, Cloneable{
 		return v;
 	}
 	private void makeTree(LinkedTree<E> v) {
+		v.index = new HashMap<E, Entry<E>>(Math.max(16, (int) (size / .75f) + 1));
+		if(root == null)
+			return;
 		LinkedList<Entry<E>> queue = new LinkedList<Entry<E>>();
 		LinkedList<Entry<E>> newQueue = new LinkedList<Entry<E>>();
 		queue.add(root);
 		newQueue.add(new Entry<E>(root.element, null));
 		v.root = newQueue.getFirst();
+		v.root.enter = root.enter;
+		v.root.exit = root.exit;
+		v.root.subtreeSize = root.subtreeSize;
+		v.index.put(root.element, v.root);
 		while(!queue.isEmpty()) {
 			Entry<E> parent = newQueue.poll();
 			for(Entry<E> i : queue.poll().children) {
 				queue.add(i);
-				parent.children.add(new Entry<E>(i.element, parent));
+				Entry<E> child = new Entry<E>(i.element, parent);
+				child.enter = i.enter;
+				child.exit = i.exit;
+				child.subtreeSize = i.subtreeSize;
+				parent.children.add(child);
+				v.index.put(child.element, child);
 			}
 			newQueue.addAll(parent.children);
 		}
 	}
 	@Override
 	public E commonAncestor(E node1, E node2) throws NodeNotFoundException {
-		int height1 = 0;
-		E e1 = node1; 
-		while(e1 != null) {
-			height1++;
-			e1 = parent(e1);
-		}
-		int height2 = 0;
-		E e2 = node2; 
-		while(e2 != null) {
-			height2++;
-			e2 = parent(e2);
-		}
-		if(height1 > height2) {
-			while(height1 - height2 > 0) {
-				node1 = parent(node1);
-				height1--;
-			}
-		} else	{
-			while(height2 - height1 > 0) {
-				node2 = parent(node2);
-				height2--;
-			}
-		}
-		while(node1 != null && !node1.equals(node2)) {
-			node1 = parent(node1);
-			node2 = parent(node2);
-		}
-		return node1;
+		checkNode(node1);
+		checkNode(node2);
+		return ancestorIndex.commonAncestor(this, modCount, node1, node2);
+	}
+	@Override
+	public E ancestor(E node, int k) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.ancestor(this, modCount, node, k);
+	}
+	@Override
+	public int levelOf(E node) throws NodeNotFoundException {
+		checkNode(node);
+		Entry<E> entry = getNode(node);
+		if(entry == null)
+			throw new NodeNotFoundException("No node was found for object");
+		return entry.level;
+	}
+	@Override
+	public Iterable<E> ancestors(E node) throws NodeNotFoundException {
+		checkNode(node);
+		Entry<E> entry = getNode(node);
+		if(entry == null)
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().ancestors(entry);
+	}
+	/**
+	 * Sizes of all the sub-trees are counted together in O(n) on the first call after the tree is modified, and
+	 * answered in O(1) from then on until the next modification. Inserts and removals don't pay for them, as keeping
+	 * the sizes up to date would cost every insert O(depth). A workload which modifies the tree between every two
+	 * calls pays O(n) for each of them
+	 * @see com.googlecode.jctree.Tree#subtreeSize(java.lang.Object)
+	 */
+	@Override
+	public int subtreeSize(E node) throws NodeNotFoundException {
+		checkNode(node);
+		Entry<E> entry = getNode(node);
+		if(entry == null)
+			throw new NodeNotFoundException("No node was found for object");
+		countSizes();
+		return entry.subtreeSize;
+	}
+	@Override
+	public int childCount(E node) throws NodeNotFoundException {
+		checkNode(node);
+		Entry<E> entry = getNode(node);
+		if(entry == null)
+			throw new NodeNotFoundException("No node was found for object");
+		return entry.children.size();
 	}
 	@SuppressWarnings("unchecked")
 	@Override
@@ -205,44 +375,33 @@ public class LinkedTree<E> implements Tree<E>, Cloneable{
 	}
 	@Override
 	public int depth() {
-		return depth;
+		return levels.depth();
 	}
 	@Override
 	@Deprecated
 	public List<E> inorderOrderTraversal() {
-		return inOrderTraversal(root);
+		return inOrderTraversal();
 	}
 	@Override
 	public List<E> inOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return inOrderTraversal(root);
+		return new TreeHelper().toList(inOrderView(), size);
 	}
 	@Override
 	public boolean isAncestor(E node, E child) throws NodeNotFoundException {
-		child = parent(child);
-		while(child != null) {
-			if(child.equals(node))
-				return true;
-			else
-				child = parent(child);
-		}
-		return false;
+		checkNode(child);
+		Entry<E> childEntry = getNode(child);
+		if(childEntry == null)
+			throw new NodeNotFoundException("No node was found for object");
+		Entry<E> entry = node == null ? null : getNode(node);
+		return entry != null && isAncestor(entry, childEntry);
 	}
 	@Override
 	public boolean isDescendant(E parent, E node) throws NodeNotFoundException {
 		checkNode(node);
 		Entry<E> nodeEntry = getNode(node);
 		if(nodeEntry != null) {
-			E child = parent(node);
-			while(child != null) {
-				if(child.equals(parent))
-					return true;
-				else
-					child = parent(child);
-			}
-			return false;
+			Entry<E> parentEntry = parent == null ? null : getNode(parent);
+			return parentEntry != null && isAncestor(parentEntry, nodeEntry);
 		} else
 			throw new NodeNotFoundException("No node was found for object");
 	}
@@ -252,39 +411,24 @@ public class LinkedTree<E> implements Tree<E>, Cloneable{
 	}
 	@Override
 	public Iterator<E> iterator() {
-		return getCurrentList().iterator();
+		return inOrderView().iterator();
+	}
+	/**
+	 * Spliterator returns nodes in the same order as {@link #iterator()} and splits the tree at child boundaries.
+	 * The first split after a modification counts the sizes of all the sub-trees, see {@link #subtreeSize(Object)}
+	 * @see java.util.Collection#spliterator()
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return traversal().spliterator(size);
 	}
 	@Override
 	public List<E> leaves() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return leaves(root);
-	}
-	private List<E> leaves(Entry<E> node) {
-		List<Entry<E>> children = node.children;
-		List<E> list = new ArrayList<E>();
-		if(children.size() > 0) {
-			int i = 0;
-			for(int len = (int)Math.ceil((double)children.size() / 2); i < len; i++)
-				list.addAll(leaves(node.children.get(i)));
-			if(node.children.isEmpty())
-				list.add(node.element);
-			for(int len = children.size(); i < len; i++)
-				list.addAll(leaves(node.children.get(i)));
-		} else if(node.children.isEmpty())
-			list.add(node.element);
-		return list;
+		return new TreeHelper().toList(leavesView());
 	}
 	@Override
 	public List<E> levelOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else {
-			LinkedList<Entry<E>> queue = new LinkedList<Entry<E>>();
-			queue.add(root);
-			return levelOrderTraversal(queue);
-		}
+		return new TreeHelper().toList(levelOrderView(), size);
 	}
 	@Override
 	public E parent(E e) throws NodeNotFoundException {
@@ -300,18 +444,79 @@ public class LinkedTree<E> implements Tree<E>, Cloneable{
 	}
 	@Override
 	public List<E> postOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-			
-		else
-			return postOrderTraversal(root);
+		return new TreeHelper().toList(postOrderView(), size);
 	}
 	@Override
 	public List<E> preOrderTraversal() {
+		return new TreeHelper().toList(preOrderView(), size);
+	}
+	@Override
+	public Iterable<E> preOrderView() {
+		return traversal().preOrder();
+	}
+	@Override
+	public Iterable<E> postOrderView() {
+		return traversal().postOrder();
+	}
+	@Override
+	public Iterable<E> inOrderView() {
+		return traversal().inOrder();
+	}
+	@Override
+	public Iterable<E> levelOrderView() {
+		return traversal().levelOrder();
+	}
+	@Override
+	public Iterable<E> leavesView() {
+		return traversal().leaves();
+	}
+	@Override
+	public E walk(TreeVisitor<? super E> visitor) {
 		if(isEmpty())
-			return new ArrayList<E>();
+			return null;
 		else
-			return preOrderTraversal(root);
+			return traversal().walk(root, null, visitor);
+	}
+	@Override
+	public E walk(E node, TreeVisitor<? super E> visitor) throws NodeNotFoundException {
+		checkNode(node);
+		Entry<E> entry = getNode(node);
+		if(entry == null)
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().walk(entry, entry.parent == null ? null : entry.parent.element, visitor);
+	}
+	private NodeTraversal<E, Entry<E>> traversal() {
+		return new NodeTraversal<E, Entry<E>>() {
+			@Override
+			Entry<E> root() {
+				return root;
+			}
+			@Override
+			int childCount(Entry<E> node) {
+				return node.children.size();
+			}
+			@Override
+			Entry<E> child(Entry<E> node, int position) {
+				return node.children.get(position);
+			}
+			@Override
+			Entry<E> parent(Entry<E> node) {
+				return node.parent;
+			}
+			@Override
+			int subtreeSize(Entry<E> node) {
+				countSizes();
+				return node.subtreeSize;
+			}
+			@Override
+			E value(Entry<E> node) {
+				return node.element;
+			}
+			@Override
+			int modCount() {
+				return modCount;
+			}
+		};
 	}
 
 	@SuppressWarnings("unchecked")
@@ -319,32 +524,68 @@ public class LinkedTree<E> implements Tree<E>, Cloneable{
 	public boolean remove(Object o) {
 		checkNode(o);
 		Entry<E> node = getNode((E) o);
-		if(node != null) {
-			boolean isRemoved; 
-			if(node.equals(root)) {
-				root = null;
-				isRemoved = true;
-				depth = 0;
-				size = 0;
-			} else {
-				isRemoved = node.parent.children.remove(node);
-				size = 0;
-				depth = 0;
-				recalculateDepthAndSize(root, 0);
-			}
-			return isRemoved;
-		} else
+		if(node != null)
+			return remove(node);
+		else
 			return false;
 	}
-
-	private int recalculateDepthAndSize(Entry<E> node, int currentDepth) {
-		int childDepth = currentDepth + 1;
-		size++;
-		if(node.children.isEmpty())
-			return childDepth;
-		else for(Entry<E> i : node.children)
-			depth = Math.max(depth, recalculateDepthAndSize(i, childDepth));
-		return depth;
+	private boolean remove(Entry<E> node) {
+		boolean isRemoved; 
+		modCount++;
+		if(node.equals(root)) {
+			epoch++;
+			root = null;
+			index.clear();
+			isRemoved = true;
+			levels.clear();
+			order.clear();
+			size = 0;
+		} else {
+			isRemoved = node.parent.children.remove(node);
+			size -= detach(node);
+		}
+		return isRemoved;
+	}
+	/**
+	 * Drops the entries of the removed sub-tree from the index, the level counts and the order, and makes their handles stale
+	 * @return number of entries dropped
+	 */
+	private int detach(Entry<E> node) {
+		int detached = 0;
+		ArrayList<Entry<E>> stack = new ArrayList<Entry<E>>();
+		stack.add(node);
+		while(!stack.isEmpty()) {
+			Entry<E> entry = stack.remove(stack.size() - 1);
+			index.remove(entry.element);
+			levels.remove(entry.level);
+			order.remove(entry.enter);
+			order.remove(entry.exit);
+			entry.generation++;
+			stack.addAll(entry.children);
+			detached++;
+		}
+		return detached;
+	}
+	/**
+	 * Counts the sub-tree sizes of all the entries again in O(n) if the tree was modified since they were last counted.
+	 * Keeping them up to date would cost every insert and removal a walk over all the ancestors. Entries are listed in
+	 * level order and counted backwards, so the children of an entry are always counted before it
+	 */
+	private void countSizes() {
+		if(sizesModCount != modCount) {
+			ArrayList<Entry<E>> entries = new ArrayList<Entry<E>>(size);
+			if(root != null)
+				entries.add(root);
+			for(int i = 0; i < entries.size(); i++)
+				entries.addAll(entries.get(i).children);
+			for(int i = entries.size() - 1; i >= 0; i--) {
+				Entry<E> entry = entries.get(i);
+				entry.subtreeSize = 1;
+				for(Entry<E> child : entry.children)
+					entry.subtreeSize += child.subtreeSize;
+			}
+			sizesModCount = modCount;
+		}
 	}
 	@Override
 	public boolean removeAll(Collection<?> c) {
@@ -398,43 +639,6 @@ public class LinkedTree<E> implements Tree<E>, Cloneable{
 	private List<E> getCurrentList() {
 		return inOrderTraversal();
 	}
-	private List<E> inOrderTraversal(Entry<E> node) {
-		List<Entry<E>> children = node.children;
-		List<E> list = new ArrayList<E>();
-		if(children.size() > 0) {
-			int i = 0;
-			for(int len = (int)Math.ceil((double)children.size() / 2); i < len; i++)
-				list.addAll(inOrderTraversal(node.children.get(i)));
-			list.add(node.element);
-			for(int len = children.size(); i < len; i++)
-				list.addAll(inOrderTraversal(node.children.get(i)));
-		} else
-			list.add(node.element);
-		return list;
-	}
-	private List<E> levelOrderTraversal( LinkedList<Entry<E>> queue) {
-		ArrayList<E> list = new ArrayList<E>();
-		while(!queue.isEmpty()) {
-			for(Entry<E> i : queue.getFirst().children)
-				queue.add(i);
-			list.add(queue.poll().element);
-		}
-		return list;
-	}
-	private List<E> postOrderTraversal(Entry<E> node) {
-		ArrayList<E> list = new ArrayList<E>();
-		for(Entry<E> i : node.children)
-			list.addAll(postOrderTraversal(i));
-		list.add(node.element);
-		return list;
-	}
-	private List<E> preOrderTraversal(Entry<E> node) {
-		ArrayList<E> list = new ArrayList<E>();
-		list.add(node.element);
-		for(Entry<E> i : node.children)
-			list.addAll(preOrderTraversal(i));
-		return list;
-	}
 	@Override
 	public String toString() {
 		return getCurrentList().toString();
@@ -456,10 +660,25 @@ public class LinkedTree<E> implements Tree<E>, Cloneable{
 		E element;
 		Entry<E> parent;
 		ArrayList<Entry<E>> children;
+		int generation;
+		/**
+		 * Level of the node, root being at level 1
+		 */
+		final int level;
+		/**
+		 * Tokens in the order of the tree at which a depth first walk enters and exits the node
+		 */
+		int enter;
+		int exit;
+		/**
+		 * Number of nodes in the sub-tree rooted at the node, valid while sizesModCount of the tree equals its modCount
+		 */
+		int subtreeSize = 1;
 		public Entry(E element, Entry<E> parent) {
 			super();
 			this.element = element;
 			this.parent = parent;
+			this.level = parent == null ? 1 : parent.level + 1;
 			this.children = new ArrayList<LinkedTree.Entry<E>>();
 		}
 	}
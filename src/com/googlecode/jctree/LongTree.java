@@ -0,0 +1,499 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A tree of primitive longs. It follows the contract of {@link Tree} without boxing the nodes: values are kept in an
+ * long[] and found through a primitive hash index, and traversals return {@link LongList}s.
+ * <br>
+ * Every node takes a long value and four ints (parent, last child, next sibling and level), i.e. 24 bytes, plus its entry in the index.
+ * Children of a node form a circular list through the next sibling links, so that the last child gives both ends
+ * of the list. Slots of removed nodes are reused.
+ * <br>
+ * Since every long is a valid node, the root has no parent to return and {@link #parent(long)} throws
+ * {@link NoSuchElementException} for it.
+ * @author Gaurav Saxena
+ */
+public class LongTree implements Cloneable {
+	private static final int FREE = -2;
+	private long[] values;
+	private int[] parents;
+	private int[] lastChildren;
+	private int[] nextSiblings;
+	/**
+	 * Level of every node, root being at level 1
+	 */
+	private int[] nodeLevels;
+	/**
+	 * Slot of every node present in the tree
+	 */
+	private Long2IntOpenHashMap nodeIndex;
+	/**
+	 * Number of slots ever handed out, slots below it are either used or chained in the free list
+	 */
+	private int slots = 0;
+	private int freeSlot = -1;
+	private int size = 0;
+	/**
+	 * Number of nodes at every level, so that removals lower the depth without walking the tree
+	 */
+	private LevelHistogram levels = new LevelHistogram();
+	private int rootIndex = -1;
+
+	public LongTree() {
+		this(16);
+	}
+	/**
+	 * @param expectedSize number of nodes the tree should hold without growing
+	 */
+	public LongTree(int expectedSize) {
+		expectedSize = Math.max(expectedSize, 1);
+		values = new long[expectedSize];
+		parents = new int[expectedSize];
+		lastChildren = new int[expectedSize];
+		nextSiblings = new int[expectedSize];
+		nodeLevels = new int[expectedSize];
+		nodeIndex = new Long2IntOpenHashMap(expectedSize);
+		nodeIndex.defaultReturnValue(-1);
+	}
+	/**
+	 * If tree is empty, it adds a root. In case tree is not empty, it adds e as a child of the root
+	 * @param e node
+	 * @return true if e was not already in the tree, otherwise false
+	 */
+	public boolean add(long e) {
+		if(nodeIndex.containsKey(e))
+			return false;
+		if(isEmpty()) {
+			rootIndex = newSlot(e, -1);
+			size++;
+		} else
+			addChild(rootIndex, e);
+		return true;
+	}
+	/**
+	 * @param parent node to which child needs to be added
+	 * @param child node
+	 * @return true if child is not already in the tree, otherwise false
+	 * @throws NodeNotFoundException if parent is not found
+	 */
+	public boolean add(long parent, long child) throws NodeNotFoundException {
+		int parentIndex = indexOf(parent);
+		if(nodeIndex.containsKey(child))
+			return false;
+		addChild(parentIndex, child);
+		return true;
+	}
+	/**
+	 * Uses add(long parent, long child) to add all the nodes present in the collection
+	 * @param parent node to which children need to be added
+	 * @param c children to be added to parent
+	 * @return true if tree changed as a result of the operation, otherwise false
+	 * @throws NodeNotFoundException if parent is not found
+	 */
+	public boolean addAll(long parent, LongCollection c) throws NodeNotFoundException {
+		int parentIndex = indexOf(parent);
+		boolean retVal = false;
+		for(LongIterator iterator = c.iterator(); iterator.hasNext();) {
+			long child = iterator.nextLong();
+			if(!nodeIndex.containsKey(child)) {
+				addChild(parentIndex, child);
+				retVal = true;
+			}
+		}
+		return retVal;
+	}
+	/**
+	 * @param e parent node
+	 * @return children of e in the order they were added
+	 * @throws NodeNotFoundException if e is not found
+	 */
+	public LongList children(long e) throws NodeNotFoundException {
+		int index = indexOf(e);
+		LongArrayList children = new LongArrayList();
+		int last = lastChildren[index];
+		if(last > -1) {
+			int child = last;
+			do {
+				child = nextSiblings[child];
+				children.add(values[child]);
+			} while(child != last);
+		}
+		return children;
+	}
+	/**
+	 * @param e child node
+	 * @return the parent node
+	 * @throws NodeNotFoundException if e is not found
+	 * @throws NoSuchElementException if e is root
+	 */
+	public long parent(long e) throws NodeNotFoundException {
+		int index = indexOf(e);
+		if(index == rootIndex)
+			throw new NoSuchElementException("Root node doesn't have a parent");
+		return values[parents[index]];
+	}
+	/**
+	 * @return the root node
+	 * @throws NoSuchElementException if tree is empty
+	 */
+	public long root() {
+		if(isEmpty())
+			throw new NoSuchElementException("Tree is empty");
+		return values[rootIndex];
+	}
+	/**
+	 * @return all the siblings of the node i.e. those nodes which have the same parent as the parameter
+	 * @throws NodeNotFoundException if e is not found
+	 */
+	public LongList siblings(long e) throws NodeNotFoundException {
+		int index = indexOf(e);
+		if(index == rootIndex)
+			return new LongArrayList();
+		LongList siblings = children(values[parents[index]]);
+		siblings.rem(e);
+		return siblings;
+	}
+	/**
+	 * Finds the common ancestor of node1 and node2
+	 * @return the common ancestor of the nodes
+	 * @throws NodeNotFoundException if any of the nodes is not found
+	 */
+	public long commonAncestor(long node1, long node2) throws NodeNotFoundException {
+		int index1 = indexOf(node1);
+		int index2 = indexOf(node2);
+		int height1 = nodeLevels[index1];
+		int height2 = nodeLevels[index2];
+		for(; height1 > height2; height1--)
+			index1 = parents[index1];
+		for(; height2 > height1; height2--)
+			index2 = parents[index2];
+		while(index1 != index2) {
+			index1 = parents[index1];
+			index2 = parents[index2];
+		}
+		return values[index1];
+	}
+	/**
+	 * @return true if any of the parent of child is equal to node, false otherwise
+	 * @throws NodeNotFoundException if child is not found in the tree
+	 */
+	public boolean isAncestor(long node, long child) throws NodeNotFoundException {
+		int nodeIndex = this.nodeIndex.get(node);
+		for(int i = parents[indexOf(child)]; i > -1; i = parents[i])
+			if(i == nodeIndex)
+				return true;
+		return false;
+	}
+	/**
+	 * @return true if node belongs to the tree rooted at parent, false otherwise
+	 * @throws NodeNotFoundException if parent is not found in the tree
+	 */
+	public boolean isDescendant(long parent, long node) throws NodeNotFoundException {
+		int parentIndex = indexOf(parent);
+		int index = nodeIndex.get(node);
+		if(index == -1)
+			return false;
+		for(int i = parents[index]; i > -1; i = parents[i])
+			if(i == parentIndex)
+				return true;
+		return false;
+	}
+	public boolean contains(long e) {
+		return nodeIndex.containsKey(e);
+	}
+	/**
+	 * Removes e and all its descendants
+	 * @return true if e was found, otherwise false
+	 */
+	public boolean remove(long e) {
+		int index = nodeIndex.get(e);
+		if(index == -1)
+			return false;
+		if(index == rootIndex) {
+			clear();
+			return true;
+		}
+		unlink(index);
+		IntArrayList stack = new IntArrayList();
+		stack.add(index);
+		while(!stack.isEmpty()) {
+			int i = stack.removeInt(stack.size() - 1);
+			pushChildren(stack, i);
+			freeSlot(i);
+		}
+		return true;
+	}
+	public void clear() {
+		nodeIndex.clear();
+		slots = 0;
+		freeSlot = -1;
+		size = 0;
+		levels.clear();
+		rootIndex = -1;
+	}
+	public int size() {
+		return size;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	/**
+	 * @return depth of the tree i.e. the length of the path which has maximum number of nodes
+	 */
+	public int depth() {
+		return levels.depth();
+	}
+	/**
+	 * @return all the leaves of the tree i.e. those nodes which do not have children
+	 */
+	public LongList leaves() {
+		LongArrayList list = new LongArrayList();
+		if(!isEmpty()) {
+			IntArrayList stack = new IntArrayList();
+			stack.add(rootIndex);
+			while(!stack.isEmpty()) {
+				int i = stack.removeInt(stack.size() - 1);
+				if(lastChildren[i] == -1)
+					list.add(values[i]);
+				else
+					pushChildrenReversed(stack, i);
+			}
+		}
+		return list;
+	}
+	/**
+	 * @return nodes arranged as preOrderTraversal of the tree
+	 */
+	public LongList preOrderTraversal() {
+		LongArrayList list = new LongArrayList(size);
+		if(!isEmpty()) {
+			IntArrayList stack = new IntArrayList();
+			stack.add(rootIndex);
+			while(!stack.isEmpty()) {
+				int i = stack.removeInt(stack.size() - 1);
+				list.add(values[i]);
+				pushChildrenReversed(stack, i);
+			}
+		}
+		return list;
+	}
+	/**
+	 * @return nodes arranged as postOrderTraversal of the tree
+	 */
+	public LongList postOrderTraversal() {
+		LongArrayList list = new LongArrayList(size);
+		if(!isEmpty()) {
+			IntArrayList stack = new IntArrayList();
+			stack.add(rootIndex);
+			while(!stack.isEmpty()) {
+				int i = stack.removeInt(stack.size() - 1);
+				if(i < 0)
+					list.add(values[~i]);
+				else {
+					stack.add(~i);
+					pushChildrenReversed(stack, i);
+				}
+			}
+		}
+		return list;
+	}
+	/**
+	 * @return nodes arranged as inOrderTraversal of the tree. In order traversal publishes Ceiling(children.size / 2)
+	 * first and then the node and then nodes from Ceiling(children.size / 2) + 1 to children.size
+	 */
+	public LongList inOrderTraversal() {
+		LongArrayList list = new LongArrayList(size);
+		if(!isEmpty()) {
+			IntArrayList stack = new IntArrayList();
+			stack.add(rootIndex);
+			while(!stack.isEmpty()) {
+				int i = stack.removeInt(stack.size() - 1);
+				if(i < 0)
+					list.add(values[~i]);
+				else {
+					int start = stack.size();
+					pushChildrenReversed(stack, i);
+					int childCount = stack.size() - start;
+					stack.add(start + childCount / 2, ~i);
+				}
+			}
+		}
+		return list;
+	}
+	/**
+	 * @return nodes arranged as levelOrderTraversal of the tree
+	 */
+	public LongList levelOrderTraversal() {
+		LongArrayList list = new LongArrayList(size);
+		if(!isEmpty()) {
+			IntArrayList queue = new IntArrayList(size);
+			queue.add(rootIndex);
+			for(int head = 0; head < queue.size(); head++) {
+				int i = queue.getInt(head);
+				list.add(values[i]);
+				pushChildren(queue, i);
+			}
+		}
+		return list;
+	}
+	/**
+	 * @return nodes arranged as inOrderTraversal of the tree
+	 */
+	public long[] toLongArray() {
+		return inOrderTraversal().toLongArray();
+	}
+	@Override
+	public Object clone() {
+		LongTree v = null;
+		try {
+			v = (LongTree) super.clone();
+			v.values = values.clone();
+			v.parents = parents.clone();
+			v.lastChildren = lastChildren.clone();
+			v.nextSiblings = nextSiblings.clone();
+			v.nodeLevels = nodeLevels.clone();
+			v.levels = levels.clone();
+			v.nodeIndex = nodeIndex.clone();
+		} catch (CloneNotSupportedException e) {
+			//This should't happen because we are cloneable
+		}
+		return v;
+	}
+	@Override
+	public String toString() {
+		return inOrderTraversal().toString();
+	}
+	@Override
+	public int hashCode() {
+		return inOrderTraversal().hashCode();
+	}
+	/**
+	 * Two trees are equal when they have the same nodes, every node has the same parent and the children of every
+	 * node are in the same order
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if(o instanceof LongTree) {
+			LongTree tree = (LongTree) o;
+			if(tree.size != size || !tree.preOrderTraversal().equals(preOrderTraversal()))
+				return false;
+			for(int i = 0; i < slots; i++)
+				if(parents[i] > -1 && tree.values[tree.parents[tree.nodeIndex.get(values[i])]] != values[parents[i]])
+					return false;
+			return true;
+		} else
+			return false;
+	}
+
+	private int indexOf(long e) throws NodeNotFoundException {
+		int index = nodeIndex.get(e);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return index;
+	}
+	private void addChild(int parentIndex, long child) {
+		int index = newSlot(child, parentIndex);
+		int last = lastChildren[parentIndex];
+		if(last == -1)
+			nextSiblings[index] = index;
+		else {
+			nextSiblings[index] = nextSiblings[last];
+			nextSiblings[last] = index;
+		}
+		lastChildren[parentIndex] = index;
+		size++;
+	}
+	private int newSlot(long e, int parentIndex) {
+		int index;
+		if(freeSlot > -1) {
+			index = freeSlot;
+			freeSlot = nextSiblings[index];
+		} else {
+			if(slots == values.length)
+				grow();
+			index = slots++;
+		}
+		values[index] = e;
+		parents[index] = parentIndex;
+		lastChildren[index] = -1;
+		nextSiblings[index] = -1;
+		int level = parentIndex == -1 ? 1 : nodeLevels[parentIndex] + 1;
+		nodeLevels[index] = level;
+		levels.add(level);
+		nodeIndex.put(e, index);
+		return index;
+	}
+	private void freeSlot(int index) {
+		nodeIndex.remove(values[index]);
+		parents[index] = FREE;
+		levels.remove(nodeLevels[index]);
+		nextSiblings[index] = freeSlot;
+		freeSlot = index;
+		size--;
+	}
+	private void grow() {
+		int capacity = values.length + (values.length >> 1) + 1;
+		values = Arrays.copyOf(values, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		lastChildren = Arrays.copyOf(lastChildren, capacity);
+		nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+		nodeLevels = Arrays.copyOf(nodeLevels, capacity);
+	}
+	/**
+	 * Takes the node out of the children list of its parent
+	 */
+	private void unlink(int index) {
+		int parentIndex = parents[index];
+		int previous = index;
+		while(nextSiblings[previous] != index)
+			previous = nextSiblings[previous];
+		if(previous == index)
+			lastChildren[parentIndex] = -1;
+		else {
+			nextSiblings[previous] = nextSiblings[index];
+			if(lastChildren[parentIndex] == index)
+				lastChildren[parentIndex] = previous;
+		}
+	}
+	private void pushChildren(IntArrayList stack, int index) {
+		int last = lastChildren[index];
+		if(last > -1) {
+			int child = last;
+			do {
+				child = nextSiblings[child];
+				stack.add(child);
+			} while(child != last);
+		}
+	}
+	/**
+	 * Pushes children so that the first child is popped first
+	 */
+	private void pushChildrenReversed(IntArrayList stack, int index) {
+		int start = stack.size();
+		pushChildren(stack, index);
+		for(int i = start, j = stack.size() - 1; i < j; i++, j--)
+			stack.set(i, stack.set(j, stack.getInt(i)));
+	}
+}
@@ -13,12 +13,14 @@
  */
 package com.googlecode.jctree;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
 
 /**
  * This is a general purpose tree where each node is free to have any number of children
@@ -33,9 +35,25 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 	private ArrayList<E> nodeList = new ArrayList<E>();
 	private ArrayList<Integer> parentList = new ArrayList<Integer>();
 	private ArrayList<ArrayList<Integer>> childrenList = new ArrayList<ArrayList<Integer>>();
+	/**
+	 * Level of the node in every slot, root being at level 1
+	 */
+	private IntArrayList levelList = new IntArrayList();
+	/**
+	 * Number of nodes in the sub-tree rooted at every slot, valid while sizesModCount equals modCount. Keeping them
+	 * up to date would cost every insert and removal a walk over all the ancestors, so they are counted on demand instead
+	 */
+	private int[] sizes = new int[0];
+	private int sizesModCount = -1;
+	private LevelHistogram levels = new LevelHistogram();
+	private IntervalLabels labels = new IntervalLabels();
 	private int size = 0;
-	private int depth = 0;
 	private int rootIndex = -1;
+	/**
+	 * Counts structural modifications so that traversal views fail fast
+	 */
+	private int modCount = 0;
+	private AncestorIndex<E> ancestorIndex = new AncestorIndex<E>();
 	
 	/**
 	 * If tree is empty, it adds a root. In case tree is not empty, it will attempt to add parameter as a child of the root 
@@ -66,13 +84,12 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 				childrenList.get(parentIndex).add(nodeList.size() - 1);
 				map.put(child, nodeList.size() - 1);
 				childrenList.add(new ArrayList<Integer>());
+				int level = levelList.getInt(parentIndex) + 1;
+				levelList.add(level);
+				levels.add(level);
+				labels.addChild(parentIndex, nodeList.size() - 1);
 				size++;
-				int currentDepth = 2;
-				while(parentIndex > 0) {
-					currentDepth++;
-					parentIndex = parentList.get(parentIndex);
-				}
-				depth = Math.max(currentDepth, depth);
+				modCount++;
 				return true;
 			} else {
 				nodeList.set(childIndex, child);
@@ -97,8 +114,11 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 		map.put(child, 0);
 		parentList.add(-1);
 		childrenList.add(new ArrayList<Integer>());
+		levelList.add(1);
+		levels.add(1);
+		labels.addRoot(rootIndex);
 		size++;
-		depth++;		
+		modCount++;
 	}
 	/**
 	 * This method lets the sub-classes define the position at which new child may be added 
@@ -153,11 +173,15 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 	}
 	@Override
 	public void clear() {
+		modCount++;
 		nodeList.clear();
 		parentList.clear();
 		childrenList.clear();
+		map.clear();
+		levelList.clear();
+		levels.clear();
+		labels.clear();
 		size = 0;
-		depth = 0;
 		rootIndex = -1;
 	}
 	@SuppressWarnings("unchecked")
@@ -166,11 +190,15 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 	    MapIndexedArrayListTree<E> v = null;
 		try {
 			v = (MapIndexedArrayListTree<E>) super.clone();
+			v.ancestorIndex = new AncestorIndex<E>();
 			v.nodeList = (ArrayList<E>) nodeList.clone();
 			v.parentList = (ArrayList<Integer>) parentList.clone();
 			v.childrenList = new ArrayList<ArrayList<Integer>>();
+			v.map = new HashMap<E, Integer>(map);
+			v.levelList = levelList.clone();
+			v.levels = levels.clone();
+			v.labels = labels.clone();
 			v.size = this.size;
-			v.depth = this.depth;
 			for(int i = 0; i < childrenList.size(); i++)
 				v.childrenList.add((ArrayList<Integer>) childrenList.get(i).clone());
 		} catch (CloneNotSupportedException e) {
@@ -180,34 +208,53 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 	}
 	@Override
 	public E commonAncestor(E node1, E node2) throws NodeNotFoundException {
-		int height1 = 0;
-		E e1 = node1; 
-		while(e1 != null) {
-			height1++;
-			e1 = parent(e1);
-		}
-		int height2 = 0;
-		E e2 = node2; 
-		while(e2 != null) {
-			height2++;
-			e2 = parent(e2);
-		}
-		if(height1 > height2) {
-			while(height1 - height2 > 0) {
-				node1 = parent(node1);
-				height1--;
-			}
-		} else {
-			while(height2 - height1 > 0) {
-				node2 = parent(node2);
-				height2--;
-			}
-		}
-		while(node1 != null && !node1.equals(node2)) {
-			node1 = parent(node1);
-			node2 = parent(node2);
-		}
-		return node1;
+		checkNode(node1);
+		checkNode(node2);
+		return ancestorIndex.commonAncestor(this, modCount, node1, node2);
+	}
+	@Override
+	public E ancestor(E node, int k) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.ancestor(this, modCount, node, k);
+	}
+	@Override
+	public int levelOf(E node) throws NodeNotFoundException {
+		checkNode(node);
+		Integer index = map.get(node);
+		if(index == null)
+			throw new NodeNotFoundException("No node was found for object");
+		return levelList.getInt(index);
+	}
+	@Override
+	public Iterable<E> ancestors(E node) throws NodeNotFoundException {
+		checkNode(node);
+		Integer index = map.get(node);
+		if(index == null)
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().ancestors(index);
+	}
+	/**
+	 * Sizes of all the sub-trees are counted together in O(n) on the first call after the tree is modified, and
+	 * answered in O(1) from then on until the next modification. Inserts and removals don't pay for them, as keeping
+	 * the sizes up to date would cost every insert O(depth). A workload which modifies the tree between every two
+	 * calls pays O(n) for each of them
+	 * @see com.googlecode.jctree.Tree#subtreeSize(java.lang.Object)
+	 */
+	@Override
+	public int subtreeSize(E node) throws NodeNotFoundException {
+		checkNode(node);
+		Integer index = map.get(node);
+		if(index == null)
+			throw new NodeNotFoundException("No node was found for object");
+		return sizes()[index];
+	}
+	@Override
+	public int childCount(E node) throws NodeNotFoundException {
+		checkNode(node);
+		Integer index = map.get(node);
+		if(index == null)
+			throw new NodeNotFoundException("No node was found for object");
+		return childrenList.get(index).size();
 	}
 	@Override
 	public boolean contains(Object o) {
@@ -222,29 +269,40 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 	}
 	@Override
 	public int depth() {
-		return depth;
+		return levels.depth();
 	}
 	@Override
 	@Deprecated
 	public List<E> inorderOrderTraversal() {
-		return inorderOrderTraversal(0, new ArrayList<E>());
+		return inOrderTraversal();
 	}
 	@Override
 	public List<E> inOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return inorderOrderTraversal(rootIndex, new ArrayList<E>());
+		return new TreeHelper().toList(inOrderView(), size);
 	}
 	@Override
 	public boolean isAncestor(E node, E child) throws NodeNotFoundException {
 		checkNode(child);
-		return new TreeHelper().isAncestor(this, node, child);
+		Integer childIndex = map.get(child);
+		if(childIndex == null)
+			throw new NodeNotFoundException("No node was found for object");
+		if(node == null)
+			return false;
+		Integer index = map.get(node);
+		return index != null && labels.isAncestor(index, childIndex);
 	}
 	@Override
 	public boolean isDescendant(E parent, E node) throws NodeNotFoundException {
 		checkNode(parent);
-		return new TreeHelper().isDescendant(this, parent, node);
+		Integer parentIndex = map.get(parent);
+		if(parentIndex == null)
+			throw new NodeNotFoundException("No node was found for object");
+		if(node == null)
+			return false;
+		Integer index = map.get(node);
+		if(index == null)
+			throw new NodeNotFoundException("No node was found for object");
+		return labels.isAncestor(parentIndex, index);
 	}
 	@Override
 	public boolean isEmpty() {
@@ -256,38 +314,24 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 	 */
 	@Override
 	public Iterator<E> iterator() {
-		return getCurrentList().iterator();
+		return inOrderView().iterator();
+	}
+	/**
+	 * Spliterator returns nodes in the same order as {@link #iterator()} and splits the tree at child boundaries.
+	 * The first split after a modification counts the sizes of all the sub-trees, see {@link #subtreeSize(Object)}
+	 * @see java.util.Collection#spliterator()
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return traversal().spliterator(size);
 	}
 	@Override
 	public List<E> leaves() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return leaves(rootIndex, new ArrayList<E>());
-	}
-	private List<E> leaves(int nodeIndex, ArrayList<E> list) {
-		ArrayList<Integer> children = childrenList.get(nodeIndex);
-		if(children.size() > 0)	{
-			int i = 0;
-			for(; i < (int)Math.ceil((double)children.size() / 2); i++)
-				leaves(children.get(i), list);
-			if(childrenList.get(nodeIndex).isEmpty())
-				list.add(nodeList.get(nodeIndex));
-			for(; i < children.size(); i++)
-				leaves(children.get(i), list);
-		} else if(childrenList.get(nodeIndex).isEmpty())
-			list.add(nodeList.get(nodeIndex));
-		return list;
+		return new TreeHelper().toList(leavesView());
 	}
 	@Override
 	public List<E> levelOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else {
-			LinkedList<Integer> queue = new LinkedList<Integer>();
-			queue.add(0);
-			return levelOrderTraversal(new ArrayList<E>(), queue);
-		}
+		return new TreeHelper().toList(levelOrderView(), size);
 	}
 	@Override
 	public E parent(E e) throws NodeNotFoundException {
@@ -302,17 +346,78 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 	}
 	@Override
 	public List<E> postOrderTraversal() {
-		if(isEmpty())
-			return new ArrayList<E>();
-		else
-			return postOrderTraversal(rootIndex, new ArrayList<E>());
+		return new TreeHelper().toList(postOrderView(), size);
 	}
 	@Override
 	public List<E> preOrderTraversal() {
+		return new TreeHelper().toList(preOrderView(), size);
+	}
+	@Override
+	public Iterable<E> preOrderView() {
+		return traversal().preOrder();
+	}
+	@Override
+	public Iterable<E> postOrderView() {
+		return traversal().postOrder();
+	}
+	@Override
+	public Iterable<E> inOrderView() {
+		return traversal().inOrder();
+	}
+	@Override
+	public Iterable<E> levelOrderView() {
+		return traversal().levelOrder();
+	}
+	@Override
+	public Iterable<E> leavesView() {
+		return traversal().leaves();
+	}
+	@Override
+	public E walk(TreeVisitor<? super E> visitor) {
 		if(isEmpty())
-			return new ArrayList<E>();
+			return null;
 		else
-			return preOrderTraversal(rootIndex, new ArrayList<E>());
+			return traversal().walk(rootIndex, null, visitor);
+	}
+	@Override
+	public E walk(E node, TreeVisitor<? super E> visitor) throws NodeNotFoundException {
+		checkNode(node);
+		Integer index = map.get(node);
+		if(index == null)
+			throw new NodeNotFoundException("No node was found for object");
+		return traversal().walk(index, index == rootIndex ? null : nodeList.get(parentList.get(index)), visitor);
+	}
+	private SlotTraversal<E> traversal() {
+		return new SlotTraversal<E>() {
+			@Override
+			int root() {
+				return rootIndex;
+			}
+			@Override
+			int childCount(int slot) {
+				return childrenList.get(slot).size();
+			}
+			@Override
+			int child(int slot, int position) {
+				return childrenList.get(slot).get(position);
+			}
+			@Override
+			int parent(int slot) {
+				return parentList.get(slot);
+			}
+			@Override
+			int subtreeSize(int slot) {
+				return sizes()[slot];
+			}
+			@Override
+			E value(int slot) {
+				return nodeList.get(slot);
+			}
+			@Override
+			int modCount() {
+				return modCount;
+			}
+		};
 	}
 
 	/**
@@ -323,18 +428,9 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 	public boolean remove(Object o) {
 		checkNode(o);
 		Integer index = map.get(o);
-		if(index != null) {
-			boolean wasRemoved;
-			int intIndex = index.intValue();
-			if(intIndex != rootIndex) {
-				wasRemoved = remove(intIndex);
-				depth = recalculateDepth(rootIndex, 0);
-			} else {
-				wasRemoved = remove(index.intValue());
-				depth = 0;
-			}
-			return wasRemoved;
-		} else
+		if(index != null)
+			return remove(index.intValue());
+		else
 			return false;
 	}
 	/** Removes the sub-tree rooted at the nodes in the collection passed
@@ -385,6 +481,17 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 		return getCurrentList().toArray(a);
 	}
 
+	/**
+	 * @return sub-tree sizes of all the slots. They are counted again in O(n) on the first call after a modification
+	 * and cached until the next one.
+	 */
+	private int[] sizes() {
+		if(sizesModCount != modCount) {
+			sizes = traversal().subtreeSizes(nodeList.size());
+			sizesModCount = modCount;
+		}
+		return sizes;
+	}
 	private void checkNode(Object child) {
 		if(child == null)
 			throw new IllegalArgumentException("null nodes are not allowed");
@@ -392,77 +499,41 @@ class MapIndexedArrayListTree<E> implements Tree<E>, Cloneable {
 	private List<E> getCurrentList() {
 		return inOrderTraversal();
 	}
-	private List<E> inorderOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		ArrayList<Integer> children = childrenList.get(nodeIndex);
-		if(children.size() > 0)	{
-			int i = 0;
-			for(; i < (int)Math.ceil((double)children.size() / 2); i++)
-				inorderOrderTraversal(children.get(i), list);
-			list.add(nodeList.get(nodeIndex));
-			for(; i < children.size(); i++)
-				inorderOrderTraversal(children.get(i), list);
-		} else
-			list.add(nodeList.get(nodeIndex));
-		return list;
-	}
-	private List<E> levelOrderTraversal(ArrayList<E> list, LinkedList<Integer> queue) {
-		while(!queue.isEmpty()) {
-			list.add(nodeList.get(queue.getFirst()));
-			ArrayList<Integer> children = childrenList.get(queue.getFirst());
-			for(int i = 0; i < children.size(); i++)
-				queue.add(children.get(i));
-			queue.remove();
-		}
-		return list;
-	}
-	private List<E> postOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		ArrayList<Integer> children = childrenList.get(nodeIndex);
-		for(int i = 0; i < children.size(); i++)
-			postOrderTraversal(children.get(i), list);
-		if(nodeList.get(nodeIndex) != null)
-			list.add(nodeList.get(nodeIndex));
-		return list;
-	}
-	private List<E> preOrderTraversal(int nodeIndex, ArrayList<E> list) {
-		if(nodeList.get(nodeIndex) != null)
-			list.add(nodeList.get(nodeIndex));
-		ArrayList<Integer> children = childrenList.get(nodeIndex);
-		for(int i = 0; i < children.size(); i++)
-			preOrderTraversal(children.get(i), list);
-		return list;
-	}
 	private boolean remove(int index) {
 		if(index > -1) {
+			modCount++;
 			if(index == rootIndex) {
 				rootIndex = -1;
 				size = 0;
 				nodeList.clear();
 				parentList.clear();
 				childrenList.clear();
+				map.clear();
+				levelList.clear();
+				levels.clear();
+				labels.clear();
 				return true;
 			} else {
-				Integer parentIndex = parentList.set(index, -1);
-				if(parentIndex > -1)//if node is not root
-					childrenList.get(parentIndex).remove(Integer.valueOf(index));
-				nodeList.set(index, null);
-				size--;
-				ArrayList<Integer> children = childrenList.get(index);
-				for (int j = 0; j < children.size();) 
-					remove(children.get(0).intValue());
-				childrenList.get(index).clear();
+				childrenList.get(parentList.get(index)).remove(Integer.valueOf(index));
+				IntArrayList stack = new IntArrayList();
+				stack.push(index);
+				while(!stack.isEmpty()) {//an explicit stack as a deep sub-tree would overflow the call stack
+					int slot = stack.popInt();
+					ArrayList<Integer> children = childrenList.get(slot);
+					for(int j = children.size() - 1; j >= 0; j--)
+						stack.push(children.get(j));
+					children.clear();
+					parentList.set(slot, -1);
+					map.remove(nodeList.set(slot, null));
+					levels.remove(levelList.getInt(slot));
+					labels.remove(slot);
+					size--;
+				}
 				return true;
 			}
 		} else
 			return false;
 	}
-	private int recalculateDepth(int index, int depth) {
-		int childDepth = depth + 1;
-		if(childrenList.get(index).isEmpty())
-			return childDepth;
-		else for(Integer i : childrenList.get(index))
-			depth = Math.max(depth, recalculateDepth(i, childDepth));
-		return depth;
-	}
 	@Override
 	public String toString() {
 		return getCurrentList().toString();
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+/**
+ * A handle to a node of a tree. Trees which support handles ({@link ArrayListTree}, {@link ArrayTree} and
+ * {@link LinkedTree}) return one from addRef(NodeRef, E) and ref(E) and accept it in place of the element.
+ * Methods taking a handle go straight to the node and never call equals or hashCode of the elements.
+ * <br>
+ * A handle carries the generation of the node it was created for. Once that node is removed from the tree the
+ * handle becomes stale and is rejected with {@link NodeNotFoundException}, even if its storage has been reused
+ * by a newer node. A handle is only valid for the tree which created it, not for its clones.
+ * @author Gaurav Saxena
+ */
+public final class NodeRef {
+	final Object tree;
+	final Object entry;
+	final int index;
+	final int generation;
+
+	NodeRef(Object tree, Object entry, int index, int generation) {
+		this.tree = tree;
+		this.entry = entry;
+		this.index = index;
+		this.generation = generation;
+	}
+	@Override
+	public int hashCode() {
+		return 31 * (31 * System.identityHashCode(entry) + index) + generation;
+	}
+	@Override
+	public boolean equals(Object o) {
+		if(o instanceof NodeRef) {
+			NodeRef ref = (NodeRef) o;
+			return ref.tree == tree && ref.entry == entry && ref.index == index && ref.generation == generation;
+		} else
+			return false;
+	}
+	@Override
+	public String toString() {
+		return "NodeRef[" + index + "@" + generation + "]";
+	}
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lazy traversals of a tree made of linked node objects. It walks the tree the same way as {@link SlotTraversal}
+ * does, keeping the nodes on an explicit stack next to a primitive stack of their positions.
+ * <br>
+ * All iterators and spliterators fail fast with {@link ConcurrentModificationException} once the tree is structurally modified
+ * @author Gaurav Saxena
+ *
+ * @param <E> object type contained in the tree
+ * @param <N> node type of the tree
+ */
+abstract class NodeTraversal<E, N> {
+	private static final int PRE_ORDER = 0;
+	private static final int IN_ORDER = 1;
+	private static final int POST_ORDER = 2;
+	private static final int LEAVES = 3;
+
+	/**
+	 * @return root node, null if the tree is empty
+	 */
+	abstract N root();
+	/**
+	 * @return number of child positions of the node. Some of the positions may be empty
+	 */
+	abstract int childCount(N node);
+	/**
+	 * @return child at the position, null if the position is empty
+	 */
+	abstract N child(N node, int position);
+	/**
+	 * @return parent of the node, null for the root
+	 */
+	abstract N parent(N node);
+	/**
+	 * @return number of nodes in the sub-tree rooted at the node
+	 */
+	abstract int subtreeSize(N node);
+	abstract E value(N node);
+	/**
+	 * @return counter which changes on every structural modification of the tree
+	 */
+	abstract int modCount();
+
+	Iterable<E> preOrder() {
+		return depthFirst(PRE_ORDER);
+	}
+	/**
+	 * In order publishes Ceiling(childCount / 2) child positions first, then the node and then the rest of the positions
+	 */
+	Iterable<E> inOrder() {
+		return depthFirst(IN_ORDER);
+	}
+	Iterable<E> postOrder() {
+		return depthFirst(POST_ORDER);
+	}
+	Iterable<E> leaves() {
+		return depthFirst(LEAVES);
+	}
+	/**
+	 * @param size number of nodes in the tree
+	 * @return spliterator over the nodes in order, see {@link SubtreeSpliterator}
+	 */
+	Spliterator<E> spliterator(int size) {
+		return new SubtreeSpliterator(root(), size);
+	}
+	/**
+	 * Walks the sub-tree rooted at start with an explicit stack of nodes next to a primitive stack of child positions
+	 * @param start node to start from
+	 * @param parent parent of the start node, null if it is the root
+	 * @return the node at which the visitor terminated the walk, null if the walk completed
+	 */
+	E walk(N start, E parent, TreeVisitor<? super E> visitor) {
+		int expectedModCount = modCount();
+		switch(visitor.preVisit(value(start), parent, 1)) {
+		case CONTINUE:
+			break;
+		case TERMINATE:
+			return value(start);
+		default:
+			return null;
+		}
+		ArrayList<N> nodes = new ArrayList<N>();
+		IntArrayList positions = new IntArrayList();
+		nodes.add(start);
+		positions.push(0);
+		while(!nodes.isEmpty()) {
+			if(modCount() != expectedModCount)
+				throw new ConcurrentModificationException();
+			int top = nodes.size() - 1;
+			N node = nodes.get(top);
+			int count = childCount(node);
+			int position = positions.getInt(top);
+			N child = null;
+			while(position < count && (child = child(node, position++)) == null);
+			positions.set(top, position);
+			if(child != null) {
+				switch(visitor.preVisit(value(child), value(node), nodes.size() + 1)) {
+				case CONTINUE:
+					nodes.add(child);
+					positions.push(0);
+					break;
+				case SKIP_SIBLINGS:
+					positions.set(top, count);
+					break;
+				case TERMINATE:
+					return value(child);
+				default:
+					break;
+				}
+			} else {
+				nodes.remove(top);
+				positions.popInt();
+				switch(visitor.postVisit(value(node), top == 0 ? parent : value(nodes.get(top - 1)), top + 1)) {
+				case SKIP_SIBLINGS:
+					if(top > 0)
+						positions.set(top - 1, childCount(nodes.get(top - 1)));
+					break;
+				case TERMINATE:
+					return value(node);
+				default:
+					break;
+				}
+			}
+		}
+		return null;
+	}
+	/**
+	 * @param node node whose ancestors are needed
+	 * @return ancestors of the node from its parent up to the root. The view fails fast once the tree is structurally
+	 * modified after this call
+	 */
+	Iterable<E> ancestors(final N node) {
+		final int expectedModCount = modCount();
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				if(modCount() != expectedModCount)
+					throw new ConcurrentModificationException();
+				return new Iterator<E>() {
+					private N next = parent(node);
+
+					@Override
+					public boolean hasNext() {
+						return next != null;
+					}
+					@Override
+					public E next() {
+						if(modCount() != expectedModCount)
+							throw new ConcurrentModificationException();
+						if(next == null)
+							throw new NoSuchElementException();
+						E e = value(next);
+						next = parent(next);
+						return e;
+					}
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException("Traversal views are read only");
+					}
+				};
+			}
+		};
+	}
+	Iterable<E> levelOrder() {
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return new LevelOrderIterator();
+			}
+		};
+	}
+	private Iterable<E> depthFirst(final int order) {
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return new DepthFirstIterator(order, root(), modCount());
+			}
+		};
+	}
+	private boolean isLeaf(N node, int count) {
+		for(int i = 0; i < count; i++)
+			if(child(node, i) != null)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Every node on the stack goes through childCount + 1 positions, one per child and one for the node itself.
+	 * The order decides at which of these positions the node is published
+	 */
+	private class DepthFirstIterator implements Iterator<E> {
+		private final int order;
+		private final int expectedModCount;
+		private final ArrayList<N> nodes = new ArrayList<N>();
+		private final IntArrayList positions = new IntArrayList();
+		private N next;
+
+		DepthFirstIterator(int order, N start, int expectedModCount) {
+			this.order = order;
+			this.expectedModCount = expectedModCount;
+			if(start != null) {
+				nodes.add(start);
+				positions.push(0);
+				advance();
+			}
+		}
+		private int nodePosition(int count) {
+			switch(order) {
+			case IN_ORDER:
+				return (count + 1) / 2;
+			case POST_ORDER:
+				return count;
+			default:
+				return 0;
+			}
+		}
+		private void advance() {
+			next = null;
+			while(!nodes.isEmpty()) {
+				int top = nodes.size() - 1;
+				N node = nodes.get(top);
+				int position = positions.getInt(top);
+				int count = childCount(node);
+				if(position > count) {
+					nodes.remove(top);
+					positions.popInt();
+					continue;
+				}
+				positions.set(top, position + 1);
+				int nodePosition = nodePosition(count);
+				if(position == nodePosition) {
+					if(order != LEAVES || isLeaf(node, count)) {
+						next = node;
+						return;
+					}
+				} else {
+					N child = child(node, position < nodePosition ? position : position - 1);
+					if(child != null) {
+						nodes.add(child);
+						positions.push(0);
+					}
+				}
+			}
+		}
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+		@Override
+		public E next() {
+			if(modCount() != expectedModCount)
+				throw new ConcurrentModificationException();
+			if(next == null)
+				throw new NoSuchElementException();
+			E e = value(next);
+			advance();
+			return e;
+		}
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Traversal views are read only");
+		}
+	}
+
+	/**
+	 * Splits the tree the same way as {@link SlotTraversal} does
+	 */
+	private class SubtreeSpliterator implements Spliterator<E> {
+		private final int expectedModCount;
+		/**
+		 * Pending items, starting at head
+		 */
+		private final ArrayList<N> items = new ArrayList<N>();
+		/**
+		 * Size of every pending sub-tree. A negative value marks an item which stands for the node alone
+		 */
+		private final IntArrayList estimates = new IntArrayList();
+		private int head = 0;
+		/**
+		 * Iterator over the sub-tree being consumed, if any
+		 */
+		private DepthFirstIterator current;
+		private long estimate;
+
+		SubtreeSpliterator(N root, int size) {
+			this.expectedModCount = modCount();
+			if(root != null) {
+				items.add(root);
+				estimates.add(size);
+			}
+			this.estimate = size;
+		}
+		private SubtreeSpliterator(int expectedModCount) {
+			this.expectedModCount = expectedModCount;
+		}
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			if(action == null)
+				throw new NullPointerException();
+			while(true) {
+				if(current != null) {
+					if(current.hasNext()) {
+						action.accept(current.next());
+						estimate = Math.max(0, estimate - 1);
+						return true;
+					}
+					current = null;
+				}
+				checkForComodification();
+				if(head == items.size())
+					return false;
+				N node = items.get(head);
+				boolean single = estimates.getInt(head) < 0;
+				head++;
+				if(single) {
+					action.accept(value(node));
+					estimate = Math.max(0, estimate - 1);
+					return true;
+				} else
+					current = new DepthFirstIterator(IN_ORDER, node, expectedModCount);
+			}
+		}
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			if(action == null)
+				throw new NullPointerException();
+			while(tryAdvance(action));
+		}
+		@Override
+		public Spliterator<E> trySplit() {
+			checkForComodification();
+			if(current == null && items.size() - head == 1 && estimates.getInt(head) >= 0)
+				expand();
+			int remaining = items.size() - head;
+			if(remaining == 0 || (remaining == 1 && current == null))
+				return null;
+			long pending = 0;
+			for(int i = head; i < items.size(); i++)
+				pending += size(i);
+			long inProgress = current == null ? 0 : Math.max(1, estimate - pending);
+			long half = (inProgress + pending + 1) / 2;
+			long prefixEstimate = inProgress;
+			int mid = head;
+			while(mid < items.size() - 1 && ((mid == head && current == null) || prefixEstimate + size(mid) <= half))
+				prefixEstimate += size(mid++);
+			SubtreeSpliterator prefix = new SubtreeSpliterator(expectedModCount);
+			prefix.current = current;
+			for(int i = head; i < mid; i++) {
+				prefix.items.add(items.get(i));
+				prefix.estimates.add(estimates.getInt(i));
+			}
+			prefix.estimate = prefixEstimate;
+			current = null;
+			head = mid;
+			estimate = pending - (prefixEstimate - inProgress);
+			return prefix;
+		}
+		/**
+		 * Replaces the last pending sub-tree with the sub-trees of the children of its root and the root itself. 
+		 * Chains of nodes having a single child are unrolled at once, so that they get split in halves too
+		 */
+		private void expand() {
+			N node = items.get(head);
+			items.remove(head);
+			estimates.size(head);
+			ArrayList<N> after = new ArrayList<N>();
+			while(true) {
+				int count = childCount(node);
+				int nodePosition = (count + 1) / 2;
+				int children = 0;
+				N only = null;
+				int onlyPosition = -1;
+				for(int i = 0; i < count; i++)
+					if(child(node, i) != null) {
+						children++;
+						only = child(node, i);
+						onlyPosition = i;
+					}
+				if(children != 1) {
+					for(int position = 0; position <= count; position++) {
+						if(position == nodePosition) {
+							items.add(node);
+							estimates.add(-1);
+						} else {
+							N child = child(node, position < nodePosition ? position : position - 1);
+							if(child != null) {
+								items.add(child);
+								estimates.add(subtreeSize(child));
+							}
+						}
+					}
+					break;
+				} else if(onlyPosition >= nodePosition) {
+					items.add(node);
+					estimates.add(-1);
+				} else
+					after.add(node);
+				node = only;
+			}
+			for(int i = after.size() - 1; i >= 0; i--) {
+				items.add(after.get(i));
+				estimates.add(-1);
+			}
+		}
+		private int size(int item) {
+			return Math.max(1, estimates.getInt(item));
+		}
+		private void checkForComodification() {
+			if(modCount() != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+		@Override
+		public int characteristics() {
+			return ORDERED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+		}
+	}
+
+	private class LevelOrderIterator implements Iterator<E> {
+		private final int expectedModCount = modCount();
+		private final ArrayDeque<N> queue = new ArrayDeque<N>();
+
+		LevelOrderIterator() {
+			if(root() != null)
+				queue.add(root());
+		}
+		@Override
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+		@Override
+		public E next() {
+			if(modCount() != expectedModCount)
+				throw new ConcurrentModificationException();
+			if(queue.isEmpty())
+				throw new NoSuchElementException();
+			N node = queue.remove();
+			for(int i = 0, count = childCount(node); i < count; i++) {
+				N child = child(node, i);
+				if(child != null)
+					queue.add(child);
+			}
+			return value(node);
+		}
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Traversal views are read only");
+		}
+	}
+}
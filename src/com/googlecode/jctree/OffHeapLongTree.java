@@ -0,0 +1,730 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A tree of primitive longs which keeps its nodes outside of the java heap, for hierarchies too big to be held by
+ * {@link ArrayListTree} without long garbage collection pauses. It offers the same queries as {@link LongTree}.
+ * <br>
+ * Keys, parents, last children, next siblings and levels of the nodes are stored in direct {@link ByteBuffer}s, and so is
+ * the open addressing hash index from key to node. Storage is allocated in chunks, so that the tree can grow beyond
+ * the 2GB limit of a single buffer without copying what is already allocated. Only the lists returned by the queries
+ * live on the heap.
+ * <br>
+ * The memory is released by {@link #close()}, after which the tree cannot be used any more. A tree which is not
+ * closed gives its memory back only when the buffers are garbage collected.
+ * @author Gaurav Saxena
+ */
+public class OffHeapLongTree implements Closeable {
+	private static final int FREE = -2;
+	private static final int MIN_CHUNK_SHIFT = 10;
+	private static final int MAX_CHUNK_SHIFT = 20;
+	private final int chunkShift;
+	private LongArray keys;
+	private IntArray parents;
+	private IntArray lastChildren;
+	private IntArray nextSiblings;
+	/**
+	 * Level of every node, root being at level 1
+	 */
+	private IntArray nodeLevels;
+	private Index nodeIndex;
+	/**
+	 * Number of nodes at every level, so that removals lower the depth without walking the tree
+	 */
+	private LevelHistogram levels = new LevelHistogram();
+	/**
+	 * Number of slots ever handed out, slots below it are either used or chained in the free list
+	 */
+	private int slots = 0;
+	private int freeSlot = -1;
+	private int size = 0;
+	private int rootIndex = -1;
+
+	public OffHeapLongTree() {
+		this(1 << MIN_CHUNK_SHIFT);
+	}
+	/**
+	 * @param expectedSize number of nodes expected in the tree. It decides the size of the chunks in which
+	 * memory is allocated
+	 */
+	public OffHeapLongTree(int expectedSize) {
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(expectedSize, 1) - 1);
+		chunkShift = Math.max(MIN_CHUNK_SHIFT, Math.min(MAX_CHUNK_SHIFT, shift));
+		keys = new LongArray(chunkShift);
+		parents = new IntArray(chunkShift);
+		lastChildren = new IntArray(chunkShift);
+		nextSiblings = new IntArray(chunkShift);
+		nodeLevels = new IntArray(chunkShift);
+		nodeIndex = new Index(chunkShift);
+	}
+	/**
+	 * If tree is empty, it adds a root. In case tree is not empty, it adds e as a child of the root
+	 * @param e node
+	 * @return true if e was not already in the tree, otherwise false
+	 */
+	public boolean add(long e) {
+		ensureOpen();
+		if(nodeIndex.get(e) > -1)
+			return false;
+		if(isEmpty()) {
+			rootIndex = newSlot(e, -1);
+			size++;
+		} else
+			addChild(rootIndex, e);
+		return true;
+	}
+	/**
+	 * @param parent node to which child needs to be added
+	 * @param child node
+	 * @return true if child is not already in the tree, otherwise false
+	 * @throws NodeNotFoundException if parent is not found
+	 */
+	public boolean add(long parent, long child) throws NodeNotFoundException {
+		int parentIndex = indexOf(parent);
+		if(nodeIndex.get(child) > -1)
+			return false;
+		addChild(parentIndex, child);
+		return true;
+	}
+	/**
+	 * Uses add(long parent, long child) to add all the nodes present in the collection
+	 * @param parent node to which children need to be added
+	 * @param c children to be added to parent
+	 * @return true if tree changed as a result of the operation, otherwise false
+	 * @throws NodeNotFoundException if parent is not found
+	 */
+	public boolean addAll(long parent, LongCollection c) throws NodeNotFoundException {
+		int parentIndex = indexOf(parent);
+		boolean retVal = false;
+		for(LongIterator iterator = c.iterator(); iterator.hasNext();) {
+			long child = iterator.nextLong();
+			if(nodeIndex.get(child) == -1) {
+				addChild(parentIndex, child);
+				retVal = true;
+			}
+		}
+		return retVal;
+	}
+	/**
+	 * @param e parent node
+	 * @return children of e in the order they were added
+	 * @throws NodeNotFoundException if e is not found
+	 */
+	public LongList children(long e) throws NodeNotFoundException {
+		int index = indexOf(e);
+		LongArrayList children = new LongArrayList();
+		int last = lastChildren.get(index);
+		if(last > -1) {
+			int child = last;
+			do {
+				child = nextSiblings.get(child);
+				children.add(keys.get(child));
+			} while(child != last);
+		}
+		return children;
+	}
+	/**
+	 * @param e child node
+	 * @return the parent node
+	 * @throws NodeNotFoundException if e is not found
+	 * @throws NoSuchElementException if e is root
+	 */
+	public long parent(long e) throws NodeNotFoundException {
+		int index = indexOf(e);
+		if(index == rootIndex)
+			throw new NoSuchElementException("Root node doesn't have a parent");
+		return keys.get(parents.get(index));
+	}
+	/**
+	 * @return the root node
+	 * @throws NoSuchElementException if tree is empty
+	 */
+	public long root() {
+		ensureOpen();
+		if(isEmpty())
+			throw new NoSuchElementException("Tree is empty");
+		return keys.get(rootIndex);
+	}
+	/**
+	 * @return all the siblings of the node i.e. those nodes which have the same parent as the parameter
+	 * @throws NodeNotFoundException if e is not found
+	 */
+	public LongList siblings(long e) throws NodeNotFoundException {
+		int index = indexOf(e);
+		if(index == rootIndex)
+			return new LongArrayList();
+		LongList siblings = children(keys.get(parents.get(index)));
+		siblings.rem(e);
+		return siblings;
+	}
+	/**
+	 * Finds the common ancestor of node1 and node2
+	 * @return the common ancestor of the nodes
+	 * @throws NodeNotFoundException if any of the nodes is not found
+	 */
+	public long commonAncestor(long node1, long node2) throws NodeNotFoundException {
+		int index1 = indexOf(node1);
+		int index2 = indexOf(node2);
+		int height1 = nodeLevels.get(index1);
+		int height2 = nodeLevels.get(index2);
+		for(; height1 > height2; height1--)
+			index1 = parents.get(index1);
+		for(; height2 > height1; height2--)
+			index2 = parents.get(index2);
+		while(index1 != index2) {
+			index1 = parents.get(index1);
+			index2 = parents.get(index2);
+		}
+		return keys.get(index1);
+	}
+	/**
+	 * @return true if any of the parent of child is equal to node, false otherwise
+	 * @throws NodeNotFoundException if child is not found in the tree
+	 */
+	public boolean isAncestor(long node, long child) throws NodeNotFoundException {
+		int childIndex = indexOf(child);
+		int index = nodeIndex.get(node);
+		for(int i = parents.get(childIndex); i > -1; i = parents.get(i))
+			if(i == index)
+				return true;
+		return false;
+	}
+	/**
+	 * @return true if node belongs to the tree rooted at parent, false otherwise
+	 * @throws NodeNotFoundException if parent is not found in the tree
+	 */
+	public boolean isDescendant(long parent, long node) throws NodeNotFoundException {
+		int parentIndex = indexOf(parent);
+		int index = nodeIndex.get(node);
+		if(index == -1)
+			return false;
+		for(int i = parents.get(index); i > -1; i = parents.get(i))
+			if(i == parentIndex)
+				return true;
+		return false;
+	}
+	public boolean contains(long e) {
+		ensureOpen();
+		return nodeIndex.get(e) > -1;
+	}
+	/**
+	 * Removes e and all its descendants
+	 * @return true if e was found, otherwise false
+	 */
+	public boolean remove(long e) {
+		ensureOpen();
+		int index = nodeIndex.get(e);
+		if(index == -1)
+			return false;
+		if(index == rootIndex) {
+			clear();
+			return true;
+		}
+		unlink(index);
+		IntArrayList stack = new IntArrayList();
+		stack.add(index);
+		while(!stack.isEmpty()) {
+			int i = stack.removeInt(stack.size() - 1);
+			pushChildren(stack, i);
+			freeSlot(i);
+		}
+		return true;
+	}
+	/**
+	 * Removes all the nodes. Memory already allocated is kept for the nodes added later
+	 */
+	public void clear() {
+		ensureOpen();
+		nodeIndex.clear();
+		slots = 0;
+		freeSlot = -1;
+		size = 0;
+		levels.clear();
+		rootIndex = -1;
+	}
+	/**
+	 * Releases the memory held by the tree. Calling any other method afterwards throws {@link IllegalStateException}
+	 */
+	@Override
+	public void close() {
+		if(keys != null) {
+			keys.close();
+			parents.close();
+			lastChildren.close();
+			nextSiblings.close();
+			nodeLevels.close();
+			nodeIndex.close();
+			keys = null;
+			parents = null;
+			lastChildren = null;
+			nextSiblings = null;
+			nodeLevels = null;
+			nodeIndex = null;
+			size = 0;
+			levels.clear();
+			rootIndex = -1;
+		}
+	}
+	public int size() {
+		return size;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	/**
+	 * @return depth of the tree i.e. the length of the path which has maximum number of nodes
+	 */
+	public int depth() {
+		return levels.depth();
+	}
+	/**
+	 * @return all the leaves of the tree i.e. those nodes which do not have children
+	 */
+	public LongList leaves() {
+		ensureOpen();
+		LongArrayList list = new LongArrayList();
+		if(!isEmpty()) {
+			IntArrayList stack = new IntArrayList();
+			stack.add(rootIndex);
+			while(!stack.isEmpty()) {
+				int i = stack.removeInt(stack.size() - 1);
+				if(lastChildren.get(i) == -1)
+					list.add(keys.get(i));
+				else
+					pushChildrenReversed(stack, i);
+			}
+		}
+		return list;
+	}
+	/**
+	 * @return nodes arranged as preOrderTraversal of the tree
+	 */
+	public LongList preOrderTraversal() {
+		ensureOpen();
+		LongArrayList list = new LongArrayList(size);
+		if(!isEmpty()) {
+			IntArrayList stack = new IntArrayList();
+			stack.add(rootIndex);
+			while(!stack.isEmpty()) {
+				int i = stack.removeInt(stack.size() - 1);
+				list.add(keys.get(i));
+				pushChildrenReversed(stack, i);
+			}
+		}
+		return list;
+	}
+	/**
+	 * @return nodes arranged as postOrderTraversal of the tree
+	 */
+	public LongList postOrderTraversal() {
+		ensureOpen();
+		LongArrayList list = new LongArrayList(size);
+		if(!isEmpty()) {
+			IntArrayList stack = new IntArrayList();
+			stack.add(rootIndex);
+			while(!stack.isEmpty()) {
+				int i = stack.removeInt(stack.size() - 1);
+				if(i < 0)
+					list.add(keys.get(~i));
+				else {
+					stack.add(~i);
+					pushChildrenReversed(stack, i);
+				}
+			}
+		}
+		return list;
+	}
+	/**
+	 * @return nodes arranged as inOrderTraversal of the tree. In order traversal publishes Ceiling(children.size / 2)
+	 * first and then the node and then nodes from Ceiling(children.size / 2) + 1 to children.size
+	 */
+	public LongList inOrderTraversal() {
+		ensureOpen();
+		LongArrayList list = new LongArrayList(size);
+		if(!isEmpty()) {
+			IntArrayList stack = new IntArrayList();
+			stack.add(rootIndex);
+			while(!stack.isEmpty()) {
+				int i = stack.removeInt(stack.size() - 1);
+				if(i < 0)
+					list.add(keys.get(~i));
+				else {
+					int start = stack.size();
+					pushChildrenReversed(stack, i);
+					int childCount = stack.size() - start;
+					stack.add(start + childCount / 2, ~i);
+				}
+			}
+		}
+		return list;
+	}
+	/**
+	 * @return nodes arranged as levelOrderTraversal of the tree
+	 */
+	public LongList levelOrderTraversal() {
+		ensureOpen();
+		LongArrayList list = new LongArrayList(size);
+		if(!isEmpty()) {
+			IntArrayList queue = new IntArrayList(size);
+			queue.add(rootIndex);
+			for(int head = 0; head < queue.size(); head++) {
+				int i = queue.getInt(head);
+				list.add(keys.get(i));
+				pushChildren(queue, i);
+			}
+		}
+		return list;
+	}
+	/**
+	 * @return nodes arranged as inOrderTraversal of the tree
+	 */
+	public long[] toLongArray() {
+		return inOrderTraversal().toLongArray();
+	}
+	@Override
+	public String toString() {
+		if(keys == null)
+			return "[closed]";
+		return inOrderTraversal().toString();
+	}
+
+	private void ensureOpen() {
+		if(keys == null)
+			throw new IllegalStateException("Tree is closed");
+	}
+	private int indexOf(long e) throws NodeNotFoundException {
+		ensureOpen();
+		int index = nodeIndex.get(e);
+		if(index == -1)
+			throw new NodeNotFoundException("No node was found for object");
+		return index;
+	}
+	private void addChild(int parentIndex, long child) {
+		int index = newSlot(child, parentIndex);
+		int last = lastChildren.get(parentIndex);
+		if(last == -1)
+			nextSiblings.set(index, index);
+		else {
+			nextSiblings.set(index, nextSiblings.get(last));
+			nextSiblings.set(last, index);
+		}
+		lastChildren.set(parentIndex, index);
+		size++;
+	}
+	private int newSlot(long e, int parentIndex) {
+		int index;
+		if(freeSlot > -1) {
+			index = freeSlot;
+			freeSlot = nextSiblings.get(index);
+		} else {
+			if(slots == Integer.MAX_VALUE)
+				throw new IllegalStateException("Tree cannot hold more than " + Integer.MAX_VALUE + " nodes");
+			index = slots++;
+			keys.ensureCapacity(slots);
+			parents.ensureCapacity(slots);
+			lastChildren.ensureCapacity(slots);
+			nextSiblings.ensureCapacity(slots);
+			nodeLevels.ensureCapacity(slots);
+		}
+		keys.set(index, e);
+		parents.set(index, parentIndex);
+		lastChildren.set(index, -1);
+		nextSiblings.set(index, -1);
+		int level = parentIndex == -1 ? 1 : nodeLevels.get(parentIndex) + 1;
+		nodeLevels.set(index, level);
+		levels.add(level);
+		nodeIndex.put(e, index);
+		return index;
+	}
+	private void freeSlot(int index) {
+		nodeIndex.remove(keys.get(index));
+		parents.set(index, FREE);
+		levels.remove(nodeLevels.get(index));
+		nextSiblings.set(index, freeSlot);
+		freeSlot = index;
+		size--;
+	}
+	/**
+	 * Takes the node out of the children list of its parent
+	 */
+	private void unlink(int index) {
+		int parentIndex = parents.get(index);
+		int previous = index;
+		while(nextSiblings.get(previous) != index)
+			previous = nextSiblings.get(previous);
+		if(previous == index)
+			lastChildren.set(parentIndex, -1);
+		else {
+			nextSiblings.set(previous, nextSiblings.get(index));
+			if(lastChildren.get(parentIndex) == index)
+				lastChildren.set(parentIndex, previous);
+		}
+	}
+	private void pushChildren(IntArrayList stack, int index) {
+		int last = lastChildren.get(index);
+		if(last > -1) {
+			int child = last;
+			do {
+				child = nextSiblings.get(child);
+				stack.add(child);
+			} while(child != last);
+		}
+	}
+	/**
+	 * Pushes children so that the first child is popped first
+	 */
+	private void pushChildrenReversed(IntArrayList stack, int index) {
+		int start = stack.size();
+		pushChildren(stack, index);
+		for(int i = start, j = stack.size() - 1; i < j; i++, j--)
+			stack.set(i, stack.set(j, stack.getInt(i)));
+	}
+
+	/**
+	 * Growable array of ints kept in direct buffers of 2^chunkShift elements each
+	 */
+	private static final class IntArray {
+		private final int chunkShift;
+		private final int chunkMask;
+		private ByteBuffer[] chunks = new ByteBuffer[0];
+
+		IntArray(int chunkShift) {
+			this.chunkShift = chunkShift;
+			this.chunkMask = (1 << chunkShift) - 1;
+		}
+		int get(int i) {
+			return chunks[i >>> chunkShift].getInt((i & chunkMask) << 2);
+		}
+		void set(int i, int value) {
+			chunks[i >>> chunkShift].putInt((i & chunkMask) << 2, value);
+		}
+		void ensureCapacity(long capacity) {
+			chunks = allocate(chunks, capacity, chunkShift, 4);
+		}
+		void close() {
+			release(chunks);
+			chunks = null;
+		}
+	}
+	/**
+	 * Growable array of longs kept in direct buffers of 2^chunkShift elements each
+	 */
+	private static final class LongArray {
+		private final int chunkShift;
+		private final int chunkMask;
+		private ByteBuffer[] chunks = new ByteBuffer[0];
+
+		LongArray(int chunkShift) {
+			this.chunkShift = chunkShift;
+			this.chunkMask = (1 << chunkShift) - 1;
+		}
+		long get(int i) {
+			return chunks[i >>> chunkShift].getLong((i & chunkMask) << 3);
+		}
+		void set(int i, long value) {
+			chunks[i >>> chunkShift].putLong((i & chunkMask) << 3, value);
+		}
+		void ensureCapacity(long capacity) {
+			chunks = allocate(chunks, capacity, chunkShift, 8);
+		}
+		void close() {
+			release(chunks);
+			chunks = null;
+		}
+	}
+	/**
+	 * Open addressing hash index from key to slot with linear probing. A slot is stored incremented by one, so that
+	 * the zeroed memory of a new buffer reads as empty
+	 */
+	private static final class Index {
+		private static final int MIN_CAPACITY = 16;
+		private final int chunkShift;
+		private LongArray keys;
+		private IntArray values;
+		private int mask;
+		private int size;
+		private int maxFill;
+
+		Index(int chunkShift) {
+			this.chunkShift = chunkShift;
+			allocateTable(MIN_CAPACITY);
+		}
+		/**
+		 * @return slot of the key, -1 if key is not present
+		 */
+		int get(long key) {
+			int pos = (int) HashCommon.mix(key) & mask;
+			int value;
+			while((value = values.get(pos)) != 0) {
+				if(keys.get(pos) == key)
+					return value - 1;
+				pos = (pos + 1) & mask;
+			}
+			return -1;
+		}
+		/**
+		 * Adds a key which is not present in the index
+		 */
+		void put(long key, int slot) {
+			if(size >= maxFill)
+				rehash(2 * (mask + 1));
+			insert(key, slot + 1);
+			size++;
+		}
+		void remove(long key) {
+			int pos = (int) HashCommon.mix(key) & mask;
+			while(values.get(pos) != 0) {
+				if(keys.get(pos) == key) {
+					size--;
+					shiftKeys(pos);
+					return;
+				}
+				pos = (pos + 1) & mask;
+			}
+		}
+		void clear() {
+			close();
+			allocateTable(MIN_CAPACITY);
+		}
+		void close() {
+			keys.close();
+			values.close();
+			size = 0;
+		}
+		private void insert(long key, int value) {
+			int pos = (int) HashCommon.mix(key) & mask;
+			while(values.get(pos) != 0)
+				pos = (pos + 1) & mask;
+			keys.set(pos, key);
+			values.set(pos, value);
+		}
+		/**
+		 * Closes the gap left by a removed entry, so that the probe sequences of the following entries stay unbroken
+		 */
+		private void shiftKeys(int pos) {
+			for(;;) {
+				int last = pos;
+				pos = (pos + 1) & mask;
+				int value;
+				long key;
+				for(;;) {
+					if((value = values.get(pos)) == 0) {
+						values.set(last, 0);
+						return;
+					}
+					key = keys.get(pos);
+					int home = (int) HashCommon.mix(key) & mask;
+					if(last <= pos ? last >= home || home > pos : last >= home && home > pos)
+						break;
+					pos = (pos + 1) & mask;
+				}
+				keys.set(last, key);
+				values.set(last, value);
+			}
+		}
+		private void rehash(int capacity) {
+			if(capacity <= 0)
+				throw new IllegalStateException("Index cannot grow any further");
+			LongArray oldKeys = keys;
+			IntArray oldValues = values;
+			int oldCapacity = mask + 1;
+			allocateTable(capacity);
+			for(int i = 0; i < oldCapacity; i++) {
+				int value = oldValues.get(i);
+				if(value != 0)
+					insert(oldKeys.get(i), value);
+			}
+			oldKeys.close();
+			oldValues.close();
+		}
+		private void allocateTable(int capacity) {
+			int shift = Math.min(chunkShift, Integer.numberOfTrailingZeros(capacity));
+			keys = new LongArray(shift);
+			values = new IntArray(shift);
+			keys.ensureCapacity(capacity);
+			values.ensureCapacity(capacity);
+			mask = capacity - 1;
+			maxFill = (int) (capacity * 3L / 4);
+		}
+	}
+
+	private static ByteBuffer[] allocate(ByteBuffer[] chunks, long capacity, int chunkShift, int elementSize) {
+		int needed = (int) ((capacity + (1 << chunkShift) - 1) >>> chunkShift);
+		if(needed <= chunks.length)
+			return chunks;
+		ByteBuffer[] grown = Arrays.copyOf(chunks, Math.max(needed, chunks.length + (chunks.length >> 1)));
+		for(int i = chunks.length; i < grown.length; i++)
+			grown[i] = ByteBuffer.allocateDirect(elementSize << chunkShift).order(ByteOrder.nativeOrder());
+		return grown;
+	}
+	private static void release(ByteBuffer[] chunks) {
+		for(ByteBuffer chunk : chunks)
+			Cleaner.free(chunk);
+	}
+	/**
+	 * Frees direct buffers right away instead of waiting for them to be garbage collected. There is no public
+	 * API for it, so the cleaner is looked up reflectively and when it cannot be found, the buffer is left to the
+	 * garbage collector
+	 */
+	private static final class Cleaner {
+		private static final Object UNSAFE;
+		private static final Method INVOKE_CLEANER;
+		static {
+			Object unsafe = null;
+			Method invokeCleaner = null;
+			try {
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+				Field field = unsafeClass.getDeclaredField("theUnsafe");
+				field.setAccessible(true);
+				unsafe = field.get(null);
+			} catch(Exception e) {
+				invokeCleaner = null;
+			}
+			UNSAFE = unsafe;
+			INVOKE_CLEANER = invokeCleaner;
+		}
+		static void free(ByteBuffer buffer) {
+			try {
+				if(INVOKE_CLEANER != null)
+					INVOKE_CLEANER.invoke(UNSAFE, buffer);
+				else {
+					Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+					cleanerMethod.setAccessible(true);
+					Object cleaner = cleanerMethod.invoke(buffer);
+					if(cleaner != null)
+						cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			} catch(Exception e) {
+				//left to the garbage collector
+			}
+		}
+	}
+}
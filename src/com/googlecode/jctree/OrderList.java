@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * Keeps a sequence of tokens such that the order of any two tokens is found by comparing their labels. A token 
+ * inserted between two others takes the label in the middle of their gap. When the gap is used up, the smallest 
+ * aligned range of labels around the insertion point which is sparse enough is relabeled evenly, as in Bender et al,
+ * "Two Simplified Algorithms for Maintaining Order in a List". A range of 2^i labels is sparse enough when it holds
+ * at most 2^(i/2) tokens, which makes an insert cost O(log n) amortized and leaves room for 2^31 tokens in 62 bit 
+ * labels.
+ * <br>
+ * Token {@link #HEAD} is always present and precedes every other token
+ * @author Gaurav Saxena
+ */
+final class OrderList implements Cloneable {
+	static final int HEAD = 0;
+	private static final int LABEL_BITS = 62;
+	private static final long END = 1L << LABEL_BITS;
+	private LongArrayList labels = new LongArrayList();
+	private IntArrayList nextList = new IntArrayList();
+	private IntArrayList previousList = new IntArrayList();
+	/**
+	 * Removed tokens, handed out again by the next inserts
+	 */
+	private IntArrayList freeList = new IntArrayList();
+
+	OrderList() {
+		clear();
+	}
+	/**
+	 * @return new token placed right after the token
+	 */
+	int insertAfter(int token) {
+		int next = nextList.getInt(token);
+		long low = labels.getLong(token);
+		long high = next == -1 ? END : labels.getLong(next);
+		if(high - low < 2) {
+			relabel(token);
+			low = labels.getLong(token);
+			high = next == -1 ? END : labels.getLong(next);
+		}
+		int inserted;
+		if(freeList.isEmpty()) {
+			inserted = labels.size();
+			labels.add(low + (high - low) / 2);
+			nextList.add(next);
+			previousList.add(token);
+		} else {
+			inserted = freeList.popInt();
+			labels.set(inserted, low + (high - low) / 2);
+			nextList.set(inserted, next);
+			previousList.set(inserted, token);
+		}
+		nextList.set(token, inserted);
+		if(next != -1)
+			previousList.set(next, inserted);
+		return inserted;
+	}
+	/**
+	 * @return new token placed right before the token, which should not be {@link #HEAD}
+	 */
+	int insertBefore(int token) {
+		return insertAfter(previousList.getInt(token));
+	}
+	void remove(int token) {
+		int previous = previousList.getInt(token);
+		int next = nextList.getInt(token);
+		nextList.set(previous, next);
+		if(next != -1)
+			previousList.set(next, previous);
+		freeList.push(token);
+	}
+	/**
+	 * Removes all the tokens but {@link #HEAD} and adds tokens 1 to count in that order with evenly spread labels, 
+	 * in O(count)
+	 */
+	void fill(int count) {
+		clear();
+		long gap = END / (count + 1);
+		for(int token = 1; token <= count; token++) {
+			labels.add(token * gap);
+			nextList.add(token < count ? token + 1 : -1);
+			previousList.add(token - 1);
+		}
+		if(count > 0)
+			nextList.set(HEAD, 1);
+	}
+	/**
+	 * @return true if token1 comes before token2
+	 */
+	boolean precedes(int token1, int token2) {
+		return labels.getLong(token1) < labels.getLong(token2);
+	}
+	/**
+	 * Removes all the tokens but {@link #HEAD}
+	 */
+	void clear() {
+		labels.clear();
+		nextList.clear();
+		previousList.clear();
+		freeList.clear();
+		labels.add(0);
+		nextList.add(-1);
+		previousList.add(-1);
+	}
+	/**
+	 * Spreads out the labels of the smallest sparse enough range around the token, leaving a gap of at least 2 
+	 * after every token in the range
+	 */
+	private void relabel(int token) {
+		long label = labels.getLong(token);
+		int first = token;
+		int last = token;
+		long count = 1;
+		for(int i = 1; i <= LABEL_BITS; i++) {
+			long low = label & -(1L << i);
+			long high = low + (1L << i);
+			for(int previous = previousList.getInt(first); previous != -1 && labels.getLong(previous) >= low; previous = previousList.getInt(first)) {
+				first = previous;
+				count++;
+			}
+			for(int next = nextList.getInt(last); next != -1 && labels.getLong(next) < high; next = nextList.getInt(last)) {
+				last = next;
+				count++;
+			}
+			if((count + 1) * (count + 1) <= 1L << i) {
+				long gap = (1L << i) / (count + 1);
+				long next = low;
+				for(int t = first; ; t = nextList.getInt(t)) {
+					labels.set(t, next);
+					next += gap;
+					if(t == last)
+						break;
+				}
+				return;
+			}
+		}
+		throw new IllegalStateException("Too many tokens to keep in order");
+	}
+	@Override
+	public OrderList clone() {
+		try {
+			OrderList v = (OrderList) super.clone();
+			v.labels = labels.clone();
+			v.nextList = nextList.clone();
+			v.previousList = previousList.clone();
+			v.freeList = freeList.clone();
+			return v;
+		} catch (CloneNotSupportedException e) {
+			throw new InternalError();//This should't happen because we are cloneable
+		}
+	}
+}
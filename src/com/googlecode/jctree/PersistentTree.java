@@ -0,0 +1,542 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+/**
+ * An immutable n-ary tree where every modification returns a new version of the tree and leaves this one as it was.
+ * Nodes hold their children but not their parents, so {@link #plus(Object, Object)} and {@link #minus(Object)} copy
+ * only the nodes from the root down to the node changed, O(depth) of them, and share every other sub-tree with the
+ * version they started from. Parents of the elements are kept in a persistent hash trie, which is path copied the
+ * same way.
+ * <br>
+ * Children of a node are held in a plain array, so copying a node copies, searches and sums over all its children.
+ * A modification costs O(depth * fanout), fanout being the largest number of children of a node on the path, and
+ * adding k children to one parent one by one costs O(k^2). Wide and flat trees are better kept in a
+ * {@link LinkedTree} and snapshotted with clone.
+ * <br>
+ * The nodes of a version never change after it is returned, so any number of threads can read any version without
+ * locking. The only state filled by queries is the index behind {@link #commonAncestor(Object, Object)},
+ * {@link #ancestor(Object, int)} and {@link #levelOf(Object)}, which is safe for concurrent queries as the version
+ * is never modified. Methods of {@link Collection} and {@link Tree} which modify the tree in place throw
+ * {@link UnsupportedOperationException}. Like {@link LinkedTree}, children are kept in insertion order.
+ * @author Gaurav Saxena
+ *
+ * @param <E>
+ */
+public class PersistentTree<E> implements Tree<E> {
+	private static final Object[] NO_CHILDREN = new Object[0];
+	private final Node<E> root;
+	/**
+	 * Maps every element other than the root to the element of its parent
+	 */
+	private final HashTrie<E, E> parents;
+	private final AncestorIndex<E> ancestorIndex = new AncestorIndex<E>();
+
+	public PersistentTree() {
+		this(null, HashTrie.<E, E>empty());
+	}
+	private PersistentTree(Node<E> root, HashTrie<E, E> parents) {
+		this.root = root;
+		this.parents = parents;
+	}
+	/**
+	 * Adds e the same way as {@link LinkedTree#add(Object)} does, as root to an empty tree or else as a child of the root
+	 * @return the new version, this tree if e was already present
+	 */
+	public PersistentTree<E> plus(E e) {
+		try {
+			return plus(isEmpty() ? null : root.element, e);
+		} catch(NodeNotFoundException ex) {
+			throw new IllegalArgumentException(ex);//This should never happen as the parent is either null or the root
+		}
+	}
+	/**
+	 * Adds child under the parent, copying the nodes from the root down to the parent
+	 * @param parent parent node. It can be null only when the tree is empty, in which case child becomes the root
+	 * @return the new version, this tree if an equal child was already present
+	 * @throws NodeNotFoundException if parent is not found
+	 */
+	public PersistentTree<E> plus(E parent, E child) throws NodeNotFoundException {
+		checkNode(child);
+		if(parent == null) {
+			if(isEmpty())
+				return new PersistentTree<E>(new Node<E>(child, NO_CHILDREN), parents);
+			else
+				throw new IllegalArgumentException("parent cannot be null except for root element");
+		}
+		List<Node<E>> path = path(parent);
+		if(path == null)
+			throw new NodeNotFoundException("No node was found for parent object");
+		if(contains(child))
+			return this;
+		Node<E> parentNode = path.get(path.size() - 1);
+		return new PersistentTree<E>(copyPath(path, parentNode.plus(new Node<E>(child, NO_CHILDREN))), 
+				parents.put(child, parentNode.element));
+	}
+	/**
+	 * @return the new version with all the elements of c added under the parent one by one
+	 * @throws NodeNotFoundException if parent is not found
+	 */
+	public PersistentTree<E> plusAll(E parent, Collection<? extends E> c) throws NodeNotFoundException {
+		PersistentTree<E> tree = this;
+		for(E e : c)
+			tree = tree.plus(parent, e);
+		return tree;
+	}
+	/**
+	 * Removes the sub-tree of o, copying the nodes from the root down to its parent
+	 * @return the new version, this tree if o is not present
+	 */
+	public PersistentTree<E> minus(Object o) {
+		checkNode(o);
+		List<Node<E>> path = path(o);
+		if(path == null)
+			return this;
+		else if(path.size() == 1)
+			return new PersistentTree<E>();
+		HashTrie<E, E> parents = this.parents;
+		ArrayDeque<Node<E>> nodes = new ArrayDeque<Node<E>>();
+		nodes.push(path.get(path.size() - 1));
+		while(!nodes.isEmpty()) {
+			Node<E> node = nodes.pop();
+			parents = parents.remove(node.element);
+			for(int i = 0; i < node.children.length; i++)
+				nodes.push(node.child(i));
+		}
+		return new PersistentTree<E>(copyPath(path, null), parents);
+	}
+	/**
+	 * @return nodes from the root down to the node of e, null if e is not present
+	 */
+	private List<Node<E>> path(Object e) {
+		if(isEmpty())
+			return null;
+		ArrayList<Object> elements = new ArrayList<Object>();
+		for(Object element = e; !root.element.equals(element); element = parents.get(element)) {
+			if(element == null)
+				return null;
+			elements.add(element);
+		}
+		ArrayList<Node<E>> path = new ArrayList<Node<E>>(elements.size() + 1);
+		Node<E> node = root;
+		path.add(node);
+		for(int i = elements.size() - 1; i >= 0; i--) {
+			node = node.child(elements.get(i));
+			path.add(node);
+		}
+		return path;
+	}
+	/**
+	 * @return copies of the nodes of the path, the last one replaced by replacement or dropped if it is null
+	 */
+	private Node<E> copyPath(List<Node<E>> path, Node<E> replacement) {
+		Node<E> node = replacement;
+		for(int i = path.size() - 2; i >= 0; i--)
+			node = path.get(i).replace(path.get(i + 1), node);
+		return node;
+	}
+	private Node<E> node(E e) throws NodeNotFoundException {
+		List<Node<E>> path = path(e);
+		if(path == null)
+			throw new NodeNotFoundException("No node was found for object");
+		return path.get(path.size() - 1);
+	}
+	/**
+	 * A persistent tree can't be modified in place. Please use plus(child) which returns the new version
+	 * The method throws {@link UnsupportedOperationException}
+	 */
+	@Override
+	public boolean add(E e) {
+		throw new UnsupportedOperationException("A persistent tree can't be modified in place. Please use plus(child)");
+	}
+	/**
+	 * The method throws {@link UnsupportedOperationException}, see {@link #plus(Object, Object)}
+	 */
+	@Override
+	public boolean add(E parent, E child) throws NodeNotFoundException {
+		throw new UnsupportedOperationException("A persistent tree can't be modified in place. Please use plus(parent, child)");
+	}
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		throw new UnsupportedOperationException("A persistent tree can't be modified in place. Please use plus(child)");
+	}
+	@Override
+	public boolean addAll(E parent, Collection<? extends E> c) throws NodeNotFoundException {
+		throw new UnsupportedOperationException("A persistent tree can't be modified in place. Please use plusAll(parent, c)");
+	}
+	/**
+	 * The method throws {@link UnsupportedOperationException}, see {@link #minus(Object)}
+	 */
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException("A persistent tree can't be modified in place. Please use minus(node)");
+	}
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		throw new UnsupportedOperationException("A persistent tree can't be modified in place. Please use minus(node)");
+	}
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw new UnsupportedOperationException("Tree interface doesn't support retainAll");
+	}
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException("A persistent tree can't be modified in place. Please use new PersistentTree()");
+	}
+	@Override
+	public List<E> children(E e) throws NodeNotFoundException {
+		checkNode(e);
+		Node<E> node = node(e);
+		ArrayList<E> children = new ArrayList<E>(node.children.length);
+		for(int i = 0; i < node.children.length; i++)
+			children.add(node.child(i).element);
+		return children;
+	}
+	@Override
+	public E commonAncestor(E node1, E node2) throws NodeNotFoundException {
+		checkNode(node1);
+		checkNode(node2);
+		return ancestorIndex.commonAncestor(this, 0, node1, node2);
+	}
+	@Override
+	public E ancestor(E node, int k) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.ancestor(this, 0, node, k);
+	}
+	@Override
+	public int levelOf(E node) throws NodeNotFoundException {
+		checkNode(node);
+		return ancestorIndex.levelOf(this, 0, node);
+	}
+	@Override
+	public Iterable<E> ancestors(final E node) throws NodeNotFoundException {
+		checkNode(node);
+		if(!contains(node))
+			throw new NodeNotFoundException("No node was found for object");
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return new Iterator<E>() {
+					private E next = parents.get(node);
+					@Override
+					public boolean hasNext() {
+						return next != null;
+					}
+					@Override
+					public E next() {
+						if(next == null)
+							throw new NoSuchElementException();
+						E ancestor = next;
+						next = parents.get(next);
+						return ancestor;
+					}
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+	@Override
+	public int subtreeSize(E node) throws NodeNotFoundException {
+		checkNode(node);
+		return node(node).size;
+	}
+	@Override
+	public int childCount(E node) throws NodeNotFoundException {
+		checkNode(node);
+		return node(node).children.length;
+	}
+	@Override
+	public boolean contains(Object o) {
+		if(o == null || isEmpty())
+			return false;
+		else
+			return root.element.equals(o) || parents.get(o) != null;
+	}
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		for(Object i : c)
+			if(!contains(i))
+				return false;
+		return true;
+	}
+	@Override
+	public int depth() {
+		return isEmpty() ? 0 : root.height;
+	}
+	@Override
+	@Deprecated
+	public List<E> inorderOrderTraversal() {
+		return inOrderTraversal();
+	}
+	@Override
+	public List<E> inOrderTraversal() {
+		return new TreeHelper().toList(inOrderView(), size());
+	}
+	@Override
+	public boolean isAncestor(E node, E child) throws NodeNotFoundException {
+		checkNode(child);
+		if(!contains(child))
+			throw new NodeNotFoundException("No node was found for object");
+		if(node == null)
+			return false;
+		for(E e = parents.get(child); e != null; e = parents.get(e))
+			if(e.equals(node))
+				return true;
+		return false;
+	}
+	@Override
+	public boolean isDescendant(E parent, E node) throws NodeNotFoundException {
+		return isAncestor(parent, node);
+	}
+	@Override
+	public boolean isEmpty() {
+		return root == null;
+	}
+	@Override
+	public Iterator<E> iterator() {
+		return inOrderView().iterator();
+	}
+	/**
+	 * Spliterator returns nodes in the same order as {@link #iterator()} and splits the tree at child boundaries
+	 * @see java.util.Collection#spliterator()
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return traversal().spliterator(size());
+	}
+	@Override
+	public List<E> leaves() {
+		return new TreeHelper().toList(leavesView());
+	}
+	@Override
+	public List<E> levelOrderTraversal() {
+		return new TreeHelper().toList(levelOrderView(), size());
+	}
+	@Override
+	public E parent(E e) throws NodeNotFoundException {
+		checkNode(e);
+		if(!contains(e))
+			throw new NodeNotFoundException("No node was found for object");
+		return parents.get(e);
+	}
+	@Override
+	public List<E> postOrderTraversal() {
+		return new TreeHelper().toList(postOrderView(), size());
+	}
+	@Override
+	public List<E> preOrderTraversal() {
+		return new TreeHelper().toList(preOrderView(), size());
+	}
+	@Override
+	public Iterable<E> preOrderView() {
+		return traversal().preOrder();
+	}
+	@Override
+	public Iterable<E> postOrderView() {
+		return traversal().postOrder();
+	}
+	@Override
+	public Iterable<E> inOrderView() {
+		return traversal().inOrder();
+	}
+	@Override
+	public Iterable<E> levelOrderView() {
+		return traversal().levelOrder();
+	}
+	@Override
+	public Iterable<E> leavesView() {
+		return traversal().leaves();
+	}
+	@Override
+	public E walk(TreeVisitor<? super E> visitor) {
+		if(isEmpty())
+			return null;
+		else
+			return traversal().walk(root, null, visitor);
+	}
+	@Override
+	public E walk(E node, TreeVisitor<? super E> visitor) throws NodeNotFoundException {
+		checkNode(node);
+		return traversal().walk(node(node), parents.get(node), visitor);
+	}
+	private NodeTraversal<E, Node<E>> traversal() {
+		return new NodeTraversal<E, Node<E>>() {
+			@Override
+			Node<E> root() {
+				return root;
+			}
+			@Override
+			int childCount(Node<E> node) {
+				return node.children.length;
+			}
+			@Override
+			Node<E> child(Node<E> node, int position) {
+				return node.child(position);
+			}
+			@Override
+			Node<E> parent(Node<E> node) {
+				List<Node<E>> path = path(node.element);
+				return path.size() == 1 ? null : path.get(path.size() - 2);
+			}
+			@Override
+			int subtreeSize(Node<E> node) {
+				return node.size;
+			}
+			@Override
+			E value(Node<E> node) {
+				return node.element;
+			}
+			@Override
+			int modCount() {
+				return 0;
+			}
+		};
+	}
+	@Override
+	public E root() {
+		if(isEmpty())
+			return null;
+		else
+			return root.element;
+	}
+	@Override
+	public List<E> siblings(E e) throws NodeNotFoundException {
+		checkNode(e);
+		E parent = parent(e);
+		if(parent != null) {
+			List<E> children = children(parent);
+			children.remove(e);
+			return children;
+		} else
+			return new ArrayList<E>();
+	}
+	@Override
+	public int size() {
+		return isEmpty() ? 0 : root.size;
+	}
+	@Override
+	public Object[] toArray() {
+		return getCurrentList().toArray();
+	}
+	@Override
+	public <T> T[] toArray(T[] a) {
+		return getCurrentList().toArray(a);
+	}
+	private List<E> getCurrentList() {
+		return inOrderTraversal();
+	}
+	private void checkNode(Object child) {
+		if(child == null)
+			throw new IllegalArgumentException("null nodes are not allowed");
+	}
+	@Override
+	public String toString() {
+		return getCurrentList().toString();
+	}
+	@Override
+	public int hashCode() {
+		return getCurrentList().hashCode();
+	}
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean equals(Object o) {
+		if(o != null && o instanceof PersistentTree) {
+			try {
+				return new TreeHelper().isEqual((PersistentTree<E>) o, this, ((PersistentTree<E>) o).root(), root());
+			} catch (NodeNotFoundException e) {
+				e.printStackTrace();
+				return false;
+			}
+		} else
+			return false;
+	}
+	/**
+	 * Node shared by all the versions whose sub-tree at it is the same, hence without a parent
+	 */
+	private static final class Node<E> {
+		final E element;
+		final Object[] children;
+		/**
+		 * Number of nodes in the sub-tree of the node
+		 */
+		final int size;
+		/**
+		 * Number of levels in the sub-tree of the node
+		 */
+		final int height;
+
+		Node(E element, Object[] children) {
+			this.element = element;
+			this.children = children;
+			int size = 1;
+			int height = 0;
+			for(Object child : children) {
+				size += ((Node<?>) child).size;
+				height = Math.max(height, ((Node<?>) child).height);
+			}
+			this.size = size;
+			this.height = height + 1;
+		}
+		@SuppressWarnings("unchecked")
+		Node<E> child(int position) {
+			return (Node<E>) children[position];
+		}
+		/**
+		 * @return the child holding an element equal to element
+		 */
+		Node<E> child(Object element) {
+			for(int i = 0; ; i++)
+				if(child(i).element.equals(element))
+					return child(i);
+		}
+		/**
+		 * @return copy of the node with the child appended
+		 */
+		Node<E> plus(Node<E> child) {
+			Object[] copy = new Object[children.length + 1];
+			System.arraycopy(children, 0, copy, 0, children.length);
+			copy[children.length] = child;
+			return new Node<E>(element, copy);
+		}
+		/**
+		 * @return copy of the node with the child replaced, or removed if replacement is null
+		 */
+		Node<E> replace(Node<E> child, Node<E> replacement) {
+			int i = 0;
+			while(children[i] != child)
+				i++;
+			Object[] copy;
+			if(replacement != null) {
+				copy = children.clone();
+				copy[i] = replacement;
+			} else {
+				copy = new Object[children.length - 1];
+				System.arraycopy(children, 0, copy, 0, i);
+				System.arraycopy(children, i + 1, copy, i, copy.length - i);
+			}
+			return new Node<E>(element, copy);
+		}
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Navigation of a binary search tree whose nodes know their parents. Searches descend from the root once, and range
+ * views start at the first node of the range and step to in order successors, so going through k values of a range
+ * costs O(log n + k) and nothing is copied.
+ * <br>
+ * Range views are read only and their iterators fail fast with {@link ConcurrentModificationException} once the tree
+ * is structurally modified
+ * @author Gaurav Saxena
+ *
+ * @param <E> object type contained in the tree
+ * @param <N> node type of the tree
+ */
+abstract class SearchNavigation<E extends Comparable<E>, N> {
+	/**
+	 * @return root node, null if the tree is empty
+	 */
+	abstract N root();
+	/**
+	 * @return left child, null if there is none
+	 */
+	abstract N left(N node);
+	/**
+	 * @return right child, null if there is none
+	 */
+	abstract N right(N node);
+	/**
+	 * @return parent of the node, null for the root
+	 */
+	abstract N parent(N node);
+	abstract E value(N node);
+	/**
+	 * @return counter which changes on every structural modification of the tree
+	 */
+	abstract int modCount();
+
+	/**
+	 * @return the greatest value less than or equal to e, null if there is none
+	 */
+	E floor(E e) {
+		return valueOf(below(e, true));
+	}
+	/**
+	 * @return the greatest value strictly less than e, null if there is none
+	 */
+	E lower(E e) {
+		return valueOf(below(e, false));
+	}
+	/**
+	 * @return the least value greater than or equal to e, null if there is none
+	 */
+	E ceiling(E e) {
+		return valueOf(above(e, true));
+	}
+	/**
+	 * @return the least value strictly greater than e, null if there is none
+	 */
+	E higher(E e) {
+		return valueOf(above(e, false));
+	}
+	/**
+	 * @return the least value, null if the tree is empty
+	 */
+	E first() {
+		return valueOf(firstNode());
+	}
+	/**
+	 * @return the greatest value, null if the tree is empty
+	 */
+	E last() {
+		return valueOf(lastNode());
+	}
+	/**
+	 * @param from lower end of the range, null if the range is not bounded below
+	 * @param to upper end of the range, null if the range is not bounded above
+	 * @return lazy view of the values in the range in ascending order
+	 */
+	Iterable<E> range(final E from, final boolean fromInclusive, final E to, final boolean toInclusive) {
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return new RangeIterator(from == null ? firstNode() : above(from, fromInclusive), to, toInclusive, false);
+			}
+		};
+	}
+	/**
+	 * @return iterator over all the values in descending order
+	 */
+	Iterator<E> descendingIterator() {
+		return new RangeIterator(lastNode(), null, true, true);
+	}
+	private E valueOf(N node) {
+		return node == null ? null : value(node);
+	}
+	private N below(E e, boolean inclusive) {
+		N found = null;
+		N node = root();
+		while(node != null) {
+			int comparison = e.compareTo(value(node));
+			if(comparison == 0 && inclusive)
+				return node;
+			else if(comparison > 0) {
+				found = node;
+				node = right(node);
+			} else
+				node = left(node);
+		}
+		return found;
+	}
+	private N above(E e, boolean inclusive) {
+		N found = null;
+		N node = root();
+		while(node != null) {
+			int comparison = e.compareTo(value(node));
+			if(comparison == 0 && inclusive)
+				return node;
+			else if(comparison < 0) {
+				found = node;
+				node = left(node);
+			} else
+				node = right(node);
+		}
+		return found;
+	}
+	private N firstNode() {
+		N node = root();
+		if(node != null)
+			for(N left = left(node); left != null; left = left(node))
+				node = left;
+		return node;
+	}
+	private N lastNode() {
+		N node = root();
+		if(node != null)
+			for(N right = right(node); right != null; right = right(node))
+				node = right;
+		return node;
+	}
+	private N successor(N node) {
+		N right = right(node);
+		if(right != null) {
+			for(N left = left(right); left != null; left = left(right))
+				right = left;
+			return right;
+		}
+		N parent = parent(node);
+		while(parent != null && node.equals(right(parent))) {
+			node = parent;
+			parent = parent(node);
+		}
+		return parent;
+	}
+	private N predecessor(N node) {
+		N left = left(node);
+		if(left != null) {
+			for(N right = right(left); right != null; right = right(left))
+				left = right;
+			return left;
+		}
+		N parent = parent(node);
+		while(parent != null && node.equals(left(parent))) {
+			node = parent;
+			parent = parent(node);
+		}
+		return parent;
+	}
+
+	/**
+	 * Steps from node to node in order until the bound of the range is crossed
+	 */
+	private class RangeIterator implements Iterator<E> {
+		private final int expectedModCount = modCount();
+		private final E bound;
+		private final boolean boundInclusive;
+		private final boolean descending;
+		private N next;
+
+		RangeIterator(N start, E bound, boolean boundInclusive, boolean descending) {
+			this.bound = bound;
+			this.boundInclusive = boundInclusive;
+			this.descending = descending;
+			this.next = inRange(start);
+		}
+		private N inRange(N node) {
+			if(node == null || bound == null)
+				return node;
+			int comparison = value(node).compareTo(bound);
+			if(descending)
+				comparison = -comparison;
+			return comparison < 0 || (comparison == 0 && boundInclusive) ? node : null;
+		}
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+		@Override
+		public E next() {
+			if(modCount() != expectedModCount)
+				throw new ConcurrentModificationException();
+			if(next == null)
+				throw new NoSuchElementException();
+			N node = next;
+			next = inRange(descending ? predecessor(node) : successor(node));
+			return value(node);
+		}
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Range views are read only");
+		}
+	}
+}
@@ -0,0 +1,510 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lazy traversals of a tree which keeps its nodes in integer slots. Depth first iterators walk the tree with an
+ * explicit stack of (slot, position) pairs, so they hold memory proportional to the depth of the tree and never
+ * overflow the call stack. Level order iterator holds one level of the tree at a time.
+ * <br>
+ * All iterators and spliterators fail fast with {@link ConcurrentModificationException} once the tree is structurally modified
+ * @author Gaurav Saxena
+ *
+ * @param <E> object type contained in the tree
+ */
+abstract class SlotTraversal<E> {
+	private static final int PRE_ORDER = 0;
+	private static final int IN_ORDER = 1;
+	private static final int POST_ORDER = 2;
+	private static final int LEAVES = 3;
+
+	/**
+	 * @return slot of the root, -1 if the tree is empty
+	 */
+	abstract int root();
+	/**
+	 * @return number of child positions of the slot. Some of the positions may be empty
+	 */
+	abstract int childCount(int slot);
+	/**
+	 * @return slot of the child at the position, -1 if the position is empty
+	 */
+	abstract int child(int slot, int position);
+	/**
+	 * @return slot of the parent, -1 for the root
+	 */
+	abstract int parent(int slot);
+	/**
+	 * @return number of nodes in the sub-tree rooted at the slot
+	 */
+	abstract int subtreeSize(int slot);
+	abstract E value(int slot);
+	/**
+	 * @return counter which changes on every structural modification of the tree
+	 */
+	abstract int modCount();
+
+	Iterable<E> preOrder() {
+		return depthFirst(PRE_ORDER);
+	}
+	/**
+	 * In order publishes Ceiling(childCount / 2) child positions first, then the node and then the rest of the positions
+	 */
+	Iterable<E> inOrder() {
+		return depthFirst(IN_ORDER);
+	}
+	Iterable<E> postOrder() {
+		return depthFirst(POST_ORDER);
+	}
+	Iterable<E> leaves() {
+		return depthFirst(LEAVES);
+	}
+	/**
+	 * @param size number of nodes in the tree
+	 * @return spliterator over the nodes in order, see {@link SubtreeSpliterator}
+	 */
+	Spliterator<E> spliterator(int size) {
+		return new SubtreeSpliterator(root(), size);
+	}
+	/**
+	 * Counts the nodes under every slot in O(n). Slots are listed in level order and then visited backwards, so every
+	 * slot has its count complete when it is added to its parent
+	 * @param slots number of slots in the tree, used or not
+	 * @return number of nodes in the sub-tree rooted at every slot, 0 for the slots not in the tree
+	 */
+	int[] subtreeSizes(int slots) {
+		int[] sizes = new int[slots];
+		if(root() == -1)
+			return sizes;
+		IntArrayList order = new IntArrayList();
+		order.add(root());
+		for(int i = 0; i < order.size(); i++) {
+			int slot = order.getInt(i);
+			for(int position = 0, count = childCount(slot); position < count; position++) {
+				int child = child(slot, position);
+				if(child != -1)
+					order.add(child);
+			}
+		}
+		for(int i = order.size() - 1; i >= 0; i--) {
+			int slot = order.getInt(i);
+			sizes[slot]++;
+			if(i > 0)
+				sizes[parent(slot)] += sizes[slot];
+		}
+		return sizes;
+	}
+	/**
+	 * Walks the sub-tree rooted at start with explicit stacks of slots and child positions
+	 * @param start slot of the node to start from
+	 * @param parent parent of the start node, null if it is the root
+	 * @return the node at which the visitor terminated the walk, null if the walk completed
+	 */
+	E walk(int start, E parent, TreeVisitor<? super E> visitor) {
+		int expectedModCount = modCount();
+		switch(visitor.preVisit(value(start), parent, 1)) {
+		case CONTINUE:
+			break;
+		case TERMINATE:
+			return value(start);
+		default:
+			return null;
+		}
+		IntArrayList slots = new IntArrayList();
+		IntArrayList positions = new IntArrayList();
+		slots.push(start);
+		positions.push(0);
+		while(!slots.isEmpty()) {
+			if(modCount() != expectedModCount)
+				throw new ConcurrentModificationException();
+			int top = slots.size() - 1;
+			int slot = slots.getInt(top);
+			int count = childCount(slot);
+			int position = positions.getInt(top);
+			int child = -1;
+			while(position < count && (child = child(slot, position++)) == -1);
+			positions.set(top, position);
+			if(child != -1) {
+				switch(visitor.preVisit(value(child), value(slot), slots.size() + 1)) {
+				case CONTINUE:
+					slots.push(child);
+					positions.push(0);
+					break;
+				case SKIP_SIBLINGS:
+					positions.set(top, count);
+					break;
+				case TERMINATE:
+					return value(child);
+				default:
+					break;
+				}
+			} else {
+				slots.popInt();
+				positions.popInt();
+				switch(visitor.postVisit(value(slot), top == 0 ? parent : value(slots.getInt(top - 1)), top + 1)) {
+				case SKIP_SIBLINGS:
+					if(top > 0)
+						positions.set(top - 1, childCount(slots.getInt(top - 1)));
+					break;
+				case TERMINATE:
+					return value(slot);
+				default:
+					break;
+				}
+			}
+		}
+		return null;
+	}
+	/**
+	 * @param slot slot of the node whose ancestors are needed
+	 * @return ancestors of the node from its parent up to the root. The view fails fast once the tree is structurally
+	 * modified after this call
+	 */
+	Iterable<E> ancestors(final int slot) {
+		final int expectedModCount = modCount();
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				if(modCount() != expectedModCount)
+					throw new ConcurrentModificationException();
+				return new Iterator<E>() {
+					private int next = parent(slot);
+
+					@Override
+					public boolean hasNext() {
+						return next != -1;
+					}
+					@Override
+					public E next() {
+						if(modCount() != expectedModCount)
+							throw new ConcurrentModificationException();
+						if(next == -1)
+							throw new NoSuchElementException();
+						E e = value(next);
+						next = parent(next);
+						return e;
+					}
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException("Traversal views are read only");
+					}
+				};
+			}
+		};
+	}
+	Iterable<E> levelOrder() {
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return new LevelOrderIterator();
+			}
+		};
+	}
+	private Iterable<E> depthFirst(final int order) {
+		return new Iterable<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return new DepthFirstIterator(order, root(), modCount());
+			}
+		};
+	}
+	private boolean isLeaf(int slot, int count) {
+		for(int i = 0; i < count; i++)
+			if(child(slot, i) != -1)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Every slot on the stack goes through childCount + 1 positions, one per child and one for the node itself.
+	 * The order decides at which of these positions the node is published
+	 */
+	private class DepthFirstIterator implements Iterator<E> {
+		private final int order;
+		private final int expectedModCount;
+		private final IntArrayList slots = new IntArrayList();
+		private final IntArrayList positions = new IntArrayList();
+		private int next = -1;
+
+		DepthFirstIterator(int order, int start, int expectedModCount) {
+			this.order = order;
+			this.expectedModCount = expectedModCount;
+			if(start != -1) {
+				slots.push(start);
+				positions.push(0);
+				advance();
+			}
+		}
+		private int nodePosition(int count) {
+			switch(order) {
+			case IN_ORDER:
+				return (count + 1) / 2;
+			case POST_ORDER:
+				return count;
+			default:
+				return 0;
+			}
+		}
+		private void advance() {
+			next = -1;
+			while(!slots.isEmpty()) {
+				int top = slots.size() - 1;
+				int slot = slots.getInt(top);
+				int position = positions.getInt(top);
+				int count = childCount(slot);
+				if(position > count) {
+					slots.popInt();
+					positions.popInt();
+					continue;
+				}
+				positions.set(top, position + 1);
+				int nodePosition = nodePosition(count);
+				if(position == nodePosition) {
+					if(order != LEAVES || isLeaf(slot, count)) {
+						next = slot;
+						return;
+					}
+				} else {
+					int child = child(slot, position < nodePosition ? position : position - 1);
+					if(child != -1) {
+						slots.push(child);
+						positions.push(0);
+					}
+				}
+			}
+		}
+		@Override
+		public boolean hasNext() {
+			return next != -1;
+		}
+		@Override
+		public E next() {
+			if(modCount() != expectedModCount)
+				throw new ConcurrentModificationException();
+			if(next == -1)
+				throw new NoSuchElementException();
+			E e = value(next);
+			advance();
+			return e;
+		}
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Traversal views are read only");
+		}
+	}
+
+	/**
+	 * Walks the nodes in the same order as in order iterator. The pending part of the tree is kept as a sequence of
+	 * sub-trees and single nodes in their encounter order. trySplit hands the first half of the sequence over to
+	 * the new spliterator, and when a single sub-tree is left it is first broken at its child boundaries into the 
+	 * sub-trees of the children and the node itself.
+	 * <br>
+	 * The tree knows the size of every sub-tree, so every part knows its exact size and reports SIZED and SUBSIZED.
+	 * Trees which count the sizes lazily pay O(n) for the first split after a modification
+	 */
+	private class SubtreeSpliterator implements Spliterator<E> {
+		private final int expectedModCount;
+		/**
+		 * Slots of the pending items, starting at head
+		 */
+		private final IntArrayList items = new IntArrayList();
+		/**
+		 * Size of every pending sub-tree. A negative value marks an item which stands for the node alone
+		 */
+		private final IntArrayList estimates = new IntArrayList();
+		private int head = 0;
+		/**
+		 * Iterator over the sub-tree being consumed, if any
+		 */
+		private DepthFirstIterator current;
+		private long estimate;
+
+		SubtreeSpliterator(int root, int size) {
+			this.expectedModCount = modCount();
+			if(root != -1) {
+				items.add(root);
+				estimates.add(size);
+			}
+			this.estimate = size;
+		}
+		private SubtreeSpliterator(int expectedModCount) {
+			this.expectedModCount = expectedModCount;
+		}
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			if(action == null)
+				throw new NullPointerException();
+			while(true) {
+				if(current != null) {
+					if(current.hasNext()) {
+						action.accept(current.next());
+						estimate = Math.max(0, estimate - 1);
+						return true;
+					}
+					current = null;
+				}
+				checkForComodification();
+				if(head == items.size())
+					return false;
+				int slot = items.getInt(head);
+				boolean single = estimates.getInt(head) < 0;
+				head++;
+				if(single) {
+					action.accept(value(slot));
+					estimate = Math.max(0, estimate - 1);
+					return true;
+				} else
+					current = new DepthFirstIterator(IN_ORDER, slot, expectedModCount);
+			}
+		}
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			if(action == null)
+				throw new NullPointerException();
+			while(tryAdvance(action));
+		}
+		@Override
+		public Spliterator<E> trySplit() {
+			checkForComodification();
+			if(current == null && items.size() - head == 1 && estimates.getInt(head) >= 0)
+				expand();
+			int remaining = items.size() - head;
+			if(remaining == 0 || (remaining == 1 && current == null))
+				return null;
+			long pending = 0;
+			for(int i = head; i < items.size(); i++)
+				pending += size(i);
+			long inProgress = current == null ? 0 : Math.max(1, estimate - pending);
+			long half = (inProgress + pending + 1) / 2;
+			long prefixEstimate = inProgress;
+			int mid = head;
+			while(mid < items.size() - 1 && ((mid == head && current == null) || prefixEstimate + size(mid) <= half))
+				prefixEstimate += size(mid++);
+			SubtreeSpliterator prefix = new SubtreeSpliterator(expectedModCount);
+			prefix.current = current;
+			for(int i = head; i < mid; i++) {
+				prefix.items.add(items.getInt(i));
+				prefix.estimates.add(estimates.getInt(i));
+			}
+			prefix.estimate = prefixEstimate;
+			current = null;
+			head = mid;
+			estimate = pending - (prefixEstimate - inProgress);
+			return prefix;
+		}
+		/**
+		 * Replaces the last pending sub-tree with the sub-trees of the children of its root and the root itself. 
+		 * Chains of nodes having a single child are unrolled at once, so that they get split in halves too
+		 */
+		private void expand() {
+			int slot = items.getInt(head);
+			items.size(head);
+			estimates.size(head);
+			IntArrayList after = new IntArrayList();
+			while(true) {
+				int count = childCount(slot);
+				int nodePosition = (count + 1) / 2;
+				int children = 0;
+				int only = -1;
+				int onlyPosition = -1;
+				for(int i = 0; i < count; i++)
+					if(child(slot, i) != -1) {
+						children++;
+						only = child(slot, i);
+						onlyPosition = i;
+					}
+				if(children != 1) {
+					for(int position = 0; position <= count; position++) {
+						if(position == nodePosition) {
+							items.add(slot);
+							estimates.add(-1);
+						} else {
+							int child = child(slot, position < nodePosition ? position : position - 1);
+							if(child != -1) {
+								items.add(child);
+								estimates.add(subtreeSize(child));
+							}
+						}
+					}
+					break;
+				} else if(onlyPosition >= nodePosition) {
+					items.add(slot);
+					estimates.add(-1);
+				} else
+					after.add(slot);
+				slot = only;
+			}
+			for(int i = after.size() - 1; i >= 0; i--) {
+				items.add(after.getInt(i));
+				estimates.add(-1);
+			}
+		}
+		private int size(int item) {
+			return Math.max(1, estimates.getInt(item));
+		}
+		private void checkForComodification() {
+			if(modCount() != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+		@Override
+		public int characteristics() {
+			return ORDERED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+		}
+	}
+
+	private class LevelOrderIterator implements Iterator<E> {
+		private final int expectedModCount = modCount();
+		private final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+
+		LevelOrderIterator() {
+			if(root() != -1)
+				queue.enqueue(root());
+		}
+		@Override
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+		@Override
+		public E next() {
+			if(modCount() != expectedModCount)
+				throw new ConcurrentModificationException();
+			if(queue.isEmpty())
+				throw new NoSuchElementException();
+			int slot = queue.dequeueInt();
+			for(int i = 0, count = childCount(slot); i < count; i++) {
+				int child = child(slot, i);
+				if(child != -1)
+					queue.enqueue(child);
+			}
+			return value(slot);
+		}
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Traversal views are read only");
+		}
+	}
+}
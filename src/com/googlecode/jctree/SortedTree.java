@@ -13,6 +13,9 @@
  */
 package com.googlecode.jctree;
 
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 /**
  * Trees of this type keep nodes sorted e.g. BST etc.
  * @author Gaurav Saxena
@@ -24,4 +27,104 @@ public interface SortedTree<E extends Comparable<E>> extends Tree<E> {
 
 	E predecessor(E node) throws NodeNotFoundException;
 
+	/**
+	 * @return the greatest node less than or equal to the given object, null if there is none
+	 */
+	E floor(E e);
+
+	/**
+	 * @return the least node greater than or equal to the given object, null if there is none
+	 */
+	E ceiling(E e);
+
+	/**
+	 * @return the least node strictly greater than the given object, null if there is none
+	 */
+	E higher(E e);
+
+	/**
+	 * @return the greatest node strictly less than the given object, null if there is none
+	 */
+	E lower(E e);
+
+	/**
+	 * @return the least node
+	 * @throws NoSuchElementException if the tree is empty
+	 */
+	E first();
+
+	/**
+	 * @return the greatest node
+	 * @throws NoSuchElementException if the tree is empty
+	 */
+	E last();
+
+	/**
+	 * Removes the least node
+	 * @return the removed node, null if the tree is empty
+	 */
+	default E pollFirst() {
+		if(isEmpty())
+			return null;
+		E first = first();
+		remove(first);
+		return first;
+	}
+
+	/**
+	 * Removes the greatest node
+	 * @return the removed node, null if the tree is empty
+	 */
+	default E pollLast() {
+		if(isEmpty())
+			return null;
+		E last = last();
+		remove(last);
+		return last;
+	}
+
+	/**
+	 * Lazy view of the nodes between from and to in ascending order. Nothing is copied, the view reads the tree as it 
+	 * is iterated and its iterator fails fast if the tree is modified.
+	 * @throws IllegalArgumentException if from is greater than to
+	 */
+	Iterable<E> subSet(E from, boolean fromInclusive, E to, boolean toInclusive);
+
+	/**
+	 * @return lazy view of the nodes from from, inclusive, to to, exclusive
+	 * @see #subSet(Comparable, boolean, Comparable, boolean)
+	 */
+	default Iterable<E> subSet(E from, E to) {
+		return subSet(from, true, to, false);
+	}
+
+	/**
+	 * @return lazy view of the nodes less than (or equal to, if inclusive) to in ascending order
+	 */
+	Iterable<E> headSet(E to, boolean inclusive);
+
+	/**
+	 * @return lazy view of the nodes strictly less than to
+	 */
+	default Iterable<E> headSet(E to) {
+		return headSet(to, false);
+	}
+
+	/**
+	 * @return lazy view of the nodes greater than (or equal to, if inclusive) from in ascending order
+	 */
+	Iterable<E> tailSet(E from, boolean inclusive);
+
+	/**
+	 * @return lazy view of the nodes greater than or equal to from
+	 */
+	default Iterable<E> tailSet(E from) {
+		return tailSet(from, true);
+	}
+
+	/**
+	 * @return iterator over the nodes in descending order, failing fast if the tree is modified
+	 */
+	Iterator<E> descendingIterator();
+
 }
@@ -68,6 +68,40 @@ public interface Tree<E> extends Collection<E>{
 	 * @throws NodeNotFoundException 
 	 */
 	public E commonAncestor(E node1, E node2) throws NodeNotFoundException;
+	/**
+	 * Finds the ancestor of the node k levels above it
+	 * @param node node whose ancestor is needed
+	 * @param k number of levels to go up, 0 being the node itself and 1 its parent
+	 * @return the ancestor. Null if the node has less than k ancestors
+	 * @throws NodeNotFoundException if node is not found
+	 * @throws IllegalArgumentException if k is negative
+	 */
+	public E ancestor(E node, int k) throws NodeNotFoundException;
+	/**
+	 * @param node node whose level is needed
+	 * @return level of the node, root being at level 1
+	 * @throws NodeNotFoundException if node is not found
+	 */
+	public int levelOf(E node) throws NodeNotFoundException;
+	/**
+	 * @param node node whose ancestors are needed
+	 * @return lazy view of the ancestors of the node from its parent up to the root, which fails fast with 
+	 * {@link java.util.ConcurrentModificationException} once the tree is structurally modified
+	 * @throws NodeNotFoundException if node is not found
+	 */
+	public Iterable<E> ancestors(E node) throws NodeNotFoundException;
+	/**
+	 * @param node root of the sub-tree
+	 * @return number of nodes in the sub-tree rooted at the node, the node included
+	 * @throws NodeNotFoundException if node is not found
+	 */
+	public int subtreeSize(E node) throws NodeNotFoundException;
+	/**
+	 * @param node node whose children are counted
+	 * @return number of children of the node
+	 * @throws NodeNotFoundException if node is not found
+	 */
+	public int childCount(E node) throws NodeNotFoundException;
 	/**
 	 * @return depth of the tree i.e. the length of the path which has maximum number of nodes
 	 */
@@ -128,6 +162,47 @@ public interface Tree<E> extends Collection<E>{
 	 * @return collection of children arranged as preOrderTraversal of underlying tree
 	 */
 	public Collection<E> preOrderTraversal();
+	/**
+	 * Lazy counterpart of {@link #preOrderTraversal()}. Nothing is copied, nodes are visited as the iterator advances.
+	 * Iterators don't support remove and throw {@link java.util.ConcurrentModificationException} if the tree is 
+	 * structurally modified while iterating
+	 * @return view of the tree in pre order
+	 */
+	public Iterable<E> preOrderView();
+	/**
+	 * Lazy counterpart of {@link #postOrderTraversal()}, behaves as {@link #preOrderView()}
+	 * @return view of the tree in post order
+	 */
+	public Iterable<E> postOrderView();
+	/**
+	 * Lazy counterpart of {@link #inOrderTraversal()}, behaves as {@link #preOrderView()}. {@link #iterator()} iterates this view
+	 * @return view of the tree in order
+	 */
+	public Iterable<E> inOrderView();
+	/**
+	 * Lazy counterpart of {@link #levelOrderTraversal()}, behaves as {@link #preOrderView()}
+	 * @return view of the tree in level order
+	 */
+	public Iterable<E> levelOrderView();
+	/**
+	 * Lazy counterpart of {@link #leaves()}, behaves as {@link #preOrderView()}
+	 * @return view of the leaves of the tree
+	 */
+	public Iterable<E> leavesView();
+	/**
+	 * Walks the tree depth first, calling the visitor before and after visiting the children of every node
+	 * @param visitor decides after every call whether the walk continues, skips some nodes or stops
+	 * @return the node at which the visitor terminated the walk, null if the walk completed
+	 */
+	public E walk(TreeVisitor<? super E> visitor);
+	/**
+	 * Walks the sub-tree rooted at the node the same way as {@link #walk(TreeVisitor)} does
+	 * @param node root of the sub-tree to walk
+	 * @param visitor decides after every call whether the walk continues, skips some nodes or stops
+	 * @return the node at which the visitor terminated the walk, null if the walk completed
+	 * @throws NodeNotFoundException if node is not found
+	 */
+	public E walk(E node, TreeVisitor<? super E> visitor) throws NodeNotFoundException;
 	/**
 	 * @return the root node or null if tree is empty
 	 */
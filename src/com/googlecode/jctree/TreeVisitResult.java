@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+/**
+ * Result of a {@link TreeVisitor} callback, which decides how the walk goes on
+ * @author Gaurav Saxena
+ *
+ */
+public enum TreeVisitResult {
+	/**
+	 * Continue the walk. Returned from preVisit, the children of the node are visited next
+	 */
+	CONTINUE,
+	/**
+	 * Continue without visiting the children of the node. postVisit is not called for the node. Same as 
+	 * {@link #CONTINUE} when returned from postVisit
+	 */
+	SKIP_SUBTREE,
+	/**
+	 * Continue without visiting the siblings of the node which come after it. Returned from preVisit, the children 
+	 * of the node are skipped as well and postVisit is not called for the node. postVisit of the parent is still called
+	 */
+	SKIP_SIBLINGS,
+	/**
+	 * Stop the walk right away
+	 */
+	TERMINATE
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+/**
+ * Callback for {@link Tree#walk(TreeVisitor)}. Walk is depth first and visits the children of a node in the same 
+ * order as {@link Tree#preOrderTraversal()} does. Depth of the node the walk starts from is 1.
+ * <br>
+ * The tree must not be modified while it is being walked, the walk throws 
+ * {@link java.util.ConcurrentModificationException} in that case
+ * @author Gaurav Saxena
+ *
+ * @param <E> object type contained in the tree
+ */
+public interface TreeVisitor<E> {
+	/**
+	 * Called before the children of the node are visited
+	 * @param node node being visited
+	 * @param parent parent of the node, null for the root
+	 * @param depth depth of the node, relative to the node the walk started from
+	 * @return how the walk goes on
+	 */
+	TreeVisitResult preVisit(E node, E parent, int depth);
+	/**
+	 * Called after all the children of the node have been visited or skipped by {@link TreeVisitResult#SKIP_SIBLINGS}
+	 * @param node node being visited
+	 * @param parent parent of the node, null for the root
+	 * @param depth depth of the node, relative to the node the walk started from
+	 * @return how the walk goes on, {@link TreeVisitResult#CONTINUE} by default
+	 */
+	default TreeVisitResult postVisit(E node, E parent, int depth) {
+		return TreeVisitResult.CONTINUE;
+	}
+}
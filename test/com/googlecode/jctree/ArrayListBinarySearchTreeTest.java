@@ -13,8 +13,13 @@
  */
 package com.googlecode.jctree;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
 
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -635,4 +640,155 @@ public class ArrayListBinarySearchTreeTest {
 	  		break;
 	  }
   }
+  @Test(dataProvider = "getTree")
+  public void indexAfterRemoveAndClone(int testCaseNumber, ArrayListBinarySearchTree<String> tree) throws NodeNotFoundException {
+	  @SuppressWarnings("unchecked")
+	  ArrayListBinarySearchTree<String> clone = (ArrayListBinarySearchTree<String>) tree.clone();
+	  switch(testCaseNumber) {
+	  	case 0:
+	  		Assert.assertEquals(true, clone.add("C1"));
+	  		Assert.assertEquals(false, tree.contains("C1"));
+	  		break;
+	  	case 1:
+	  		Assert.assertEquals(true, clone.remove("C3"));
+	  		Assert.assertEquals(false, clone.contains("C3"));
+	  		Assert.assertEquals(true, tree.contains("C3"));
+	  		for(String i : Arrays.asList("C1", "C2", "C4", "C5"))
+	  			Assert.assertEquals(true, clone.contains(i));
+	  		String replacement = clone.left("C6");
+	  		Assert.assertEquals(true, replacement.equals("C2") || replacement.equals("C4"));
+	  		Assert.assertEquals("C6", clone.parent(replacement));
+	  		Assert.assertEquals(Arrays.asList("C1", "C2", "C4", "C5", "C6", "C65", "C7", "C8", "C9", "CA", "CB", "CC"), clone.inOrderTraversal());
+	  		Assert.assertEquals(true, clone.add("C3"));
+	  		Assert.assertEquals(true, clone.contains("C3"));
+	  		clone.clear();
+	  		Assert.assertEquals(false, clone.contains("C6"));
+	  		break;
+	  }
+  }
+  @Test
+  public void navigation() {
+	  ArrayListBinarySearchTree<Integer> tree = new ArrayListBinarySearchTree<Integer>();
+	  TreeSet<Integer> expected = new TreeSet<Integer>();
+	  Random random = new Random(13);
+	  for(int i = 0; i < 3000; i++) {
+		  int value = random.nextInt(2000);
+		  if(i % 4 == 3) {
+			  tree.remove(value);
+			  expected.remove(value);
+		  } else {
+			  tree.add(value);
+			  expected.add(value);
+		  }
+	  }
+	  Assert.assertEquals(tree.first(), expected.first());
+	  Assert.assertEquals(tree.last(), expected.last());
+	  for(int i = 0; i < 500; i++) {
+		  int from = random.nextInt(2100) - 50, to = from + random.nextInt(300);
+		  Assert.assertEquals(tree.floor(from), expected.floor(from));
+		  Assert.assertEquals(tree.ceiling(from), expected.ceiling(from));
+		  Assert.assertEquals(tree.higher(from), expected.higher(from));
+		  Assert.assertEquals(tree.lower(from), expected.lower(from));
+		  boolean fromInclusive = random.nextBoolean(), toInclusive = random.nextBoolean();
+		  Assert.assertEquals(toList(tree.subSet(from, fromInclusive, to, toInclusive)), 
+				  new ArrayList<Integer>(expected.subSet(from, fromInclusive, to, toInclusive)));
+		  Assert.assertEquals(toList(tree.headSet(from, fromInclusive)), new ArrayList<Integer>(expected.headSet(from, fromInclusive)));
+		  Assert.assertEquals(toList(tree.tailSet(to, toInclusive)), new ArrayList<Integer>(expected.tailSet(to, toInclusive)));
+	  }
+	  List<Integer> descending = new ArrayList<Integer>();
+	  for(Iterator<Integer> iterator = tree.descendingIterator(); iterator.hasNext();)
+		  descending.add(iterator.next());
+	  Assert.assertEquals(descending, new ArrayList<Integer>(expected.descendingSet()));
+	  Iterator<Integer> iterator = tree.tailSet(0).iterator();
+	  iterator.next();
+	  Assert.assertEquals(tree.pollFirst(), expected.pollFirst());
+	  Assert.assertEquals(tree.pollLast(), expected.pollLast());
+	  Assert.assertEquals(tree.size(), expected.size());
+	  try {
+		  iterator.next();
+		  Assert.fail();
+	  } catch(ConcurrentModificationException e) {
+		  //passed
+	  }
+	  try {
+		  tree.subSet(5, 4);
+		  Assert.fail();
+	  } catch(IllegalArgumentException e) {
+		  //passed
+	  }
+	  tree.clear();
+	  Assert.assertNull(tree.pollFirst());
+	  Assert.assertNull(tree.floor(1));
+	  Assert.assertFalse(tree.subSet(0, 10).iterator().hasNext());
+  }
+  @Test
+  public void bulkLoad() throws NodeNotFoundException {
+	  List<Integer> values = new ArrayList<Integer>();
+	  for(int i = 0; i < 5000; i++)
+		  values.add(2 * i);
+	  ArrayListBinarySearchTree<Integer> tree = new ArrayListBinarySearchTree<Integer>(values);
+	  Assert.assertEquals(tree.size(), values.size());
+	  Assert.assertEquals(tree.depth(), 32 - Integer.numberOfLeadingZeros(values.size()));
+	  Assert.assertEquals(tree.inOrderTraversal(), values);
+	  TreeSet<Integer> expected = new TreeSet<Integer>(values);
+	  Random random = new Random(19);
+	  List<Integer> unsorted = new ArrayList<Integer>();
+	  for(int i = 0; i < 8000; i++)
+		  unsorted.add(random.nextInt(20000));
+	  Assert.assertEquals(tree.addAll(unsorted), expected.addAll(unsorted));
+	  Assert.assertEquals(tree.inOrderTraversal(), new ArrayList<Integer>(expected));
+	  Assert.assertEquals(tree.depth(), 32 - Integer.numberOfLeadingZeros(expected.size()));
+	  Assert.assertFalse(tree.addAll(new ArrayList<Integer>(expected)));
+	  for(int i = 0; i < 2000; i++) {
+		  Integer value = random.nextInt(25000);
+		  if(random.nextInt(3) == 0)
+			  Assert.assertEquals(tree.remove(value), expected.remove(value));
+		  else
+			  Assert.assertEquals(tree.add(value), expected.add(value));
+	  }
+	  Assert.assertEquals(tree.inOrderTraversal(), new ArrayList<Integer>(expected));
+	  Assert.assertEquals(tree.subtreeSize(tree.root()), tree.size());
+	  List<Integer> nodes = tree.inOrderTraversal();
+	  for(int i = 0; i < 2000; i++) {
+		  Integer node = nodes.get(random.nextInt(nodes.size())), child = nodes.get(random.nextInt(nodes.size()));
+		  boolean isAncestor = false;
+		  for(Integer e = tree.parent(child); e != null && !isAncestor; e = tree.parent(e))
+			  isAncestor = e.equals(node);
+		  Assert.assertEquals(tree.isAncestor(node, child), isAncestor);
+	  }
+  }
+  @Test
+  public void pollRootWithOneChild() throws NodeNotFoundException {
+	  ArrayListBinarySearchTree<Integer> tree = new ArrayListBinarySearchTree<Integer>();
+	  tree.add(5);
+	  tree.add(8);
+	  Assert.assertEquals(tree.pollFirst(), Integer.valueOf(5));
+	  Assert.assertEquals(tree.root(), Integer.valueOf(8));
+	  Assert.assertNull(tree.parent(8));
+	  Assert.assertEquals(tree.size(), 1);
+	  Assert.assertEquals(tree.depth(), 1);
+	  Assert.assertEquals(tree.pollLast(), Integer.valueOf(8));
+	  Assert.assertTrue(tree.isEmpty());
+	  Assert.assertNull(tree.pollFirst());
+	  tree.add(5);
+	  tree.add(2);
+	  tree.add(1);
+	  Assert.assertEquals(tree.pollLast(), Integer.valueOf(5));
+	  Assert.assertEquals(tree.root(), Integer.valueOf(2));
+	  Assert.assertEquals(tree.inOrderTraversal(), Arrays.asList(1, 2));
+	  Assert.assertEquals(tree.depth(), 2);
+	  Assert.assertEquals(tree.subtreeSize(2), 2);
+	  Assert.assertTrue(tree.isAncestor(2, 1));
+	  Assert.assertEquals(tree.pollFirst(), Integer.valueOf(1));
+	  Assert.assertEquals(tree.pollFirst(), Integer.valueOf(2));
+	  Assert.assertTrue(tree.isEmpty());
+	  tree.add(3);
+	  Assert.assertEquals(tree.inOrderTraversal(), Arrays.asList(3));
+  }
+  private static <E> List<E> toList(Iterable<E> view) {
+	  List<E> list = new ArrayList<E>();
+	  for(E e : view)
+		  list.add(e);
+	  return list;
+  }
 }
\ No newline at end of file
@@ -13,8 +13,14 @@
  */
 package com.googlecode.jctree;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -571,6 +577,53 @@ public class ArrayListTreeTest {
 	  		break;
 	  }
   }
+  @SuppressWarnings("unchecked")
+  @Test
+  public void cloneCopyOnWrite() throws NodeNotFoundException {
+	  Random random = new Random(9);
+	  List<ArrayListTree<Integer>> trees = new ArrayList<ArrayListTree<Integer>>();
+	  List<LinkedTree<Integer>> expected = new ArrayList<LinkedTree<Integer>>();
+	  trees.add(new ArrayListTree<Integer>());
+	  expected.add(new LinkedTree<Integer>());
+	  trees.get(0).add(0);
+	  expected.get(0).add(0);
+	  for(int i = 1; i < 4000; i++) {
+		  int t = random.nextInt(trees.size());
+		  ArrayListTree<Integer> tree = trees.get(t);
+		  LinkedTree<Integer> mirror = expected.get(t);
+		  if(i % 400 == 0) {
+			  trees.add((ArrayListTree<Integer>) tree.clone());
+			  expected.add((LinkedTree<Integer>) mirror.clone());
+			  continue;
+		  }
+		  List<Integer> nodes = mirror.preOrderTraversal();
+		  Integer node = nodes.get(random.nextInt(nodes.size()));
+		  if(i % 5 == 0 && !node.equals(mirror.root())) {
+			  Assert.assertEquals(tree.remove(node), mirror.remove(node));
+		  } else {
+			  Assert.assertEquals(tree.add(node, i), mirror.add(node, i));
+		  }
+	  }
+	  trees.get(1).clear();
+	  expected.get(1).clear();
+	  trees.get(1).add(-1);
+	  expected.get(1).add(-1);
+	  for(int t = 0; t < trees.size(); t++) {
+		  ArrayListTree<Integer> tree = trees.get(t);
+		  LinkedTree<Integer> mirror = expected.get(t);
+		  Assert.assertEquals(tree.size(), mirror.size());
+		  Assert.assertEquals(tree.depth(), mirror.depth());
+		  Assert.assertEquals(tree.preOrderTraversal(), mirror.preOrderTraversal());
+		  Assert.assertEquals(tree.postOrderTraversal(), mirror.postOrderTraversal());
+		  for(Integer e : mirror) {
+			  Assert.assertEquals(tree.parent(e), mirror.parent(e));
+			  Assert.assertEquals(tree.children(e), mirror.children(e));
+			  Assert.assertEquals(tree.subtreeSize(e), mirror.subtreeSize(e));
+			  Assert.assertEquals(tree.levelOf(e), mirror.levelOf(e));
+			  Assert.assertEquals(tree.isAncestor(mirror.root(), e), !e.equals(mirror.root()));
+		  }
+	  }
+  }
   @Test
   public void testReuseDeletedNodeSpace() throws NodeNotFoundException {
 	  ArrayListTree<String> tree = getBigTree();
@@ -623,4 +676,401 @@ public class ArrayListTreeTest {
 	  tree.add("C2-1", "C2-1-2");
 	  Assert.assertEquals(size, tree.getNodeList().size());
   }
+  @SuppressWarnings("unchecked")
+  @Test
+  public void indexAfterReuseCloneAndClear() throws NodeNotFoundException {
+	  ArrayListTree<String> tree = getBigTree();
+	  tree.remove("C1-1");
+	  Assert.assertEquals(false, tree.contains("C1-1-1"));
+	  tree.add("C2-2", "C2-2-1");
+	  tree.add("C2-2-1", "C1-1-1");
+	  Assert.assertEquals("C2-2-1", tree.parent("C1-1-1"));
+	  Assert.assertEquals(Arrays.asList("C1-1-1"), tree.children("C2-2-1"));
+	  ArrayListTree<String> clone = (ArrayListTree<String>) tree.clone();
+	  clone.remove("C2-2-1");
+	  clone.add("C1-3", "C1-3-1");
+	  Assert.assertEquals(true, tree.contains("C2-2-1"));
+	  Assert.assertEquals(false, tree.contains("C1-3-1"));
+	  Assert.assertEquals(false, clone.contains("C1-1-1"));
+	  Assert.assertEquals("C1-3", clone.parent("C1-3-1"));
+	  tree.clear();
+	  Assert.assertEquals(false, tree.contains("Root1"));
+	  tree.add("Root2");
+	  tree.add("Root2", "C1");
+	  Assert.assertEquals("Root2", tree.parent("C1"));
+	  Assert.assertEquals(true, clone.contains("C1"));
+  }
+  @Test
+  public void nodeRef() throws NodeNotFoundException {
+	  ArrayListTree<String> tree = new ArrayListTree<String>();
+	  NodeRef root = tree.addRef(null, "Root1");
+	  NodeRef c1 = tree.addRef(root, "C1");
+	  NodeRef c2 = tree.addRef(root, "C2");
+	  NodeRef c11 = tree.addRef(c1, "C1-1");
+	  Assert.assertEquals("C1-1", tree.valueOf(c11));
+	  Assert.assertEquals(c1, tree.parentOf(c11));
+	  Assert.assertNull(tree.parentOf(root));
+	  Assert.assertEquals(Arrays.asList(c1, c2), tree.childrenOf(root));
+	  Assert.assertEquals(2, tree.childCount(root));
+	  Assert.assertEquals(c11, tree.ref("C1-1"));
+	  Assert.assertEquals(true, tree.remove(c1));
+	  Assert.assertEquals(false, tree.remove(c11));
+	  Assert.assertEquals(false, tree.contains("C1-1"));
+	  NodeRef newNode = tree.addRef(c2, "C1");
+	  Assert.assertEquals("C1", tree.valueOf(newNode));
+	  try {
+		  tree.valueOf(c1);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  tree.clear();
+	  tree.addRef(null, "Root2");
+	  try {
+		  tree.childrenOf(root);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  try {
+		  tree.childCount(root);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void depthAfterRemoveAndClone(int testCaseNumber, ArrayListTree<String> tree) throws NodeNotFoundException {
+	  if(testCaseNumber == 1) {
+		  @SuppressWarnings("unchecked")
+		  ArrayListTree<String> clone = (ArrayListTree<String>) tree.clone();
+		  Assert.assertEquals(true, tree.remove("C1-1"));
+		  Assert.assertEquals(true, tree.remove("C1-2-1"));
+		  Assert.assertEquals(4, tree.depth());
+		  Assert.assertEquals(true, tree.remove("C2-1"));
+		  Assert.assertEquals(3, tree.depth());
+		  tree.add("C1-3", "C1-3-1");
+		  tree.add("C1-3-1", "C1-3-1-1");
+		  tree.add("C1-3-1-1", "C1-3-1-1-1");
+		  Assert.assertEquals(6, tree.depth());
+		  Assert.assertEquals(true, tree.remove("C1"));
+		  Assert.assertEquals(3, tree.depth());
+		  Assert.assertEquals(4, clone.depth());
+		  Assert.assertEquals(true, clone.remove("C2"));
+		  Assert.assertEquals(4, clone.depth());
+		  Assert.assertEquals(3, tree.depth());
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void traversalViews(int testCaseNumber, ArrayListTree<String> tree) throws NodeNotFoundException {
+	  Assert.assertEquals(toList(tree.preOrderView()), tree.preOrderTraversal());
+	  Assert.assertEquals(toList(tree.postOrderView()), tree.postOrderTraversal());
+	  Assert.assertEquals(toList(tree.inOrderView()), tree.inOrderTraversal());
+	  Assert.assertEquals(toList(tree.levelOrderView()), tree.levelOrderTraversal());
+	  Assert.assertEquals(toList(tree.leavesView()), tree.leaves());
+	  Assert.assertEquals(toList(tree), tree.inOrderTraversal());
+	  if(testCaseNumber == 1) {
+		  Assert.assertEquals(Arrays.asList("Root1", "C1", "C1-1", "C1-1-1", "C1-1-2", "C1-2", "C1-2-1", "C1-3", "C2", "C2-1", "C2-1-1", "C2-1-2", "C2-2"), toList(tree.preOrderView()));
+		  Iterator<String> iterator = tree.preOrderView().iterator();
+		  Assert.assertEquals("Root1", iterator.next());
+		  tree.remove("C1-3");
+		  try {
+			  iterator.next();
+			  Assert.fail();
+		  } catch(ConcurrentModificationException e) {
+			  //passed
+		  }
+	  }
+  }
+  @Test
+  public void traversalOfDeepTree() throws NodeNotFoundException {
+	  ArrayListTree<Integer> tree = new ArrayListTree<Integer>();
+	  tree.add(0);
+	  for(int i = 1; i < 100000; i++)
+		  tree.add(i - 1, i);
+	  Assert.assertEquals(Integer.valueOf(0), tree.preOrderView().iterator().next());
+	  Assert.assertEquals(Integer.valueOf(99999), tree.postOrderView().iterator().next());
+	  Assert.assertEquals(Integer.valueOf(99999), tree.leavesView().iterator().next());
+	  Assert.assertEquals(100000, tree.inOrderTraversal().size());
+	  Assert.assertEquals(Integer.valueOf(99999), tree.inOrderTraversal().get(0));
+  }
+  @Test
+  public void spliterator() throws NodeNotFoundException {
+	  ArrayListTree<Integer> tree = new ArrayListTree<Integer>();
+	  tree.add(0);
+	  Random random = new Random(5);
+	  for(int i = 1; i < 2000; i++)
+		  tree.add(random.nextInt(i), i);
+	  for(int i = 2000; i < 3000; i++)
+		  tree.add(i - 1, i);
+	  Spliterator<Integer> spliterator = tree.spliterator();
+	  Assert.assertEquals(3000, spliterator.getExactSizeIfKnown());
+	  List<Integer> list = new ArrayList<Integer>();
+	  splitFully(spliterator, list);
+	  Assert.assertEquals(tree.inOrderTraversal(), list);
+	  Assert.assertEquals(tree.inOrderTraversal(), tree.parallelStream().collect(Collectors.toList()));
+  }
+  private static <E> void splitFully(Spliterator<E> spliterator, final List<E> list) {
+	  long size = spliterator.getExactSizeIfKnown();
+	  int before = list.size();
+	  Spliterator<E> prefix = spliterator.trySplit();
+	  if(prefix != null) {
+		  Assert.assertTrue(prefix.estimateSize() > 0);
+		  Assert.assertTrue(prefix.hasCharacteristics(Spliterator.SUBSIZED));
+		  Assert.assertEquals(prefix.estimateSize() + spliterator.estimateSize(), size);
+		  splitFully(prefix, list);
+		  splitFully(spliterator, list);
+	  } else
+		  spliterator.forEachRemaining(e -> list.add(e));
+	  Assert.assertEquals(list.size() - before, size);
+  }
+  @Test(dataProvider = "getTree")
+  public void walk(int testCaseNumber, ArrayListTree<String> tree) throws NodeNotFoundException {
+	  final List<String> pre = new ArrayList<String>();
+	  final List<String> post = new ArrayList<String>();
+	  Assert.assertNull(tree.walk(new TreeVisitor<String>() {
+		  @Override
+		  public TreeVisitResult preVisit(String node, String parent, int depth) {
+			  pre.add(node);
+			  return TreeVisitResult.CONTINUE;
+		  }
+		  @Override
+		  public TreeVisitResult postVisit(String node, String parent, int depth) {
+			  post.add(node);
+			  return TreeVisitResult.CONTINUE;
+		  }
+	  }));
+	  Assert.assertEquals(tree.preOrderTraversal(), pre);
+	  Assert.assertEquals(tree.postOrderTraversal(), post);
+	  if(testCaseNumber == 1) {
+		  pre.clear();
+		  post.clear();
+		  Assert.assertNull(tree.walk(new TreeVisitor<String>() {
+			  @Override
+			  public TreeVisitResult preVisit(String node, String parent, int depth) {
+				  pre.add(node + "/" + parent + "/" + depth);
+				  if(node.equals("C1-1"))
+					  return TreeVisitResult.SKIP_SUBTREE;
+				  else if(node.equals("C2-1"))
+					  return TreeVisitResult.SKIP_SIBLINGS;
+				  else
+					  return TreeVisitResult.CONTINUE;
+			  }
+			  @Override
+			  public TreeVisitResult postVisit(String node, String parent, int depth) {
+				  post.add(node);
+				  return TreeVisitResult.CONTINUE;
+			  }
+		  }));
+		  Assert.assertEquals(Arrays.asList("Root1/null/1", "C1/Root1/2", "C1-1/C1/3", "C1-2/C1/3", "C1-2-1/C1-2/4", "C1-3/C1/3", "C2/Root1/2", "C2-1/C2/3"), pre);
+		  Assert.assertEquals(Arrays.asList("C1-2-1", "C1-2", "C1-3", "C1", "C2", "Root1"), post);
+		  post.clear();
+		  tree.walk("C1", new TreeVisitor<String>() {
+			  @Override
+			  public TreeVisitResult preVisit(String node, String parent, int depth) {
+				  return TreeVisitResult.CONTINUE;
+			  }
+			  @Override
+			  public TreeVisitResult postVisit(String node, String parent, int depth) {
+				  post.add(node);
+				  return node.equals("C1-1") ? TreeVisitResult.SKIP_SIBLINGS : TreeVisitResult.CONTINUE;
+			  }
+		  });
+		  Assert.assertEquals(Arrays.asList("C1-1-1", "C1-1-2", "C1-1", "C1"), post);
+		  Assert.assertEquals("C2-1-1", tree.walk("C2", (node, parent, depth) -> depth == 3 ? TreeVisitResult.TERMINATE : TreeVisitResult.CONTINUE));
+		  Assert.assertEquals("C2", tree.walk("C2", (node, parent, depth) -> TreeVisitResult.TERMINATE));
+		  Assert.assertNull(tree.walk("C2", (node, parent, depth) -> TreeVisitResult.SKIP_SUBTREE));
+	  }
+	  try {
+		  tree.walk("Absent", (node, parent, depth) -> TreeVisitResult.CONTINUE);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void commonAncestorIndex() throws NodeNotFoundException {
+	  ArrayListTree<Integer> tree = new ArrayListTree<Integer>();
+	  Random random = new Random(7);
+	  tree.add(0);
+	  for(int i = 1; i < 500; i++)
+		  tree.add(random.nextInt(i), i);
+	  for(int round = 0; round < 3; round++) {
+		  for(int i = 0; i < 2000; i++) {
+			  int node1 = random.nextInt(500), node2 = random.nextInt(500);
+			  if(tree.contains(node1) && tree.contains(node2))
+				  Assert.assertEquals(tree.commonAncestor(node1, node2), ancestorByParents(tree, node1, node2));
+		  }
+		  tree.remove(1 + random.nextInt(499));
+		  tree.add(0, 500 + round);
+		  Assert.assertEquals(tree.commonAncestor(500 + round, 0), Integer.valueOf(0));
+	  }
+	  try {
+		  tree.commonAncestor(0, 1000);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void levelAncestors() throws NodeNotFoundException {
+	  ArrayListTree<Integer> tree = new ArrayListTree<Integer>();
+	  Random random = new Random(11);
+	  tree.add(0);
+	  for(int i = 1; i < 500; i++)
+		  tree.add(random.nextInt(i) / 2, i);
+	  for(int round = 0; round < 3; round++) {
+		  for(int i = 0; i < 2000; i++) {
+			  int node = random.nextInt(500);
+			  if(!tree.contains(node))
+				  continue;
+			  List<Integer> path = new ArrayList<Integer>();
+			  for(Integer e = node; e != null; e = tree.parent(e))
+				  path.add(e);
+			  Assert.assertEquals(tree.levelOf(node), path.size());
+			  Assert.assertEquals(toList(tree.ancestors(node)), path.subList(1, path.size()));
+			  int k = random.nextInt(path.size() + 2);
+			  Assert.assertEquals(tree.ancestor(node, k), k < path.size() ? path.get(k) : null);
+		  }
+		  tree.remove(1 + random.nextInt(499));
+		  tree.add(0, 500 + round);
+		  Assert.assertEquals(tree.ancestor(500 + round, 1), Integer.valueOf(0));
+	  }
+	  Iterator<Integer> ancestors = tree.ancestors(tree.preOrderTraversal().get(2)).iterator();
+	  tree.add(0, 1000);
+	  try {
+		  ancestors.next();
+		  Assert.fail();
+	  } catch(ConcurrentModificationException e) {
+		  //passed
+	  }
+	  try {
+		  tree.ancestor(1001, 1);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  try {
+		  tree.ancestor(0, -1);
+		  Assert.fail();
+	  } catch(IllegalArgumentException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void intervalLabels() throws NodeNotFoundException {
+	  ArrayListTree<Integer> tree = new ArrayListTree<Integer>();
+	  Random random = new Random(5);
+	  tree.add(0);
+	  for(int i = 1; i < 3000; i++) {
+		  int parent = random.nextInt(i);
+		  if(tree.contains(parent))
+			  tree.add(parent, i);
+		  if(i % 10 == 0)
+			  tree.remove(1 + random.nextInt(i));
+	  }
+	  ArrayListTree<Integer> clone = (ArrayListTree<Integer>) tree.clone();
+	  clone.add(0, 5000);
+	  List<Integer> nodes = tree.preOrderTraversal();
+	  for(int i = 0; i < 5000; i++) {
+		  Integer node = nodes.get(random.nextInt(nodes.size())), child = nodes.get(random.nextInt(nodes.size()));
+		  Assert.assertEquals(tree.isAncestor(node, child), isAncestorByParents(tree, node, child));
+		  Assert.assertEquals(clone.isDescendant(node, child), tree.isAncestor(node, child));
+	  }
+	  Assert.assertFalse(tree.isAncestor(0, 0));
+	  Assert.assertFalse(tree.isAncestor(5000, 0));
+	  ArrayListTree<Integer> chain = new ArrayListTree<Integer>();
+	  chain.add(0);
+	  for(int i = 1; i < 20000; i++)
+		  chain.add(i - 1, i);
+	  for(int i = 0; i < 1000; i++) {
+		  int node = random.nextInt(20000), child = random.nextInt(20000);
+		  Assert.assertEquals(chain.isAncestor(node, child), node < child);
+	  }
+  }
+  @Test
+  public void removeDeepSubtree() throws NodeNotFoundException {
+	  ArrayListTree<Integer> chain = new ArrayListTree<Integer>();
+	  chain.add(0);
+	  for(int i = 1; i < 100000; i++)
+		  chain.add(i - 1, i);
+	  Assert.assertEquals(chain.remove(1), true);
+	  Assert.assertEquals(chain.size(), 1);
+	  Assert.assertEquals(chain.depth(), 1);
+	  Assert.assertEquals(chain.contains(99999), false);
+	  Assert.assertEquals(chain.children(0).isEmpty(), true);
+	  chain.add(0, 1);
+	  chain.add(1, 2);
+	  Assert.assertEquals(chain.preOrderTraversal(), Arrays.asList(0, 1, 2));
+  }
+  @Test
+  public void subtreeSizes() throws NodeNotFoundException {
+	  ArrayListTree<Integer> tree = new ArrayListTree<Integer>();
+	  Random random = new Random(3);
+	  tree.add(0);
+	  for(int i = 1; i < 2000; i++) {
+		  int parent = random.nextInt(i);
+		  if(tree.contains(parent))
+			  tree.add(parent, i);
+		  if(i % 10 == 0)
+			  tree.remove(1 + random.nextInt(i));
+	  }
+	  Assert.assertEquals(tree.size(), tree.preOrderTraversal().size());
+	  Assert.assertEquals(tree.subtreeSize(0), tree.size());
+	  ArrayListTree<Integer> clone = (ArrayListTree<Integer>) tree.clone();
+	  for(Integer node : tree.preOrderView()) {
+		  final int[] count = new int[1];
+		  tree.walk(node, (e, parent, depth) -> {
+			  count[0]++;
+			  return TreeVisitResult.CONTINUE;
+		  });
+		  Assert.assertEquals(tree.subtreeSize(node), count[0]);
+		  Assert.assertEquals(clone.subtreeSize(node), count[0]);
+		  Assert.assertEquals(tree.childCount(node), tree.children(node).size());
+	  }
+	  try {
+		  tree.subtreeSize(5000);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void subtreeSizesBetweenChanges() throws NodeNotFoundException {
+	  ArrayListTree<Integer> tree = new ArrayListTree<Integer>();
+	  tree.add(0);
+	  for(int i = 1; i < 100; i++) {
+		  tree.add(i - 1, i);
+		  Assert.assertEquals(tree.subtreeSize(0), i + 1);
+		  Assert.assertEquals(tree.subtreeSize(i / 2), i + 1 - i / 2);
+	  }
+	  ArrayListTree<Integer> clone = (ArrayListTree<Integer>) tree.clone();
+	  clone.remove(50);
+	  Assert.assertEquals(clone.subtreeSize(0), 50);
+	  Assert.assertEquals(tree.subtreeSize(0), 100);
+	  tree.add(0, 100);
+	  Assert.assertEquals(tree.subtreeSize(0), 101);
+	  Assert.assertEquals(tree.subtreeSize(49), 51);
+	  Assert.assertEquals(clone.subtreeSize(49), 1);
+  }
+  private static <E> boolean isAncestorByParents(Tree<E> tree, E node, E child) throws NodeNotFoundException {
+	  for(E e = tree.parent(child); e != null; e = tree.parent(e))
+		  if(e.equals(node))
+			  return true;
+	  return false;
+  }
+  private static <E> E ancestorByParents(Tree<E> tree, E node1, E node2) throws NodeNotFoundException {
+	  List<E> ancestors = new ArrayList<E>();
+	  for(E e = node1; e != null; e = tree.parent(e))
+		  ancestors.add(e);
+	  for(E e = node2; ; e = tree.parent(e))
+		  if(ancestors.contains(e))
+			  return e;
+  }
+  private static <E> List<E> toList(Iterable<E> view) {
+	  List<E> list = new ArrayList<E>();
+	  for(E e : view)
+		  list.add(e);
+	  return list;
+  }
 }
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.googlecode.jctree.ArrayTree;
+import com.googlecode.jctree.NodeNotFoundException;
+
+public class ArrayTreeTest {
+	@DataProvider
+	public Object[][] getTree() {
+		try {
+			return new Object[][]{{0, new ArrayTree<String>(3)},{1, getBigTree()}};
+		} catch(NodeNotFoundException e) {
+			throw new RuntimeException();
+		}
+	  }
+
+	private ArrayTree<String> getBigTree() throws NodeNotFoundException {
+		ArrayTree<String> arrayTree = new ArrayTree<String>(3);
+		arrayTree.add("Root1");
+		arrayTree.add("Root1", "C1");
+		arrayTree.add("Root1", "C2");
+		arrayTree.add("C1", "C1-1");
+		arrayTree.add("C1", "C1-2");
+		arrayTree.add("C1", "C1-3");
+		arrayTree.add("C2", "C2-1", 2);
+		arrayTree.add("C2", "C2-2", 0);
+		arrayTree.add("C1-1", "C1-1-1");
+		arrayTree.add("C1-1", "C1-1-2");
+		arrayTree.add("C1-2", "C1-2-1");
+		arrayTree.add("C2-1", "C2-1-1");
+		arrayTree.add("C2-1", "C2-1-2");
+		return arrayTree;
+	}
+
+  @Test(dataProvider = "getTree")
+  public void addAtIndex(int testCaseNumber, ArrayTree<String> tree) throws NodeNotFoundException {
+	  switch(testCaseNumber) {
+	  	case 0:
+	  		Assert.assertEquals(true, tree.add(null, "Root", 1));
+	  		Assert.assertEquals(true, tree.add("Root", "C1", 1));
+	  		Assert.assertEquals(null, tree.child("Root", 0));
+	  		Assert.assertEquals("C1", tree.child("Root", 1));
+	  		Assert.assertEquals(true, tree.add("Root", "C0"));
+	  		Assert.assertEquals("C0", tree.child("Root", 0));
+	  		break;
+	  	case 1:
+	  		Assert.assertEquals(Arrays.asList("C2-2", "C2-1"), tree.children("C2"));
+	  		Assert.assertEquals("C2-2", tree.child("C2", 0));
+	  		Assert.assertEquals(null, tree.child("C2", 1));
+	  		Assert.assertEquals("C2-1", tree.child("C2", 2));
+	  		Assert.assertEquals(false, tree.add("C2", "C1-1", 1));
+	  		Assert.assertEquals("C1", tree.parent("C1-1"));
+	  		try {
+	  			tree.add("C1", "C1-4");
+	  			Assert.fail();
+	  		} catch(IndexOutOfBoundsException e) {
+	  			//passed
+	  		}
+	  		try {
+	  			tree.add("C2", "C2-3", 3);
+	  			Assert.fail();
+	  		} catch(IndexOutOfBoundsException e) {
+	  			//passed
+	  		}
+	  		try {
+	  			tree.add("C3", "C3-1", 0);
+	  			Assert.fail();
+	  		} catch(NodeNotFoundException e) {
+	  			//passed
+	  		}
+	  		Assert.assertEquals(13, tree.size());
+	  		break;
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void nodeIndex(int testCaseNumber, ArrayTree<String> tree) throws NodeNotFoundException {
+	  if(testCaseNumber == 1) {
+		  Assert.assertEquals(true, tree.contains("C2-1-2"));
+		  Assert.assertEquals(false, tree.contains("C3"));
+		  Assert.assertEquals(false, tree.contains(null));
+		  Assert.assertEquals(true, tree.containsAll(Arrays.asList("Root1", "C1-2-1", "C2-2")));
+		  Assert.assertEquals(true, tree.remove("C1-1"));
+		  Assert.assertEquals(false, tree.contains("C1-1"));
+		  Assert.assertEquals(false, tree.contains("C1-1-2"));
+		  Assert.assertEquals(false, tree.remove("C1-1-2"));
+		  Assert.assertEquals(10, tree.size());
+		  Assert.assertEquals(true, tree.add("C2-2", "C1-1-2"));
+		  Assert.assertEquals("C2-2", tree.parent("C1-1-2"));
+		  Assert.assertEquals(Arrays.asList("C1-1-2"), tree.children("C2-2"));
+		  Assert.assertEquals(true, tree.add("C1", "C1-1"));
+		  Assert.assertEquals("C1-1", tree.child("C1", 0));
+		  Assert.assertEquals(false, tree.add("C1-2", "C2-1"));
+		  Assert.assertEquals("C2", tree.parent("C2-1"));
+		  try {
+			  tree.parent("C1-1-1");
+			  Assert.fail();
+		  } catch(NodeNotFoundException e) {
+			  //passed
+		  }
+		  try {
+			  tree.children("C1-1-1");
+			  Assert.fail();
+		  } catch(NodeNotFoundException e) {
+			  //passed
+		  }
+	  }
+	  tree.clear();
+	  Assert.assertEquals(false, tree.contains("Root1"));
+	  tree.add("Root2");
+	  tree.add("Root2", "C1");
+	  Assert.assertEquals(null, tree.parent("Root2"));
+	  Assert.assertEquals("Root2", tree.parent("C1"));
+	  Assert.assertEquals(Arrays.asList("C1"), tree.children("Root2"));
+  }
+  @Test
+  public void parentSlots() throws NodeNotFoundException {
+	  ArrayTree<Integer> tree = new ArrayTree<Integer>(2);
+	  tree.add(0);
+	  for(int i = 1; i < 1000; i++)
+		  tree.add((i - 1) / 2, i);
+	  for(int i = 1; i < 1000; i++)
+		  Assert.assertEquals(tree.parent(i).intValue(), (i - 1) / 2);
+	  Assert.assertEquals(tree.remove(3), true);
+	  Assert.assertEquals(tree.contains(7), false);
+	  Assert.assertEquals(tree.contains(15), false);
+	  Assert.assertEquals(tree.child(1, 0), null);
+	  Assert.assertEquals(tree.child(1, 1).intValue(), 4);
+	  tree.add(1, 3);
+	  tree.add(3, 7);
+	  Assert.assertEquals(tree.parent(7).intValue(), 3);
+	  Assert.assertEquals(tree.parent(3).intValue(), 1);
+	  Assert.assertEquals(tree.commonAncestor(7, 9).intValue(), 1);
+	  Assert.assertEquals(tree.ancestor(7, 2).intValue(), 1);
+	  Assert.assertEquals(tree.levelOf(7), 4);
+	  Assert.assertEquals(tree.isAncestor(1, 7), true);
+	  Assert.assertEquals(tree.isAncestor(2, 7), false);
+	  Assert.assertEquals(tree.isDescendant(3, 7), true);
+	  Assert.assertEquals(tree.preOrderTraversal().subList(0, 5), Arrays.asList(0, 1, 3, 7, 4));
+  }
+  @Test
+  public void nodeRef() throws NodeNotFoundException {
+	  ArrayTree<String> tree = new ArrayTree<String>(2);
+	  NodeRef root = tree.addRef(null, "Root1");
+	  NodeRef c1 = tree.addRef(root, "C1");
+	  NodeRef c2 = tree.addRef(root, "C2");
+	  NodeRef c11 = tree.addRef(c1, "C1-1");
+	  Assert.assertEquals("C1-1", tree.valueOf(c11));
+	  Assert.assertEquals(c1, tree.parentOf(c11));
+	  Assert.assertNull(tree.parentOf(root));
+	  Assert.assertEquals(Arrays.asList(c1, c2), tree.childrenOf(root));
+	  Assert.assertEquals(2, tree.childCount(root));
+	  Assert.assertEquals(c11, tree.ref("C1-1"));
+	  Assert.assertEquals(c11, tree.addRef(c2, "C1-1"));
+	  try {
+		  tree.addRef(root, "C3");
+		  Assert.fail();
+	  } catch(IndexOutOfBoundsException e) {
+		  //passed
+	  }
+	  Assert.assertEquals(true, tree.remove(c1));
+	  Assert.assertEquals(false, tree.remove(c11));
+	  Assert.assertEquals(false, tree.contains("C1-1"));
+	  Assert.assertEquals(Arrays.asList(c2), tree.childrenOf(root));
+	  NodeRef newNode = tree.addRef(c2, "C1");
+	  Assert.assertEquals("C1", tree.valueOf(newNode));
+	  Assert.assertEquals(c2, tree.parentOf(newNode));
+	  try {
+		  tree.valueOf(c1);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  try {
+		  new ArrayTree<String>(2).valueOf(root);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  try {
+		  tree.ref("C1-1");
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  tree.clear();
+	  tree.addRef(null, "Root2");
+	  try {
+		  tree.childrenOf(root);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  try {
+		  tree.childCount(root);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void depthAfterRemoveAndClone(int testCaseNumber, ArrayTree<String> tree) throws NodeNotFoundException {
+	  if(testCaseNumber == 0) {
+		  Assert.assertEquals(0, tree.depth());
+		  tree.add("Root");
+		  Assert.assertEquals(1, tree.depth());
+	  } else {
+		  @SuppressWarnings("unchecked")
+		  ArrayTree<String> clone = (ArrayTree<String>) tree.clone();
+		  Assert.assertEquals(4, tree.depth());
+		  Assert.assertEquals(true, tree.remove("C1-1"));
+		  Assert.assertEquals(true, tree.remove("C1-2-1"));
+		  Assert.assertEquals(4, tree.depth());
+		  Assert.assertEquals(true, tree.remove("C2-1"));
+		  Assert.assertEquals(3, tree.depth());
+		  tree.add("C1-3", "C1-3-1");
+		  tree.add("C1-3-1", "C1-3-1-1");
+		  tree.add("C1-3-1-1", "C1-3-1-1-1");
+		  Assert.assertEquals(6, tree.depth());
+		  Assert.assertEquals(true, tree.remove("C1"));
+		  Assert.assertEquals(3, tree.depth());
+		  Assert.assertEquals(4, clone.depth());
+		  Assert.assertEquals(true, clone.remove("C2"));
+		  Assert.assertEquals(4, clone.depth());
+		  Assert.assertEquals(3, tree.depth());
+		  tree.clear();
+		  Assert.assertEquals(0, tree.depth());
+	  }
+  }
+  @Test
+  public void subtreeSizes() throws NodeNotFoundException {
+	  ArrayTree<Integer> tree = new ArrayTree<Integer>(4);
+	  Random random = new Random(3);
+	  tree.add(0);
+	  for(int i = 1; i < 2000; i++) {
+		  int parent = random.nextInt(i);
+		  if(tree.contains(parent) && tree.children(parent).size() < 4)
+			  tree.add(parent, i);
+		  if(i % 10 == 0)
+			  tree.remove(1 + random.nextInt(i));
+		  if(i % 100 == 0)
+			  Assert.assertEquals(tree.subtreeSize(0), tree.size());
+	  }
+	  Assert.assertEquals(tree.size(), tree.preOrderTraversal().size());
+	  @SuppressWarnings("unchecked")
+	  ArrayTree<Integer> clone = (ArrayTree<Integer>) tree.clone();
+	  for(Integer node : tree.preOrderView()) {
+		  final int[] count = new int[1];
+		  tree.walk(node, (e, parent, depth) -> {
+			  count[0]++;
+			  return TreeVisitResult.CONTINUE;
+		  });
+		  Assert.assertEquals(tree.subtreeSize(node), count[0]);
+		  Assert.assertEquals(clone.subtreeSize(node), count[0]);
+		  Assert.assertEquals(tree.childCount(node), tree.children(node).size());
+	  }
+	  Integer leaf = tree.leaves().get(0);
+	  clone.remove(leaf);
+	  Assert.assertEquals(clone.subtreeSize(0), tree.size() - 1);
+	  Assert.assertEquals(tree.subtreeSize(leaf), 1);
+	  try {
+		  tree.subtreeSize(5000);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void removeDeepSubtree() throws NodeNotFoundException {
+	  ArrayTree<Integer> chain = new ArrayTree<Integer>(1);
+	  chain.add(0);
+	  for(int i = 1; i < 100000; i++)
+		  chain.add(i - 1, i);
+	  Assert.assertEquals(chain.depth(), 100000);
+	  Assert.assertEquals(chain.subtreeSize(1), 99999);
+	  Assert.assertEquals(chain.remove(1), true);
+	  Assert.assertEquals(chain.size(), 1);
+	  Assert.assertEquals(chain.depth(), 1);
+	  Assert.assertEquals(chain.contains(99999), false);
+	  Assert.assertEquals(chain.children(0).isEmpty(), true);
+	  chain.add(0, 1);
+	  chain.add(1, 2);
+	  Assert.assertEquals(chain.preOrderTraversal(), Arrays.asList(0, 1, 2));
+	  Assert.assertEquals(chain.subtreeSize(0), 3);
+  }
+}
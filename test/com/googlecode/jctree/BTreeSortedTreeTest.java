@@ -0,0 +1,171 @@
+package com.googlecode.jctree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class BTreeSortedTreeTest {
+
+  @Test
+  public void addRemove() throws NodeNotFoundException {
+	  for(int fanout : new int[] {3, 4, 5, 8, 64}) {
+		  BTreeSortedTree<Integer> tree = new BTreeSortedTree<Integer>(fanout);
+		  TreeSet<Integer> expected = new TreeSet<Integer>();
+		  Random random = new Random(fanout);
+		  for(int i = 0; i < 6000; i++) {
+			  int value = random.nextInt(1500);
+			  if(random.nextInt(3) == 0)
+				  Assert.assertEquals(tree.remove(value), expected.remove(value));
+			  else
+				  Assert.assertEquals(tree.add(value), expected.add(value));
+			  if(i % 500 == 0)
+				  checkStructure(tree);
+		  }
+		  Assert.assertEquals(tree.size(), expected.size());
+		  Assert.assertEquals(tree.inOrderTraversal(), new ArrayList<Integer>(expected));
+		  Assert.assertEquals(toList(tree), new ArrayList<Integer>(expected));
+		  checkStructure(tree);
+		  for(Integer value : new ArrayList<Integer>(expected))
+			  Assert.assertTrue(tree.remove(value));
+		  Assert.assertTrue(tree.isEmpty());
+		  Assert.assertNull(tree.root());
+		  Assert.assertFalse(tree.contains(1));
+	  }
+  }
+  @Test
+  public void successorPredecessor() throws NodeNotFoundException {
+	  BTreeSortedTree<Integer> tree = new BTreeSortedTree<Integer>(4);
+	  for(int i = 0; i < 200; i++)
+		  tree.add(3 * i);
+	  Assert.assertNull(tree.predecessor(0));
+	  Assert.assertNull(tree.successor(597));
+	  for(int i = 1; i < 199; i++) {
+		  Assert.assertEquals(tree.successor(3 * i).intValue(), 3 * i + 3);
+		  Assert.assertEquals(tree.predecessor(3 * i).intValue(), 3 * i - 3);
+	  }
+	  try {
+		  tree.successor(1);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void navigation() {
+	  BTreeSortedTree<Integer> tree = new BTreeSortedTree<Integer>(5);
+	  TreeSet<Integer> expected = new TreeSet<Integer>();
+	  Random random = new Random(11);
+	  for(int i = 0; i < 3000; i++) {
+		  int value = random.nextInt(2000);
+		  if(i % 4 == 3) {
+			  tree.remove(value);
+			  expected.remove(value);
+		  } else {
+			  tree.add(value);
+			  expected.add(value);
+		  }
+	  }
+	  Assert.assertEquals(tree.first(), expected.first());
+	  Assert.assertEquals(tree.last(), expected.last());
+	  for(int i = 0; i < 500; i++) {
+		  int from = random.nextInt(2100) - 50, to = from + random.nextInt(300);
+		  Assert.assertEquals(tree.floor(from), expected.floor(from));
+		  Assert.assertEquals(tree.ceiling(from), expected.ceiling(from));
+		  Assert.assertEquals(tree.higher(from), expected.higher(from));
+		  Assert.assertEquals(tree.lower(from), expected.lower(from));
+		  boolean fromInclusive = random.nextBoolean(), toInclusive = random.nextBoolean();
+		  Assert.assertEquals(toList(tree.subSet(from, fromInclusive, to, toInclusive)), 
+				  new ArrayList<Integer>(expected.subSet(from, fromInclusive, to, toInclusive)));
+		  Assert.assertEquals(toList(tree.headSet(from, fromInclusive)), new ArrayList<Integer>(expected.headSet(from, fromInclusive)));
+		  Assert.assertEquals(toList(tree.tailSet(to, toInclusive)), new ArrayList<Integer>(expected.tailSet(to, toInclusive)));
+	  }
+	  List<Integer> descending = new ArrayList<Integer>();
+	  for(Iterator<Integer> iterator = tree.descendingIterator(); iterator.hasNext();)
+		  descending.add(iterator.next());
+	  Assert.assertEquals(descending, new ArrayList<Integer>(expected.descendingSet()));
+	  Iterator<Integer> iterator = tree.tailSet(0).iterator();
+	  iterator.next();
+	  Assert.assertEquals(tree.pollFirst(), expected.pollFirst());
+	  Assert.assertEquals(tree.pollLast(), expected.pollLast());
+	  try {
+		  iterator.next();
+		  Assert.fail();
+	  } catch(ConcurrentModificationException e) {
+		  //passed
+	  }
+	  tree.clear();
+	  Assert.assertNull(tree.pollFirst());
+	  Assert.assertNull(tree.floor(1));
+	  Assert.assertFalse(tree.subSet(0, 10).iterator().hasNext());
+  }
+  @Test
+  public void treeViews() throws NodeNotFoundException {
+	  BTreeSortedTree<Integer> tree = new BTreeSortedTree<Integer>(3);
+	  for(int i = 1; i <= 7; i++)
+		  tree.add(i);
+	  Assert.assertEquals(tree.root().intValue(), 4);
+	  Assert.assertEquals(tree.children(4), Arrays.asList(2, 6));
+	  Assert.assertEquals(tree.siblings(2), Arrays.asList(6));
+	  Assert.assertEquals(tree.leaves(), Arrays.asList(1, 3, 5, 7));
+	  Assert.assertEquals(tree.preOrderTraversal(), Arrays.asList(4, 2, 1, 3, 6, 5, 7));
+	  Assert.assertEquals(tree.depth(), 3);
+	  Assert.assertEquals(tree.commonAncestor(1, 3).intValue(), 2);
+	  Assert.assertEquals(tree.levelOf(7), 3);
+	  BTreeSortedTree<Integer> clone = (BTreeSortedTree<Integer>) tree.clone();
+	  Assert.assertEquals(clone, tree);
+	  clone.remove(7);
+	  Assert.assertTrue(tree.contains(7));
+	  Assert.assertNotEquals(clone, tree);
+	  try {
+		  tree.add(1, 8);
+		  Assert.fail();
+	  } catch(UnsupportedOperationException e) {
+		  //passed
+	  }
+	  try {
+		  new BTreeSortedTree<Integer>(2);
+		  Assert.fail();
+	  } catch(IllegalArgumentException e) {
+		  //passed
+	  }
+  }
+  private void checkStructure(BTreeSortedTree<Integer> tree) throws NodeNotFoundException {
+	  if(tree.isEmpty())
+		  return;
+	  Assert.assertNull(tree.parent(tree.root()));
+	  Assert.assertEquals(tree.subtreeSize(tree.root()), tree.size());
+	  int depth = 0;
+	  for(Integer value : tree) {
+		  int size = 1, level = 0;
+		  for(Integer child : tree.children(value)) {
+			  Assert.assertEquals(tree.parent(child), value);
+			  size += tree.subtreeSize(child);
+		  }
+		  Assert.assertEquals(tree.subtreeSize(value), size);
+		  for(Integer ancestor = value; ancestor != null; ancestor = tree.parent(ancestor))
+			  level++;
+		  depth = Math.max(depth, level);
+		  Integer parent = tree.parent(value);
+		  if(parent != null) {
+			  Assert.assertTrue(tree.isAncestor(parent, value));
+			  Assert.assertFalse(tree.isAncestor(value, parent));
+			  Assert.assertTrue(tree.isAncestor(tree.root(), value));
+		  }
+	  }
+	  Assert.assertEquals(tree.depth(), depth);
+	  Assert.assertEquals(tree.inOrderTraversal(), toList(tree));
+  }
+  private List<Integer> toList(Iterable<Integer> iterable) {
+	  List<Integer> list = new ArrayList<Integer>();
+	  for(Integer i : iterable)
+		  list.add(i);
+	  return list;
+  }
+}
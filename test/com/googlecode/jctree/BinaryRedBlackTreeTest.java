@@ -15,7 +15,13 @@ package com.googlecode.jctree;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -67,7 +73,8 @@ public class BinaryRedBlackTreeTest {
     		Assert.assertEquals(false, tree.add("C1.5"));
     		break;
     	case 1:
-    		Assert.assertEquals("C1.5", tree.right("C1"));
+    		Assert.assertEquals("C1", tree.left("C1.5"));//C1 -> C2 -> C1.5 is rebalanced by rotations
+    		Assert.assertEquals("C2", tree.right("C1.5"));
     		Assert.assertEquals(true, tree.add("C0.5"));
     		Assert.assertEquals("C0.5", tree.left("C1"));
     		Assert.assertEquals(true, tree.add("CD"));
@@ -621,4 +628,370 @@ public class BinaryRedBlackTreeTest {
 	  		break;
 	  }
   }
+  @Test
+  public void staysBalanced() {
+	  BinaryRedBlackTree<Integer> tree = new BinaryRedBlackTree<Integer>();
+	  TreeSet<Integer> expected = new TreeSet<Integer>();
+	  Random random = new Random(11);
+	  for(int i = 0; i < 20000; i++) {
+		  Integer value = random.nextInt(10000);
+		  if(random.nextInt(3) == 0)
+			  Assert.assertEquals(tree.remove(value), expected.remove(value));
+		  else
+			  Assert.assertEquals(tree.add(value), expected.add(value));
+	  }
+	  Assert.assertEquals(tree.size(), expected.size());
+	  Assert.assertEquals(tree.inOrderTraversal(), new ArrayList<Integer>(expected));
+	  Assert.assertTrue(tree.depth() <= 2 * (32 - Integer.numberOfLeadingZeros(expected.size() + 1)));
+	  for(int i = 0; i < 100000; i++)
+		  tree.add(200000 + i);
+	  Assert.assertTrue(tree.depth() <= 2 * (32 - Integer.numberOfLeadingZeros(tree.size() + 1)));
+  }
+  @Test(dataProvider = "getTree")
+  public void traversalViews(int testCaseNumber, BinaryRedBlackTree<String> tree) {
+	  Assert.assertEquals(toList(tree.preOrderView()), tree.preOrderTraversal());
+	  Assert.assertEquals(toList(tree.postOrderView()), tree.postOrderTraversal());
+	  Assert.assertEquals(toList(tree.inOrderView()), tree.inOrderTraversal());
+	  Assert.assertEquals(toList(tree.levelOrderView()), tree.levelOrderTraversal());
+	  Assert.assertEquals(toList(tree.leavesView()), tree.leaves());
+	  if(testCaseNumber == 1) {
+		  Assert.assertEquals(toList(tree), Arrays.asList("C1", "C2", "C3", "C4", "C5", "C6", "C7", "C8", "C9", "CA", "CB", "CC"));
+		  Iterator<String> iterator = tree.iterator();
+		  Assert.assertEquals(iterator.next(), "C1");
+		  tree.remove("C9");
+		  try {
+			  iterator.next();
+			  Assert.fail();
+		  } catch(ConcurrentModificationException e) {
+			  //passed
+		  }
+	  } else
+		  Assert.assertFalse(tree.iterator().hasNext());
+  }
+  @Test(dataProvider = "getTree")
+  public void spliterator(int testCaseNumber, BinaryRedBlackTree<String> tree) {
+	  Spliterator<String> spliterator = tree.spliterator();
+	  Assert.assertEquals(spliterator.getExactSizeIfKnown(), tree.size());
+	  Spliterator<String> prefix = spliterator.trySplit();
+	  List<String> list = new ArrayList<String>();
+	  if(testCaseNumber == 1)
+		  prefix.forEachRemaining(e -> list.add(e));
+	  else
+		  Assert.assertNull(prefix);
+	  while(spliterator.tryAdvance(e -> list.add(e)));
+	  Assert.assertEquals(list, tree.inOrderTraversal());
+	  Assert.assertEquals(tree.parallelStream().collect(Collectors.toList()), tree.inOrderTraversal());
+  }
+  @Test(dataProvider = "getTree")
+  public void walk(int testCaseNumber, BinaryRedBlackTree<String> tree) throws NodeNotFoundException {
+	  final List<String> visited = new ArrayList<String>();
+	  Assert.assertNull(tree.walk((node, parent, depth) -> {
+		  visited.add(node);
+		  return TreeVisitResult.CONTINUE;
+	  }));
+	  Assert.assertEquals(visited, tree.preOrderTraversal());
+	  if(testCaseNumber == 1) {
+		  visited.clear();
+		  tree.walk(tree.root(), (node, parent, depth) -> {
+			  visited.add(node);
+			  return depth < 2 ? TreeVisitResult.CONTINUE : TreeVisitResult.SKIP_SUBTREE;
+		  });
+		  Assert.assertEquals(visited, Arrays.asList(tree.root(), tree.left(tree.root()), tree.right(tree.root())));
+		  final List<String> leaves = tree.leaves();
+		  Assert.assertEquals(tree.walk((node, parent, depth) -> node.compareTo("C4") >= 0 && leaves.contains(node) ? TreeVisitResult.TERMINATE : TreeVisitResult.CONTINUE), "C5");
+	  }
+  }
+  @Test
+  public void levelAncestors() throws NodeNotFoundException {
+	  BinaryRedBlackTree<Integer> tree = new BinaryRedBlackTree<Integer>();
+	  for(int i = 0; i < 1000; i++)
+		  tree.add(i);
+	  for(int round = 0; round < 2; round++)
+		  for(int i = 0; i < 1000; i++) {
+			  List<Integer> path = new ArrayList<Integer>();
+			  for(Integer e = i; e != null; e = tree.parent(e))
+				  path.add(e);
+			  Assert.assertEquals(tree.levelOf(i), path.size());
+			  Assert.assertEquals(toList(tree.ancestors(i)), path.subList(1, path.size()));
+			  Assert.assertEquals(tree.ancestor(i, path.size() - 1), tree.root());
+			  Assert.assertEquals(tree.ancestor(i, (i + round) % path.size()), path.get((i + round) % path.size()));
+			  Assert.assertNull(tree.ancestor(i, path.size()));
+		  }
+  }
+  @Test
+  public void intervalLabels() throws NodeNotFoundException {
+	  BinaryRedBlackTree<Integer> tree = new BinaryRedBlackTree<Integer>();
+	  Random random = new Random(5);
+	  for(int i = 0; i < 3000; i++) {
+		  tree.add(random.nextInt(5000));
+		  if(i % 3 == 0)
+			  tree.remove(random.nextInt(5000));
+	  }
+	  List<Integer> nodes = tree.inOrderTraversal();
+	  for(int i = 0; i < 5000; i++) {
+		  Integer node = nodes.get(random.nextInt(nodes.size())), child = nodes.get(random.nextInt(nodes.size()));
+		  boolean expected = false;
+		  for(Integer e = tree.parent(child); e != null && !expected; e = tree.parent(e))
+			  expected = e.equals(node);
+		  Assert.assertEquals(tree.isAncestor(node, child), expected);
+		  Assert.assertEquals(tree.isDescendant(node, child), expected);
+	  }
+  }
+  @Test
+  public void subtreeSizes() throws NodeNotFoundException {
+	  BinaryRedBlackTree<Integer> tree = new BinaryRedBlackTree<Integer>();
+	  Random random = new Random(3);
+	  for(int i = 0; i < 3000; i++) {
+		  tree.add(random.nextInt(5000));
+		  if(i % 3 == 0)
+			  tree.remove(random.nextInt(5000));
+	  }
+	  Assert.assertEquals(tree.subtreeSize(tree.root()), tree.size());
+	  for(Integer node : tree.inOrderView()) {
+		  final int[] count = new int[1];
+		  tree.walk(node, (e, parent, depth) -> {
+			  count[0]++;
+			  return TreeVisitResult.CONTINUE;
+		  });
+		  Assert.assertEquals(tree.subtreeSize(node), count[0]);
+		  Assert.assertEquals(tree.childCount(node), tree.children(node).size());
+	  }
+	  Spliterator<Integer> spliterator = tree.spliterator().trySplit();
+	  Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+	  Assert.assertEquals(spliterator.getExactSizeIfKnown(), spliterator.estimateSize());
+	  long size = spliterator.estimateSize();
+	  final int[] count = new int[1];
+	  spliterator.forEachRemaining(e -> count[0]++);
+	  Assert.assertEquals(count[0], size);
+  }
+  @Test
+  public void orderStatistics() {
+	  BinaryRedBlackTree<Integer> tree = new BinaryRedBlackTree<Integer>();
+	  TreeSet<Integer> expected = new TreeSet<Integer>();
+	  Random random = new Random(9);
+	  for(int i = 0; i < 4000; i++) {
+		  int value = random.nextInt(3000);
+		  if(i % 4 == 3) {
+			  tree.remove(value);
+			  expected.remove(value);
+		  } else {
+			  tree.add(value);
+			  expected.add(value);
+		  }
+	  }
+	  List<Integer> sorted = new ArrayList<Integer>(expected);
+	  for(int k = 0; k < sorted.size(); k++) {
+		  Assert.assertEquals(tree.select(k), sorted.get(k));
+		  Assert.assertEquals(tree.rank(sorted.get(k)), k);
+	  }
+	  for(int i = 0; i < 1000; i++) {
+		  int from = random.nextInt(3100) - 50, to = from + random.nextInt(500);
+		  Assert.assertEquals(tree.rank(from), expected.headSet(from).size());
+		  Assert.assertEquals(tree.countInRange(from, to), expected.subSet(from, to).size());
+	  }
+	  Assert.assertEquals(tree.percentile(0), sorted.get(0));
+	  Assert.assertEquals(tree.percentile(100), sorted.get(sorted.size() - 1));
+	  Assert.assertEquals(tree.percentile(50), sorted.get((sorted.size() + 1) / 2 - 1));
+	  Assert.assertEquals(tree.percentile(99), sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1));
+	  try {
+		  tree.select(sorted.size());
+		  Assert.fail();
+	  } catch(IndexOutOfBoundsException e) {
+		  //passed
+	  }
+	  try {
+		  tree.percentile(101);
+		  Assert.fail();
+	  } catch(IllegalArgumentException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void navigation() {
+	  BinaryRedBlackTree<Integer> tree = new BinaryRedBlackTree<Integer>();
+	  TreeSet<Integer> expected = new TreeSet<Integer>();
+	  Random random = new Random(11);
+	  for(int i = 0; i < 3000; i++) {
+		  int value = random.nextInt(2000);
+		  if(i % 4 == 3) {
+			  tree.remove(value);
+			  expected.remove(value);
+		  } else {
+			  tree.add(value);
+			  expected.add(value);
+		  }
+	  }
+	  Assert.assertEquals(tree.first(), expected.first());
+	  Assert.assertEquals(tree.last(), expected.last());
+	  for(int i = 0; i < 500; i++) {
+		  int from = random.nextInt(2100) - 50, to = from + random.nextInt(300);
+		  Assert.assertEquals(tree.floor(from), expected.floor(from));
+		  Assert.assertEquals(tree.ceiling(from), expected.ceiling(from));
+		  Assert.assertEquals(tree.higher(from), expected.higher(from));
+		  Assert.assertEquals(tree.lower(from), expected.lower(from));
+		  boolean fromInclusive = random.nextBoolean(), toInclusive = random.nextBoolean();
+		  Assert.assertEquals(toList(tree.subSet(from, fromInclusive, to, toInclusive)), 
+				  new ArrayList<Integer>(expected.subSet(from, fromInclusive, to, toInclusive)));
+		  Assert.assertEquals(toList(tree.headSet(from, fromInclusive)), new ArrayList<Integer>(expected.headSet(from, fromInclusive)));
+		  Assert.assertEquals(toList(tree.tailSet(to, toInclusive)), new ArrayList<Integer>(expected.tailSet(to, toInclusive)));
+	  }
+	  List<Integer> descending = new ArrayList<Integer>();
+	  for(Iterator<Integer> iterator = tree.descendingIterator(); iterator.hasNext();)
+		  descending.add(iterator.next());
+	  Assert.assertEquals(descending, new ArrayList<Integer>(expected.descendingSet()));
+	  Iterator<Integer> iterator = tree.tailSet(0).iterator();
+	  iterator.next();
+	  Assert.assertEquals(tree.pollFirst(), expected.pollFirst());
+	  Assert.assertEquals(tree.pollLast(), expected.pollLast());
+	  Assert.assertEquals(tree.size(), expected.size());
+	  try {
+		  iterator.next();
+		  Assert.fail();
+	  } catch(ConcurrentModificationException e) {
+		  //passed
+	  }
+	  try {
+		  tree.subSet(5, 4);
+		  Assert.fail();
+	  } catch(IllegalArgumentException e) {
+		  //passed
+	  }
+	  tree.clear();
+	  Assert.assertNull(tree.pollFirst());
+	  Assert.assertNull(tree.floor(1));
+	  Assert.assertFalse(tree.subSet(0, 10).iterator().hasNext());
+  }
+  @Test
+  public void bulkLoad() throws NodeNotFoundException {
+	  List<Integer> values = new ArrayList<Integer>();
+	  for(int i = 0; i < 5000; i++)
+		  values.add(2 * i);
+	  BinaryRedBlackTree<Integer> tree = new BinaryRedBlackTree<Integer>(values);
+	  Assert.assertEquals(tree.size(), values.size());
+	  Assert.assertEquals(tree.depth(), 32 - Integer.numberOfLeadingZeros(values.size()));
+	  Assert.assertEquals(tree.inOrderTraversal(), values);
+	  TreeSet<Integer> expected = new TreeSet<Integer>(values);
+	  Random random = new Random(17);
+	  List<Integer> unsorted = new ArrayList<Integer>();
+	  for(int i = 0; i < 8000; i++)
+		  unsorted.add(random.nextInt(20000));
+	  Assert.assertEquals(tree.addAll(unsorted), expected.addAll(unsorted));
+	  Assert.assertEquals(tree.inOrderTraversal(), new ArrayList<Integer>(expected));
+	  Assert.assertEquals(tree.depth(), 32 - Integer.numberOfLeadingZeros(expected.size()));
+	  Assert.assertFalse(tree.addAll(new ArrayList<Integer>(expected)));
+	  for(int i = 0; i < 20000; i++) {
+		  Integer value = random.nextInt(25000);
+		  if(random.nextInt(3) == 0)
+			  Assert.assertEquals(tree.remove(value), expected.remove(value));
+		  else
+			  Assert.assertEquals(tree.add(value), expected.add(value));
+	  }
+	  Assert.assertEquals(tree.inOrderTraversal(), new ArrayList<Integer>(expected));
+	  Assert.assertTrue(tree.depth() <= 2 * (32 - Integer.numberOfLeadingZeros(expected.size() + 1)));
+	  Assert.assertEquals(tree.subtreeSize(tree.root()), tree.size());
+	  List<Integer> nodes = tree.inOrderTraversal();
+	  for(int i = 0; i < 2000; i++) {
+		  Integer node = nodes.get(random.nextInt(nodes.size())), child = nodes.get(random.nextInt(nodes.size()));
+		  boolean isAncestor = false;
+		  for(Integer e = tree.parent(child); e != null && !isAncestor; e = tree.parent(e))
+			  isAncestor = e.equals(node);
+		  Assert.assertEquals(tree.isAncestor(node, child), isAncestor);
+	  }
+  }
+  @Test
+  public void splitAndJoin() throws NodeNotFoundException {
+	  Random random = new Random(23);
+	  BinaryRedBlackTree<Integer> tree = new BinaryRedBlackTree<Integer>();
+	  TreeSet<Integer> expected = new TreeSet<Integer>();
+	  for(int i = 0; i < 5000; i++) {
+		  int value = random.nextInt(20000);
+		  tree.add(value);
+		  expected.add(value);
+	  }
+	  for(int key : new int[] {-1, 0, 7000, expected.first(), expected.last(), 25000}) {
+		  BinaryRedBlackTree<Integer> copy = new BinaryRedBlackTree<Integer>(expected);
+		  BinaryRedBlackTree<Integer> greater = copy.split(key);
+		  Assert.assertEquals(copy.inOrderTraversal(), new ArrayList<Integer>(expected.headSet(key)));
+		  Assert.assertEquals(greater.inOrderTraversal(), new ArrayList<Integer>(expected.tailSet(key)));
+		  Assert.assertEquals(greater.size(), expected.tailSet(key).size());
+	  }
+	  BinaryRedBlackTree<Integer> greater = tree.split(10000);
+	  greater.remove(10000);
+	  BinaryRedBlackTree<Integer> joined = BinaryRedBlackTree.join(tree, 10000, greater);
+	  expected.add(10000);
+	  Assert.assertTrue(tree.isEmpty());
+	  Assert.assertTrue(greater.isEmpty());
+	  Assert.assertEquals(joined.inOrderTraversal(), new ArrayList<Integer>(expected));
+	  Assert.assertTrue(joined.depth() <= 2 * (32 - Integer.numberOfLeadingZeros(expected.size() + 1)));
+	  for(int i = 0; i < 3000; i++) {
+		  Integer value = random.nextInt(20000);
+		  if(random.nextBoolean())
+			  Assert.assertEquals(joined.remove(value), expected.remove(value));
+		  else
+			  Assert.assertEquals(joined.add(value), expected.add(value));
+	  }
+	  Assert.assertEquals(joined.inOrderTraversal(), new ArrayList<Integer>(expected));
+	  Assert.assertEquals(joined.subtreeSize(joined.root()), joined.size());
+	  List<Integer> nodes = joined.inOrderTraversal();
+	  for(int i = 0; i < 2000; i++) {
+		  Integer node = nodes.get(random.nextInt(nodes.size())), child = nodes.get(random.nextInt(nodes.size()));
+		  boolean isAncestor = false;
+		  for(Integer e = joined.parent(child); e != null && !isAncestor; e = joined.parent(e))
+			  isAncestor = e.equals(node);
+		  Assert.assertEquals(joined.isAncestor(node, child), isAncestor);
+	  }
+	  try {
+		  BinaryRedBlackTree.join(new BinaryRedBlackTree<Integer>(Arrays.asList(1, 5)), 3, new BinaryRedBlackTree<Integer>());
+		  Assert.fail();
+	  } catch(IllegalArgumentException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void setOperations() {
+	  Random random = new Random(29);
+	  for(int round = 0; round < 60; round++) {
+		  boolean parallel = round % 2 == 1;
+		  int size1 = random.nextInt(round % 5 == 0 ? 40000 : 500), size2 = random.nextInt(round % 3 == 0 ? 40000 : 500);
+		  int range = 1 + random.nextInt(60000);
+		  TreeSet<Integer> set1 = new TreeSet<Integer>(), set2 = new TreeSet<Integer>();
+		  for(int i = 0; i < size1; i++)
+			  set1.add(random.nextInt(range));
+		  for(int i = 0; i < size2; i++)
+			  set2.add(random.nextInt(range));
+		  BinaryRedBlackTree<Integer> tree1 = new BinaryRedBlackTree<Integer>(set1), tree2 = new BinaryRedBlackTree<Integer>(set2);
+		  switch(round % 3) {
+		  case 0:
+			  if(parallel)
+				  tree1.parallelUnion(tree2);
+			  else
+				  tree1.union(tree2);
+			  set1.addAll(set2);
+			  break;
+		  case 1:
+			  if(parallel)
+				  tree1.parallelIntersection(tree2);
+			  else
+				  tree1.intersection(tree2);
+			  set1.retainAll(set2);
+			  break;
+		  default:
+			  if(parallel)
+				  tree1.parallelDifference(tree2);
+			  else
+				  tree1.difference(tree2);
+			  set1.removeAll(set2);
+		  }
+		  Assert.assertTrue(tree2.isEmpty());
+		  Assert.assertEquals(tree1.size(), set1.size());
+		  Assert.assertEquals(tree1.inOrderTraversal(), new ArrayList<Integer>(set1));
+		  Assert.assertTrue(tree1.depth() <= 2 * (32 - Integer.numberOfLeadingZeros(set1.size() + 1)));
+	  }
+  }
+  private static <E> List<E> toList(Iterable<E> view) {
+	  List<E> list = new ArrayList<E>();
+	  for(E e : view)
+		  list.add(e);
+	  return list;
+  }
 }
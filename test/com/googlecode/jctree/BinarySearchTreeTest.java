@@ -13,8 +13,14 @@
  */
 package com.googlecode.jctree;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
 
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -635,4 +641,123 @@ public class BinarySearchTreeTest {
 	  		break;
 	  }
   }
+  @Test
+  public void navigation() throws NodeNotFoundException {
+	  BinarySearchTree<Integer> tree = new BinarySearchTree<Integer>();
+	  TreeSet<Integer> expected = new TreeSet<Integer>();
+	  Random random = new Random(11);
+	  for(int i = 0; i < 3000; i++) {
+		  int value = random.nextInt(2000);
+		  if(i % 4 == 3) {
+			  tree.remove(value);
+			  expected.remove(value);
+		  } else {
+			  tree.add(value);
+			  expected.add(value);
+		  }
+	  }
+	  Assert.assertEquals(tree.first(), expected.first());
+	  Assert.assertEquals(tree.last(), expected.last());
+	  for(Integer value : expected) {
+		  if(!value.equals(expected.last()))
+			  Assert.assertEquals(tree.successor(value), expected.higher(value));
+		  Assert.assertEquals(tree.predecessor(value), expected.lower(value));
+	  }
+	  for(int i = 0; i < 500; i++) {
+		  int from = random.nextInt(2100) - 50, to = from + random.nextInt(300);
+		  Assert.assertEquals(tree.floor(from), expected.floor(from));
+		  Assert.assertEquals(tree.ceiling(from), expected.ceiling(from));
+		  Assert.assertEquals(tree.higher(from), expected.higher(from));
+		  Assert.assertEquals(tree.lower(from), expected.lower(from));
+		  boolean fromInclusive = random.nextBoolean(), toInclusive = random.nextBoolean();
+		  Assert.assertEquals(toList(tree.subSet(from, fromInclusive, to, toInclusive)), 
+				  new ArrayList<Integer>(expected.subSet(from, fromInclusive, to, toInclusive)));
+		  Assert.assertEquals(toList(tree.headSet(from, fromInclusive)), new ArrayList<Integer>(expected.headSet(from, fromInclusive)));
+		  Assert.assertEquals(toList(tree.tailSet(to, toInclusive)), new ArrayList<Integer>(expected.tailSet(to, toInclusive)));
+	  }
+	  List<Integer> descending = new ArrayList<Integer>();
+	  for(Iterator<Integer> iterator = tree.descendingIterator(); iterator.hasNext();)
+		  descending.add(iterator.next());
+	  Assert.assertEquals(descending, new ArrayList<Integer>(expected.descendingSet()));
+	  Iterator<Integer> iterator = tree.tailSet(0).iterator();
+	  iterator.next();
+	  Assert.assertEquals(tree.pollFirst(), expected.pollFirst());
+	  Assert.assertEquals(tree.pollLast(), expected.pollLast());
+	  Assert.assertEquals(tree.size(), expected.size());
+	  Assert.assertEquals(tree.inOrderTraversal(), new ArrayList<Integer>(expected));
+	  try {
+		  iterator.next();
+		  Assert.fail();
+	  } catch(ConcurrentModificationException e) {
+		  //passed
+	  }
+	  try {
+		  tree.subSet(5, 4);
+		  Assert.fail();
+	  } catch(IllegalArgumentException e) {
+		  //passed
+	  }
+	  while(!expected.isEmpty())
+		  Assert.assertEquals(tree.pollFirst(), expected.pollFirst());
+	  Assert.assertTrue(tree.isEmpty());
+	  Assert.assertNull(tree.pollFirst());
+	  Assert.assertNull(tree.floor(1));
+	  Assert.assertNull(tree.ceiling(1));
+	  Assert.assertFalse(tree.subSet(0, 10).iterator().hasNext());
+	  Assert.assertFalse(tree.descendingIterator().hasNext());
+	  try {
+		  tree.first();
+		  Assert.fail();
+	  } catch(NoSuchElementException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void bulkLoad() throws NodeNotFoundException {
+	  List<Integer> values = new ArrayList<Integer>();
+	  for(int i = 0; i < 5000; i++)
+		  values.add(2 * i);
+	  BinarySearchTree<Integer> tree = new BinarySearchTree<Integer>(values);
+	  Assert.assertEquals(tree.size(), values.size());
+	  Assert.assertEquals(tree.depth(), 32 - Integer.numberOfLeadingZeros(values.size()));
+	  Assert.assertEquals(tree.inOrderTraversal(), values);
+	  TreeSet<Integer> expected = new TreeSet<Integer>(values);
+	  Random random = new Random(23);
+	  List<Integer> unsorted = new ArrayList<Integer>();
+	  for(int i = 0; i < 8000; i++)
+		  unsorted.add(random.nextInt(20000));
+	  Assert.assertEquals(tree.addAll(unsorted), expected.addAll(unsorted));
+	  Assert.assertEquals(tree.inOrderTraversal(), new ArrayList<Integer>(expected));
+	  Assert.assertEquals(tree.depth(), 32 - Integer.numberOfLeadingZeros(expected.size()));
+	  Assert.assertFalse(tree.addAll(new ArrayList<Integer>(expected)));
+	  List<Integer> few = new ArrayList<Integer>();
+	  for(int i = 0; i < 50; i++)
+		  few.add(random.nextInt(25000));
+	  Assert.assertEquals(tree.addAll(few), expected.addAll(few));
+	  for(int i = 0; i < 2000; i++) {
+		  Integer value = random.nextInt(25000);
+		  if(random.nextInt(3) == 0)
+			  Assert.assertEquals(tree.remove(value), expected.remove(value));
+		  else
+			  Assert.assertEquals(tree.add(value), expected.add(value));
+	  }
+	  Assert.assertEquals(tree.size(), expected.size());
+	  Assert.assertEquals(tree.inOrderTraversal(), new ArrayList<Integer>(expected));
+	  Assert.assertEquals(tree.subtreeSize(tree.root()), tree.size());
+	  List<Integer> nodes = tree.inOrderTraversal();
+	  for(int i = 0; i < 2000; i++) {
+		  Integer node = nodes.get(random.nextInt(nodes.size())), child = nodes.get(random.nextInt(nodes.size()));
+		  boolean isAncestor = false;
+		  for(Integer e = tree.parent(child); e != null && !isAncestor; e = tree.parent(e))
+			  isAncestor = e.equals(node);
+		  Assert.assertEquals(tree.isAncestor(node, child), isAncestor);
+	  }
+	  Assert.assertTrue(new BinarySearchTree<Integer>(new ArrayList<Integer>()).isEmpty());
+  }
+  private static <E> List<E> toList(Iterable<E> view) {
+	  List<E> list = new ArrayList<E>();
+	  for(E e : view)
+		  list.add(e);
+	  return list;
+  }
 }
\ No newline at end of file
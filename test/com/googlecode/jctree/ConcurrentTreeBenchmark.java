@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures throughput of {@link ConcurrentSortedTree} against a tree guarded by synchronized blocks, from 1 to 32
+ * threads. Every operation looks up a random value, writePercent of them add or remove one instead. Run with main from
+ * the test classpath, which runs the benchmark once for every thread count
+ * @author Gaurav Saxena
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentTreeBenchmark {
+	private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+	@Param({"stamped", "synchronized"})
+	public String locking;
+	@Param({"0", "1", "10"})
+	public int writePercent;
+	@Param({"100000"})
+	public int size;
+	private SortedTree<Integer> tree;
+
+	@Setup
+	public void setUp() {
+		BinaryRedBlackTree<Integer> values = new BinaryRedBlackTree<Integer>();
+		for(int i = 0; i < size; i++)
+			values.add(2 * i);
+		tree = "stamped".equals(locking) ? new ConcurrentSortedTree<Integer>(values) : values;
+	}
+	@Benchmark
+	public Object operation() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int value = random.nextInt(2 * size);
+		if(random.nextInt(100) < writePercent) {
+			if("stamped".equals(locking))
+				return (value & 1) == 0 ? tree.add(value) : tree.remove(value - 1);
+			synchronized(tree) {
+				return (value & 1) == 0 ? tree.add(value) : tree.remove(value - 1);
+			}
+		}
+		if("stamped".equals(locking))
+			return tree.floor(value);
+		synchronized(tree) {
+			return tree.floor(value);
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		for(int threads : THREADS)
+			new Runner(new OptionsBuilder().include(ConcurrentTreeBenchmark.class.getSimpleName()).threads(threads).build()).run();
+	}
+}
@@ -0,0 +1,106 @@
+package com.googlecode.jctree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ConcurrentTreeTest {
+
+  @Test
+  public void delegation() throws NodeNotFoundException {
+	  ConcurrentTree<String> tree = new ConcurrentTree<String>(new LinkedTree<String>());
+	  tree.add("Root");
+	  tree.add("Root", "C1");
+	  tree.add("Root", "C2");
+	  tree.add("C1", "C1-1");
+	  Assert.assertEquals(tree.parent("C1-1"), "C1");
+	  Assert.assertEquals(new ArrayList<String>(tree.children("Root")), Arrays.asList("C1", "C2"));
+	  Assert.assertEquals(tree.depth(), 3);
+	  Assert.assertEquals(tree.commonAncestor("C1-1", "C2"), "Root");
+	  Assert.assertTrue(tree.isAncestor("Root", "C1-1"));
+	  Iterator<String> iterator = tree.preOrderView().iterator();
+	  tree.remove("C1");
+	  List<String> snapshot = new ArrayList<String>();
+	  while(iterator.hasNext())
+		  snapshot.add(iterator.next());
+	  Assert.assertEquals(snapshot, Arrays.asList("Root", "C1", "C1-1", "C2"));
+	  Assert.assertEquals(new ArrayList<String>(tree.preOrderTraversal()), Arrays.asList("Root", "C2"));
+	  try {
+		  tree.parent("C1");
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  ConcurrentSortedTree<Integer> sorted = new ConcurrentSortedTree<Integer>(new BinaryRedBlackTree<Integer>());
+	  sorted.addAll(Arrays.asList(5, 1, 3));
+	  Assert.assertEquals(sorted.floor(4).intValue(), 3);
+	  Assert.assertEquals(sorted.successor(3).intValue(), 5);
+	  Assert.assertEquals(sorted.pollFirst().intValue(), 1);
+	  Iterator<Integer> descending = sorted.descendingIterator();
+	  Assert.assertEquals(descending.next().intValue(), 5);
+	  Assert.assertEquals(descending.next().intValue(), 3);
+	  Assert.assertFalse(descending.hasNext());
+  }
+  @Test
+  public void readersAndWriters() throws Exception {
+	  final ConcurrentSortedTree<Integer> sorted = new ConcurrentSortedTree<Integer>(new BinaryRedBlackTree<Integer>());
+	  final ConcurrentTree<Integer> chain = new ConcurrentTree<Integer>(new ArrayListTree<Integer>());
+	  chain.add(0);
+	  for(int i = 0; i < 1000; i++) {
+		  sorted.add(2 * i);
+		  if(i > 0)
+			  chain.add(i - 1, i);
+	  }
+	  final AtomicBoolean done = new AtomicBoolean();
+	  ExecutorService executor = Executors.newFixedThreadPool(5);
+	  List<Future<?>> readers = new ArrayList<Future<?>>();
+	  for(int r = 0; r < 4; r++) {
+		  final int seed = r;
+		  readers.add(executor.submit(() -> {
+			  Random random = new Random(seed);
+			  while(!done.get()) {
+				  int even = 2 * random.nextInt(999);
+				  Assert.assertTrue(sorted.contains(even));
+				  Assert.assertEquals(sorted.floor(even).intValue(), even);
+				  int next = sorted.successor(even);
+				  Assert.assertTrue(next == even + 1 || next == even + 2);
+				  int i = 1 + random.nextInt(999);
+				  Assert.assertEquals(chain.parent(i).intValue(), i - 1);
+				  Assert.assertTrue(chain.children(i - 1).contains(i));
+				  Assert.assertEquals(chain.commonAncestor(i, i - 1).intValue(), i - 1);
+				  Assert.assertEquals(chain.ancestor(i, 1).intValue(), i - 1);
+				  Assert.assertTrue(chain.subtreeSize(i) >= 1000 - i);
+				  Assert.assertTrue(chain.depth() == 1000 || chain.depth() == 1001);
+			  }
+			  return null;
+		  }));
+	  }
+	  Random random = new Random(42);
+	  for(int i = 0; i < 20000; i++) {
+		  int odd = 2 * random.nextInt(999) + 1;
+		  int leaf = -1 - random.nextInt(500);
+		  if(random.nextBoolean()) {
+			  sorted.add(odd);
+			  chain.add(random.nextInt(1000), leaf);
+		  } else {
+			  sorted.remove(odd);
+			  chain.remove(leaf);
+		  }
+	  }
+	  done.set(true);
+	  for(Future<?> reader : readers)
+		  reader.get();
+	  executor.shutdown();
+	  Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+}
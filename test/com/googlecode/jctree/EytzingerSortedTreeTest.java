@@ -0,0 +1,123 @@
+package com.googlecode.jctree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class EytzingerSortedTreeTest {
+
+  @Test
+  public void search() throws NodeNotFoundException {
+	  for(int size : new int[] {0, 1, 2, 3, 7, 8, 100, 1023, 1500}) {
+		  TreeSet<Integer> expected = new TreeSet<Integer>();
+		  Random random = new Random(size);
+		  while(expected.size() < size)
+			  expected.add(random.nextInt(4 * size));
+		  EytzingerSortedTree<Integer> tree = new EytzingerSortedTree<Integer>(expected);
+		  Assert.assertEquals(tree.size(), size);
+		  Assert.assertEquals(tree.inOrderTraversal(), new ArrayList<Integer>(expected));
+		  Assert.assertEquals(toList(tree), new ArrayList<Integer>(expected));
+		  for(int i = -2; i < 4 * size + 2; i++) {
+			  Assert.assertEquals(tree.contains(i), expected.contains(i));
+			  Assert.assertEquals(tree.floor(i), expected.floor(i));
+			  Assert.assertEquals(tree.ceiling(i), expected.ceiling(i));
+			  Assert.assertEquals(tree.higher(i), expected.higher(i));
+			  Assert.assertEquals(tree.lower(i), expected.lower(i));
+			  Assert.assertEquals(tree.rank(i), expected.headSet(i).size());
+		  }
+		  for(Integer value : expected) {
+			  Assert.assertEquals(tree.successor(value), expected.higher(value));
+			  Assert.assertEquals(tree.predecessor(value), expected.lower(value));
+		  }
+		  if(size > 0) {
+			  Assert.assertEquals(tree.first(), expected.first());
+			  Assert.assertEquals(tree.last(), expected.last());
+			  Assert.assertEquals(toList(tree.subSet(size, true, 3 * size, false)), new ArrayList<Integer>(expected.subSet(size, true, 3 * size, false)));
+			  List<Integer> descending = new ArrayList<Integer>();
+			  for(Iterator<Integer> iterator = tree.descendingIterator(); iterator.hasNext();)
+				  descending.add(iterator.next());
+			  Assert.assertEquals(descending, new ArrayList<Integer>(expected.descendingSet()));
+		  }
+	  }
+  }
+  @Test
+  public void structure() throws NodeNotFoundException {
+	  List<Integer> values = new ArrayList<Integer>();
+	  for(int i = 0; i < 1000; i++)
+		  values.add(i);
+	  EytzingerSortedTree<Integer> tree = new EytzingerSortedTree<Integer>(values);
+	  Assert.assertEquals(tree.depth(), 10);
+	  Assert.assertEquals(tree.subtreeSize(tree.root()), 1000);
+	  int depth = 0;
+	  for(Integer value : tree) {
+		  int size = 1, level = 0;
+		  for(Integer child : tree.children(value)) {
+			  Assert.assertEquals(tree.parent(child), value);
+			  size += tree.subtreeSize(child);
+		  }
+		  Assert.assertEquals(tree.subtreeSize(value), size);
+		  Assert.assertEquals(tree.childCount(value), tree.children(value).size());
+		  for(Integer ancestor = value; ancestor != null; ancestor = tree.parent(ancestor)) {
+			  Assert.assertEquals(tree.isAncestor(ancestor, value), level > 0);
+			  Assert.assertEquals(tree.ancestor(value, level), ancestor);
+			  level++;
+		  }
+		  Assert.assertEquals(tree.levelOf(value), level);
+		  depth = Math.max(depth, level);
+	  }
+	  Assert.assertEquals(tree.depth(), depth);
+	  Random random = new Random(5);
+	  for(int i = 0; i < 500; i++) {
+		  int node1 = random.nextInt(1000), node2 = random.nextInt(1000);
+		  Integer expected = node1;
+		  while(!expected.equals(node2) && !tree.isAncestor(expected, node2))
+			  expected = tree.parent(expected);
+		  Assert.assertEquals(tree.commonAncestor(node1, node2), expected);
+	  }
+	  Assert.assertEquals(tree.levelOrderTraversal(), toList(tree.levelOrderView()));
+	  Assert.assertEquals(tree.preOrderTraversal().size(), 1000);
+	  Assert.assertEquals(tree, new EytzingerSortedTree<Integer>(new TreeSet<Integer>(values)));
+  }
+  @Test
+  public void immutable() {
+	  EytzingerSortedTree<Integer> tree = new EytzingerSortedTree<Integer>(Arrays.asList(3, 1, 2, 3));
+	  Assert.assertEquals(tree.inOrderTraversal(), Arrays.asList(1, 2, 3));
+	  Assert.assertEquals(tree.root().intValue(), 2);
+	  try {
+		  tree.add(4);
+		  Assert.fail();
+	  } catch(UnsupportedOperationException e) {
+		  //passed
+	  }
+	  try {
+		  tree.pollFirst();
+		  Assert.fail();
+	  } catch(UnsupportedOperationException e) {
+		  //passed
+	  }
+	  try {
+		  tree.successor(5);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  try {
+		  new EytzingerSortedTree<Integer>(Arrays.asList(1, null));
+		  Assert.fail();
+	  } catch(IllegalArgumentException e) {
+		  //passed
+	  }
+  }
+  private List<Integer> toList(Iterable<Integer> iterable) {
+	  List<Integer> list = new ArrayList<Integer>();
+	  for(Integer i : iterable)
+		  list.add(i);
+	  return list;
+  }
+}
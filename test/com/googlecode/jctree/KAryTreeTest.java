@@ -83,4 +83,30 @@ public class KAryTreeTest {
 	  Assert.assertEquals(3, kAryTree.child(1, 1).intValue());
 	  Assert.assertEquals(6, kAryTree.child(2, 2).intValue());
   }
+  @Test
+  public void addRef() throws NodeNotFoundException {
+	  KAryTree<Integer> kAryTree = new KAryTree<>(2);
+	  NodeRef root = kAryTree.addRef(null, 1);
+	  NodeRef two = kAryTree.addRef(root, 2);
+	  NodeRef three = kAryTree.addRef(root, 3);
+	  Assert.assertEquals(Arrays.asList(two, three), kAryTree.childrenOf(root));
+	  try {
+		  kAryTree.addRef(root, 4);
+		  Assert.fail();
+	  } catch(IndexOutOfBoundsException e) {
+		  //passed
+	  }
+	  Assert.assertEquals(false, kAryTree.contains(4));
+	  Assert.assertEquals(3, kAryTree.size());
+	  Assert.assertEquals(true, kAryTree.remove(two));
+	  NodeRef four = kAryTree.addRef(root, 4);
+	  Assert.assertEquals(4, kAryTree.valueOf(four).intValue());
+	  Assert.assertEquals(root, kAryTree.parentOf(four));
+	  try {
+		  kAryTree.addRef(two, 5);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+  }
 }
@@ -13,8 +13,12 @@
  */
 package com.googlecode.jctree;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -567,4 +571,282 @@ public class LinkedTreeTest {
 	  		break;
 	  }
   }
+  @Test
+  public void nodeRef() throws NodeNotFoundException {
+	  LinkedTree<String> tree = new LinkedTree<String>();
+	  NodeRef root = tree.addRef(null, "Root1");
+	  NodeRef c1 = tree.addRef(root, "C1");
+	  NodeRef c2 = tree.addRef(root, "C2");
+	  NodeRef c11 = tree.addRef(c1, "C1-1");
+	  Assert.assertEquals("C1-1", tree.valueOf(c11));
+	  Assert.assertEquals(c1, tree.parentOf(c11));
+	  Assert.assertNull(tree.parentOf(root));
+	  Assert.assertEquals(Arrays.asList(c1, c2), tree.childrenOf(root));
+	  Assert.assertEquals(2, tree.childCount(root));
+	  Assert.assertEquals(c11, tree.ref("C1-1"));
+	  Assert.assertEquals(true, tree.remove(c1));
+	  Assert.assertEquals(false, tree.remove(c11));
+	  Assert.assertEquals(false, tree.contains("C1-1"));
+	  NodeRef newNode = tree.addRef(c2, "C1");
+	  Assert.assertEquals("C1", tree.valueOf(newNode));
+	  try {
+		  tree.valueOf(c1);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  tree.clear();
+	  tree.addRef(null, "Root2");
+	  try {
+		  tree.childrenOf(root);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  try {
+		  tree.childCount(root);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void indexAfterRemoveCloneAndClear(int testCaseNumber, LinkedTree<String> tree) throws NodeNotFoundException {
+	  @SuppressWarnings("unchecked")
+	  LinkedTree<String> clone = (LinkedTree<String>) tree.clone();
+	  Assert.assertEquals(clone, tree);
+	  switch(testCaseNumber) {
+	  	case 0:
+	  		Assert.assertEquals(false, clone.contains("Root1"));
+	  		clone.add("Root1");
+	  		Assert.assertEquals(true, clone.contains("Root1"));
+	  		Assert.assertEquals(false, tree.contains("Root1"));
+	  		break;
+	  	case 1:
+	  		Assert.assertEquals(true, clone.remove("C1"));
+	  		Assert.assertEquals(false, clone.contains("C1-1-2"));
+	  		Assert.assertEquals(true, tree.contains("C1-1-2"));
+	  		Assert.assertEquals(true, clone.add("C2-2", "C1-1"));
+	  		Assert.assertEquals("C2-2", clone.parent("C1-1"));
+	  		Assert.assertEquals("C1", tree.parent("C1-1"));
+	  		Assert.assertEquals(7, clone.size());
+	  		clone.clear();
+	  		Assert.assertEquals(false, clone.contains("C2"));
+	  		Assert.assertEquals(true, clone.add("C2"));
+	  		Assert.assertEquals("C2", clone.root());
+	  		break;
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void depthAfterRemoveAndClone(int testCaseNumber, LinkedTree<String> tree) throws NodeNotFoundException {
+	  if(testCaseNumber == 1) {
+		  @SuppressWarnings("unchecked")
+		  LinkedTree<String> clone = (LinkedTree<String>) tree.clone();
+		  Assert.assertEquals(true, tree.remove("C1-1"));
+		  Assert.assertEquals(true, tree.remove("C1-2-1"));
+		  Assert.assertEquals(4, tree.depth());
+		  Assert.assertEquals(true, tree.remove("C2-1"));
+		  Assert.assertEquals(3, tree.depth());
+		  tree.add("C1-3", "C1-3-1");
+		  tree.add("C1-3-1", "C1-3-1-1");
+		  tree.add("C1-3-1-1", "C1-3-1-1-1");
+		  Assert.assertEquals(6, tree.depth());
+		  Assert.assertEquals(true, tree.remove("C1"));
+		  Assert.assertEquals(3, tree.depth());
+		  Assert.assertEquals(4, clone.depth());
+		  Assert.assertEquals(true, clone.remove("C2"));
+		  Assert.assertEquals(4, clone.depth());
+		  Assert.assertEquals(3, tree.depth());
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void traversalViews(int testCaseNumber, LinkedTree<String> tree) throws NodeNotFoundException {
+	  Assert.assertEquals(toList(tree.preOrderView()), tree.preOrderTraversal());
+	  Assert.assertEquals(toList(tree.postOrderView()), tree.postOrderTraversal());
+	  Assert.assertEquals(toList(tree.inOrderView()), tree.inOrderTraversal());
+	  Assert.assertEquals(toList(tree.levelOrderView()), tree.levelOrderTraversal());
+	  Assert.assertEquals(toList(tree.leavesView()), tree.leaves());
+	  if(testCaseNumber == 1) {
+		  Assert.assertEquals(Arrays.asList("C1-1-1", "C1-1-2", "C1-1", "C1-2-1", "C1-2", "C1-3", "C1", "C2-1-1", "C2-1-2", "C2-1", "C2-2", "C2", "Root1"), toList(tree.postOrderView()));
+		  Iterator<String> iterator = tree.iterator();
+		  Assert.assertEquals("C1-1-1", iterator.next());
+		  tree.add("C2", "C2-3");
+		  try {
+			  iterator.next();
+			  Assert.fail();
+		  } catch(ConcurrentModificationException e) {
+			  //passed
+		  }
+	  }
+  }
+  @Test
+  public void traversalOfDeepTree() throws NodeNotFoundException {
+	  LinkedTree<Integer> tree = new LinkedTree<Integer>();
+	  tree.add(0);
+	  for(int i = 1; i < 100000; i++)
+		  tree.add(i - 1, i);
+	  Assert.assertEquals(Integer.valueOf(99999), tree.iterator().next());
+	  Assert.assertEquals(100000, tree.preOrderTraversal().size());
+	  Assert.assertEquals(Integer.valueOf(0), tree.postOrderTraversal().get(99999));
+	  Assert.assertEquals(Arrays.asList(99999), tree.leaves());
+  }
+  @Test(dataProvider = "getTree")
+  public void walk(int testCaseNumber, LinkedTree<String> tree) throws NodeNotFoundException {
+	  final List<String> visited = new ArrayList<String>();
+	  tree.walk((node, parent, depth) -> {
+		  visited.add(node);
+		  return depth < 2 ? TreeVisitResult.CONTINUE : TreeVisitResult.SKIP_SUBTREE;
+	  });
+	  if(testCaseNumber == 1) {
+		  Assert.assertEquals(Arrays.asList("Root1", "C1", "C2"), visited);
+		  Assert.assertEquals("C1-1-1", tree.walk("C1", (node, parent, depth) -> node.endsWith("-1") && depth == 3 ? TreeVisitResult.TERMINATE : TreeVisitResult.CONTINUE));
+		  Assert.assertNull(tree.walk("C1-3", (node, parent, depth) -> TreeVisitResult.CONTINUE));
+		  try {
+			  tree.walk((node, parent, depth) -> {
+				  if(node.equals("C1"))
+					  tree.remove("C2");
+				  return TreeVisitResult.CONTINUE;
+			  });
+			  Assert.fail();
+		  } catch(ConcurrentModificationException e) {
+			  //passed
+		  }
+	  } else
+		  Assert.assertTrue(visited.isEmpty());
+  }
+  @Test
+  public void commonAncestorIndex() throws NodeNotFoundException {
+	  LinkedTree<Integer> tree = new LinkedTree<Integer>();
+	  Random random = new Random(7);
+	  tree.add(0);
+	  for(int i = 1; i < 500; i++)
+		  tree.add(random.nextInt(i), i);
+	  for(int round = 0; round < 3; round++) {
+		  for(int i = 0; i < 2000; i++) {
+			  int node1 = random.nextInt(500), node2 = random.nextInt(500);
+			  if(tree.contains(node1) && tree.contains(node2))
+				  Assert.assertEquals(tree.commonAncestor(node1, node2), ancestorByParents(tree, node1, node2));
+		  }
+		  tree.remove(1 + random.nextInt(499));
+		  tree.add(0, 500 + round);
+		  Assert.assertEquals(tree.commonAncestor(500 + round, 0), Integer.valueOf(0));
+	  }
+	  try {
+		  tree.commonAncestor(0, 1000);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void levelAncestors() throws NodeNotFoundException {
+	  LinkedTree<Integer> tree = new LinkedTree<Integer>();
+	  Random random = new Random(11);
+	  tree.add(0);
+	  for(int i = 1; i < 500; i++)
+		  tree.add(random.nextInt(i) / 2, i);
+	  for(int i = 0; i < 2000; i++) {
+		  int node = random.nextInt(500);
+		  List<Integer> path = new ArrayList<Integer>();
+		  for(Integer e = node; e != null; e = tree.parent(e))
+			  path.add(e);
+		  Assert.assertEquals(tree.levelOf(node), path.size());
+		  Assert.assertEquals(toList(tree.ancestors(node)), path.subList(1, path.size()));
+		  int k = random.nextInt(path.size() + 2);
+		  Assert.assertEquals(tree.ancestor(node, k), k < path.size() ? path.get(k) : null);
+	  }
+	  Iterator<Integer> ancestors = tree.ancestors(499).iterator();
+	  tree.remove(499);
+	  try {
+		  ancestors.next();
+		  Assert.fail();
+	  } catch(ConcurrentModificationException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void intervalLabels() throws NodeNotFoundException {
+	  LinkedTree<Integer> tree = new LinkedTree<Integer>();
+	  Random random = new Random(5);
+	  tree.add(0);
+	  for(int i = 1; i < 3000; i++) {
+		  int parent = random.nextInt(i);
+		  if(tree.contains(parent))
+			  tree.add(parent, i);
+		  if(i % 10 == 0)
+			  tree.remove(1 + random.nextInt(i));
+	  }
+	  LinkedTree<Integer> clone = (LinkedTree<Integer>) tree.clone();
+	  clone.add(0, 5000);
+	  List<Integer> nodes = tree.preOrderTraversal();
+	  for(int i = 0; i < 5000; i++) {
+		  Integer node = nodes.get(random.nextInt(nodes.size())), child = nodes.get(random.nextInt(nodes.size()));
+		  Assert.assertEquals(tree.isAncestor(node, child), isAncestorByParents(tree, node, child));
+		  Assert.assertEquals(clone.isDescendant(node, child), tree.isAncestor(node, child));
+	  }
+  }
+  @Test
+  public void subtreeSizes() throws NodeNotFoundException {
+	  LinkedTree<Integer> tree = new LinkedTree<Integer>();
+	  Random random = new Random(3);
+	  tree.add(0);
+	  for(int i = 1; i < 2000; i++) {
+		  int parent = random.nextInt(i);
+		  if(tree.contains(parent))
+			  tree.add(parent, i);
+		  if(i % 10 == 0)
+			  tree.remove(1 + random.nextInt(i));
+	  }
+	  Assert.assertEquals(tree.size(), tree.preOrderTraversal().size());
+	  Assert.assertEquals(tree.subtreeSize(0), tree.size());
+	  LinkedTree<Integer> clone = (LinkedTree<Integer>) tree.clone();
+	  for(Integer node : tree.preOrderView()) {
+		  final int[] count = new int[1];
+		  tree.walk(node, (e, parent, depth) -> {
+			  count[0]++;
+			  return TreeVisitResult.CONTINUE;
+		  });
+		  Assert.assertEquals(tree.subtreeSize(node), count[0]);
+		  Assert.assertEquals(clone.subtreeSize(node), count[0]);
+		  Assert.assertEquals(tree.childCount(node), tree.children(node).size());
+	  }
+  }
+  @Test
+  public void subtreeSizesBetweenChanges() throws NodeNotFoundException {
+	  LinkedTree<Integer> tree = new LinkedTree<Integer>();
+	  tree.add(0);
+	  for(int i = 1; i < 100; i++) {
+		  tree.add(i - 1, i);
+		  Assert.assertEquals(tree.subtreeSize(0), i + 1);
+		  Assert.assertEquals(tree.subtreeSize(i / 2), i + 1 - i / 2);
+	  }
+	  LinkedTree<Integer> clone = (LinkedTree<Integer>) tree.clone();
+	  clone.remove(50);
+	  Assert.assertEquals(clone.subtreeSize(0), 50);
+	  Assert.assertEquals(tree.subtreeSize(0), 100);
+	  tree.add(0, 100);
+	  Assert.assertEquals(tree.subtreeSize(0), 101);
+	  Assert.assertEquals(tree.subtreeSize(49), 51);
+	  Assert.assertEquals(clone.subtreeSize(49), 1);
+  }
+  private static <E> boolean isAncestorByParents(Tree<E> tree, E node, E child) throws NodeNotFoundException {
+	  for(E e = tree.parent(child); e != null; e = tree.parent(e))
+		  if(e.equals(node))
+			  return true;
+	  return false;
+  }
+  private static <E> E ancestorByParents(Tree<E> tree, E node1, E node2) throws NodeNotFoundException {
+	  List<E> ancestors = new ArrayList<E>();
+	  for(E e = node1; e != null; e = tree.parent(e))
+		  ancestors.add(e);
+	  for(E e = node2; ; e = tree.parent(e))
+		  if(ancestors.contains(e))
+			  return e;
+  }
+  private static <E> List<E> toList(Iterable<E> view) {
+	  List<E> list = new ArrayList<E>();
+	  for(E e : view)
+		  list.add(e);
+	  return list;
+  }
 }
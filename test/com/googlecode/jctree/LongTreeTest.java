@@ -0,0 +1,227 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.googlecode.jctree.ArrayListTree;
+import com.googlecode.jctree.LongTree;
+import com.googlecode.jctree.NodeNotFoundException;
+
+public class LongTreeTest {
+	@DataProvider
+	public Object[][] getTree() throws NodeNotFoundException {
+		LongTree intTree = new LongTree(4);
+		intTree.add(1);
+		intTree.add(1, 11);
+		intTree.add(1, 12);
+		intTree.add(11, 111);
+		intTree.add(11, 112);
+		intTree.add(11, 113);
+		intTree.add(12, 121);
+		intTree.add(12, 122);
+		intTree.add(111, 1111);
+		intTree.add(111, 1112);
+		intTree.add(112, 1121);
+		intTree.add(121, 1211);
+		intTree.add(121, 1212);
+		return new Object[][]{{0, new LongTree()},{1, intTree}};
+	}
+	private ArrayListTree<Long> boxed() throws NodeNotFoundException {
+		ArrayListTree<Long> tree = new ArrayListTree<Long>();
+		tree.add(1L);
+		tree.addAll(1L, Arrays.asList(11L, 12L));
+		tree.addAll(11L, Arrays.asList(111L, 112L, 113L));
+		tree.addAll(12L, Arrays.asList(121L, 122L));
+		tree.addAll(111L, Arrays.asList(1111L, 1112L));
+		tree.add(112L, 1121L);
+		tree.addAll(121L, Arrays.asList(1211L, 1212L));
+		return tree;
+	}
+
+  @Test(dataProvider = "getTree")
+  public void add(int testCaseNumber, LongTree tree) throws NodeNotFoundException {
+	  int initialSize = tree.size();
+	  Assert.assertEquals(true, tree.add(5));
+	  Assert.assertEquals(false, tree.add(5));
+	  Assert.assertEquals(initialSize + 1, tree.size());
+	  Assert.assertEquals(true, tree.contains(5));
+	  if(initialSize == 0)
+		  Assert.assertEquals(5, tree.root());
+	  else {
+		  Assert.assertEquals(1, tree.parent(5));
+		  Assert.assertEquals(true, tree.add(1112, 6));
+		  Assert.assertEquals(false, tree.add(12, 6));
+		  Assert.assertEquals(1112, tree.parent(6));
+		  Assert.assertEquals(5, tree.depth());
+	  }
+	  try {
+		  tree.add(7, 8);
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void children(int testCaseNumber, LongTree tree) throws NodeNotFoundException {
+	  switch(testCaseNumber) {
+	  	case 0:
+	  		try {
+	  			tree.children(1);
+	  			Assert.fail();
+	  		} catch(NodeNotFoundException e) {
+	  			//passed
+	  		}
+	  		break;
+	  	case 1:
+	  		Assert.assertEquals(new LongArrayList(new long[]{111, 112, 113}), tree.children(11));
+	  		Assert.assertEquals(true, tree.children(113).isEmpty());
+	  		Assert.assertEquals(new LongArrayList(new long[]{111, 113}), tree.siblings(112));
+	  		Assert.assertEquals(true, tree.siblings(1).isEmpty());
+	  		break;
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void parentAndRoot(int testCaseNumber, LongTree tree) throws NodeNotFoundException {
+	  switch(testCaseNumber) {
+	  	case 0:
+	  		try {
+	  			tree.root();
+	  			Assert.fail();
+	  		} catch(NoSuchElementException e) {
+	  			//passed
+	  		}
+	  		break;
+	  	case 1:
+	  		Assert.assertEquals(1, tree.root());
+	  		Assert.assertEquals(121, tree.parent(1212));
+	  		try {
+	  			tree.parent(1);
+	  			Assert.fail();
+	  		} catch(NoSuchElementException e) {
+	  			//passed
+	  		}
+	  		break;
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void ancestors(int testCaseNumber, LongTree tree) throws NodeNotFoundException {
+	  if(testCaseNumber == 1) {
+		  Assert.assertEquals(11, tree.commonAncestor(1111, 1121));
+		  Assert.assertEquals(1, tree.commonAncestor(1111, 1212));
+		  Assert.assertEquals(111, tree.commonAncestor(111, 1112));
+		  Assert.assertEquals(true, tree.isAncestor(11, 1112));
+		  Assert.assertEquals(false, tree.isAncestor(12, 1112));
+		  Assert.assertEquals(false, tree.isAncestor(1112, 1112));
+		  Assert.assertEquals(true, tree.isDescendant(12, 1211));
+		  Assert.assertEquals(false, tree.isDescendant(12, 1121));
+		  Assert.assertEquals(false, tree.isDescendant(12, 7));
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void traversals(int testCaseNumber, LongTree tree) throws NodeNotFoundException {
+	  switch(testCaseNumber) {
+	  	case 0:
+	  		Assert.assertEquals(true, tree.preOrderTraversal().isEmpty());
+	  		Assert.assertEquals(true, tree.postOrderTraversal().isEmpty());
+	  		Assert.assertEquals(true, tree.inOrderTraversal().isEmpty());
+	  		Assert.assertEquals(true, tree.levelOrderTraversal().isEmpty());
+	  		Assert.assertEquals(true, tree.leaves().isEmpty());
+	  		break;
+	  	case 1:
+	  		ArrayListTree<Long> boxed = boxed();
+	  		Assert.assertEquals(tree.preOrderTraversal(), boxed.preOrderTraversal());
+	  		Assert.assertEquals(tree.postOrderTraversal(), boxed.postOrderTraversal());
+	  		Assert.assertEquals(tree.inOrderTraversal(), boxed.inOrderTraversal());
+	  		Assert.assertEquals(tree.levelOrderTraversal(), boxed.levelOrderTraversal());
+	  		Assert.assertEquals(tree.leaves(), boxed.leaves());
+	  		Assert.assertEquals(tree.toString(), boxed.toString());
+	  		break;
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void remove(int testCaseNumber, LongTree tree) throws NodeNotFoundException {
+	  switch(testCaseNumber) {
+	  	case 0:
+	  		Assert.assertEquals(false, tree.remove(1));
+	  		break;
+	  	case 1:
+	  		Assert.assertEquals(true, tree.remove(111));
+	  		Assert.assertEquals(false, tree.remove(1112));
+	  		Assert.assertEquals(10, tree.size());
+	  		Assert.assertEquals(4, tree.depth());
+	  		Assert.assertEquals(new LongArrayList(new long[]{112, 113}), tree.children(11));
+	  		Assert.assertEquals(true, tree.remove(12));
+	  		Assert.assertEquals(4, tree.depth());
+	  		Assert.assertEquals(true, tree.remove(113));
+	  		tree.add(112, 1112);
+	  		tree.add(1, 12);
+	  		Assert.assertEquals(new LongArrayList(new long[]{1121, 112, 1112, 11, 1, 12}), tree.inOrderTraversal());
+	  		Assert.assertEquals(true, tree.remove(1));
+	  		Assert.assertEquals(true, tree.isEmpty());
+	  		Assert.assertEquals(false, tree.contains(11));
+	  		Assert.assertEquals(0, tree.depth());
+	  		break;
+	  }
+  }
+  @Test(dataProvider = "getTree")
+  public void cloneAndEquals(int testCaseNumber, LongTree tree) throws NodeNotFoundException {
+	  LongTree clone = (LongTree) tree.clone();
+	  Assert.assertEquals(clone, tree);
+	  Assert.assertEquals(clone.hashCode(), tree.hashCode());
+	  clone.add(9);
+	  Assert.assertEquals(false, tree.contains(9));
+	  Assert.assertEquals(false, clone.equals(tree));
+	  if(testCaseNumber == 1) {
+		  LongTree moved = (LongTree) tree.clone();
+		  moved.remove(113);
+		  moved.add(12, 113);
+		  Assert.assertEquals(false, moved.equals(tree));
+		  tree.clear();
+		  Assert.assertEquals(13, moved.size());
+		  Assert.assertEquals(true, moved.contains(1121));
+	  }
+  }
+  @Test
+  public void depthOfChain() throws NodeNotFoundException {
+	  LongTree tree = new LongTree();
+	  tree.add(0L);
+	  for(long i = 1; i < 100000; i++)
+		  tree.add(i - 1, i);
+	  tree.add(0L, -1L);
+	  Assert.assertEquals(100000, tree.depth());
+	  LongTree clone = (LongTree) tree.clone();
+	  for(long i = 99999; i > 50000; i--) {
+		  Assert.assertEquals(true, tree.remove(i));
+		  Assert.assertEquals(i, tree.depth());
+	  }
+	  Assert.assertEquals(0L, tree.commonAncestor(-1L, 50000L));
+	  Assert.assertEquals(true, tree.remove(1L));
+	  Assert.assertEquals(2, tree.depth());
+	  Assert.assertEquals(true, tree.remove(-1L));
+	  Assert.assertEquals(1, tree.depth());
+	  tree.add(0L, 1L);
+	  Assert.assertEquals(2, tree.depth());
+	  Assert.assertEquals(100000, clone.depth());
+	  tree.clear();
+	  Assert.assertEquals(0, tree.depth());
+  }
+}
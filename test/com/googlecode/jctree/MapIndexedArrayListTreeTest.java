@@ -551,4 +551,48 @@ public class MapIndexedArrayListTreeTest {
 	  		break;
 	  }
   }
+  @Test
+  public void removeDeepSubtree() throws NodeNotFoundException {
+	  MapIndexedArrayListTree<Integer> chain = new MapIndexedArrayListTree<Integer>();
+	  chain.add(0);
+	  for(int i = 1; i < 100000; i++)
+		  chain.add(i - 1, i);
+	  Assert.assertEquals(chain.remove(1), true);
+	  Assert.assertEquals(chain.size(), 1);
+	  Assert.assertEquals(chain.depth(), 1);
+	  Assert.assertEquals(chain.contains(99999), false);
+	  Assert.assertEquals(chain.children(0).isEmpty(), true);
+	  chain.add(0, 1);
+	  chain.add(1, 2);
+	  Assert.assertEquals(chain.preOrderTraversal(), Arrays.asList(0, 1, 2));
+  }
+  @Test
+  public void removedNodesLeaveTheMap() throws NodeNotFoundException {
+	  MapIndexedArrayListTree<String> tree = new MapIndexedArrayListTree<String>();
+	  tree.add("Root1");
+	  tree.add("Root1", "C1");
+	  tree.add("C1", "C1-1");
+	  tree.add("C1-1", "C1-1-1");
+	  tree.add("Root1", "C2");
+	  MapIndexedArrayListTree<String> clone = (MapIndexedArrayListTree<String>) tree.clone();
+	  Assert.assertEquals(tree.remove("C1-1"), true);
+	  Assert.assertEquals(tree.contains("C1-1-1"), false);
+	  Assert.assertEquals(tree.remove("C1-1-1"), false);
+	  Assert.assertEquals(tree.remove("C1-1"), false);
+	  Assert.assertEquals(tree.size(), 3);
+	  Assert.assertEquals(tree.depth(), 2);
+	  Assert.assertEquals(clone.contains("C1-1-1"), true);
+	  Assert.assertEquals(clone.depth(), 4);
+	  Assert.assertEquals(clone.remove("C1-1-1"), true);
+	  Assert.assertEquals(clone.depth(), 3);
+	  tree.add("C2", "C1-1");
+	  Assert.assertEquals(tree.parent("C1-1"), "C2");
+	  Assert.assertEquals(tree.depth(), 3);
+	  tree.clear();
+	  Assert.assertEquals(tree.contains("Root1"), false);
+	  tree.add("C1");
+	  Assert.assertEquals(tree.root(), "C1");
+	  Assert.assertEquals(tree.depth(), 1);
+	  Assert.assertEquals(clone.size(), 4);
+  }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.googlecode.jctree.LongTree;
+import com.googlecode.jctree.NodeNotFoundException;
+import com.googlecode.jctree.OffHeapLongTree;
+
+public class OffHeapLongTreeTest {
+  @Test
+  public void queries() throws NodeNotFoundException {
+	  OffHeapLongTree tree = new OffHeapLongTree();
+	  try {
+		  Assert.assertEquals(true, tree.isEmpty());
+		  Assert.assertEquals(true, tree.add(1L));
+		  Assert.assertEquals(false, tree.add(1L));
+		  tree.addAll(1L, new LongArrayList(new long[]{11L, 12L}));
+		  tree.addAll(11L, new LongArrayList(new long[]{111L, 112L, 113L}));
+		  tree.add(12L, 121L);
+		  tree.add(121L, Long.MAX_VALUE);
+		  Assert.assertEquals(1L, tree.root());
+		  Assert.assertEquals(8, tree.size());
+		  Assert.assertEquals(4, tree.depth());
+		  Assert.assertEquals(new LongArrayList(new long[]{111L, 112L, 113L}), tree.children(11L));
+		  Assert.assertEquals(new LongArrayList(new long[]{111L, 113L}), tree.siblings(112L));
+		  Assert.assertEquals(121L, tree.parent(Long.MAX_VALUE));
+		  Assert.assertEquals(1L, tree.commonAncestor(113L, Long.MAX_VALUE));
+		  Assert.assertEquals(true, tree.isAncestor(12L, Long.MAX_VALUE));
+		  Assert.assertEquals(false, tree.isDescendant(11L, Long.MAX_VALUE));
+		  Assert.assertEquals(new LongArrayList(new long[]{111L, 112L, 11L, 113L, 1L, Long.MAX_VALUE, 121L, 12L}), tree.inOrderTraversal());
+		  Assert.assertEquals(new LongArrayList(new long[]{111L, 112L, 113L, Long.MAX_VALUE}), tree.leaves());
+		  Assert.assertEquals(true, tree.remove(12L));
+		  Assert.assertEquals(false, tree.contains(Long.MAX_VALUE));
+		  Assert.assertEquals(3, tree.depth());
+		  try {
+			  tree.parent(1L);
+			  Assert.fail();
+		  } catch(NoSuchElementException e) {
+			  //passed
+		  }
+		  try {
+			  tree.children(12L);
+			  Assert.fail();
+		  } catch(NodeNotFoundException e) {
+			  //passed
+		  }
+	  } finally {
+		  tree.close();
+	  }
+  }
+  @Test
+  public void sameAsLongTree() throws NodeNotFoundException {
+	  Random random = new Random(7);
+	  OffHeapLongTree tree = new OffHeapLongTree(1 << 12);
+	  LongTree reference = new LongTree();
+	  try {
+		  LongArrayList nodes = new LongArrayList();
+		  tree.add(0L);
+		  reference.add(0L);
+		  nodes.add(0L);
+		  for(int i = 0; i < 20000; i++) {
+			  long parent = nodes.getLong(random.nextInt(nodes.size()));
+			  long child = random.nextLong();
+			  if(!reference.contains(parent))
+				  continue;
+			  Assert.assertEquals(tree.add(parent, child), reference.add(parent, child));
+			  nodes.add(child);
+			  if(i % 100 == 99) {
+				  long removed = nodes.getLong(1 + random.nextInt(nodes.size() - 1));
+				  Assert.assertEquals(tree.remove(removed), reference.remove(removed));
+			  }
+		  }
+		  Assert.assertEquals(tree.size(), reference.size());
+		  Assert.assertEquals(tree.depth(), reference.depth());
+		  Assert.assertEquals(tree.preOrderTraversal(), reference.preOrderTraversal());
+		  Assert.assertEquals(tree.postOrderTraversal(), reference.postOrderTraversal());
+		  Assert.assertEquals(tree.levelOrderTraversal(), reference.levelOrderTraversal());
+		  for(long node : nodes)
+			  Assert.assertEquals(tree.contains(node), reference.contains(node));
+		  tree.clear();
+		  Assert.assertEquals(false, tree.contains(0L));
+		  Assert.assertEquals(true, tree.add(0L));
+	  } finally {
+		  tree.close();
+	  }
+  }
+  @Test
+  public void depthOfChain() throws NodeNotFoundException {
+	  OffHeapLongTree tree = new OffHeapLongTree();
+	  try {
+		  tree.add(0L);
+		  for(long i = 1; i < 100000; i++)
+			  tree.add(i - 1, i);
+		  tree.add(0L, -1L);
+		  Assert.assertEquals(100000, tree.depth());
+		  for(long i = 99999; i > 50000; i--) {
+			  Assert.assertEquals(true, tree.remove(i));
+			  Assert.assertEquals(i, tree.depth());
+		  }
+		  Assert.assertEquals(0L, tree.commonAncestor(-1L, 50000L));
+		  Assert.assertEquals(true, tree.remove(1L));
+		  Assert.assertEquals(2, tree.depth());
+		  Assert.assertEquals(true, tree.remove(-1L));
+		  Assert.assertEquals(1, tree.depth());
+		  tree.add(0L, 1L);
+		  Assert.assertEquals(2, tree.depth());
+	  } finally {
+		  tree.close();
+	  }
+  }
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void close() {
+	  OffHeapLongTree tree = new OffHeapLongTree();
+	  tree.add(1L);
+	  tree.close();
+	  tree.close();
+	  Assert.assertEquals(0, tree.size());
+	  tree.contains(1L);
+  }
+}
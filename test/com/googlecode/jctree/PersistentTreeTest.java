@@ -0,0 +1,147 @@
+package com.googlecode.jctree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PersistentTreeTest {
+
+  @Test
+  public void versions() throws NodeNotFoundException {
+	  Random random = new Random(3);
+	  PersistentTree<Integer> tree = new PersistentTree<Integer>().plus(0);
+	  LinkedTree<Integer> expected = new LinkedTree<Integer>();
+	  expected.add(0);
+	  List<PersistentTree<Integer>> versions = new ArrayList<PersistentTree<Integer>>();
+	  List<LinkedTree<Integer>> snapshots = new ArrayList<LinkedTree<Integer>>();
+	  for(int i = 1; i < 3000; i++) {
+		  List<Integer> nodes = expected.preOrderTraversal();
+		  Integer node = nodes.get(random.nextInt(nodes.size()));
+		  if(i % 7 == 0 && !node.equals(0)) {
+			  tree = tree.minus(node);
+			  expected.remove(node);
+		  } else {
+			  tree = tree.plus(node, i);
+			  expected.add(node, i);
+		  }
+		  if(i % 300 == 0) {
+			  versions.add(tree);
+			  snapshots.add((LinkedTree<Integer>) expected.clone());
+		  }
+	  }
+	  for(int i = 0; i < versions.size(); i++)
+		  check(versions.get(i), snapshots.get(i));
+	  check(tree, expected);
+  }
+  @Test
+  public void sharing() throws NodeNotFoundException {
+	  PersistentTree<String> empty = new PersistentTree<String>();
+	  PersistentTree<String> tree = empty.plus("a").plus("a", "b").plus("a", "c").plus("b", "d");
+	  Assert.assertSame(tree.plus("a", "d"), tree);
+	  Assert.assertSame(tree.minus("x"), tree);
+	  PersistentTree<String> removed = tree.minus("b");
+	  Assert.assertEquals(removed.preOrderTraversal(), Arrays.asList("a", "c"));
+	  Assert.assertFalse(removed.contains("d"));
+	  Assert.assertEquals(tree.preOrderTraversal(), Arrays.asList("a", "b", "d", "c"));
+	  Assert.assertEquals(tree.parent("d"), "b");
+	  Assert.assertEquals(tree.depth(), 3);
+	  Assert.assertEquals(removed.depth(), 2);
+	  Assert.assertTrue(empty.isEmpty());
+	  Assert.assertTrue(tree.minus("a").isEmpty());
+	  try {
+		  tree.plus(null, "e");
+		  Assert.fail();
+	  } catch(IllegalArgumentException e) {
+		  //passed
+	  }
+	  try {
+		  tree.plus("x", "e");
+		  Assert.fail();
+	  } catch(NodeNotFoundException e) {
+		  //passed
+	  }
+	  try {
+		  tree.add("e");
+		  Assert.fail();
+	  } catch(UnsupportedOperationException e) {
+		  //passed
+	  }
+  }
+  @Test
+  public void collidingHashCodes() throws NodeNotFoundException {
+	  PersistentTree<Key> tree = new PersistentTree<Key>().plus(new Key(0));
+	  for(int i = 1; i < 200; i++)
+		  tree = tree.plus(new Key((i - 1) / 2), new Key(i));
+	  for(int i = 1; i < 200; i++)
+		  Assert.assertEquals(tree.parent(new Key(i)), new Key((i - 1) / 2));
+	  PersistentTree<Key> removed = tree.minus(new Key(3));
+	  Assert.assertEquals(removed.size(), tree.size() - tree.subtreeSize(new Key(3)));
+	  for(int i = 0; i < 200; i++) {
+		  Assert.assertTrue(tree.contains(new Key(i)));
+		  Assert.assertEquals(removed.contains(new Key(i)), !tree.isDescendant(new Key(3), new Key(i)) && i != 3);
+	  }
+  }
+  private <E> void check(PersistentTree<E> tree, LinkedTree<E> expected) throws NodeNotFoundException {
+	  Assert.assertEquals(tree.size(), expected.size());
+	  Assert.assertEquals(tree.depth(), expected.depth());
+	  Assert.assertEquals(tree.preOrderTraversal(), expected.preOrderTraversal());
+	  Assert.assertEquals(tree.postOrderTraversal(), expected.postOrderTraversal());
+	  Assert.assertEquals(tree.levelOrderTraversal(), expected.levelOrderTraversal());
+	  for(E e : expected) {
+		  Assert.assertEquals(tree.parent(e), expected.parent(e));
+		  Assert.assertEquals(tree.children(e), expected.children(e));
+		  Assert.assertEquals(tree.subtreeSize(e), expected.subtreeSize(e));
+		  Assert.assertEquals(tree.levelOf(e), expected.levelOf(e));
+		  Assert.assertEquals(tree.isAncestor(expected.root(), e), !e.equals(expected.root()));
+	  }
+  }
+  @Test
+  public void concurrentQueries() throws Exception {
+	  PersistentTree<Integer> chain = new PersistentTree<Integer>().plus(0);
+	  for(int i = 1; i < 2000; i++)
+		  chain = chain.plus(i - 1, i);
+	  final PersistentTree<Integer> tree = chain;
+	  ExecutorService executor = Executors.newFixedThreadPool(4);
+	  List<Future<?>> readers = new ArrayList<Future<?>>();
+	  for(int r = 0; r < 4; r++) {
+		  final int seed = r;
+		  readers.add(executor.submit(() -> {
+			  Random random = new Random(seed);
+			  for(int q = 0; q < 5000; q++) {
+				  int i = random.nextInt(2000), j = random.nextInt(2000), k = random.nextInt(100);
+				  Assert.assertEquals(tree.commonAncestor(i, j).intValue(), Math.min(i, j));
+				  Assert.assertEquals(tree.ancestor(i, k), i < k ? null : Integer.valueOf(i - k));
+				  Assert.assertEquals(tree.levelOf(j), j + 1);
+			  }
+			  return null;
+		  }));
+	  }
+	  for(Future<?> reader : readers)
+		  reader.get();
+	  executor.shutdown();
+	  Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+  private static class Key {
+	  private final int value;
+
+	  Key(int value) {
+		  this.value = value;
+	  }
+	  @Override
+	  public int hashCode() {
+		  return value & 7;
+	  }
+	  @Override
+	  public boolean equals(Object o) {
+		  return o instanceof Key && ((Key) o).value == value;
+	  }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares point lookups of {@link EytzingerSortedTree} and {@link BinaryRedBlackTree} holding the same even numbers. 
+ * Keys are drawn at random, half of them absent, so the searches don't follow the same path. Run with main from the 
+ * test classpath
+ * @author Gaurav Saxena
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortedSearchBenchmark {
+	@Param({"1000", "100000", "1000000"})
+	public int size;
+	private EytzingerSortedTree<Integer> eytzinger;
+	private BinaryRedBlackTree<Integer> redBlack;
+	private Integer[] keys;
+	private Integer[] presentKeys;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		List<Integer> values = new ArrayList<Integer>(size);
+		for(int i = 0; i < size; i++)
+			values.add(2 * i);
+		eytzinger = new EytzingerSortedTree<Integer>(values);
+		redBlack = new BinaryRedBlackTree<Integer>(values);
+		Random random = new Random(42);
+		keys = new Integer[1 << 16];
+		presentKeys = new Integer[keys.length];
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextInt(2 * size);
+			presentKeys[i] = 2 * random.nextInt(size);
+		}
+	}
+	private int nextIndex() {
+		return next = (next + 1) & (keys.length - 1);
+	}
+	@Benchmark
+	public boolean eytzingerContains() {
+		return eytzinger.contains(keys[nextIndex()]);
+	}
+	@Benchmark
+	public boolean redBlackContains() {
+		return redBlack.contains(keys[nextIndex()]);
+	}
+	@Benchmark
+	public Object eytzingerSuccessor() throws NodeNotFoundException {
+		return eytzinger.successor(presentKeys[nextIndex()]);
+	}
+	@Benchmark
+	public Object redBlackSuccessor() throws NodeNotFoundException {
+		return redBlack.successor(presentKeys[nextIndex()]);
+	}
+	@Benchmark
+	public int eytzingerRank() {
+		return eytzinger.rank(keys[nextIndex()]);
+	}
+	@Benchmark
+	public int redBlackRank() {
+		return redBlack.rank(keys[nextIndex()]);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SortedSearchBenchmark.class.getSimpleName()).build()).run();
+	}
+}
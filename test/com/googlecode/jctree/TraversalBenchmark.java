@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Gaurav Saxena
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.googlecode.jctree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares full traversals of {@link LinkedTree} and {@link ArrayListTree}. Random trees attach every node to a 
+ * random earlier node, deep trees are a single chain. Run with main from the test classpath
+ * @author Gaurav Saxena
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalBenchmark {
+	@Param({"LinkedTree", "ArrayListTree"})
+	public String type;
+	@Param({"random", "deep"})
+	public String shape;
+	@Param({"100000"})
+	public int size;
+	private Tree<Integer> tree;
+
+	@Setup
+	public void setUp() throws NodeNotFoundException {
+		tree = "LinkedTree".equals(type) ? new LinkedTree<Integer>() : new ArrayListTree<Integer>(size);
+		Random random = new Random(42);
+		tree.add(0);
+		for(int i = 1; i < size; i++)
+			tree.add("deep".equals(shape) ? i - 1 : random.nextInt(i), i);
+	}
+	@Benchmark
+	public Object preOrder() {
+		return tree.preOrderTraversal();
+	}
+	@Benchmark
+	public Object postOrder() {
+		return tree.postOrderTraversal();
+	}
+	@Benchmark
+	public Object inOrder() {
+		return tree.inOrderTraversal();
+	}
+	@Benchmark
+	public Object levelOrder() {
+		return tree.levelOrderTraversal();
+	}
+	@Benchmark
+	public void iterate(Blackhole blackhole) {
+		for(Integer i : tree)
+			blackhole.consume(i);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TraversalBenchmark.class.getSimpleName()).build()).run();
+	}
+}